@@ -6,9 +6,11 @@ public class MyParking {
 	String parkingIdStandard = "";
 	String parkingId50kw = "";
 	ParkingApi myApi = null;
+	//fake time source, moves only when told to
+	ManualClock clock = new ManualClock();
 	
 	try {
-            myApi = new ParkingApi();
+            myApi = new ParkingApi(clock);
 	    //create 10 slots for parking type standard
             parkingIdStandard = myApi.newParking(10, ParkingApi.PARKING_STANDARD_TYPE);
 	    //create 10 slots for parking type 50kw
@@ -27,14 +29,13 @@ public class MyParking {
 	    System.out.println("No slots available for the required type!");
 	}
 
-	long clockFake = 130; // 2 hours 10 minutes
+	clock.advanceMinutes(130); // 2 hours 10 minutes
 	
 	//checkout using a complex billingPolicy:
 	//First hour free, next hour 1.8, after 0.85 cents each 15 minutes
 	double price = 0.0;
 	try{
 	    price = myApi.checkOut(parkingIdStandard, slotId, (long min) -> {
-		    min += clockFake;
 		    System.out.println("Elapsed minutes "+min);
 		    if(min < 60){
 			return 0;
@@ -0,0 +1,120 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Re-billing a day of sessions, a million stays spread over 100 lots, under a tiered
+ * tariff: plain loops, the fork/join rebill of the arrays and the rebill of the same
+ * sessions in a SessionLog. Run with -jvmArgs -Djava.util.concurrent.ForkJoinPool.common.parallelism=N
+ * to see how it scales with the cores.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkBillingBenchmark {
+
+    private static final int SESSIONS = 1000000;
+
+    @State(Scope.Benchmark)
+    public static class Day {
+
+        BillingPolicy tariff;
+
+        int[] parkingIds;
+
+        long[] minutes;
+
+        SessionLog log;
+
+        ParkingApi api;
+
+        @Setup
+        public void setUp(){
+            tariff = Tariff.builder()
+                    .free(15)
+                    .flat(60, 2.0)
+                    .perIncrement(15, 0.85)
+                    .cap(25.0)
+                    .build()
+                    .compile();
+            parkingIds = new int[SESSIONS];
+            minutes = new long[SESSIONS];
+            log = new SessionLog(SESSIONS);
+            Random random = new Random(42);
+            for(int i = 0; i < SESSIONS; i++){
+                parkingIds[i] = 1 + random.nextInt(100);
+                minutes[i] = random.nextInt(12 * 60);
+                long end = i * 86L;
+                log.append(parkingIds[i], SlotType.STANDARD, 1, end - minutes[i] * 60000, end, minutes[i], 0);
+            }
+            api = new ParkingApi();
+        }
+    }
+
+    @Benchmark
+    public long loop(Day day){
+        long cents = 0;
+        for(int i = 0; i < SESSIONS; i++){
+            cents += Revenue.cents(day.tariff.bill(day.minutes[i]));
+        }
+        return cents;
+    }
+
+    @Benchmark
+    public long[] loopPerLot(Day day){
+        long[] sums = new long[3 * 101];
+        for(int i = 0; i < SESSIONS; i++){
+            int at = day.parkingIds[i] * 3;
+            sums[at]++;
+            sums[at + 1] += day.minutes[i];
+            sums[at + 2] += Revenue.cents(day.tariff.bill(day.minutes[i]));
+        }
+        return sums;
+    }
+
+    @Benchmark
+    public BillingReport rebillArrays(Day day){
+        return day.api.rebill(day.tariff, day.parkingIds, day.minutes);
+    }
+
+    @Benchmark
+    public BillingReport rebillSessionLog(Day day){
+        return day.log.rebill(day.tariff);
+    }
+}
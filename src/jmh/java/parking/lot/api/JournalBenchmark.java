@@ -0,0 +1,120 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Cost of the write-ahead journal on checkIn followed by checkOut: without journal,
+ * with the journal forced in the background and with every operation waiting for
+ * the group fsync covering it.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class JournalBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Parking {
+
+        @Param({"none", "async", "sync"})
+        String journaling;
+
+        @Param({"100000"})
+        int lotSize;
+
+        ParkingApi api;
+
+        ParkingJournal journal;
+
+        Path directory;
+
+        int parkingId;
+
+        BillingPolicy billingPolicy = (long minutes) -> (minutes / 60) * 1.5;
+
+        @Setup
+        public void setUp() throws Throwable {
+            if("none".equals(journaling)){
+                api = new ParkingApi(ParkingClock.SYSTEM);
+            }else{
+                directory = Files.createTempDirectory("parking-journal");
+                journal = ParkingJournal.builder(directory)
+                        .syncCommit("sync".equals(journaling))
+                        .build();
+                api = new ParkingApi(ParkingClock.SYSTEM, journal);
+            }
+            parkingId = api.newParkingHandle(lotSize, ParkingApi.PARKING_STANDARD_TYPE, 16);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            if(journal == null){
+                return;
+            }
+            journal.close();
+            try(DirectoryStream<Path> files = Files.newDirectoryStream(directory)){
+                for(Path file : files){
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Benchmark
+    public double checkInCheckOut1Thread(Parking parking, Blackhole blackhole) throws Throwable {
+        return checkInCheckOut(parking, blackhole);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public double checkInCheckOutMaxThreads(Parking parking, Blackhole blackhole) throws Throwable {
+        return checkInCheckOut(parking, blackhole);
+    }
+
+    private static double checkInCheckOut(Parking parking, Blackhole blackhole) throws Throwable {
+        try {
+            int slotId = parking.api.checkIn(parking.parkingId, ParkingApi.PARKING_STANDARD_TYPE);
+            return parking.api.checkOut(parking.parkingId, slotId, parking.billingPolicy);
+        } catch (SlotsFullException e) {
+            blackhole.consume(e);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cost of the metrics on check in and check out, disabled (the switch is read) and
+ * enabled (two latency records and two lock wait records per round trip). tryCheckInFull
+ * measures a rejected checkIn on a full lot, the cheapest operation there is.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class MetricsBenchmark {
+
+    private static final BillingPolicy PER_MINUTE = (long minutes) -> minutes;
+
+    @State(Scope.Benchmark)
+    public static class Lot {
+
+        @Param({"false", "true"})
+        boolean enabled;
+
+        ParkingApi api;
+
+        int parkingId;
+
+        int fullId;
+
+        @Setup
+        public void setUp() throws Throwable {
+            api = new ParkingApi();
+            parkingId = api.newParkingHandle(10000, SlotType.STANDARD, 4);
+            fullId = api.newParkingHandle(1, SlotType.STANDARD);
+            api.checkIn(fullId, SlotType.STANDARD);
+            api.setMetricsEnabled(enabled);
+        }
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public double checkInCheckOut(Lot lot) throws Throwable {
+        int slotId = lot.api.checkIn(lot.parkingId, SlotType.STANDARD);
+        return lot.api.checkOut(lot.parkingId, slotId, PER_MINUTE);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int tryCheckInFull(Lot lot){
+        return lot.api.tryCheckIn(lot.fullId, SlotType.STANDARD);
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Hot paths of ParkingApi: a checkIn immediately followed by the checkOut of the
+ * same slot keeps the lot occupancy stable whatever the number of iterations.
+ * A full lot (more threads than slots) is part of the measure, the rejected
+ * checkIn is consumed instead of failing the run.
+ *
+ * Run with ./gradlew jmh, the gc profiler configured in build.gradle reports the
+ * allocation rate per operation.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class ParkingApiBenchmark {
+
+    private static final String[] TYPES = {
+            ParkingApi.PARKING_STANDARD_TYPE, ParkingApi.PARKING_20kW_TYPE, ParkingApi.PARKING_50kW_TYPE
+    };
+
+    private static final String MIXED = "mixed";
+
+    /**
+     * Number of cars per batch in the batch benchmarks, scores are reported per car.
+     */
+    private static final int BATCH = 32;
+
+    @State(Scope.Benchmark)
+    public static class Parking {
+
+        /**
+         * Number of slots of each parking lot.
+         */
+        @Param({"10", "1000", "100000", "1000000"})
+        int lotSize;
+
+        /**
+         * Slot type used by the workload, mixed rotates over the three types.
+         */
+        @Param({ParkingApi.PARKING_STANDARD_TYPE, ParkingApi.PARKING_20kW_TYPE, ParkingApi.PARKING_50kW_TYPE, MIXED})
+        String workload;
+
+        ParkingApi api;
+
+        /**
+         * parkingIds[i] is the lot holding slots of type TYPES[i].
+         */
+        String[] parkingIds;
+
+        /**
+         * int form of parkingIds.
+         */
+        int[] parkingHandles;
+
+        BillingPolicy billingPolicy = (long minutes) -> (minutes / 60) * 1.5;
+
+        @Setup(Level.Trial)
+        public void setUp() throws UnknownParkingTypeException {
+            api = new ParkingApi();
+            parkingIds = new String[TYPES.length];
+            parkingHandles = new int[TYPES.length];
+            for (int i = 0; i < TYPES.length; i++) {
+                parkingHandles[i] = api.newParkingHandle(lotSize, TYPES[i]);
+                parkingIds[i] = String.valueOf(parkingHandles[i]);
+                api.setBillingPolicy(parkingIds[i], billingPolicy);
+            }
+        }
+
+        int typeIndex(String type) {
+            for (int i = 0; i < TYPES.length; i++) {
+                if (TYPES[i].equals(type)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("Unknown workload " + type);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Gate {
+
+        /**
+         * Index in TYPES of the next car, only changes for the mixed workload.
+         */
+        int next;
+
+        boolean mixed;
+
+        /**
+         * Slot ids of the current batch.
+         */
+        int[] slotIds = new int[BATCH];
+
+        @Setup(Level.Trial)
+        public void setUp(Parking parking) {
+            mixed = MIXED.equals(parking.workload);
+            next = mixed ? (int) (Thread.currentThread().getId() % TYPES.length) : parking.typeIndex(parking.workload);
+        }
+
+        int nextType() {
+            int current = next;
+            if (mixed) {
+                next = current + 1 == TYPES.length ? 0 : current + 1;
+            }
+            return current;
+        }
+    }
+
+    private static void checkInCheckOut(Parking parking, Gate gate, Blackhole blackhole) throws Throwable {
+        int type = gate.nextType();
+        String parkingId = parking.parkingIds[type];
+        String slotId;
+        try {
+            slotId = parking.api.checkIn(parkingId, TYPES[type]);
+        } catch (SlotsFullException e) {
+            blackhole.consume(e);
+            return;
+        }
+        blackhole.consume(parking.api.checkOut(parkingId, slotId, parking.billingPolicy));
+    }
+
+    private static void checkInCheckOutHandles(Parking parking, Gate gate, Blackhole blackhole) throws Throwable {
+        int type = gate.nextType();
+        int parkingId = parking.parkingHandles[type];
+        int slotId;
+        try {
+            slotId = parking.api.checkIn(parkingId, TYPES[type]);
+        } catch (SlotsFullException e) {
+            blackhole.consume(e);
+            return;
+        }
+        blackhole.consume(parking.api.checkOut(parkingId, slotId, parking.billingPolicy));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void checkInCheckOut1Thread(Parking parking, Gate gate, Blackhole blackhole) throws Throwable {
+        checkInCheckOut(parking, gate, blackhole);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void checkInCheckOut4Threads(Parking parking, Gate gate, Blackhole blackhole) throws Throwable {
+        checkInCheckOut(parking, gate, blackhole);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void checkInCheckOutMaxThreads(Parking parking, Gate gate, Blackhole blackhole) throws Throwable {
+        checkInCheckOut(parking, gate, blackhole);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void checkInCheckOutHandles1Thread(Parking parking, Gate gate, Blackhole blackhole) throws Throwable {
+        checkInCheckOutHandles(parking, gate, blackhole);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void checkInCheckOutHandlesMaxThreads(Parking parking, Gate gate, Blackhole blackhole) throws Throwable {
+        checkInCheckOutHandles(parking, gate, blackhole);
+    }
+
+    private static void checkInCheckOutBatch(Parking parking, Gate gate, Blackhole blackhole) throws Throwable {
+        int type = gate.nextType();
+        int parkingId = parking.parkingHandles[type];
+        int count = parking.api.checkIn(parkingId, TYPES[type], gate.slotIds);
+        int[] slotIds = count == BATCH ? gate.slotIds : Arrays.copyOf(gate.slotIds, count);
+        blackhole.consume(parking.api.checkOut(parkingId, slotIds, parking.billingPolicy));
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(BATCH)
+    public void checkInCheckOutBatch1Thread(Parking parking, Gate gate, Blackhole blackhole) throws Throwable {
+        checkInCheckOutBatch(parking, gate, blackhole);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    @OperationsPerInvocation(BATCH)
+    public void checkInCheckOutBatchMaxThreads(Parking parking, Gate gate, Blackhole blackhole) throws Throwable {
+        checkInCheckOutBatch(parking, gate, blackhole);
+    }
+
+    @Benchmark
+    public Vector<String> getAllSlotsIds(Parking parking, Gate gate) throws Throwable {
+        return parking.api.getAllSlotsIds(parking.parkingIds[gate.nextType()]);
+    }
+
+    @Benchmark
+    public Vector<String> getAllParkingIds(Parking parking) {
+        return parking.api.getAllParkingIds();
+    }
+}
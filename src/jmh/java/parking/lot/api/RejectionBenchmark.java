@@ -0,0 +1,94 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Gate traffic on a full lot: every checkIn is rejected.
+ *
+ * checkInThrows uses the exception API, tryCheckIn the result codes. stackTraceBaseline
+ * throws a new exception with a stack trace from the same depth, i.e. what each
+ * rejection cost before the exceptions became stackless.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class RejectionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class FullLot {
+
+        ParkingApi api;
+
+        int parkingId;
+
+        @Setup
+        public void setUp() throws Throwable {
+            api = new ParkingApi();
+            parkingId = api.newParkingHandle(100, SlotType.STANDARD, 4);
+            while(ParkingStatus.isSlot(api.tryCheckIn(parkingId, SlotType.STANDARD))){
+                //fill the lot
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int checkInThrows(FullLot lot, Blackhole blackhole) throws Throwable {
+        try {
+            return lot.api.checkIn(lot.parkingId, SlotType.STANDARD);
+        } catch (SlotsFullException e) {
+            blackhole.consume(e);
+            return ParkingStatus.FULL;
+        }
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int tryCheckIn(FullLot lot){
+        return lot.api.tryCheckIn(lot.parkingId, SlotType.STANDARD);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int stackTraceBaseline(FullLot lot, Blackhole blackhole){
+        try {
+            if(!ParkingStatus.isSlot(lot.api.tryCheckIn(lot.parkingId, SlotType.STANDARD))){
+                throw new IllegalStateException("All slots of the current Parking Set are occupied!");
+            }
+            return 0;
+        } catch (IllegalStateException e) {
+            blackhole.consume(e);
+            return ParkingStatus.FULL;
+        }
+    }
+}
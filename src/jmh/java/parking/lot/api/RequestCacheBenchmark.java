@@ -0,0 +1,105 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cost of the request id cache. plain checks a car in and out without request id,
+ * firstAttempt does the same with a new request id per call, the overhead of the cache
+ * on requests seen for the first time. retry repeats an id, answered from the cache.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class RequestCacheBenchmark {
+
+    private static final BillingPolicy PER_MINUTE = (long minutes) -> minutes;
+
+    @State(Scope.Benchmark)
+    public static class Lot {
+
+        ParkingApi api;
+
+        int parkingId;
+
+        int retriedSlot;
+
+        @Setup
+        public void setUp() throws Throwable {
+            api = new ParkingApi();
+            parkingId = api.newParkingHandle(10000, SlotType.STANDARD, 4);
+            retriedSlot = api.checkInOnce(parkingId, SlotType.STANDARD, "retried");
+        }
+    }
+
+    /**
+     * Request ids of one thread, built the way a gate would.
+     */
+    @State(Scope.Thread)
+    public static class Gate {
+
+        String prefix;
+
+        long next;
+
+        @Setup
+        public void setUp(){
+            prefix = "gate-" + Thread.currentThread().getId() + "/";
+        }
+
+        /**
+         * @return a request id never used before.
+         */
+        String nextId(){
+            return prefix + next++;
+        }
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public double plain(Lot lot) throws Throwable {
+        int slotId = lot.api.checkIn(lot.parkingId, SlotType.STANDARD);
+        return lot.api.checkOut(lot.parkingId, slotId, PER_MINUTE);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public double firstAttempt(Lot lot, Gate gate) throws Throwable {
+        int slotId = lot.api.checkInOnce(lot.parkingId, SlotType.STANDARD, gate.nextId());
+        return lot.api.checkOutOnce(lot.parkingId, slotId, gate.nextId(), PER_MINUTE);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public int retry(Lot lot) throws Throwable {
+        return lot.api.checkInOnce(lot.parkingId, SlotType.STANDARD, "retried");
+    }
+}
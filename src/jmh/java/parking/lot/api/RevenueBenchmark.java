@@ -0,0 +1,94 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cost of the revenue counters: checkInCheckOut updates the pool and type counters on
+ * every checkOut, the reads sum the cells of the counters. The checkout group runs
+ * gates and a dashboard reading the revenue of the lot at the same time.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class RevenueBenchmark {
+
+    private static final BillingPolicy PER_MINUTE = (long minutes) -> minutes;
+
+    @State(Scope.Benchmark)
+    public static class Lot {
+
+        ParkingApi api;
+
+        int parkingId;
+
+        @Setup
+        public void setUp() throws Throwable {
+            api = new ParkingApi();
+            parkingId = api.newParkingHandle(10000, SlotType.STANDARD, 4);
+            for(int i = 0; i < 1000; i++){
+                api.checkOut(parkingId, api.checkIn(parkingId, SlotType.STANDARD), PER_MINUTE);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public double checkInCheckOut(Lot lot) throws Throwable {
+        int slotId = lot.api.checkIn(lot.parkingId, SlotType.STANDARD);
+        return lot.api.checkOut(lot.parkingId, slotId, PER_MINUTE);
+    }
+
+    @Benchmark
+    public Revenue lotLastHour(Lot lot) throws Throwable {
+        return lot.api.getRevenue(lot.parkingId, RevenuePeriod.LAST_HOUR);
+    }
+
+    @Benchmark
+    public Revenue allToday(Lot lot){
+        return lot.api.getRevenue(RevenuePeriod.TODAY);
+    }
+
+    @Benchmark
+    @Group("checkout")
+    @GroupThreads(3)
+    public double gates(Lot lot) throws Throwable {
+        return checkInCheckOut(lot);
+    }
+
+    @Benchmark
+    @Group("checkout")
+    public Revenue dashboard(Lot lot) throws Throwable {
+        return lot.api.getRevenue(lot.parkingId, RevenuePeriod.ALL_TIME);
+    }
+}
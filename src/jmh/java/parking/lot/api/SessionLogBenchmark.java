@@ -0,0 +1,129 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cost of logging sessions on checkOut, with and without a SessionLog (run with -prof gc
+ * to see that appending allocates nothing), and time to aggregate a million sessions
+ * with and without filters.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class SessionLogBenchmark {
+
+    private static final BillingPolicy PER_MINUTE = (long minutes) -> minutes;
+
+    private static final int SESSIONS = 1000000;
+
+    @State(Scope.Benchmark)
+    public static class Lot {
+
+        @Param({"false", "true"})
+        boolean logged;
+
+        ParkingApi api;
+
+        int parkingId;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Throwable {
+            api = new ParkingApi();
+            parkingId = api.newParkingHandle(10000, SlotType.STANDARD, 4);
+        }
+
+        /**
+         * A new log per iteration, large enough for a 1s iteration, the previous one is freed.
+         */
+        @Setup(Level.Iteration)
+        public void newLog(){
+            if(logged){
+                api.startSessionLog(8 * 1000000);
+            }
+        }
+    }
+
+    /**
+     * A day of sessions of 100 lots, ending one every 86ms.
+     */
+    @State(Scope.Benchmark)
+    public static class History {
+
+        SessionLog log;
+
+        @Setup
+        public void setUp(){
+            log = new SessionLog(SESSIONS);
+            for(int i = 0; i < SESSIONS; i++){
+                long end = i * 86L;
+                log.append(1 + i % 100, i % 3 == 0 ? SlotType.CHARGER_50kW : SlotType.STANDARD, 1 + i % 500,
+                        end - 3600000, end, 60, 2.5);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public double checkInCheckOut(Lot lot) throws Throwable {
+        int slotId = lot.api.checkIn(lot.parkingId, SlotType.STANDARD);
+        return lot.api.checkOut(lot.parkingId, slotId, PER_MINUTE);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public double aggregateAll(History history){
+        return history.log.aggregate().getRevenue();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public double aggregateParkingAndType(History history){
+        return history.log.aggregate(42, SlotType.CHARGER_50kW, Long.MIN_VALUE, Long.MAX_VALUE).getRevenue();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public double aggregateLastHour(History history){
+        long end = SESSIONS * 86L;
+        return history.log.aggregate(end - 3600000, end).getRevenue();
+    }
+}
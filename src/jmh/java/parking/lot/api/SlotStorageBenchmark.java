@@ -0,0 +1,109 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Memory footprint and speed of the two SlotStorage backends on a 1M slots lot.
+ *
+ * usedLot builds a lot and checks a car in on every slot, so with the gc profiler
+ * gc.alloc.rate.norm is the footprint of a lot whose slots were all used in bytes,
+ * divide it by lotSize for the bytes per slot. newLot only builds the lot, slots are
+ * materialized on first use so it measures creation time and the footprint of an
+ * empty lot. checkInCheckOut compares the two storages on the hot path.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class SlotStorageBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Parking {
+
+        @Param({"1000000"})
+        int lotSize;
+
+        @Param({"OBJECTS", "COMPACT"})
+        SlotStorage storage;
+
+        ParkingApi api;
+
+        int parkingId;
+
+        BillingPolicy billingPolicy = (long minutes) -> (minutes / 60) * 1.5;
+
+        int[] batch = new int[1024];
+
+        @Setup
+        public void setUp() throws UnknownParkingTypeException {
+            api = new ParkingApi();
+            parkingId = api.newParkingHandle(lotSize, SlotType.STANDARD, 16, storage);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ParkingSlotSet newLot(Parking parking){
+        return new ParkingSlotSet(new SlotType[]{ SlotType.STANDARD }, new int[]{ parking.lotSize },
+                ParkingClock.SYSTEM, 16, null, parking.storage);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ParkingSlotSet usedLot(Parking parking){
+        ParkingSlotSet lot = newLot(parking);
+        while(lot.checkInAll(parking.batch) == parking.batch.length){
+            //until every slot is occupied
+        }
+        return lot;
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public double checkInCheckOut(Parking parking, Blackhole blackhole) throws Throwable {
+        try {
+            int slotId = parking.api.checkIn(parking.parkingId, SlotType.STANDARD);
+            return parking.api.checkOut(parking.parkingId, slotId, parking.billingPolicy);
+        } catch (SlotsFullException e) {
+            blackhole.consume(e);
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Service startup: time to create a ParkingApi holding a few hundred large lots.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StartupBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Lots {
+
+        @Param({"300"})
+        int lots;
+
+        @Param({"10000", "100000"})
+        int lotSize;
+
+        @Param({"OBJECTS", "COMPACT"})
+        SlotStorage storage;
+    }
+
+    @Benchmark
+    public ParkingApi createLots(Lots lots) throws UnknownParkingTypeException {
+        ParkingApi api = new ParkingApi();
+        for(int i = 0; i < lots.lots; i++){
+            api.newParkingHandle(lots.lotSize, SlotType.STANDARD, 4, lots.storage);
+        }
+        return api;
+    }
+}
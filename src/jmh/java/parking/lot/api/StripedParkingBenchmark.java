@@ -0,0 +1,78 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Contention on a single large lot shared by every entrance (thread): checkIn followed
+ * by checkOut with the free slots in 1 to 16 stripes.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class StripedParkingBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Parking {
+
+        @Param({"50000"})
+        int lotSize;
+
+        @Param({"1", "4", "16"})
+        int stripes;
+
+        ParkingApi api;
+
+        int parkingId;
+
+        BillingPolicy billingPolicy = (long minutes) -> (minutes / 60) * 1.5;
+
+        @Setup
+        public void setUp() throws UnknownParkingTypeException {
+            api = new ParkingApi();
+            parkingId = api.newParkingHandle(lotSize, ParkingApi.PARKING_STANDARD_TYPE, stripes);
+        }
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public double checkInCheckOut(Parking parking, Blackhole blackhole) throws Throwable {
+        try {
+            int slotId = parking.api.checkIn(parking.parkingId, ParkingApi.PARKING_STANDARD_TYPE);
+            return parking.api.checkOut(parking.parkingId, slotId, parking.billingPolicy);
+        } catch (SlotsFullException e) {
+            blackhole.consume(e);
+            return 0;
+        }
+    }
+}
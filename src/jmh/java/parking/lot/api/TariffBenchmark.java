@@ -0,0 +1,116 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compare the hand written lambda of the tiered example (first hour free, next hour
+ * 1.8, after 0.85 each 15 minutes) with the same Tariff, interpreted and compiled.
+ *
+ * Each invocation bills a fixed array of random stays so branch prediction cannot
+ * learn a single path, scores are reported per stay.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+@State(Scope.Thread)
+public class TariffBenchmark {
+
+    private static final int STAYS = 1024;
+
+    /**
+     * Longest stay in minutes.
+     */
+    @Param({"300", "1440", "10080"})
+    int maxMinutes;
+
+    long[] stays;
+
+    BillingPolicy lambda;
+
+    BillingPolicy interpreted;
+
+    BillingPolicy compiled;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        stays = new long[STAYS];
+        for (int i = 0; i < STAYS; i++) {
+            stays[i] = random.nextInt(maxMinutes);
+        }
+        lambda = (long minutes) -> {
+            if(minutes < 60){
+                return 0;
+            }else if(minutes >= 60 && minutes < 120){
+                return 1.8;
+            }else {
+                return ((minutes-120)/15)*0.85+1.8;
+            }
+        };
+        Tariff tariff = Tariff.builder()
+                .free(60)
+                .flat(60, 1.8)
+                .perIncrement(15, 0.85)
+                .build();
+        interpreted = tariff;
+        compiled = tariff.compile();
+    }
+
+    private static double billAll(BillingPolicy policy, long[] stays) {
+        double total = 0;
+        for (long stay : stays) {
+            total += policy.bill(stay);
+        }
+        return total;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STAYS)
+    public double lambda() {
+        return billAll(lambda, stays);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STAYS)
+    public double interpreted() {
+        return billAll(interpreted, stays);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STAYS)
+    public double compiled() {
+        return billAll(compiled, stays);
+    }
+}
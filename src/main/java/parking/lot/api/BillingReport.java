@@ -0,0 +1,75 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Sessions, minutes and revenue of a bulk billing, in total and per parking lot, see
+ * ParkingApi.rebill and SessionLog.rebill.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class BillingReport {
+    private final Revenue total;
+    private final Map<Integer, Revenue> parkings;
+
+    BillingReport(Revenue total, Map<Integer, Revenue> parkings) {
+        this.total = total;
+        this.parkings = Collections.unmodifiableMap(parkings);
+    }
+
+    /**
+     * @return the sums over every session billed.
+     */
+    public Revenue getTotal() {
+        return total;
+    }
+
+    /**
+     * @return the sums of each parking lot by id in increasing order, empty when the
+     * sessions were billed without their lot.
+     */
+    public Map<Integer, Revenue> getParkings() {
+        return parkings;
+    }
+
+    /**
+     * @param parkingId int id of the parking lot.
+     * @return the sums of the sessions of the lot, empty if none was billed.
+     */
+    public Revenue getParking(int parkingId) {
+        Revenue revenue = parkings.get(parkingId);
+        return revenue == null ? Revenue.EMPTY : revenue;
+    }
+
+    @Override
+    public String toString() {
+        return "total={" + total + "} parkings=" + parkings.size();
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sessions, minutes and cents per parking id summed by one bulk billing task, merged
+ * with the sums of the other tasks once they are done.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class BillingSums {
+    /**
+     * Ids below this one are summed in a flat array, the others in a hash table, so a
+     * leaf holds a few kilobytes plus a few entries per lot whatever the ids are.
+     */
+    static final int DENSE_IDS = 1 << 10;
+    private static final int EMPTY = -1;
+
+    /**
+     * Sessions, minutes and cents of parking id p at 3p, 3p + 1 and 3p + 2, id 0 holds
+     * the sessions billed without their lot. Sized for the first 64 ids, grown to the
+     * highest id added below DENSE_IDS.
+     */
+    private long[] sums = new long[3 * 64];
+    /**
+     * Open addressing table of the ids from DENSE_IDS on, EMPTY for a free entry, kept
+     * at most half full. Null until such an id is added.
+     */
+    private int[] sparseIds;
+    /**
+     * Sessions, minutes and cents of the id at entry e of sparseIds at 3e, 3e + 1 and 3e + 2.
+     */
+    private long[] sparseSums;
+    private int sparseSize;
+
+    /**
+     * @param parkingId the lot of the session, ANY_PARKING for none.
+     * @param minutes the minutes billed.
+     * @param cents the price in cents.
+     */
+    void add(int parkingId, long minutes, long cents){
+        if(parkingId < 0){
+            throw new IllegalArgumentException("Invalid parking id "+parkingId+"!");
+        }
+        if(parkingId >= DENSE_IDS){
+            int at = 3 * entry(parkingId);
+            add(sparseSums, at, 1, minutes, cents);
+            return;
+        }
+        int at = parkingId * 3;
+        long[] sums = this.sums;
+        if(at >= sums.length){
+            sums = Arrays.copyOf(sums, Math.min(3 * DENSE_IDS, Math.max(at + 3, sums.length * 2)));
+            this.sums = sums;
+        }
+        sums[at]++;
+        sums[at + 1] += minutes;
+        sums[at + 2] += cents;
+    }
+
+    /**
+     * @param other sums of another task, not used afterwards.
+     * @return the sums of both.
+     */
+    BillingSums merge(BillingSums other){
+        BillingSums larger = sums.length >= other.sums.length ? this : other;
+        BillingSums smaller = larger == this ? other : this;
+        for(int i = 0; i < smaller.sums.length; i++){
+            larger.sums[i] += smaller.sums[i];
+        }
+        if(smaller.sparseIds != null){
+            for(int e = 0; e < smaller.sparseIds.length; e++){
+                if(smaller.sparseIds[e] != EMPTY){
+                    int at = 3 * larger.entry(smaller.sparseIds[e]);
+                    int from = 3 * e;
+                    add(larger.sparseSums, at, smaller.sparseSums[from], smaller.sparseSums[from + 1], smaller.sparseSums[from + 2]);
+                }
+            }
+        }
+        return larger;
+    }
+
+    /**
+     * @return the total and the sums of every lot with sessions.
+     */
+    BillingReport report(){
+        long sessions = 0;
+        long minutes = 0;
+        long cents = 0;
+        Map<Integer, Revenue> parkings = new LinkedHashMap<>();
+        for(int at = 0; at < sums.length; at += 3){
+            sessions += sums[at];
+            minutes += sums[at + 1];
+            cents += sums[at + 2];
+            if(at > 0 && sums[at] > 0){
+                parkings.put(at / 3, new Revenue(sums[at], sums[at + 1], sums[at + 2]));
+            }
+        }
+        if(sparseIds != null){
+            int[] parkingIds = new int[sparseSize];
+            int count = 0;
+            for(int parkingId : sparseIds){
+                if(parkingId != EMPTY){
+                    parkingIds[count++] = parkingId;
+                }
+            }
+            Arrays.sort(parkingIds);
+            for(int parkingId : parkingIds){
+                int at = 3 * find(parkingId);
+                sessions += sparseSums[at];
+                minutes += sparseSums[at + 1];
+                cents += sparseSums[at + 2];
+                parkings.put(parkingId, new Revenue(sparseSums[at], sparseSums[at + 1], sparseSums[at + 2]));
+            }
+        }
+        return new BillingReport(new Revenue(sessions, minutes, cents), parkings);
+    }
+
+    private static void add(long[] sums, int at, long sessions, long minutes, long cents){
+        sums[at] += sessions;
+        sums[at + 1] += minutes;
+        sums[at + 2] += cents;
+    }
+
+    /**
+     * @return the entry of the parking id in sparseIds, added with zero sums when missing.
+     */
+    private int entry(int parkingId){
+        if(sparseIds == null){
+            sparseIds = newIds(16);
+            sparseSums = new long[3 * 16];
+        }
+        int e = find(parkingId);
+        if(sparseIds[e] == EMPTY){
+            if(2 * (sparseSize + 1) > sparseIds.length){
+                grow();
+                e = find(parkingId);
+            }
+            sparseIds[e] = parkingId;
+            sparseSize++;
+        }
+        return e;
+    }
+
+    /**
+     * @return the entry of the parking id in sparseIds, or the free entry where it belongs.
+     */
+    private int find(int parkingId){
+        int mask = sparseIds.length - 1;
+        int hash = parkingId * 0x9E3779B9;
+        int e = (hash ^ hash >>> 16) & mask;
+        while(sparseIds[e] != EMPTY && sparseIds[e] != parkingId){
+            e = (e + 1) & mask;
+        }
+        return e;
+    }
+
+    private void grow(){
+        int[] oldIds = sparseIds;
+        long[] oldSums = sparseSums;
+        sparseIds = newIds(oldIds.length * 2);
+        sparseSums = new long[3 * sparseIds.length];
+        for(int e = 0; e < oldIds.length; e++){
+            if(oldIds[e] != EMPTY){
+                int to = find(oldIds[e]);
+                sparseIds[to] = oldIds[e];
+                System.arraycopy(oldSums, 3 * e, sparseSums, 3 * to, 3);
+            }
+        }
+    }
+
+    private static int[] newIds(int capacity){
+        int[] ids = new int[capacity];
+        Arrays.fill(ids, EMPTY);
+        return ids;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Prices many stays at once under a BillingPolicy with fork/join, see ParkingApi.rebill.
+ *
+ * The arrays are split in halves until LEAF_SESSIONS stays are left, each leaf sums
+ * its own BillingSums and the halves are merged on the way back, so the tasks share
+ * nothing but the read-only input. Prices are summed in cents, the result does not
+ * depend on how the work was split.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class BulkBilling {
+    /**
+     * Stays billed by a single task, a multiple of 64.
+     */
+    static final int LEAF_SESSIONS = 1 << 13;
+
+    private BulkBilling(){
+    }
+
+    /**
+     * Bill every stay, in the common fork/join pool, or in the pool of the caller when
+     * called from a fork/join task.
+     *
+     * @param policy the price policy, called concurrently.
+     * @param parkingIds the lot of each stay, null to bill the stays without their lot.
+     * @param minutes the minutes of each stay.
+     * @return the total and the sums of each lot.
+     */
+    static BillingReport bill(BillingPolicy policy, int[] parkingIds, long[] minutes){
+        if(parkingIds != null && parkingIds.length != minutes.length){
+            throw new IllegalArgumentException(parkingIds.length+" parking ids for "+minutes.length+" stays!");
+        }
+        return new Task(policy, parkingIds, minutes, 0, minutes.length).invoke().report();
+    }
+
+    private static final class Task extends RecursiveTask<BillingSums> {
+        private final BillingPolicy policy;
+        private final int[] parkingIds;
+        private final long[] minutes;
+        private final int from;
+        private final int to;
+
+        Task(BillingPolicy policy, int[] parkingIds, long[] minutes, int from, int to){
+            this.policy = policy;
+            this.parkingIds = parkingIds;
+            this.minutes = minutes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected BillingSums compute(){
+            if(to - from > LEAF_SESSIONS){
+                int middle = (from + to) >>> 1;
+                Task first = new Task(policy, parkingIds, minutes, from, middle);
+                first.fork();
+                BillingSums second = new Task(policy, parkingIds, minutes, middle, to).compute();
+                return first.join().merge(second);
+            }
+            return bill();
+        }
+
+        private BillingSums bill(){
+            BillingSums sums = new BillingSums();
+            if(parkingIds == null){
+                for(int i = from; i < to; i++){
+                    sums.add(SessionLog.ANY_PARKING, minutes[i], Revenue.cents(policy.bill(minutes[i])));
+                }
+            }else{
+                for(int i = from; i < to; i++){
+                    sums.add(parkingIds[i], minutes[i], Revenue.cents(policy.bill(minutes[i])));
+                }
+            }
+            return sums;
+        }
+    }
+}
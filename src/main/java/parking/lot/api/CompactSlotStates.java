@@ -0,0 +1,93 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * SlotStates kept in primitive arrays, see SlotStorage.COMPACT: bit id of the occupied
+ * bitset is set while slot id is occupied and startTimes[id] is the time of its last
+ * checkIn, 8 bytes and 1 bit per slot.
+ *
+ * The start time is a plain write made before the compare and set that marks the slot
+ * occupied, so the thread whose compare and set releases the slot reads it.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class CompactSlotStates implements SlotStates {
+    private final AtomicLongArray occupied;
+
+    private final long[] startTimes;
+
+    CompactSlotStates(int numberOfSlots){
+        this.occupied = new AtomicLongArray((numberOfSlots >> 6) + 1);
+        this.startTimes = new long[numberOfSlots + 1];
+    }
+
+    @Override
+    public void checkIn(int id, long now){
+        startTimes[id] = now;
+        int word = id >> 6;
+        long bit = 1L << id;
+        for(;;){
+            long bits = occupied.get(word);
+            if(occupied.compareAndSet(word, bits, bits | bit)){
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean release(int id){
+        int word = id >> 6;
+        long bit = 1L << id;
+        for(;;){
+            long bits = occupied.get(word);
+            if((bits & bit) == 0){
+                return false;
+            }
+            if(occupied.compareAndSet(word, bits, bits & ~bit)){
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean isOccupied(int id){
+        return (occupied.get(id >> 6) & 1L << id) != 0;
+    }
+
+    @Override
+    public long getStartTime(int id){
+        return startTimes[id];
+    }
+
+    @Override
+    public int size(){
+        return startTimes.length - 1;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * BillingPolicy precomputed from a Tariff.
+ *
+ * Prices of the stays shorter than one day after the start of the last tier (at most
+ * MAX_TABLE_MINUTES) are read from a table, a single bounds check and array load.
+ * Longer stays use one linear segment per tier, base + ((minutes - start) / increment) * rate,
+ * where base is the price at the start of the segment, so the result is bit for bit the
+ * one of Tariff.bill. The division is done the way the JIT does it for a constant
+ * divisor, a multiplication by a precomputed magic number and a shift, see Divisor.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class CompiledTariff implements BillingPolicy {
+
+    /**
+     * Largest table, one week of minutes.
+     */
+    static final int MAX_TABLE_MINUTES = 7 * 24 * 60;
+
+    /**
+     * Minutes the table covers past the start of the last tier.
+     */
+    static final int TAIL_TABLE_MINUTES = 24 * 60;
+
+    /**
+     * Elapsed minutes below this limit are divided with a Divisor, about 4000 years.
+     */
+    static final long DIVISION_LIMIT = 1L << Divisor.DIVIDEND_BITS;
+
+    private final double[] table;
+
+    private final long[] segmentStart;
+    private final double[] segmentBase;
+    private final long[] segmentIncrement;
+    private final double[] segmentRate;
+    private final Divisor[] segmentDivisor;
+
+    private final double cap;
+
+    /**
+     * Copy of the last segment, the only one used past the table in most tariffs.
+     */
+    private final long tailStart;
+    private final double tailBase;
+    private final double tailRate;
+    private final long tailMagic;
+    private final int tailShift;
+
+    CompiledTariff(Tariff tariff){
+        Tariff.Tier[] tiers = tariff.getTiers();
+        Tariff.Tier last = tiers.length == 0 ? null : tiers[tiers.length - 1];
+        //a bounded last tier is followed by a constant segment, no tier at all is a constant
+        int segments = last == null || last.end != Tariff.UNBOUNDED ? tiers.length + 1 : tiers.length;
+        segmentStart = new long[segments];
+        segmentBase = new double[segments];
+        segmentIncrement = new long[segments];
+        segmentRate = new double[segments];
+        segmentDivisor = new Divisor[segments];
+        for(int i = 0; i < segments; i++){
+            Tariff.Tier tier = i < tiers.length ? tiers[i] : null;
+            segmentStart[i] = tier != null ? tier.start : (last == null ? 0 : last.end);
+            segmentBase[i] = tariff.uncappedPrice(segmentStart[i]);
+            segmentIncrement[i] = tier != null ? tier.increment : 1;
+            segmentRate[i] = tier != null && tier.kind == Tariff.Kind.PER_INCREMENT ? tier.amount : 0.0;
+            segmentDivisor[i] = new Divisor(segmentIncrement[i]);
+        }
+        cap = tariff.getCap();
+        tailStart = segmentStart[segments - 1];
+        tailBase = segmentBase[segments - 1];
+        tailRate = segmentRate[segments - 1];
+        tailMagic = segmentDivisor[segments - 1].magic;
+        tailShift = segmentDivisor[segments - 1].shift;
+
+        int tableSize = (int) Math.min(segmentStart[segments - 1] + TAIL_TABLE_MINUTES, MAX_TABLE_MINUTES);
+        table = new double[tableSize];
+        for(int minutes = 0; minutes < tableSize; minutes++){
+            table[minutes] = tariff.bill(minutes);
+        }
+    }
+
+    @Override
+    public double bill(long minutes){
+        if(minutes < table.length){
+            return table[minutes < 0 ? 0 : (int) minutes];
+        }
+        long elapsed = minutes - tailStart;
+        if(elapsed >= 0 && elapsed < DIVISION_LIMIT){
+            double price = tailBase + ((elapsed * tailMagic) >>> tailShift) * tailRate;
+            return price < cap ? price : cap;
+        }
+        return segmentBill(minutes);
+    }
+
+    /**
+     * Price of stays in any segment, for tiers longer than the table or huge stays.
+     */
+    private double segmentBill(long minutes){
+        int segment = segmentStart.length - 1;
+        while(minutes < segmentStart[segment]){
+            segment--;
+        }
+        long elapsed = minutes - segmentStart[segment];
+        long increments = elapsed < DIVISION_LIMIT ? segmentDivisor[segment].divide(elapsed) : elapsed / segmentIncrement[segment];
+        double price = segmentBase[segment] + increments * segmentRate[segment];
+        return price < cap ? price : cap;
+    }
+
+    /**
+     * Division of dividends below 2^DIVIDEND_BITS by a fixed divisor d as
+     * (n * magic) >>> shift, with l = ceil(log2(d)), shift = DIVIDEND_BITS + l and
+     * magic = ceil(2^shift / d). magic * d exceeds 2^shift by less than d, so the
+     * product overshoots n / d by less than n / 2^shift < 1 / d and never reaches the next
+     * integer. magic stays below 2^(DIVIDEND_BITS + 1), the product below 2^63.
+     */
+    static final class Divisor {
+        static final int DIVIDEND_BITS = 31;
+
+        final long magic;
+        final int shift;
+
+        /**
+         * @param divisor at least 1.
+         */
+        Divisor(long divisor){
+            if(divisor >= 1L << DIVIDEND_BITS){
+                //every dividend is smaller than the divisor
+                magic = 0;
+                shift = 0;
+            }else{
+                int log = 64 - Long.numberOfLeadingZeros(divisor - 1);
+                shift = DIVIDEND_BITS + log;
+                magic = ((1L << shift) + divisor - 1) / divisor;
+            }
+        }
+
+        /**
+         * @param dividend between 0 and 2^DIVIDEND_BITS excluded.
+         * @return dividend / divisor.
+         */
+        long divide(long dividend){
+            return (dividend * magic) >>> shift;
+        }
+    }
+}
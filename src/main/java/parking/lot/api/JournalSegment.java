@@ -0,0 +1,242 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One memory-mapped file of a ParkingJournal, holding fixed size records.
+ *
+ * Writers claim a range of records by adding to the claimed position, write them with
+ * absolute puts and then add the same amount to the completed position once the state
+ * change they describe is applied. The first claim that does not fit seals the segment:
+ * every later claim fails and once completed reaches the sealed position all records
+ * of the segment are written and applied.
+ *
+ * Record layout, RECORD_SIZE bytes: checksum (int), kind (int), parking id (int),
+ * slot id or number of slots (int), stripes (int), type code (int), time (long).
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class JournalSegment {
+    static final int RECORD_SIZE = 32;
+
+    private static final int CHECKSUM = 0;
+    private static final int KIND = 4;
+    private static final int PARKING_ID = 8;
+    private static final int SLOT_ID = 12;
+    private static final int STRIPES = 16;
+    private static final int TYPE_CODE = 20;
+    private static final int TIME = 24;
+
+    /**
+     * Position of the segment in the journal, segments are written in increasing index order.
+     */
+    final long index;
+
+    final Path path;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    /**
+     * Bytes claimed by writers, can go past capacity once the segment is sealed.
+     */
+    private final AtomicLong claimed = new AtomicLong();
+
+    /**
+     * Bytes whose records are written and applied.
+     */
+    private final AtomicLong completed = new AtomicLong();
+
+    /**
+     * Bytes claimed before the segment got sealed, -1 while it is open.
+     */
+    private volatile long sealedAt = -1;
+
+    /**
+     * Value of completed when the flusher last forced the segment, only used by the flusher.
+     */
+    long forcedAt = -1;
+
+    private JournalSegment(long index, Path path, FileChannel channel, MappedByteBuffer buffer, int capacity){
+        this.index = index;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Create an empty segment file of the given size and map it.
+     *
+     * @param index the index of the segment in the journal.
+     * @param path the file of the segment, must not exist.
+     * @param capacity size of the file in bytes, a multiple of RECORD_SIZE.
+     * @return the mapped segment.
+     * @throws IOException if the file cannot be created or mapped.
+     */
+    static JournalSegment create(long index, Path path, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        //mapping past the end grows the file with zeros, i.e. with invalid records
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        return new JournalSegment(index, path, channel, buffer, capacity);
+    }
+
+    /**
+     * Claim room for some records.
+     *
+     * @param bytes the size of the records.
+     * @return the offset of the first record, -1 if the segment is sealed.
+     */
+    long claim(int bytes){
+        long offset = claimed.getAndAdd(bytes);
+        if(offset + bytes <= capacity){
+            return offset;
+        }
+        if(offset <= capacity){
+            //first claim that does not fit, all the previous ones did
+            sealedAt = offset;
+        }
+        return -1;
+    }
+
+    /**
+     * Seal the segment so every later claim fails.
+     */
+    void seal(){
+        long offset = claimed.getAndAdd(capacity + 1L);
+        if(offset <= capacity){
+            sealedAt = offset;
+        }
+    }
+
+    /**
+     * Write a record in a claimed range.
+     */
+    void write(long offset, int kind, int parkingId, int slotId, int stripes, int typeCode, long time){
+        int at = (int) offset;
+        buffer.putInt(at + KIND, kind);
+        buffer.putInt(at + PARKING_ID, parkingId);
+        buffer.putInt(at + SLOT_ID, slotId);
+        buffer.putInt(at + STRIPES, stripes);
+        buffer.putInt(at + TYPE_CODE, typeCode);
+        buffer.putLong(at + TIME, time);
+        buffer.putInt(at + CHECKSUM, checksum(kind, parkingId, slotId, stripes, typeCode, time));
+    }
+
+    /**
+     * Mark claimed records as written and applied.
+     *
+     * @param bytes the size of the records.
+     */
+    void complete(int bytes){
+        completed.addAndGet(bytes);
+    }
+
+    /**
+     * @return the bytes of records written and applied so far.
+     */
+    long completed(){
+        return completed.get();
+    }
+
+    /**
+     * @return true once the segment is sealed and all its claimed records are complete.
+     */
+    boolean isDrained(){
+        long sealed = sealedAt;
+        return sealed >= 0 && completed.get() == sealed;
+    }
+
+    /**
+     * Write the modified pages of the segment to the storage device.
+     */
+    void force(){
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Read the records of a segment file in order, records not fully written are skipped.
+     *
+     * @param path the segment file.
+     * @param visitor called with every valid record.
+     * @throws IOException if the file cannot be read.
+     */
+    static void replay(Path path, RecordVisitor visitor) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            long size = channel.size() - channel.size() % RECORD_SIZE;
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            for(int at = 0; at < size; at += RECORD_SIZE){
+                int kind = records.getInt(at + KIND);
+                if(kind == 0){
+                    continue;
+                }
+                int parkingId = records.getInt(at + PARKING_ID);
+                int slotId = records.getInt(at + SLOT_ID);
+                int stripes = records.getInt(at + STRIPES);
+                int typeCode = records.getInt(at + TYPE_CODE);
+                long time = records.getLong(at + TIME);
+                if(records.getInt(at + CHECKSUM) == checksum(kind, parkingId, slotId, stripes, typeCode, time)){
+                    visitor.record(kind, parkingId, slotId, stripes, typeCode, time);
+                }
+            }
+        }
+    }
+
+    private static int checksum(int kind, int parkingId, int slotId, int stripes, int typeCode, long time){
+        int h = kind;
+        h = h * 0x01000193 ^ parkingId;
+        h = h * 0x01000193 ^ slotId;
+        h = h * 0x01000193 ^ stripes;
+        h = h * 0x01000193 ^ typeCode;
+        h = h * 0x01000193 ^ (int) time;
+        h = h * 0x01000193 ^ (int) (time >>> 32);
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    /**
+     * Receives the records of a segment during recovery.
+     */
+    interface RecordVisitor {
+        void record(int kind, int parkingId, int slotId, int stripes, int typeCode, long time) throws IOException;
+    }
+}
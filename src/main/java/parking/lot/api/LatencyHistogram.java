@@ -0,0 +1,105 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed size histogram of durations in nanoseconds, recorded by any number of threads
+ * without lock or allocation.
+ *
+ * Buckets are log-linear as in HdrHistogram: durations below 2 * SUB_BUCKETS nanoseconds
+ * get a bucket each, every following power of two is split in SUB_BUCKETS buckets of
+ * equal width, so a bucket is never wider than 1/SUB_BUCKETS (about 3%) of the
+ * durations it holds. Durations above MAX_VALUE, about 68 seconds, go in the last bucket.
+ * A histogram takes BUCKETS longs, 8.4kB, whatever the number of durations recorded.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Largest duration told apart from longer ones, 2^36 - 1 nanoseconds.
+     */
+    static final long MAX_VALUE = (1L << 36) - 1;
+
+    static final int BUCKETS = bucket(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * @param nanos a duration, negative durations of a clock going back count as 0.
+     */
+    void record(long nanos){
+        counts.getAndIncrement(bucket(Math.max(0, Math.min(nanos, MAX_VALUE))));
+    }
+
+    /**
+     * Add the counts of this histogram to an array, while durations may still be recorded.
+     *
+     * @param sums array of BUCKETS counts.
+     */
+    void addTo(long[] sums){
+        for(int i = 0; i < BUCKETS; i++){
+            sums[i] += counts.get(i);
+        }
+    }
+
+    /**
+     * @param value a duration from 0 to MAX_VALUE.
+     * @return the index of its bucket.
+     */
+    static int bucket(long value){
+        if(value < 2 * SUB_BUCKETS){
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @param bucket a bucket index.
+     * @return the lowest duration of the bucket.
+     */
+    static long lowestValue(int bucket){
+        if(bucket < 2 * SUB_BUCKETS){
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * @param bucket a bucket index.
+     * @return the highest duration of the bucket.
+     */
+    static long highestValue(int bucket){
+        return lowestValue(bucket + 1) - 1;
+    }
+}
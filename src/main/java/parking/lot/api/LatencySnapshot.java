@@ -0,0 +1,150 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distribution of the durations of an operation, read from the latency histograms of
+ * a ParkingApi, see ParkingApi.getMetricsSnapshot.
+ *
+ * Durations are in nanoseconds. A percentile is the highest duration of the histogram
+ * bucket holding it, so it is at most about 3% above the exact value.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class LatencySnapshot {
+    static final LatencySnapshot EMPTY = new LatencySnapshot(new long[LatencyHistogram.BUCKETS]);
+
+    private final long[] counts;
+    private final long count;
+
+    LatencySnapshot(long[] counts) {
+        this.counts = counts;
+        long total = 0;
+        for (long bucket : counts) {
+            total += bucket;
+        }
+        this.count = total;
+    }
+
+    /**
+     * @return the number of durations recorded.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @param percentile from 0 to 100.
+     * @return the duration that percentile percent of the operations did not exceed, 0 if none was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile " + percentile + " is not between 0 and 100!");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return LatencyHistogram.highestValue(i);
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * @return the median duration.
+     */
+    public long getMedian() {
+        return getValueAtPercentile(50);
+    }
+
+    /**
+     * @return the mean duration, taking the middle of each bucket.
+     */
+    public double getMean() {
+        if (count == 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                sum += counts[i] * ((LatencyHistogram.lowestValue(i) + LatencyHistogram.highestValue(i)) / 2.0);
+            }
+        }
+        return sum / count;
+    }
+
+    /**
+     * @return the longest duration, 0 if none was recorded.
+     */
+    public long getMax() {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] != 0) {
+                return LatencyHistogram.highestValue(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param percentile from 0 to 100.
+     * @param unit the unit of the result.
+     * @return getValueAtPercentile converted to unit, with its fraction.
+     */
+    public double getValueAtPercentile(double percentile, TimeUnit unit) {
+        return (double) getValueAtPercentile(percentile) / unit.toNanos(1);
+    }
+
+    /**
+     * @return the distribution of the durations of both snapshots.
+     */
+    LatencySnapshot merge(LatencySnapshot other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            return other;
+        }
+        long[] sums = counts.clone();
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] += other.counts[i];
+        }
+        return new LatencySnapshot(sums);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " p50=" + getValueAtPercentile(50) + "ns p99=" + getValueAtPercentile(99)
+                + "ns p99.9=" + getValueAtPercentile(99.9) + "ns max=" + getMax() + "ns";
+    }
+}
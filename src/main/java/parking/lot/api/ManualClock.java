@@ -0,0 +1,91 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ParkingClock that only moves when told to, for tests and simulations.
+ *
+ * <code>
+ *     ManualClock clock = new ManualClock();
+ *     ParkingApi api = new ParkingApi(clock);
+ *     [...]
+ *     clock.advanceMinutes(130); // 2 hours 10 minutes later
+ * </code>
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class ManualClock implements ParkingClock {
+
+    private final AtomicLong currentTime;
+
+    /**
+     * Create a clock starting at 0.
+     */
+    public ManualClock(){
+        this(0);
+    }
+
+    /**
+     * @param startMillis initial time of the clock in milliseconds.
+     */
+    public ManualClock(long startMillis){
+        currentTime = new AtomicLong(startMillis);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTime.get();
+    }
+
+    /**
+     * Move the clock forward.
+     *
+     * @param millis amount of milliseconds to add.
+     */
+    public void advance(long millis){
+        currentTime.addAndGet(millis);
+    }
+
+    /**
+     * Move the clock forward.
+     *
+     * @param minutes amount of minutes to add.
+     */
+    public void advanceMinutes(long minutes){
+        advance(TimeUnit.MINUTES.toMillis(minutes));
+    }
+
+    /**
+     * @param millis the new time of the clock in milliseconds.
+     */
+    public void set(long millis){
+        currentTime.set(millis);
+    }
+}
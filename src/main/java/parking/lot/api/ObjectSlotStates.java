@@ -0,0 +1,86 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * SlotStates keeping a ParkingSlot object per slot, see SlotStorage.OBJECTS.
+ *
+ * A slot object is created on the first checkIn of the slot by the thread owning it,
+ * a slot never checked in has none and is available, so creating the states does not
+ * depend on the number of slots beyond allocating the array.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class ObjectSlotStates implements SlotStates {
+    /**
+     * The slot with the given id, null until its first checkIn, index 0 is unused.
+     */
+    private final AtomicReferenceArray<ParkingSlot> slots;
+
+    private final ParkingClock clock;
+
+    ObjectSlotStates(int numberOfSlots, ParkingClock clock){
+        this.slots = new AtomicReferenceArray<>(numberOfSlots + 1);
+        this.clock = clock;
+    }
+
+    @Override
+    public void checkIn(int id, long now){
+        ParkingSlot slot = slots.get(id);
+        if(slot == null){
+            //only the owner of the slot creates it, seen by others once it is occupied
+            slot = new ParkingSlot(clock);
+            slots.lazySet(id, slot);
+        }
+        slot.checkIn(now);
+    }
+
+    @Override
+    public boolean release(int id){
+        ParkingSlot slot = slots.get(id);
+        return slot != null && slot.release();
+    }
+
+    @Override
+    public boolean isOccupied(int id){
+        ParkingSlot slot = slots.get(id);
+        return slot != null && slot.isOccupied();
+    }
+
+    @Override
+    public long getStartTime(int id){
+        ParkingSlot slot = slots.get(id);
+        return slot == null ? 0 : slot.getStartTime();
+    }
+
+    @Override
+    public int size(){
+        return slots.length() - 1;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * Number of slots, occupied and available, of a parking lot, a type or all parkings.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class Occupancy {
+    private final long capacity;
+    private final long occupied;
+
+    Occupancy(long capacity, long occupied) {
+        this.capacity = capacity;
+        this.occupied = occupied;
+    }
+
+    /**
+     * @return the total number of slots.
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the number of occupied slots.
+     */
+    public long getOccupied() {
+        return occupied;
+    }
+
+    /**
+     * @return the number of available slots.
+     */
+    public long getAvailable() {
+        return capacity - occupied;
+    }
+
+    /**
+     * @param other occupancy to add.
+     * @return the sum of both occupancies.
+     */
+    Occupancy plus(Occupancy other) {
+        return new Occupancy(capacity + other.capacity, occupied + other.occupied);
+    }
+
+    @Override
+    public String toString() {
+        return occupied + "/" + capacity;
+    }
+}
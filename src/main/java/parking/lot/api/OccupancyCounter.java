@@ -0,0 +1,116 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of slots and occupied slots of a parking lot or of every lot of a type.
+ *
+ * Updated incrementally on each checkIn/checkOut with LongAdders, concurrent gates
+ * do not contend on a single counter and readers never lock. A lot counter forwards
+ * its updates to the counter of its type.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+class OccupancyCounter {
+    private final LongAdder capacity;
+    private final LongAdder occupied;
+
+    /**
+     * Counter also updated by this one, null for none.
+     */
+    private final OccupancyCounter parent;
+
+    /**
+     * Create a counter without parent.
+     */
+    OccupancyCounter(){
+        this(0, null);
+    }
+
+    /**
+     * @param slots initial number of slots, all available.
+     * @param parent counter receiving the same updates, null for none.
+     */
+    OccupancyCounter(int slots, OccupancyCounter parent){
+        this.capacity = new LongAdder();
+        this.occupied = new LongAdder();
+        this.parent = parent;
+        addSlots(slots);
+    }
+
+    /**
+     * @param slots number of new available slots.
+     */
+    void addSlots(int slots){
+        capacity.add(slots);
+        if(parent != null){
+            parent.addSlots(slots);
+        }
+    }
+
+    /**
+     * @param count number of slots that got occupied, negative when slots got available.
+     */
+    void occupy(int count){
+        occupied.add(count);
+        if(parent != null){
+            parent.occupy(count);
+        }
+    }
+
+    /**
+     * @return the number of slots.
+     */
+    long capacity(){
+        return capacity.sum();
+    }
+
+    /**
+     * @return the number of occupied slots, between 0 and capacity even while updates are in flight.
+     */
+    long occupied(){
+        return Math.max(0, Math.min(occupied.sum(), capacity()));
+    }
+
+    /**
+     * @return the number of available slots.
+     */
+    long available(){
+        return capacity() - occupied();
+    }
+
+    /**
+     * @return an immutable copy of the current values.
+     */
+    Occupancy snapshot(){
+        long slots = capacity();
+        long inUse = Math.max(0, Math.min(occupied.sum(), slots));
+        return new Occupancy(slots, inUse);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Occupancy of every parking lot read at once, with the totals per type and overall.
+ *
+ * The totals are computed from the lots of the snapshot so they always add up, each lot
+ * is read without locking so lots can be a few cars apart in time from each other.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class OccupancySnapshot {
+    private final Map<String, Occupancy> parkings;
+    private final Map<String, Map<String, Occupancy>> parkingTypes;
+    private final Map<String, Occupancy> types;
+    private final Occupancy total;
+
+    /**
+     * @param parkingTypes occupancy of each type of each lot, keyed by parking id then by type.
+     */
+    OccupancySnapshot(Map<String, Map<String, Occupancy>> parkingTypes) {
+        Map<String, Occupancy> byParking = new LinkedHashMap<>();
+        Map<String, Occupancy> byType = new LinkedHashMap<>();
+        Occupancy sum = new Occupancy(0, 0);
+        for (Map.Entry<String, Map<String, Occupancy>> parking : parkingTypes.entrySet()) {
+            Occupancy parkingSum = new Occupancy(0, 0);
+            for (Map.Entry<String, Occupancy> type : parking.getValue().entrySet()) {
+                byType.merge(type.getKey(), type.getValue(), Occupancy::plus);
+                parkingSum = parkingSum.plus(type.getValue());
+            }
+            byParking.put(parking.getKey(), parkingSum);
+            sum = sum.plus(parkingSum);
+        }
+        this.parkings = Collections.unmodifiableMap(byParking);
+        this.parkingTypes = Collections.unmodifiableMap(parkingTypes);
+        this.types = Collections.unmodifiableMap(byType);
+        this.total = sum;
+    }
+
+    /**
+     * @return occupancy of each parking lot keyed by parking id.
+     */
+    public Map<String, Occupancy> getParkings() {
+        return parkings;
+    }
+
+    /**
+     * @param parkingId id of a parking lot.
+     * @return occupancy of the lot, null if it did not exist when the snapshot was taken.
+     */
+    public Occupancy getParking(String parkingId) {
+        return parkings.get(parkingId);
+    }
+
+    /**
+     * @param parkingId id of a parking lot.
+     * @return occupancy of each type of slots of the lot keyed by type, null if it did not
+     * exist when the snapshot was taken.
+     */
+    public Map<String, Occupancy> getParkingTypes(String parkingId) {
+        Map<String, Occupancy> byType = parkingTypes.get(parkingId);
+        return byType == null ? null : Collections.unmodifiableMap(byType);
+    }
+
+    /**
+     * @return occupancy of all the lots of each type, keyed by type.
+     */
+    public Map<String, Occupancy> getTypes() {
+        return types;
+    }
+
+    /**
+     * @return occupancy of all the parking lots.
+     */
+    public Occupancy getTotal() {
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "OccupancySnapshot{total=" + total + ", types=" + types + ", parkings=" + parkings + "}";
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * Notified when a car has stayed longer than a threshold, see ParkingApi.addOverstayListener.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+@FunctionalInterface
+public interface OverstayListener {
+    /**
+     * Called once per stay crossing the threshold, by the timer thread of the ParkingApi,
+     * so it must return quickly. An exception is counted by
+     * ParkingMetricsSnapshot.getTimerFailures and the other stays are still reported.
+     *
+     * @param stay the car still parked, its minutes are at least the threshold.
+     */
+    void overstayed(Stay stay);
+}
@@ -0,0 +1,97 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * An OverstayListener registered on a ParkingSlotSet with its threshold. The watch has
+ * a single Check on the timing wheel, due when the oldest stay it has not reported yet
+ * crosses the threshold. The check reads the stays of the StayIndex from its cursors
+ * up to now minus the threshold, calls the listener for each of them and schedules the
+ * next check, so checkIn and checkOut never touch the wheel and a car gone before its
+ * deadline leaves nothing behind.
+ *
+ * A checkIn reads the clock before linking its slot, a stay linked behind a cursor of
+ * the watch after its checkIn time is not reported.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class OverstayWatch {
+    final long thresholdMillis;
+    final OverstayListener listener;
+    final TimingWheel wheel;
+
+    /**
+     * Cleared when the listener is removed, the pending check becomes a no-op.
+     */
+    volatile boolean active = true;
+
+    /**
+     * Last slot gone past in each stripe of the StayIndex, 0 before the head, set when
+     * the watch is registered and guarded by the monitor of each stripe.
+     */
+    int[] cursors;
+
+    /**
+     * @param thresholdMillis how long a car stays before the listener is called, in milliseconds.
+     * @param listener the listener.
+     * @param wheel the timing wheel running the checks.
+     */
+    OverstayWatch(long thresholdMillis, OverstayListener listener, TimingWheel wheel){
+        this.thresholdMillis = thresholdMillis;
+        this.listener = listener;
+        this.wheel = wheel;
+    }
+
+    /**
+     * Run a check of the set at the given time.
+     *
+     * @param parking the set watched.
+     * @param time the deadline of the check in milliseconds of the clock.
+     */
+    void schedule(ParkingSlotSet parking, long time){
+        wheel.schedule(new Check(parking, this, time));
+    }
+
+    /**
+     * The next check of a watch.
+     */
+    static final class Check extends TimingWheel.Task {
+        final ParkingSlotSet parking;
+        final OverstayWatch watch;
+
+        Check(ParkingSlotSet parking, OverstayWatch watch, long deadline){
+            super(deadline);
+            this.parking = parking;
+            this.watch = watch;
+        }
+
+        @Override
+        void expire(){
+            parking.overstay(watch, deadline);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * Entry of the vehicle index of a ParkingApi: the lot and slot of a car checked in with
+ * a vehicle key. The same object is kept by the ParkingSlotSet for the slot, the slot is
+ * checked out by the thread replacing it with LEAVING, so the index and the slot states
+ * always agree.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class ParkedVehicle {
+    /**
+     * Kept for a slot by the thread checking it out, until the slot is released.
+     */
+    static final ParkedVehicle LEAVING = new ParkedVehicle(null, 0);
+
+    final String key;
+    final int parkingId;
+
+    /**
+     * The slot of the car, 0 until the car is checked in.
+     */
+    volatile int slotId;
+
+    /**
+     * @param key the plate or ticket of the car.
+     * @param parkingId the id of the parking lot.
+     */
+    ParkedVehicle(String key, int parkingId){
+        this.key = key;
+        this.parkingId = parkingId;
+    }
+}
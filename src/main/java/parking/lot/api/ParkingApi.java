@@ -25,7 +25,15 @@
 */
 package parking.lot.api;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /**
 * @author Pedro
@@ -54,6 +62,29 @@ public class ParkingApi {
         parkingImpl = new ParkingApiImpl();
     }
 
+    /**
+     * Create the API with a specific time source, for instance ParkingClock.MONOTONIC
+     * to ignore wall clock adjustments or a ManualClock for tests and simulations.
+     *
+     * @param clock the time source used to measure how long cars stay.
+     */
+    public ParkingApi(ParkingClock clock){
+        parkingImpl = new ParkingApiImpl(clock);
+    }
+
+    /**
+     * Create the API from a write-ahead journal: the lots, their ids and the cars parked
+     * with their checkIn time are recovered from the journal, then every newParking,
+     * checkIn and checkOut is appended to it. Billing policies are not journaled.
+     *
+     * @param clock the time source, a wall clock such as ParkingClock.SYSTEM to survive restarts.
+     * @param journal the journal, used by this API only, close it once the API is no longer used.
+     * @throws IOException if the journal cannot be read or written.
+     */
+    public ParkingApi(ParkingClock clock, ParkingJournal journal) throws IOException {
+        parkingImpl = new ParkingApiImpl(clock, journal);
+    }
+
     /**
      * Create a new parking lot with available slots.
      *
@@ -64,13 +95,132 @@ public class ParkingApi {
         return parkingImpl.newParking(numberOfSlots, type);
     }
 
+    /**
+     * Create a new parking lot with available slots and return its int id,
+     * use it with the int flavours of checkIn and checkOut to avoid String ids.
+     *
+     * @param numberOfSlots the desired number of slots to create.
+     * @return an unique int id for the newly created parking lot.
+     */
+    public int newParkingHandle(int numberOfSlots, String type) throws UnknownParkingTypeException {
+        return parkingImpl.newParkingHandle(numberOfSlots, type);
+    }
+
+    /**
+     * Create a new parking lot whose free slots are split in stripes, for large lots
+     * with several entrances. Each stripe has its own pool of free slots, a car takes a
+     * slot from the stripe of its entrance (or of the calling thread) and from the
+     * other stripes only when that one is full, the parking is full when every stripe is.
+     *
+     * @param numberOfSlots the desired number of slots to create.
+     * @param stripes number of stripes, for instance the number of entrances.
+     * @return an unique int id for the newly created parking lot.
+     */
+    public int newParkingHandle(int numberOfSlots, String type, int stripes) throws UnknownParkingTypeException {
+        return parkingImpl.newParkingHandle(numberOfSlots, type, stripes);
+    }
+
+    /**
+     * Create a new parking lot of a type registered with SlotType.register, for instance
+     * an 11kW or a 150kW charger, or of one of the three predefined SlotType constants.
+     *
+     * @param numberOfSlots the desired number of slots to create.
+     * @param type the type of the slots.
+     * @return an unique int id for the newly created parking lot.
+     * @throws UnknownParkingTypeException if the type is null.
+     */
+    public int newParkingHandle(int numberOfSlots, SlotType type) throws UnknownParkingTypeException {
+        return parkingImpl.newParkingHandle(numberOfSlots, type);
+    }
+
+    /**
+     * Create a single parking lot holding slots of several types, for instance a car park
+     * with standard and charging bays. Each type keeps its own lock-free pool of free
+     * slots, checkIn(parkingId, type) takes a slot from the pool of the type and the
+     * occupancy of the whole site is read with getOccupancySnapshot(parkingId).
+     * Slot ids follow the iteration order of the map, use a LinkedHashMap to choose it.
+     *
+     * @param slotsPerType number of slots of each type, at least one type.
+     * @return an unique int id for the newly created parking lot.
+     * @throws UnknownParkingTypeException if a type is null.
+     */
+    public int newParkingHandle(Map<SlotType, Integer> slotsPerType) throws UnknownParkingTypeException {
+        return parkingImpl.newParkingHandle(slotsPerType, 1);
+    }
+
+    /**
+     * Same as newParkingHandle with several types, the free slots of each type are split in stripes.
+     *
+     * @param slotsPerType number of slots of each type, at least one type.
+     * @param stripes number of stripes, for instance the number of entrances.
+     * @return an unique int id for the newly created parking lot.
+     * @throws UnknownParkingTypeException if a type is null.
+     */
+    public int newParkingHandle(Map<SlotType, Integer> slotsPerType, int stripes) throws UnknownParkingTypeException {
+        return parkingImpl.newParkingHandle(slotsPerType, stripes);
+    }
+
+    /**
+     * Same as newParkingHandle with several types choosing how the state of the slots is kept.
+     *
+     * @param slotsPerType number of slots of each type, at least one type.
+     * @param stripes number of stripes, for instance the number of entrances.
+     * @param storage SlotStorage.COMPACT for lots of millions of slots, OBJECTS by default.
+     * @return an unique int id for the newly created parking lot.
+     * @throws UnknownParkingTypeException if a type is null.
+     */
+    public int newParkingHandle(Map<SlotType, Integer> slotsPerType, int stripes, SlotStorage storage) throws UnknownParkingTypeException {
+        return parkingImpl.newParkingHandle(slotsPerType, stripes, storage);
+    }
+
+    /**
+     * Same as newParkingHandle with several types, given by name, returning the String id.
+     *
+     * @param slotsPerType number of slots of each type name, at least one type.
+     * @return an unique id for the newly created parking lot.
+     * @throws UnknownParkingTypeException if a name is not a registered type.
+     */
+    public String newParking(Map<String, Integer> slotsPerType) throws UnknownParkingTypeException {
+        return parkingImpl.newParking(slotsPerType);
+    }
+
+    /**
+     * Same as newParkingHandle with a SlotType, the free slots are split in stripes.
+     *
+     * @param numberOfSlots the desired number of slots to create.
+     * @param type the type of the slots.
+     * @param stripes number of stripes, for instance the number of entrances.
+     * @return an unique int id for the newly created parking lot.
+     * @throws UnknownParkingTypeException if the type is null.
+     */
+    public int newParkingHandle(int numberOfSlots, SlotType type, int stripes) throws UnknownParkingTypeException {
+        return parkingImpl.newParkingHandle(numberOfSlots, type, stripes);
+    }
+
+    /**
+     * Same as newParkingHandle choosing how the state of the slots is kept, see SlotStorage.
+     * <code>
+     *     //city-wide on-street parking, about 8 bytes per slot
+     *     int city = api.newParkingHandle(2000000, SlotType.STANDARD, 64, SlotStorage.COMPACT);
+     * </code>
+     *
+     * @param numberOfSlots the desired number of slots to create.
+     * @param type the type of the slots.
+     * @param stripes number of stripes, for instance the number of entrances.
+     * @param storage SlotStorage.COMPACT for lots of millions of slots, OBJECTS by default.
+     * @return an unique int id for the newly created parking lot.
+     */
+    public int newParkingHandle(int numberOfSlots, SlotType type, int stripes, SlotStorage storage) throws UnknownParkingTypeException {
+        return parkingImpl.newParkingHandle(numberOfSlots, type, stripes, storage);
+    }
+
     /**
      * Use this method to checking a car for a specific parking.
      *
      * @param parkingId id of the parking lot.
      * @param type type of the required slot.
      * @return id of the parking slot aquired.
-     * @throws UnknownParkingTypeException if the type is not one of the three possible types.
+     * @throws UnknownParkingTypeException if the type is not a registered SlotType name.
      * @throws UnknowParkingIdException if the id is not a registered parking lot.
      * @throws SlotsFullException if the parking has no available spots of the
      */
@@ -78,6 +228,560 @@ public class ParkingApi {
         return parkingImpl.checkIn(parkingId, type);
     }
 
+    /**
+     * Use this method to checking a car for a specific parking using int ids.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @return int id of the parking slot aquired.
+     * @throws UnknownParkingTypeException if the type is not a registered SlotType name.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the
+     */
+    public int checkIn(int parkingId, String type) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
+        return parkingImpl.checkIn(parkingId, type);
+    }
+
+    /**
+     * Checkin a car coming from a given entrance, in a striped parking the slot is
+     * taken from the stripe of that entrance while it has free slots.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param entrance id of the entrance, any int.
+     * @return int id of the parking slot aquired.
+     * @throws UnknownParkingTypeException if the type is not a registered SlotType name.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the
+     */
+    public int checkIn(int parkingId, String type, int entrance) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
+        return parkingImpl.checkIn(parkingId, type, entrance);
+    }
+
+    /**
+     * Checkin a car with the SlotType of the parking, the type is checked with a single
+     * identity comparison instead of comparing names.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @return int id of the parking slot aquired.
+     * @throws UnknownParkingTypeException if the type is not the type of the parking.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the
+     */
+    public int checkIn(int parkingId, SlotType type) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
+        return parkingImpl.checkIn(parkingId, type);
+    }
+
+    /**
+     * Same as checkIn with a SlotType, the slot is taken from the stripe of the entrance first.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param entrance id of the entrance, any int.
+     * @return int id of the parking slot aquired.
+     * @throws UnknownParkingTypeException if the type is not the type of the parking.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the
+     */
+    public int checkIn(int parkingId, SlotType type, int entrance) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
+        return parkingImpl.checkIn(parkingId, type, entrance);
+    }
+
+    /**
+     * Checkin a car now or, when the parking is full, as soon as a slot of the type is
+     * checked out instead of failing with SlotsFullException. Waiting cars are served
+     * in arrival order, each checkOut hands its slot directly to the oldest one.
+     * <code>
+     *     api.checkInAsync(parkingId, ParkingApi.PARKING_20kW_TYPE)
+     *        .thenAcceptAsync(slotId -> openGate(slotId));
+     * </code>
+     * The future is completed by the thread checking out, use the async methods of
+     * CompletableFuture for long actions. Cancel the future to stop waiting.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @return the future int id of the parking slot aquired.
+     * @throws UnknownParkingTypeException if the type is not a registered SlotType name.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public CompletableFuture<Integer> checkInAsync(int parkingId, String type) throws UnknownParkingTypeException, UnknowParkingIdException {
+        return parkingImpl.checkInAsync(parkingId, type);
+    }
+
+    /**
+     * Same as checkInAsync taking the SlotType instead of its name.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @return the future int id of the parking slot aquired.
+     * @throws UnknownParkingTypeException if the parking has no slots of the type.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public CompletableFuture<Integer> checkInAsync(int parkingId, SlotType type) throws UnknownParkingTypeException, UnknowParkingIdException {
+        return parkingImpl.checkInAsync(parkingId, type);
+    }
+
+    /**
+     * Same as checkInAsync giving up after a timeout.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param timeout longest wait for a slot.
+     * @param unit the unit of timeout.
+     * @return the future int id of the parking slot aquired, failed with a TimeoutException if no slot got free in time.
+     * @throws UnknownParkingTypeException if the parking has no slots of the type.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public CompletableFuture<Integer> checkInAsync(int parkingId, SlotType type, long timeout, TimeUnit unit) throws UnknownParkingTypeException, UnknowParkingIdException {
+        return parkingImpl.checkInAsync(parkingId, type, timeout, unit);
+    }
+
+    /**
+     * Hold a free slot for a pre-booked car, the slot is released automatically at the
+     * end of the hold unless the car arrives and claims it. Held slots count as occupied.
+     * <code>
+     *     int slotId = api.reserve(parkingId, ParkingApi.PARKING_STANDARD_TYPE, 30);
+     *     //when the car arrives
+     *     api.claim(parkingId, slotId);
+     * </code>
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param holdMinutes how long the slot is held, at least 1 minute.
+     * @return int id of the held slot.
+     * @throws UnknownParkingTypeException if the type is not a registered SlotType name.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the type.
+     */
+    public int reserve(int parkingId, String type, long holdMinutes) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
+        return parkingImpl.reserve(parkingId, type, holdMinutes);
+    }
+
+    /**
+     * Same as reserve taking the SlotType instead of its name.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param holdMinutes how long the slot is held, at least 1 minute.
+     * @return int id of the held slot.
+     * @throws UnknownParkingTypeException if the parking has no slots of the type.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the type.
+     */
+    public int reserve(int parkingId, SlotType type, long holdMinutes) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
+        return parkingImpl.reserve(parkingId, type, holdMinutes);
+    }
+
+    /**
+     * Checkin the car a slot was reserved for, the stay is billed from now.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotId int id returned by reserve.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotNotFoundException if the slot is not held anymore, e.g. the hold expired.
+     */
+    public void claim(int parkingId, int slotId) throws UnknowParkingIdException, SlotNotFoundException {
+        parkingImpl.claim(parkingId, slotId);
+    }
+
+    /**
+     * Release a held slot before the end of the hold.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotId int id returned by reserve.
+     * @return false if the slot was not held anymore.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public boolean cancelReservation(int parkingId, int slotId) throws UnknowParkingIdException {
+        return parkingImpl.cancelReservation(parkingId, slotId);
+    }
+
+    /**
+     * Read the longest stays of a parking lot, oldest first. The lot keeps its occupied
+     * slots ordered by checkIn time so only the stays returned are visited.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param count the maximum number of stays.
+     * @return at most count stays, oldest first.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public List<Stay> getOldestStays(int parkingId, int count) throws UnknowParkingIdException {
+        return parkingImpl.getOldestStays(parkingId, count);
+    }
+
+    /**
+     * Read the cars of a parking lot that stayed at least some minutes, oldest first.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param minutes the shortest stay, as billed by checkOut.
+     * @return the stays, oldest first.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public List<Stay> getStaysLongerThan(int parkingId, long minutes) throws UnknowParkingIdException {
+        return parkingImpl.getStaysLongerThan(parkingId, minutes);
+    }
+
+    /**
+     * Read the cars of every parking lot that stayed at least some minutes, oldest first.
+     *
+     * @param minutes the shortest stay, as billed by checkOut.
+     * @return the stays of all the lots, oldest first.
+     */
+    public List<Stay> getStaysLongerThan(long minutes){
+        return parkingImpl.getStaysLongerThan(minutes);
+    }
+
+    /**
+     * Call a listener once for every car of a parking lot staying longer than a
+     * threshold, including the cars already parked. The listener is called by the timer
+     * thread, about a second after the car crosses the threshold.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param minutes the threshold, at least 1 minute.
+     * @param listener the listener, must return quickly.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public void addOverstayListener(int parkingId, long minutes, OverstayListener listener) throws UnknowParkingIdException {
+        parkingImpl.addOverstayListener(parkingId, minutes, listener);
+    }
+
+    /**
+     * Stop calling a listener given to addOverstayListener.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param listener the listener.
+     * @return false if the listener was not registered on the parking.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public boolean removeOverstayListener(int parkingId, OverstayListener listener) throws UnknowParkingIdException {
+        return parkingImpl.removeOverstayListener(parkingId, listener);
+    }
+
+    /**
+     * Receive the events of every lot from now on instead of polling: lot created, check
+     * in, check out, a type of a lot getting full or not full. The events go through a
+     * preallocated ring, publishing them neither allocates nor waits for subscribers. A
+     * subscriber falling too far behind misses the oldest events, see ParkingEventBatch.missed.
+     *
+     * @return the subscription, to read with poll or take from the caller's thread and close when done.
+     */
+    public ParkingEventSubscription subscribe(){
+        return parkingImpl.subscribe();
+    }
+
+    /**
+     * Same as subscribe, the events are given to a listener by a daemon thread of the subscription.
+     *
+     * @param listener receives the events in batches.
+     * @param batchSize the most events per call of the listener.
+     * @return the subscription, closing it stops the thread.
+     */
+    public ParkingEventSubscription subscribe(ParkingEventListener listener, int batchSize){
+        return parkingImpl.subscribe(listener, batchSize);
+    }
+
+    /**
+     * Same as checkIn run at most once per request id, for gates that retry requests over
+     * flaky links: a retry with the same id returns the slot of the first attempt without
+     * taking a second one. Results are kept 10 minutes by default, see setRequestCache.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param requestId id chosen by the client, the same for every attempt of a request.
+     * @return int id of the parking slot aquired.
+     * @throws UnknownParkingTypeException if the parking has no slots of the type.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the type.
+     * @throws IllegalArgumentException if the request id was used by another operation or parking lot.
+     */
+    public int checkInOnce(int parkingId, SlotType type, String requestId) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
+        return parkingImpl.checkInOnce(parkingId, type, requestId);
+    }
+
+    /**
+     * Same as checkOut run at most once per request id: a retry with the same id returns
+     * the price of the first attempt instead of throwing SlotNotFoundException.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotId int id of the car slot.
+     * @param requestId id chosen by the client, the same for every attempt of a request.
+     * @param function the price policy to apply based on the amount of minutes the car stayed.
+     * @return the price to pay.
+     * @throws UnknowParkingIdException might happen if the parkingId does not exists.
+     * @throws SlotNotFoundException if the slot is not occupied and no attempt with this id freed it.
+     * @throws IllegalArgumentException if the request id was used by another operation or parking lot.
+     */
+    public double checkOutOnce(int parkingId, int slotId, String requestId, BillingPolicy function) throws UnknowParkingIdException, SlotNotFoundException {
+        return parkingImpl.checkOutOnce(parkingId, slotId, requestId, function);
+    }
+
+    /**
+     * Bound the cache of request ids used by checkInOnce and checkOutOnce, the ids seen so
+     * far are forgotten.
+     *
+     * @param capacity the most results kept, bounds the memory of the cache.
+     * @param retention how long a result is kept.
+     * @param unit the unit of retention.
+     */
+    public void setRequestCache(int capacity, long retention, TimeUnit unit){
+        parkingImpl.setRequestCache(capacity, retention, unit);
+    }
+
+    /**
+     * @return the hits, misses and evictions of the request id cache.
+     */
+    public RequestCacheStats getRequestCacheStats(){
+        return parkingImpl.getRequestCacheStats();
+    }
+
+    /**
+     * Log every session completed from now on: lot, type, slot, checkIn and checkOut
+     * times, minutes and price, off the heap. A log started before is no longer written
+     * to and stays readable by the callers holding it.
+     *
+     * @param capacity the most sessions kept, later ones are dropped and counted.
+     * @return the new log.
+     */
+    public SessionLog startSessionLog(long capacity){
+        return parkingImpl.startSessionLog(capacity);
+    }
+
+    /**
+     * Stop logging sessions.
+     *
+     * @return the log that was written to, null if none was.
+     */
+    public SessionLog stopSessionLog(){
+        return parkingImpl.stopSessionLog();
+    }
+
+    /**
+     * @return the log sessions are written to, null if none.
+     */
+    public SessionLog getSessionLog(){
+        return parkingImpl.getSessionLog();
+    }
+
+    /**
+     * Revenue of every parking lot: sessions checked out, minutes billed and prices
+     * summed in cents. The counters are updated at each checkOut without locking and
+     * read in constant time; they start at zero when the ParkingApi is created or
+     * recovered from a journal.
+     *
+     * @param period ALL_TIME, LAST_HOUR or TODAY.
+     * @return the sums over the period.
+     */
+    public Revenue getRevenue(RevenuePeriod period){
+        return parkingImpl.getRevenue(period);
+    }
+
+    /**
+     * Revenue of a single parking lot, all types of slots together, see getRevenue(RevenuePeriod).
+     *
+     * @param parkingId int id of the parking lot.
+     * @param period ALL_TIME, LAST_HOUR or TODAY.
+     * @return the sums over the period.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public Revenue getRevenue(int parkingId, RevenuePeriod period) throws UnknowParkingIdException {
+        return parkingImpl.getRevenue(parkingId, period);
+    }
+
+    /**
+     * Revenue of the slots of one type of a single parking lot, see getRevenue(RevenuePeriod).
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type the type of the slots.
+     * @param period ALL_TIME, LAST_HOUR or TODAY.
+     * @return the sums over the period, empty if the lot has no slot of the type.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws UnknownParkingTypeException if the type is null.
+     */
+    public Revenue getRevenue(int parkingId, SlotType type, RevenuePeriod period) throws UnknowParkingIdException, UnknownParkingTypeException {
+        return parkingImpl.getRevenue(parkingId, type, period);
+    }
+
+    /**
+     * Revenue of every parking lot of a type, see getRevenue(RevenuePeriod).
+     *
+     * @param type the type of the slots.
+     * @param period ALL_TIME, LAST_HOUR or TODAY.
+     * @return the sums over the period, empty if no parking of this type exists.
+     * @throws UnknownParkingTypeException if the type is null.
+     */
+    public Revenue getRevenueForType(SlotType type, RevenuePeriod period) throws UnknownParkingTypeException {
+        return parkingImpl.getRevenueForType(type, period);
+    }
+
+    /**
+     * Price many stays at once under a policy, for instance a day of sessions after a
+     * retroactive tariff change. The stays are split between fork/join tasks run in the
+     * common pool, or in the pool of the caller when called from a fork/join task, and
+     * the prices are summed in cents. Recorded sessions are billed again with
+     * SessionLog.rebill.
+     *
+     * @param policy the price policy, called concurrently.
+     * @param minutes the minutes of each stay.
+     * @return the total of the stays, without lots.
+     */
+    public BillingReport rebill(BillingPolicy policy, long[] minutes){
+        return parkingImpl.rebill(policy, null, minutes);
+    }
+
+    /**
+     * Same as rebill with the lot of each stay, the report holds the sums of each lot.
+     *
+     * @param policy the price policy, called concurrently.
+     * @param parkingIds the lot of each stay, ids of unknown lots are kept as they are.
+     * @param minutes the minutes of each stay, as many as parkingIds.
+     * @return the total and the sums of each lot.
+     * @throws IllegalArgumentException if the arrays differ in length or an id is negative.
+     */
+    public BillingReport rebill(BillingPolicy policy, int[] parkingIds, long[] minutes){
+        return parkingImpl.rebill(policy, parkingIds, minutes);
+    }
+
+    /**
+     * Turn the latency histograms and counters on or off, at any time. They start
+     * disabled: a disabled operation only reads the switch.
+     *
+     * @param enabled true to measure the operations from now on.
+     */
+    public void setMetricsEnabled(boolean enabled){
+        parkingImpl.setMetricsEnabled(enabled);
+    }
+
+    /**
+     * @return true while the operations are measured.
+     */
+    public boolean isMetricsEnabled(){
+        return parkingImpl.isMetricsEnabled();
+    }
+
+    /**
+     * Read the checkIn and checkOut latency histograms, rejections, errors, stay index
+     * lock waits and free list retries of every lot, operations keep running meanwhile.
+     *
+     * @return the snapshot, queried per lot, per type or in total.
+     */
+    public ParkingMetricsSnapshot getMetricsSnapshot(){
+        return parkingImpl.getMetricsSnapshot();
+    }
+
+    /**
+     * Publish the metrics as a ParkingMetricsMXBean in the platform MBean server, under
+     * parking.lot.api:type=ParkingMetrics,name=the given name.
+     *
+     * @param name name of this ParkingApi among the ones of the JVM.
+     * @return the name of the MBean.
+     * @throws JMException if the name is invalid or already registered.
+     */
+    public ObjectName registerMetricsMBean(String name) throws JMException {
+        return parkingImpl.registerMetricsMBean(name);
+    }
+
+    /**
+     * Remove the MBean published by registerMetricsMBean.
+     *
+     * @param name the name given to registerMetricsMBean.
+     * @throws JMException if no MBean is registered with that name.
+     */
+    public void unregisterMetricsMBean(String name) throws JMException {
+        parkingImpl.unregisterMetricsMBean(name);
+    }
+
+    /**
+     * Checkin a car identified by a vehicle key, for instance its plate read by a camera
+     * or its ticket number, so it can be checked out with checkOutByVehicle. The key is
+     * indexed along with the slot: a checkOut by slot id removes it too.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param vehicle the key of the car, parked at most once in all the lots.
+     * @return int id of the parking slot aquired.
+     * @throws UnknownParkingTypeException if the parking has no slots of the type.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the type.
+     * @throws VehicleAlreadyParkedException if a car with the same key is parked.
+     */
+    public int checkInVehicle(int parkingId, SlotType type, String vehicle) throws UnknownParkingTypeException, UnknowParkingIdException,
+            SlotsFullException, VehicleAlreadyParkedException {
+        return parkingImpl.checkInVehicle(parkingId, type, vehicle);
+    }
+
+    /**
+     * Checkout the car checked in with a vehicle key, wherever it is parked.
+     *
+     * @param vehicle the key of the car.
+     * @param function the price policy to apply based on the amount of minutes the car stayed.
+     * @return the price to pay.
+     * @throws SlotNotFoundException if no car with that key is parked.
+     */
+    public double checkOutByVehicle(String vehicle, BillingPolicy function) throws SlotNotFoundException {
+        return parkingImpl.checkOutByVehicle(vehicle, function);
+    }
+
+    /**
+     * Same as checkOutByVehicle using the billingPolicy of the lot of the car.
+     *
+     * @param vehicle the key of the car.
+     * @return the price to pay.
+     * @throws SlotNotFoundException if no car with that key is parked.
+     * @throws BillingPolicyNotSetException if the lot of the car has no billing policy.
+     */
+    public double checkOutByVehicle(String vehicle) throws SlotNotFoundException, BillingPolicyNotSetException {
+        return parkingImpl.checkOutByVehicle(vehicle);
+    }
+
+    /**
+     * Same as checkIn but never throws, for gates where full lots are routine: the
+     * result is the slot id or a negative ParkingStatus code (FULL, UNKNOWN_PARKING,
+     * UNKNOWN_TYPE). Nothing is allocated when the car is rejected.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @return int id of the parking slot aquired, or a negative ParkingStatus code.
+     */
+    public int tryCheckIn(int parkingId, SlotType type){
+        return parkingImpl.tryCheckIn(parkingId, type);
+    }
+
+    /**
+     * Same as tryCheckIn, the slot is taken from the stripe of the entrance first.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param entrance id of the entrance, any int.
+     * @return int id of the parking slot aquired, or a negative ParkingStatus code.
+     */
+    public int tryCheckIn(int parkingId, SlotType type, int entrance){
+        return parkingImpl.tryCheckIn(parkingId, type, entrance);
+    }
+
+    /**
+     * Same as checkOut but never throws.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotId int id of the car slot.
+     * @param function the price policy to apply based on the amount of minutes the car stayed.
+     * @return the price to pay, Double.NaN if the parking id is unknown or the slot is not occupied.
+     */
+    public double tryCheckOut(int parkingId, int slotId, BillingPolicy function){
+        return parkingImpl.tryCheckOut(parkingId, slotId, function);
+    }
+
+    /**
+     * Same as checkOut with the billing policy of the parking but never throws.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotId int id of the car slot.
+     * @return the price to pay, Double.NaN if nothing was checked out or no billing policy is set.
+     */
+    public double tryCheckOut(int parkingId, int slotId){
+        return parkingImpl.tryCheckOut(parkingId, slotId);
+    }
+
     /**
      * Checkout a car occuping slotId from the parking identified by parkingId.
      * Apply the lambda expression desired as billing policy.
@@ -93,6 +797,172 @@ public class ParkingApi {
         return parkingImpl.checkOut(parkingId, slotId, function);
     }
 
+    /**
+     * Checkout a car occuping slotId from the parking identified by parkingId.
+     * Use the billing policy set with setBillingPolicy.
+     *
+     * @param parkingId unique id of the parking lot.
+     * @param slotId unique id of the car slot.
+     * @return the price to pay.
+     * @throws UnknowParkingIdException might happen if the parkingId does not exists.
+     * @throws SlotNotFoundException might happen if the slot is not available for the current parkingSlot.
+     * @throws BillingPolicyNotSetException if setBillingPolicy was not called for this parking.
+     */
+    public double checkOut(String parkingId, String slotId) throws UnknowParkingIdException, SlotNotFoundException, BillingPolicyNotSetException {
+        return parkingImpl.checkOut(parkingId, slotId);
+    }
+
+    /**
+     * Checkout a car using int ids, apply the lambda expression desired as billing policy.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotId int id of the car slot.
+     * @param function the price policy to apply based on the amount of minutes the car stayed.
+     * @return the price to pay.
+     * @throws UnknowParkingIdException might happen if the parkingId does not exists.
+     * @throws SlotNotFoundException might happen if the slot is not available for the current parkingSlot.
+     */
+    public double checkOut(int parkingId, int slotId, BillingPolicy function) throws UnknowParkingIdException, SlotNotFoundException {
+        return parkingImpl.checkOut(parkingId, slotId, function);
+    }
+
+    /**
+     * Checkout a car using int ids and the billing policy set with setBillingPolicy.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotId int id of the car slot.
+     * @return the price to pay.
+     * @throws UnknowParkingIdException might happen if the parkingId does not exists.
+     * @throws SlotNotFoundException might happen if the slot is not available for the current parkingSlot.
+     * @throws BillingPolicyNotSetException if setBillingPolicy was not called for this parking.
+     */
+    public double checkOut(int parkingId, int slotId) throws UnknowParkingIdException, SlotNotFoundException, BillingPolicyNotSetException {
+        return parkingImpl.checkOut(parkingId, slotId);
+    }
+
+    /**
+     * Checkin a batch of cars of the same type, for instance events buffered by a gate
+     * controller. The parking is looked up and its free slots taken once for the whole batch.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slots.
+     * @param slotIds array receiving the ids of the acquired slots, one per car.
+     * @return number of cars checked in, the first ones in slotIds. Less than slotIds.length
+     * means the parking got full, the remaining cars were refused.
+     * @throws UnknownParkingTypeException if the type is not a registered SlotType name.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public int checkIn(int parkingId, String type, int[] slotIds) throws UnknownParkingTypeException, UnknowParkingIdException {
+        return parkingImpl.checkIn(parkingId, type, slotIds);
+    }
+
+    /**
+     * Checkout a batch of cars from the same parking, the freed slots are given back
+     * to the parking once for the whole batch.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotIds int ids of the slots to free.
+     * @param function the price policy to apply based on the amount of minutes each car stayed.
+     * @return the price to pay for each slot, in the same order as slotIds. Double.NaN marks
+     * a slot that does not exist or was not occupied, the other slots are still checked out.
+     * @throws UnknowParkingIdException might happen if the parkingId does not exists.
+     */
+    public double[] checkOut(int parkingId, int[] slotIds, BillingPolicy function) throws UnknowParkingIdException {
+        return parkingImpl.checkOut(parkingId, slotIds, function);
+    }
+
+    /**
+     * Checkout a batch of cars from the same parking using the billing policy set with
+     * setBillingPolicy.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotIds int ids of the slots to free.
+     * @return the price to pay for each slot, in the same order as slotIds. Double.NaN marks
+     * a slot that does not exist or was not occupied, the other slots are still checked out.
+     * @throws UnknowParkingIdException might happen if the parkingId does not exists.
+     * @throws BillingPolicyNotSetException if setBillingPolicy was not called for this parking.
+     */
+    public double[] checkOut(int parkingId, int[] slotIds) throws UnknowParkingIdException, BillingPolicyNotSetException {
+        return parkingImpl.checkOut(parkingId, slotIds);
+    }
+
+    /**
+     * Number of occupied slots of a parking, read from a counter kept up to date by
+     * checkIn and checkOut: O(1) and without locking, cheap enough to poll for displays.
+     *
+     * @param parkingId int id of the parking lot.
+     * @return the number of occupied slots.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public long getOccupiedSlots(int parkingId) throws UnknowParkingIdException {
+        return parkingImpl.getOccupiedSlots(parkingId);
+    }
+
+    /**
+     * Number of available slots of a parking, O(1) and without locking.
+     *
+     * @param parkingId int id of the parking lot.
+     * @return the number of available slots.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public long getAvailableSlots(int parkingId) throws UnknowParkingIdException {
+        return parkingImpl.getAvailableSlots(parkingId);
+    }
+
+    /**
+     * Number of occupied slots of all the parkings of a type, O(1) and without locking.
+     *
+     * @param type the name of a registered SlotType.
+     * @return the number of occupied slots.
+     * @throws UnknownParkingTypeException if the type is not a registered SlotType name.
+     */
+    public long getOccupiedSlotsForType(String type) throws UnknownParkingTypeException {
+        return parkingImpl.getOccupiedSlotsForType(type);
+    }
+
+    /**
+     * Number of available slots of all the parkings of a type, O(1) and without locking.
+     *
+     * @param type the name of a registered SlotType.
+     * @return the number of available slots.
+     * @throws UnknownParkingTypeException if the type is not a registered SlotType name.
+     */
+    public long getAvailableSlotsForType(String type) throws UnknownParkingTypeException {
+        return parkingImpl.getAvailableSlotsForType(type);
+    }
+
+    /**
+     * Capacity and occupied slots of all the parkings of a type, O(1) and without locking.
+     *
+     * @param type a registered type.
+     * @return the occupancy of the type, empty if no parking of this type exists.
+     * @throws UnknownParkingTypeException if the type is null.
+     */
+    public Occupancy getOccupancyForType(SlotType type) throws UnknownParkingTypeException {
+        return parkingImpl.getOccupancyForType(type);
+    }
+
+    /**
+     * Occupancy of every parking with the totals per type and for all parkings.
+     *
+     * @return the snapshot.
+     */
+    public OccupancySnapshot getOccupancySnapshot(){
+        return parkingImpl.getOccupancySnapshot();
+    }
+
+    /**
+     * Occupancy of a single parking, per type of slots and for the whole site, read
+     * with one lookup of the parking.
+     *
+     * @param parkingId int id of the parking lot.
+     * @return the snapshot, getTotal() is the occupancy of the whole parking.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public OccupancySnapshot getOccupancySnapshot(int parkingId) throws UnknowParkingIdException {
+        return parkingImpl.getOccupancySnapshot(parkingId);
+    }
+
     /**
      * Retrieve all the Ids for slots of a given parking lot.
      * @param parkingId unique id of parking lot of interest.
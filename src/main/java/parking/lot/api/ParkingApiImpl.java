@@ -1,91 +1,1097 @@
 package parking.lot.api;
 
 
-import static parking.lot.api.ParkingApi.PARKING_20kW_TYPE;
-import static parking.lot.api.ParkingApi.PARKING_50kW_TYPE;
-import static parking.lot.api.ParkingApi.PARKING_STANDARD_TYPE;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Simple API for a parking lot bussiness, 3 parking types are available:
+ *
+ * - fossil fuel (no outlet for recharging)
+ * - 20kw (outlet that can deliver up to 20kW)
+ * - 50kw (outlet that can deliver up to 50kw)
+ *
+ * more types can be registered at runtime with SlotType.register, every per-type
+ * table is an array indexed by the SlotType ordinal.
+ *
+ * Instantiate a parking without any parking or slots available, further calls to newParking are
+ * needed to create parking of a given type with the slots.
+ *
+ * Parking and slot ids are ints, the String methods are thin adapters over the int ones,
+ * a String id is always the decimal form of the int id.
+ *
+ * @author Pedro
+ * @since 04/02/18
+ */
+public class ParkingApiImpl {
+
+    /**
+     * Rejections with a fixed message, the exceptions are stackless so they are shared.
+     */
+    private static final UnknownParkingTypeException NO_SUCH_TYPE =
+            new UnknownParkingTypeException("Parking type required does not exists!");
+    private static final UnknowParkingIdException NO_SUCH_PARKING =
+            new UnknowParkingIdException("The requested parking ID does not exists!"+
+                    "You can retrieve a complete list of available parking ids with getParkingsList!");
+    private static final UnknowParkingIdException NO_PARKING_TO_CHECK_OUT =
+            new UnknowParkingIdException("The parking your are trying to check out does not exists!");
+
+    /**
+     * Precision of the end of the reservations and of the overstay checks.
+     */
+    private static final long WHEEL_TICK_MILLIS = 1000;
+
+    /**
+     * Default bounds of the request id cache: results of the last 10 minutes, at most 65536 of them.
+     */
+    static final int DEFAULT_REQUEST_CACHE_CAPACITY = 1 << 16;
+    static final long DEFAULT_REQUEST_RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Events kept for slow subscribers.
+     */
+    static final int EVENT_CAPACITY = 1 << 16;
+
+    /**
+     * All parking lots of every type indexed by parking id, each ParkingSlotSet knows its type.
+     */
+    private final ParkingRegistry parkings;
+
+    /**
+     * Time source of every slot created by this object.
+     */
+    private final ParkingClock clock;
+
+    /**
+     * Occupancy of all the lots of each type indexed by SlotType ordinal, null for the
+     * types without lot, replaced by a longer copy when a type is first used.
+     */
+    private volatile OccupancyCounter[] typeOccupancy;
+
+    /**
+     * Revenue of all the lots of each type indexed by SlotType ordinal, null for the
+     * types without lot, replaced by a longer copy when a type is first used.
+     */
+    private volatile RevenueCounter[] typeRevenue;
+
+    /**
+     * Time zone the TODAY revenue period starts in.
+     */
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    /**
+     * Write-ahead journal of the lots and of every checkIn and checkOut, null for none.
+     */
+    private final ParkingJournal journal;
+
+    /**
+     * Cars checked in with a vehicle key, by key. An entry is added before its slot is
+     * taken and removed by the thread releasing the slot.
+     */
+    private final ConcurrentHashMap<String, ParkedVehicle> vehicles = new ConcurrentHashMap<>();
+
+    /**
+     * Lot events published to the subscribers, must be created before the recovered lots.
+     */
+    private final ParkingEventBus events = new ParkingEventBus(EVENT_CAPACITY);
+
+    /**
+     * Runtime switch of the latency histograms and counters, disabled until setMetricsEnabled.
+     */
+    private final ParkingMetrics metrics = new ParkingMetrics();
+
+    /**
+     * Log of the completed sessions, holding null until startSessionLog.
+     */
+    private final AtomicReference<SessionLog> sessions = new AtomicReference<>();
+
+    /**
+     * Results of the requests run with a request id, created on first use.
+     */
+    private volatile RequestCache requests;
+
+    /**
+     * Runs the timeouts of checkInAsync and advances the reservation wheel, created on first use.
+     */
+    private volatile ScheduledThreadPoolExecutor timer;
+
+    /**
+     * Releases the slots of expired reservations and runs the overstay checks, created on first use.
+     */
+    private volatile TimingWheel wheel;
+
+    /**
+     * Create object to hold the parking
+     */
+    ParkingApiImpl(){
+        this(ParkingClock.SYSTEM);
+    }
+
+    /**
+     * Create object to hold the parking measuring stays with the given clock.
+     *
+     * @param clock the time source, see ParkingClock.
+     */
+    ParkingApiImpl(ParkingClock clock){
+        parkings = new ParkingRegistry();
+        this.clock = clock;
+        typeOccupancy = new OccupancyCounter[SlotType.count()];
+        typeRevenue = new RevenueCounter[SlotType.count()];
+        journal = null;
+    }
+
+    /**
+     * Create object to hold the parking recovered from a journal, every later
+     * operation is appended to the journal.
+     *
+     * @param clock the time source, see ParkingClock.
+     * @param journal the journal to replay and to append to.
+     * @throws IOException if the journal cannot be read or written.
+     */
+    ParkingApiImpl(ParkingClock clock, ParkingJournal journal) throws IOException {
+        parkings = new ParkingRegistry();
+        this.clock = clock;
+        typeOccupancy = new OccupancyCounter[SlotType.count()];
+        typeRevenue = new RevenueCounter[SlotType.count()];
+        this.journal = journal;
+        for(ParkingJournal.RecoveredParking recovered : journal.recover()){
+            SlotType[] types = recovered.types.toArray(new SlotType[0]);
+            int[] slots = new int[types.length];
+            OccupancyCounter[] counters = new OccupancyCounter[types.length];
+            for(int i = 0; i < types.length; i++){
+                slots[i] = recovered.slotsPerType.get(i);
+                counters[i] = typeCounter(types[i]);
+            }
+            ParkingSlotSet parking = new ParkingSlotSet(types, slots, clock, recovered.stripes, counters, recovered.storage);
+            parking.restore(recovered.parkingId, recovered.occupied, recovered.startTimes);
+            parking.journalTo(journal);
+            parking.publishTo(events);
+            parking.measureTo(metrics);
+            parking.logSessionsTo(sessions);
+            parking.countRevenueTo(this::typeRevenue, zone);
+            parkings.restore(recovered.parkingId, parking);
+        }
+        journal.start(parkings);
+    }
+
+    /**
+     * @param type a registered type.
+     * @return the occupancy of all the lots of the type, created on first use.
+     */
+    private OccupancyCounter typeCounter(SlotType type){
+        OccupancyCounter[] counters = typeOccupancy;
+        int ordinal = type.ordinal();
+        if(ordinal < counters.length && counters[ordinal] != null){
+            return counters[ordinal];
+        }
+        synchronized(this){
+            counters = typeOccupancy;
+            if(ordinal >= counters.length){
+                counters = Arrays.copyOf(counters, SlotType.count());
+            }else if(counters[ordinal] == null){
+                counters = counters.clone();
+            }else{
+                return counters[ordinal];
+            }
+            counters[ordinal] = new OccupancyCounter();
+            typeOccupancy = counters;
+            return counters[ordinal];
+        }
+    }
+
+    /**
+     * @param type a registered type.
+     * @return the revenue counter of every lot of the type, created on first use.
+     */
+    private RevenueCounter typeRevenue(SlotType type){
+        RevenueCounter[] counters = typeRevenue;
+        int ordinal = type.ordinal();
+        if(ordinal < counters.length && counters[ordinal] != null){
+            return counters[ordinal];
+        }
+        synchronized(this){
+            counters = typeRevenue;
+            if(ordinal >= counters.length){
+                counters = Arrays.copyOf(counters, SlotType.count());
+            }else if(counters[ordinal] == null){
+                counters = counters.clone();
+            }else{
+                return counters[ordinal];
+            }
+            counters[ordinal] = new RevenueCounter(zone, null);
+            typeRevenue = counters;
+            return counters[ordinal];
+        }
+    }
+
+    /**
+     * Create a new parking lot with available slots.
+     *
+     * @param numberOfSlots the desired number of slots to create.
+     * @return an unique id for the newly created parking lot.
+     */
+    public String newParking(int numberOfSlots, String type) throws UnknownParkingTypeException {
+        return String.valueOf(newParkingHandle(numberOfSlots, type));
+    }
+
+    /**
+     * Same as newParking but returns the parking id as an int.
+     *
+     * @param numberOfSlots the desired number of slots to create.
+     * @return an unique id for the newly created parking lot.
+     */
+    public int newParkingHandle(int numberOfSlots, String type) throws UnknownParkingTypeException {
+        return newParkingHandle(numberOfSlots, type, 1);
+    }
+
+    /**
+     * Create a new parking lot whose free slots are split in stripes.
+     *
+     * @param numberOfSlots the desired number of slots to create.
+     * @param stripes number of stripes, each with its own pool of free slots.
+     * @return an unique id for the newly created parking lot.
+     */
+    public int newParkingHandle(int numberOfSlots, String type, int stripes) throws UnknownParkingTypeException {
+        return newParkingHandle(numberOfSlots, findType(type), stripes);
+    }
+
+    /**
+     * Same as newParkingHandle taking the SlotType instead of its name.
+     *
+     * @param numberOfSlots the desired number of slots to create.
+     * @param type the type of the slots, null is rejected.
+     * @return an unique id for the newly created parking lot.
+     */
+    public int newParkingHandle(int numberOfSlots, SlotType type) throws UnknownParkingTypeException {
+        return newParkingHandle(numberOfSlots, type, 1);
+    }
+
+    /**
+     * Create a new parking lot of a registered type whose free slots are split in stripes.
+     *
+     * @param numberOfSlots the desired number of slots to create.
+     * @param type the type of the slots, null is rejected.
+     * @param stripes number of stripes, each with its own pool of free slots.
+     * @return an unique id for the newly created parking lot.
+     */
+    public int newParkingHandle(int numberOfSlots, SlotType type, int stripes) throws UnknownParkingTypeException {
+        return newParkingHandle(numberOfSlots, type, stripes, SlotStorage.OBJECTS);
+    }
+
+    /**
+     * Same as newParkingHandle choosing how the state of the slots is kept, see SlotStorage.
+     *
+     * @param numberOfSlots the desired number of slots to create.
+     * @param type the type of the slots, null is rejected.
+     * @param stripes number of stripes, each with its own pool of free slots.
+     * @param storage the storage of the slot states, COMPACT for very large lots.
+     * @return an unique id for the newly created parking lot.
+     */
+    public int newParkingHandle(int numberOfSlots, SlotType type, int stripes, SlotStorage storage) throws UnknownParkingTypeException {
+        if(type == null){
+            throw NO_SUCH_TYPE;
+        }
+        ParkingSlotSet parking = new ParkingSlotSet(new SlotType[]{ type }, new int[]{ numberOfSlots }, clock, stripes,
+                new OccupancyCounter[]{ typeCounter(type) }, storage);
+        if(journal != null){
+            parking.journalTo(journal);
+        }
+        parking.publishTo(events);
+        parking.measureTo(metrics);
+        parking.logSessionsTo(sessions);
+        parking.countRevenueTo(this::typeRevenue, zone);
+        return parkings.register(parking);
+    }
+
+    /**
+     * Create a new parking lot holding slots of several types under one id, each type
+     * with its own pool of free slots. Slot ids follow the iteration order of the map.
+     *
+     * @param slotsPerType number of slots of each type, at least one type.
+     * @param stripes number of stripes of the free slots of each type.
+     * @return an unique id for the newly created parking lot.
+     * @throws UnknownParkingTypeException if a type is null.
+     */
+    public int newParkingHandle(Map<SlotType, Integer> slotsPerType, int stripes) throws UnknownParkingTypeException {
+        return newParkingHandle(slotsPerType, stripes, SlotStorage.OBJECTS);
+    }
+
+    /**
+     * Same as newParkingHandle with several types choosing how the state of the slots is kept.
+     *
+     * @param slotsPerType number of slots of each type, at least one type.
+     * @param stripes number of stripes of the free slots of each type.
+     * @param storage the storage of the slot states, COMPACT for very large lots.
+     * @return an unique id for the newly created parking lot.
+     * @throws UnknownParkingTypeException if a type is null.
+     */
+    public int newParkingHandle(Map<SlotType, Integer> slotsPerType, int stripes, SlotStorage storage) throws UnknownParkingTypeException {
+        SlotType[] types = new SlotType[slotsPerType.size()];
+        int[] slots = new int[types.length];
+        OccupancyCounter[] counters = new OccupancyCounter[types.length];
+        int i = 0;
+        for(Map.Entry<SlotType, Integer> entry : slotsPerType.entrySet()){
+            if(entry.getKey() == null){
+                throw NO_SUCH_TYPE;
+            }
+            types[i] = entry.getKey();
+            slots[i] = entry.getValue();
+            counters[i] = typeCounter(types[i]);
+            i++;
+        }
+        ParkingSlotSet parking = new ParkingSlotSet(types, slots, clock, stripes, counters, storage);
+        if(journal != null){
+            parking.journalTo(journal);
+        }
+        parking.publishTo(events);
+        parking.measureTo(metrics);
+        parking.logSessionsTo(sessions);
+        parking.countRevenueTo(this::typeRevenue, zone);
+        return parkings.register(parking);
+    }
+
+    /**
+     * Same as newParkingHandle with several types, the types are given by name.
+     *
+     * @param slotsPerType number of slots of each type name, at least one type.
+     * @return an unique id for the newly created parking lot.
+     * @throws UnknownParkingTypeException if a name is not a registered SlotType name.
+     */
+    public String newParking(Map<String, Integer> slotsPerType) throws UnknownParkingTypeException {
+        Map<SlotType, Integer> types = new LinkedHashMap<>();
+        for(Map.Entry<String, Integer> entry : slotsPerType.entrySet()){
+            types.put(findType(entry.getKey()), entry.getValue());
+        }
+        return String.valueOf(newParkingHandle(types, 1));
+    }
+
+    /**
+     * Use this method to checking a car for a specific parking.
+     *
+     * @param parkingId id of the parking lot.
+     * @param type type of the required slot.
+     * @return id of the parking slot aquired.
+     * @throws UnknownParkingTypeException if the type is not a registered SlotType name.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the
+     */
+    public String checkIn(String parkingId, String type) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
+        return String.valueOf(checkIn(ParkingRegistry.parseId(parkingId), type));
+    }
+
+    /**
+     * Use this method to checking a car for a specific parking.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @return int id of the parking slot aquired.
+     * @throws UnknownParkingTypeException if the type is not a registered SlotType name.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the
+     */
+    public int checkIn(int parkingId, String type) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
+        return checkIn(parkingId, findType(type));
+    }
+
+    /**
+     * Use this method to checking a car coming from a given entrance of a parking.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param entrance id of the entrance, picks the stripe the slot is taken from first.
+     * @return int id of the parking slot aquired.
+     * @throws UnknownParkingTypeException if the type is not a registered SlotType name.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the
+     */
+    public int checkIn(int parkingId, String type, int entrance) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
+        return checkIn(parkingId, findType(type), entrance);
+    }
+
+    /**
+     * Same as checkIn taking the SlotType instead of its name, the type of the parking is checked by identity.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @return int id of the parking slot aquired.
+     * @throws UnknownParkingTypeException if the type is not the type of the parking.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the
+     */
+    public int checkIn(int parkingId, SlotType type) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
+        ParkingSlotSet parking = findParkingForType(parkingId, type);
+        return parking.checkInSlot(parking.pool(type));
+    }
+
+    /**
+     * Same as checkIn with an entrance taking the SlotType instead of its name.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param entrance id of the entrance, picks the stripe the slot is taken from first.
+     * @return int id of the parking slot aquired.
+     * @throws UnknownParkingTypeException if the type is not the type of the parking.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the
+     */
+    public int checkIn(int parkingId, SlotType type, int entrance) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
+        ParkingSlotSet parking = findParkingForType(parkingId, type);
+        return parking.checkInSlot(parking.pool(type), entrance);
+    }
+
+    /**
+     * Checkin a car now or, when the parking is full, as soon as a slot of the type is
+     * checked out. Waiting cars get the freed slots in arrival order.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @return the future int id of the parking slot aquired, cancel it to stop waiting.
+     * @throws UnknownParkingTypeException if the type is not a registered SlotType name.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public CompletableFuture<Integer> checkInAsync(int parkingId, String type) throws UnknownParkingTypeException, UnknowParkingIdException {
+        return checkInAsync(parkingId, findType(type));
+    }
+
+    /**
+     * Same as checkInAsync taking the SlotType instead of its name.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @return the future int id of the parking slot aquired, cancel it to stop waiting.
+     * @throws UnknownParkingTypeException if the parking has no slots of the type.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public CompletableFuture<Integer> checkInAsync(int parkingId, SlotType type) throws UnknownParkingTypeException, UnknowParkingIdException {
+        ParkingSlotSet parking = findParkingForType(parkingId, type);
+        return parking.checkInAsync(parking.pool(type), 0, TimeUnit.MILLISECONDS, null);
+    }
+
+    /**
+     * Same as checkInAsync giving up after a timeout.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param timeout longest wait for a slot.
+     * @param unit the unit of timeout.
+     * @return the future int id of the parking slot aquired, failed with a TimeoutException if no slot got free in time.
+     * @throws UnknownParkingTypeException if the parking has no slots of the type.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public CompletableFuture<Integer> checkInAsync(int parkingId, SlotType type, long timeout, TimeUnit unit) throws UnknownParkingTypeException, UnknowParkingIdException {
+        ParkingSlotSet parking = findParkingForType(parkingId, type);
+        return parking.checkInAsync(parking.pool(type), timeout, unit, timer());
+    }
+
+    /**
+     * @return the executor of the timeouts and of the reservation wheel, a single daemon thread.
+     */
+    private ScheduledExecutorService timer(){
+        ScheduledThreadPoolExecutor timer = this.timer;
+        if(timer != null){
+            return timer;
+        }
+        synchronized(this){
+            if(this.timer == null){
+                timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+                    Thread thread = new Thread(runnable, "parking-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                //cars served before their timeout must not pile up in the timer queue
+                timer.setRemoveOnCancelPolicy(true);
+                this.timer = timer;
+            }
+            return this.timer;
+        }
+    }
+
+    /**
+     * Hold a free slot of the given type for a car arriving later, the slot is released
+     * automatically at the end of the hold unless the car claims it.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param holdMinutes how long the slot is held, at least 1 minute.
+     * @return int id of the held slot, to give to claim.
+     * @throws UnknownParkingTypeException if the parking has no slots of the type.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the type.
+     */
+    public int reserve(int parkingId, String type, long holdMinutes) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
+        return reserve(parkingId, findType(type), holdMinutes);
+    }
+
+    /**
+     * Same as reserve taking the SlotType instead of its name.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param holdMinutes how long the slot is held, at least 1 minute.
+     * @return int id of the held slot, to give to claim.
+     * @throws UnknownParkingTypeException if the parking has no slots of the type.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the type.
+     */
+    public int reserve(int parkingId, SlotType type, long holdMinutes) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
+        long holdMillis = TimeUnit.MINUTES.toMillis(holdMinutes);
+        if(holdMinutes < 1 || holdMillis / WHEEL_TICK_MILLIS > TimingWheel.MAX_TICKS){
+            throw new IllegalArgumentException("Cannot hold a slot for "+holdMinutes+" minutes!");
+        }
+        //the timer only starts once the request is known to be valid
+        ParkingSlotSet parking = findParkingForType(parkingId, type);
+        int slotId = parking.reserve(parking.pool(type), holdMillis, wheel());
+        if(slotId == SlotFreeList.EMPTY){
+            throw new SlotsFullException("All slots of type "+type+" of parking "+parkingId+" are occupied!");
+        }
+        return slotId;
+    }
+
+    /**
+     * Checkin the car a slot was reserved for, from now on it is billed like any other.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotId int id of the held slot.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotNotFoundException if the slot is not held, e.g. the hold expired.
+     */
+    public void claim(int parkingId, int slotId) throws UnknowParkingIdException, SlotNotFoundException {
+        ParkingSlotSet parking = findParkingById(parkingId);
+        if(parking == null){
+            throw NO_SUCH_PARKING;
+        }
+        parking.claim(slotId);
+    }
+
+    /**
+     * Release a held slot before the end of the hold.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotId int id of the held slot.
+     * @return false if the slot was not held.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public boolean cancelReservation(int parkingId, int slotId) throws UnknowParkingIdException {
+        ParkingSlotSet parking = findParkingById(parkingId);
+        if(parking == null){
+            throw NO_SUCH_PARKING;
+        }
+        return parking.cancelReservation(slotId);
+    }
+
+    /**
+     * Release the slots of the reservations whose hold is over and call the overstay
+     * listeners, run every second by the timer. Only the due tasks are visited.
+     * Nothing is thrown, an exception would stop the periodic task for good.
+     */
+    void advanceWheel(){
+        TimingWheel wheel = this.wheel;
+        if(wheel != null){
+            try{
+                wheel.advance(clock.currentTimeMillis());
+            }catch(RuntimeException e){
+                //the next tick runs the tasks still due
+                wheel.failed(e);
+            }
+        }
+    }
+
+    /**
+     * @return the wheel of the reservations and overstay checks, advanced every second once created.
+     */
+    private TimingWheel wheel(){
+        TimingWheel wheel = this.wheel;
+        if(wheel != null){
+            return wheel;
+        }
+        synchronized(this){
+            if(this.wheel == null){
+                this.wheel = new TimingWheel(WHEEL_TICK_MILLIS, clock.currentTimeMillis());
+                timer().scheduleAtFixedRate(this::advanceWheel, WHEEL_TICK_MILLIS,
+                        WHEEL_TICK_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            return this.wheel;
+        }
+    }
+
+    /**
+     * Read the longest stays of a parking lot from its index of occupied slots ordered
+     * by checkIn time, without scanning the slots.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param count the maximum number of stays.
+     * @return at most count stays, oldest first.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public List<Stay> getOldestStays(int parkingId, int count) throws UnknowParkingIdException {
+        return findExistingParking(parkingId).getOldestStays(count);
+    }
+
+    /**
+     * Read the cars of a parking lot that stayed at least some minutes, in time
+     * proportional to their number.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param minutes the shortest stay, as billed by checkOut.
+     * @return the stays, oldest first.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public List<Stay> getStaysLongerThan(int parkingId, long minutes) throws UnknowParkingIdException {
+        return findExistingParking(parkingId).getStaysLongerThan(minutes);
+    }
+
+    /**
+     * Same as getStaysLongerThan for every parking lot.
+     *
+     * @param minutes the shortest stay, as billed by checkOut.
+     * @return the stays of all the lots, oldest first.
+     */
+    public List<Stay> getStaysLongerThan(long minutes){
+        List<Stay> stays = new ArrayList<>();
+        int lastId = parkings.lastId();
+        for(int parkingId = 1; parkingId <= lastId; parkingId++){
+            ParkingSlotSet parking = parkings.get(parkingId);
+            if(parking != null){
+                stays.addAll(parking.getStaysLongerThan(minutes));
+            }
+        }
+        stays.sort(Stay.OLDEST_FIRST);
+        return stays;
+    }
+
+    /**
+     * Call a listener once for every car of a parking lot staying longer than a threshold,
+     * including the cars already parked. The listener is called by the timer thread about
+     * a second after the threshold, a checkOut before that cancels the call.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param minutes the threshold, at least 1 minute.
+     * @param listener the listener, must return quickly.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public void addOverstayListener(int parkingId, long minutes, OverstayListener listener) throws UnknowParkingIdException {
+        long thresholdMillis = TimeUnit.MINUTES.toMillis(minutes);
+        if(minutes < 1 || thresholdMillis / WHEEL_TICK_MILLIS > TimingWheel.MAX_TICKS){
+            throw new IllegalArgumentException("Cannot watch stays of "+minutes+" minutes!");
+        }
+        findExistingParking(parkingId).addOverstayListener(thresholdMillis, listener, wheel());
+    }
+
+    /**
+     * Stop calling a listener, the calls already due may still happen.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param listener a listener given to addOverstayListener.
+     * @return false if the listener was not registered on the parking.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public boolean removeOverstayListener(int parkingId, OverstayListener listener) throws UnknowParkingIdException {
+        return findExistingParking(parkingId).removeOverstayListener(listener);
+    }
+
+    /**
+     * Receive the events of every lot from now on: lot created, check in, check out, a
+     * type of a lot getting full or not full. The caller reads the subscription from its
+     * own thread at its own pace, publishers never wait for it.
+     *
+     * @return the subscription, to close when done.
+     */
+    public ParkingEventSubscription subscribe(){
+        ParkingEventSubscription subscription = events.subscribe();
+        int lastId = parkings.lastId();
+        for(int parkingId = 1; parkingId <= lastId; parkingId++){
+            ParkingSlotSet parking = parkings.get(parkingId);
+            if(parking != null){
+                parking.resetFullFlags();
+            }
+        }
+        return subscription;
+    }
+
+    /**
+     * Same as subscribe, the events are given to a listener by a thread of the subscription.
+     *
+     * @param listener receives the events in batches.
+     * @param batchSize the most events per call of the listener.
+     * @return the subscription, closing it stops the thread.
+     */
+    public ParkingEventSubscription subscribe(ParkingEventListener listener, int batchSize){
+        ParkingEventSubscription subscription = subscribe();
+        subscription.dispatchTo(listener, batchSize);
+        return subscription;
+    }
+
+    /**
+     * Log every session completed from now on: lot, type, slot, checkIn and checkOut
+     * times, minutes and price, off the heap. A log started before is no longer written
+     * to and stays readable by the callers holding it.
+     *
+     * @param capacity the most sessions kept, later ones are dropped and counted.
+     * @return the new log.
+     */
+    public SessionLog startSessionLog(long capacity){
+        SessionLog log = new SessionLog(capacity);
+        sessions.set(log);
+        return log;
+    }
+
+    /**
+     * Stop logging sessions.
+     *
+     * @return the log that was written to, null if none was.
+     */
+    public SessionLog stopSessionLog(){
+        return sessions.getAndSet(null);
+    }
+
+    /**
+     * @return the log sessions are written to, null if none.
+     */
+    public SessionLog getSessionLog(){
+        return sessions.get();
+    }
+
+    /**
+     * Turn the latency histograms and counters on or off, at any time. They start
+     * disabled: a disabled operation only reads the switch.
+     *
+     * @param enabled true to measure the operations from now on.
+     */
+    public void setMetricsEnabled(boolean enabled){
+        metrics.setEnabled(enabled);
+    }
+
+    /**
+     * @return true while the operations are measured.
+     */
+    public boolean isMetricsEnabled(){
+        return metrics.isEnabled();
+    }
+
+    /**
+     * Read the latency histograms and counters of every lot, operations keep running meanwhile.
+     *
+     * @return the snapshot, queried per lot, per type or in total.
+     */
+    public ParkingMetricsSnapshot getMetricsSnapshot(){
+        List<ParkingMetricsSnapshot.Pool> pools = new ArrayList<>();
+        int lastId = parkings.lastId();
+        for(int parkingId = 1; parkingId <= lastId; parkingId++){
+            ParkingSlotSet parking = parkings.get(parkingId);
+            if(parking != null){
+                parking.metricsTo(pools);
+            }
+        }
+        ParkingOperation[] operations = ParkingOperation.values();
+        long[] errors = new long[operations.length];
+        for(ParkingOperation operation : operations){
+            errors[operation.ordinal()] = metrics.errors(operation);
+        }
+        TimingWheel wheel = this.wheel;
+        return new ParkingMetricsSnapshot(metrics.isEnabled(), pools, errors,
+                wheel == null ? 0 : wheel.failures(), wheel == null ? null : wheel.failure());
+    }
+
+    /**
+     * Publish the metrics as a ParkingMetricsMXBean in the platform MBean server, under
+     * parking.lot.api:type=ParkingMetrics,name=the given name.
+     *
+     * @param name name of this ParkingApi among the ones of the JVM.
+     * @return the name of the MBean.
+     * @throws JMException if the name is invalid or already registered.
+     */
+    public ObjectName registerMetricsMBean(String name) throws JMException {
+        ObjectName objectName = metricsMBeanName(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new ParkingMetricsBean(this), objectName);
+        return objectName;
+    }
+
+    /**
+     * Remove the MBean published by registerMetricsMBean.
+     *
+     * @param name the name given to registerMetricsMBean.
+     * @throws JMException if no MBean is registered with that name.
+     */
+    public void unregisterMetricsMBean(String name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsMBeanName(name));
+    }
+
+    private static ObjectName metricsMBeanName(String name) throws MalformedObjectNameException {
+        return new ObjectName("parking.lot.api:type=ParkingMetrics,name=" + ObjectName.quote(name));
+    }
+
+    /**
+     * Same as checkIn run at most once per request id: a retry with the same id returns
+     * the slot of the first attempt without touching the parking. A rejected attempt is
+     * not kept, its retry runs again.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param requestId id chosen by the client, the same for every attempt of a request.
+     * @return int id of the parking slot aquired.
+     * @throws UnknownParkingTypeException if the parking has no slots of the type.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the type.
+     * @throws IllegalArgumentException if the request id was used by another operation or parking lot.
+     */
+    public int checkInOnce(int parkingId, SlotType type, String requestId) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
+        RequestCache cache = requests();
+        RequestCache.Outcome outcome = cache.claim(requestId, RequestCache.CHECK_IN, parkingId);
+        if(!outcome.isPending()){
+            return (int) outcome.result;
+        }
+        boolean done = false;
+        try{
+            int slotId = checkIn(parkingId, type);
+            cache.complete(outcome, slotId);
+            done = true;
+            return slotId;
+        }finally{
+            if(!done){
+                cache.fail(outcome);
+            }
+        }
+    }
 
-import java.util.HashMap;
-import java.util.Vector;
+    /**
+     * Same as checkOut run at most once per request id: a retry with the same id returns
+     * the price of the first attempt instead of failing on the freed slot.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotId int id of the car slot.
+     * @param requestId id chosen by the client, the same for every attempt of a request.
+     * @param function the price policy to apply based on the amount of minutes the car stayed.
+     * @return the price to pay.
+     * @throws UnknowParkingIdException might happen if the parkingId does not exists.
+     * @throws SlotNotFoundException if the slot is not occupied and no attempt with this id freed it.
+     * @throws IllegalArgumentException if the request id was used by another operation or parking lot.
+     */
+    public double checkOutOnce(int parkingId, int slotId, String requestId, BillingPolicy function) throws UnknowParkingIdException, SlotNotFoundException {
+        RequestCache cache = requests();
+        RequestCache.Outcome outcome = cache.claim(requestId, RequestCache.CHECK_OUT, parkingId);
+        if(!outcome.isPending()){
+            return Double.longBitsToDouble(outcome.result);
+        }
+        boolean done = false;
+        try{
+            double price = checkOut(parkingId, slotId, function);
+            cache.complete(outcome, Double.doubleToRawLongBits(price));
+            done = true;
+            return price;
+        }finally{
+            if(!done){
+                cache.fail(outcome);
+            }
+        }
+    }
 
-/**
- * Simple API for a parking lot bussiness, 3 parking types are available:
- *
- * - fossil fuel (no outlet for recharging)
- * - 20kw (outlet that can deliver up to 20kW)
- * - 50kw (outlet that can deliver up to 50kw)
- *
- * Instantiate a parking without any parking or slots available, further calls to newParking are
- * needed to create parking of a given type with the slots.
- *
- * @author Pedro
- * @since 04/02/18
- */
-public class ParkingApiImpl {
+    /**
+     * Replace the request id cache, the ids seen so far are forgotten.
+     *
+     * @param capacity the most results kept, bounds the memory of the cache.
+     * @param retention how long a result is kept.
+     * @param unit the unit of retention.
+     */
+    public void setRequestCache(int capacity, long retention, TimeUnit unit){
+        requests = new RequestCache(capacity, unit.toMillis(retention), clock);
+    }
 
-    private HashMap<String, ParkingSlotSet> parkingStandard;
-    private HashMap<String, ParkingSlotSet> parking20kw;
-    private HashMap<String, ParkingSlotSet> parking50kw;
-    private static int uniqueIdCounter = 1;
+    /**
+     * @return the hits, misses and evictions of the request id cache.
+     */
+    public RequestCacheStats getRequestCacheStats(){
+        return requests().stats();
+    }
 
     /**
-     * Create object to hold the parking
+     * @return the request id cache, created with the default bounds on first use.
      */
-    ParkingApiImpl(){
-        parkingStandard = new HashMap<>();
-        parking20kw = new HashMap<>();
-        parking50kw = new HashMap<>();
+    private RequestCache requests(){
+        RequestCache cache = requests;
+        if(cache != null){
+            return cache;
+        }
+        synchronized(this){
+            if(requests == null){
+                requests = new RequestCache(DEFAULT_REQUEST_CACHE_CAPACITY, DEFAULT_REQUEST_RETENTION_MILLIS, clock);
+            }
+            return requests;
+        }
     }
 
     /**
-     * Create a new parking lot with available slots.
+     * Checkin a car identified by a vehicle key, a plate or a ticket, so it can be checked
+     * out with checkOutByVehicle. A key can be parked once in all the lots.
      *
-     * @param numberOfSlots the desired number of slots to create.
-     * @return an unique id for the newly created parking lot.
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param vehicle the key of the car.
+     * @return int id of the parking slot aquired.
+     * @throws UnknownParkingTypeException if the parking has no slots of the type.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws SlotsFullException if the parking has no available spots of the type.
+     * @throws VehicleAlreadyParkedException if a car with the same key is parked.
      */
-    public String newParking(int numberOfSlots, String type) throws UnknownParkingTypeException {
-        String parkingId = ""+uniqueIdCounter;
-        if (PARKING_STANDARD_TYPE.equals(type)) {
-            parkingStandard.put("" + parkingId, new ParkingSlotSet(numberOfSlots));
-        } else if (PARKING_20kW_TYPE.equals(type)) {
-            parking20kw.put("" + parkingId, new ParkingSlotSet(numberOfSlots));
+    public int checkInVehicle(int parkingId, SlotType type, String vehicle) throws UnknownParkingTypeException, UnknowParkingIdException,
+            SlotsFullException, VehicleAlreadyParkedException {
+        ParkingSlotSet parking = findParkingForType(parkingId, type);
+        ParkedVehicle parked = new ParkedVehicle(vehicle, parkingId);
+        if(vehicles.putIfAbsent(vehicle, parked) != null){
+            throw new VehicleAlreadyParkedException("Vehicle "+vehicle+" is already parked!");
+        }
+        int slotId = parking.checkInVehicle(parking.pool(type), parked, vehicles);
+        if(slotId == SlotFreeList.EMPTY){
+            vehicles.remove(vehicle, parked);
+            throw new SlotsFullException("All slots of type "+type+" of parking "+parkingId+" are occupied!");
+        }
+        return slotId;
+    }
 
-        } else if (PARKING_50kW_TYPE.equals(type)) {
-            parking50kw.put("" + parkingId, new ParkingSlotSet(numberOfSlots));
+    /**
+     * Checkout the car checked in with a vehicle key, its lot and slot are found with a
+     * single lookup in the vehicle index.
+     *
+     * @param vehicle the key of the car.
+     * @param function the price policy to apply based on the amount of minutes the car stayed.
+     * @return the price to pay.
+     * @throws SlotNotFoundException if no car with that key is parked.
+     */
+    public double checkOutByVehicle(String vehicle, BillingPolicy function) throws SlotNotFoundException {
+        ParkedVehicle parked = vehicles.get(vehicle);
+        if(parked == null){
+            throw new SlotNotFoundException("Vehicle "+vehicle+" is not parked!");
+        }
+        return parkings.get(parked.parkingId).checkOutVehicle(parked, function);
+    }
 
-        } else {
-            throw new UnknownParkingTypeException("Parking type required does not exists!");
+    /**
+     * Same as checkOutByVehicle using the billingPolicy of the lot of the car.
+     *
+     * @param vehicle the key of the car.
+     * @return the price to pay.
+     * @throws SlotNotFoundException if no car with that key is parked.
+     * @throws BillingPolicyNotSetException if the lot of the car has no billing policy, the car stays parked.
+     */
+    public double checkOutByVehicle(String vehicle) throws SlotNotFoundException, BillingPolicyNotSetException {
+        ParkedVehicle parked = vehicles.get(vehicle);
+        if(parked == null){
+            throw new SlotNotFoundException("Vehicle "+vehicle+" is not parked!");
         }
-        uniqueIdCounter++;
-        return parkingId;
+        BillingPolicy policy = parkings.get(parked.parkingId).getBillingPolicy();
+        if(policy == null){
+            throw new BillingPolicyNotSetException("You need to set billing policy with setBillingPolicy before calling this method!");
+        }
+        return checkOutByVehicle(vehicle, policy);
     }
 
     /**
-     * Use this method to checking a car for a specific parking.
+     * Same as checkIn returning a result code instead of throwing, nothing is allocated
+     * when the car is rejected.
      *
-     * @param parkingId id of the parking lot.
+     * @param parkingId int id of the parking lot.
      * @param type type of the required slot.
-     * @return id of the parking slot aquired.
-     * @throws UnknownParkingTypeException if the type is not one of the three possible types.
+     * @return int id of the parking slot aquired, or a negative ParkingStatus code.
+     */
+    public int tryCheckIn(int parkingId, SlotType type){
+        return tryCheckIn(parkingId, type, ParkingSlotSet.threadHint());
+    }
+
+    /**
+     * Same as checkIn with an entrance returning a result code instead of throwing.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot.
+     * @param entrance id of the entrance, picks the stripe the slot is taken from first.
+     * @return int id of the parking slot aquired, or a negative ParkingStatus code.
+     */
+    public int tryCheckIn(int parkingId, SlotType type, int entrance){
+        ParkingSlotSet parking = findParkingById(parkingId);
+        if(parking == null){
+            metrics.error(ParkingOperation.CHECK_IN);
+            return ParkingStatus.UNKNOWN_PARKING;
+        }
+        SlotPool pool = type == null ? null : parking.pool(type);
+        if(pool == null){
+            metrics.error(ParkingOperation.CHECK_IN);
+            return ParkingStatus.UNKNOWN_TYPE;
+        }
+        int slotId = parking.tryCheckInSlot(pool, entrance);
+        return slotId == SlotFreeList.EMPTY ? ParkingStatus.FULL : slotId;
+    }
+
+    /**
+     * Same as checkOut returning Double.NaN instead of throwing when the parking id is
+     * unknown or the slot is not occupied.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotId int id of the car slot.
+     * @param function the price policy to apply based on the amount of minutes the car stayed.
+     * @return the price to pay, Double.NaN if nothing was checked out.
+     */
+    public double tryCheckOut(int parkingId, int slotId, BillingPolicy function){
+        ParkingSlotSet parking = findParkingById(parkingId);
+        if(parking == null){
+            metrics.error(ParkingOperation.CHECK_OUT);
+            return Double.NaN;
+        }
+        return parking.tryCheckOut(slotId, function);
+    }
+
+    /**
+     * Same as tryCheckOut using the billingPolicy associated with the parkingId.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotId int id of the car slot.
+     * @return the price to pay, Double.NaN if nothing was checked out or the parking has no billing policy.
+     */
+    public double tryCheckOut(int parkingId, int slotId){
+        ParkingSlotSet parking = findParkingById(parkingId);
+        BillingPolicy policy = parking == null ? null : parking.getBillingPolicy();
+        return policy == null ? Double.NaN : tryCheckOut(parkingId, slotId, policy);
+    }
+
+    /**
+     * Find the parking a car of the given type checks in, the pool of the type in the
+     * parking is a single array read.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slot, null is rejected.
+     * @return the ParkingSlotSet, never null, its pool(type) is not null.
+     * @throws UnknownParkingTypeException if the parking has no slots of the type.
      * @throws UnknowParkingIdException if the id is not a registered parking lot.
-     * @throws SlotsFullException if the parking has no available spots of the
      */
-    public String checkIn(String parkingId, String type) throws UnknownParkingTypeException, UnknowParkingIdException, SlotsFullException {
-        ParkingSlotSet parking;
-        if(type.equals(PARKING_STANDARD_TYPE)) {
-            parking = parkingStandard.get(""+parkingId);
-        }else if(type.equals(PARKING_20kW_TYPE)) {
-            parking = parking20kw.get(""+parkingId);
-        }else if(type.equals(PARKING_50kW_TYPE)) {
-            parking = parking50kw.get(""+parkingId);
-        }else{
-            throw new UnknownParkingTypeException("Parking type required does not exists!");
+    private ParkingSlotSet findParkingForType(int parkingId, SlotType type) throws UnknownParkingTypeException, UnknowParkingIdException {
+        if(type == null){
+            metrics.error(ParkingOperation.CHECK_IN);
+            throw NO_SUCH_TYPE;
         }
+        ParkingSlotSet parking = findParkingById(parkingId);
         if(parking == null){
-            throw new UnknowParkingIdException("The requested parking ID does not exists!"+
-                    "You can retrieve a complete list of available parking ids with getParkingsList!");
+            metrics.error(ParkingOperation.CHECK_IN);
+            throw NO_SUCH_PARKING;
         }
-        return parking.checkIn();
+        if(parking.pool(type) == null){
+            metrics.error(ParkingOperation.CHECK_IN);
+            throw new UnknownParkingTypeException("Parking "+parkingId+" has no slots of type "+type+"!");
+        }
+        return parking;
     }
 
     /**
@@ -100,11 +1106,96 @@ public class ParkingApiImpl {
      * @throws SlotNotFoundException might happen if the slot is not available for the current parkingSlot.
      */
     public double checkOut(String parkingId, String slotId, BillingPolicy function) throws UnknowParkingIdException, SlotNotFoundException {
+        ParkingSlotSet parking = findParkingToCheckOut(parkingId);
+        return parking.checkOut(slotId, function);
+    }
+
+    /**
+     * Checkout a car occuping slotId from the parking identified by parkingId.
+     * Apply the lambda expression desired as billing policy.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotId int id of the car slot.
+     * @param function the price policy to apply based on the amount of minutes the car stayed.
+     * @return the price to pay.
+     * @throws UnknowParkingIdException might happen if the parkingId does not exists.
+     * @throws SlotNotFoundException might happen if the slot is not available for the current parkingSlot.
+     */
+    public double checkOut(int parkingId, int slotId, BillingPolicy function) throws UnknowParkingIdException, SlotNotFoundException {
+        ParkingSlotSet parking = findParkingToCheckOut(parkingId);
+        return parking.checkOut(slotId, function);
+    }
+
+    /**
+     * Checkin several cars of the same type in a parking, the parking is looked up once.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type type of the required slots.
+     * @param slotIds array receiving the ids of the acquired slots, one per car.
+     * @return number of cars checked in, less than slotIds.length if the parking got full.
+     * @throws UnknownParkingTypeException if the type is not a registered SlotType name.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public int checkIn(int parkingId, String type, int[] slotIds) throws UnknownParkingTypeException, UnknowParkingIdException {
+        SlotType slotType = findType(type);
+        ParkingSlotSet parking = findParkingForType(parkingId, slotType);
+        return parking.checkInAll(parking.pool(slotType), slotIds);
+    }
+
+    /**
+     * Checkout several cars from a parking, the parking is looked up once.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotIds int ids of the slots to free.
+     * @param function the price policy to apply based on the amount of minutes each car stayed.
+     * @return the price to pay for each slot, Double.NaN for slots that were not occupied.
+     * @throws UnknowParkingIdException might happen if the parkingId does not exists.
+     */
+    public double[] checkOut(int parkingId, int[] slotIds, BillingPolicy function) throws UnknowParkingIdException {
+        ParkingSlotSet parking = findParkingToCheckOut(parkingId);
+        return parking.checkOutAll(slotIds, function);
+    }
+
+    /**
+     * Checkout several cars from a parking using the billingPolicy associated with the parkingId.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotIds int ids of the slots to free.
+     * @return the price to pay for each slot, Double.NaN for slots that were not occupied.
+     * @throws UnknowParkingIdException might happen if the parkingId does not exists.
+     * @throws BillingPolicyNotSetException rised when setBillingPolicy was not properly called.
+     */
+    public double[] checkOut(int parkingId, int[] slotIds) throws UnknowParkingIdException, BillingPolicyNotSetException {
+        ParkingSlotSet parking = findParkingToCheckOut(parkingId);
+        return parking.checkOutAll(slotIds);
+    }
+
+    /**
+     * Find the parking a car is checked out from.
+     *
+     * @param parkingId unique id of the parking lot.
+     * @return the ParkingSlotSet, never null.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    private ParkingSlotSet findParkingToCheckOut(String parkingId) throws UnknowParkingIdException {
         ParkingSlotSet parking = findParkingById(parkingId);
         if(parking == null){
-            throw new UnknowParkingIdException("The parking your are trying to check out does not exists!");
+            metrics.error(ParkingOperation.CHECK_OUT);
+            throw NO_PARKING_TO_CHECK_OUT;
         }
-        return parking.checkOut(slotId, function);
+        return parking;
+    }
+
+    /**
+     * Same as findParkingToCheckOut with an int id.
+     */
+    private ParkingSlotSet findParkingToCheckOut(int parkingId) throws UnknowParkingIdException {
+        ParkingSlotSet parking = findParkingById(parkingId);
+        if(parking == null){
+            metrics.error(ParkingOperation.CHECK_OUT);
+            throw NO_PARKING_TO_CHECK_OUT;
+        }
+        return parking;
     }
 
     /**
@@ -114,15 +1205,32 @@ public class ParkingApiImpl {
      * @return a ParkingSlotSet object or null if not found.
      */
     private ParkingSlotSet findParkingById(String parkingId){
-        ParkingSlotSet parking = parkingStandard.get(parkingId);
-        //tries other type if null
-        if(parking == null){
-            parking = parking20kw.get(parkingId);
-        }
-        if(parking == null){
-            parking = parking50kw.get(parkingId);
+        return parkings.get(parkingId);
+    }
+
+    /**
+     * Find the ParkingSlotSet given an int id.
+     *
+     * @param parkingId int id of the searched parking lot.
+     * @return a ParkingSlotSet object or null if not found.
+     */
+    private ParkingSlotSet findParkingById(int parkingId){
+        return parkings.get(parkingId);
+    }
+
+    /**
+     * Resolve a type name, the String constants of ParkingApi resolve by identity.
+     *
+     * @param type the name of a registered type.
+     * @return the type, never null.
+     * @throws UnknownParkingTypeException if no type is registered with that name.
+     */
+    private static SlotType findType(String type) throws UnknownParkingTypeException {
+        SlotType slotType = SlotType.of(type);
+        if(slotType == null){
+            throw NO_SUCH_TYPE;
         }
-        return parking;
+        return slotType;
     }
 
     /**
@@ -138,10 +1246,24 @@ public class ParkingApiImpl {
      * @throws BillingPolicyNotSetException rised when setBillingPolicy was not properly called.
      */
     public double checkOut(String parkingId, String slotId) throws UnknowParkingIdException, SlotNotFoundException, BillingPolicyNotSetException {
-        ParkingSlotSet parking = findParkingById(parkingId);
-        if(parking == null){
-            throw new UnknowParkingIdException("The parking your are trying to check out does not exists!");
-        }
+        ParkingSlotSet parking = findParkingToCheckOut(parkingId);
+        return parking.checkOut(slotId);
+    }
+
+    /**
+     * Checkout a car occuping slotId from the parking identified by parkingId.
+     * Use the billingPolicy associated with the parkingId. If billing policy
+     * was not previously set throws exception.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param slotId int id of the car slot.
+     * @return the price to pay.
+     * @throws UnknowParkingIdException might happen if the parkingId does not exists.
+     * @throws SlotNotFoundException might happen if the slot is not available for the current parkingSlot.
+     * @throws BillingPolicyNotSetException rised when setBillingPolicy was not properly called.
+     */
+    public double checkOut(int parkingId, int slotId) throws UnknowParkingIdException, SlotNotFoundException, BillingPolicyNotSetException {
+        ParkingSlotSet parking = findParkingToCheckOut(parkingId);
         return parking.checkOut(slotId);
     }
 
@@ -188,51 +1310,187 @@ public class ParkingApiImpl {
      * @return a vector with all ids.
      */
     public Vector<String> getAllSlotsIds(String parkingId) throws UnknowParkingIdException {
-        ParkingSlotSet parking = parkingStandard.get(parkingId);
-        //tries other type if null
+        ParkingSlotSet parking = findParkingById(parkingId);
         if(parking == null){
-            parking = parking20kw.get(parkingId);
+            throw NO_PARKING_TO_CHECK_OUT;
         }
-        if(parking == null){
-            parking = parking50kw.get(parkingId);
+        return parking.getAllSlotsIds();
+    }
+
+    /**
+     * @param parkingId int id of the parking lot.
+     * @return the number of occupied slots of the parking, O(1) and without locking.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public long getOccupiedSlots(int parkingId) throws UnknowParkingIdException {
+        return findExistingParking(parkingId).getOccupiedSlots();
+    }
+
+    /**
+     * @param parkingId int id of the parking lot.
+     * @return the number of available slots of the parking, O(1) and without locking.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public long getAvailableSlots(int parkingId) throws UnknowParkingIdException {
+        return findExistingParking(parkingId).getAvailableSlots();
+    }
+
+    /**
+     * @param type the name of a registered SlotType.
+     * @return the number of occupied slots of all the parkings of this type, O(1) and without locking.
+     * @throws UnknownParkingTypeException if no SlotType has that name.
+     */
+    public long getOccupiedSlotsForType(String type) throws UnknownParkingTypeException {
+        return findTypeOccupancy(type).occupied();
+    }
+
+    /**
+     * @param type the name of a registered SlotType.
+     * @return the number of available slots of all the parkings of this type, O(1) and without locking.
+     * @throws UnknownParkingTypeException if no SlotType has that name.
+     */
+    public long getAvailableSlotsForType(String type) throws UnknownParkingTypeException {
+        return findTypeOccupancy(type).available();
+    }
+
+    /**
+     * @param type a registered type.
+     * @return the occupancy of all the parkings of this type, O(1) and without locking.
+     * @throws UnknownParkingTypeException if the type is null.
+     */
+    public Occupancy getOccupancyForType(SlotType type) throws UnknownParkingTypeException {
+        if(type == null){
+            throw NO_SUCH_TYPE;
         }
-        if(parking == null){
-            throw new UnknowParkingIdException("The parking your are trying to check out does not exists!");
+        return typeCounter(type).snapshot();
+    }
+
+    /**
+     * Read the occupancy of every parking lot, with totals per type and overall.
+     *
+     * @return the snapshot.
+     */
+    public OccupancySnapshot getOccupancySnapshot(){
+        Map<String, Map<String, Occupancy>> parkingTypes = new LinkedHashMap<>();
+        int lastId = parkings.lastId();
+        for(int parkingId = 1; parkingId <= lastId; parkingId++){
+            ParkingSlotSet parking = parkings.get(parkingId);
+            if(parking != null){
+                parkingTypes.put(String.valueOf(parkingId), parking.getOccupancyByType());
+            }
         }
-        return parking.getAllSlotsIds();
+        return new OccupancySnapshot(parkingTypes);
     }
 
     /**
-     * Retrieve String vector contianing all parking ids.
-     * @return vector containing String ids.
+     * Read the occupancy of a single parking lot, per type of slots and in total.
+     *
+     * @param parkingId int id of the parking lot.
+     * @return the snapshot, its total is the occupancy of the whole lot.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
      */
-    public Vector<String> getAllParkingIds(){
-        Vector<String> parkingIdList = new Vector<>();
-        try {
-            parkingIdList.addAll(getAllIdsForType(PARKING_STANDARD_TYPE));
-            parkingIdList.addAll(getAllIdsForType(PARKING_20kW_TYPE));
-            parkingIdList.addAll(getAllIdsForType(PARKING_50kW_TYPE));
-        } catch (UnknownParkingTypeException e) {
-            e.printStackTrace();
+    public OccupancySnapshot getOccupancySnapshot(int parkingId) throws UnknowParkingIdException {
+        Map<String, Map<String, Occupancy>> parkingTypes = new LinkedHashMap<>();
+        parkingTypes.put(String.valueOf(parkingId), findExistingParking(parkingId).getOccupancyByType());
+        return new OccupancySnapshot(parkingTypes);
+    }
+
+    /**
+     * Read the revenue of every parking lot, from the counters of the types.
+     *
+     * @param period the time range to read.
+     * @return the sessions, minutes and cents checked out over the period.
+     */
+    public Revenue getRevenue(RevenuePeriod period){
+        long now = clock.currentTimeMillis();
+        Revenue revenue = Revenue.EMPTY;
+        for(RevenueCounter counter : typeRevenue){
+            if(counter != null){
+                revenue = revenue.plus(counter.read(period, now));
+            }
         }
-        return parkingIdList;
+        return revenue;
+    }
+
+    /**
+     * Read the revenue of a single parking lot, all types of slots together.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param period the time range to read.
+     * @return the sessions, minutes and cents checked out of the lot over the period.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     */
+    public Revenue getRevenue(int parkingId, RevenuePeriod period) throws UnknowParkingIdException {
+        return findExistingParking(parkingId).getRevenue(period);
+    }
+
+    /**
+     * Read the revenue of the slots of one type of a single parking lot.
+     *
+     * @param parkingId int id of the parking lot.
+     * @param type the type of the slots.
+     * @param period the time range to read.
+     * @return the sessions, minutes and cents checked out over the period, empty if the lot has no slot of the type.
+     * @throws UnknowParkingIdException if the id is not a registered parking lot.
+     * @throws UnknownParkingTypeException if the type is null.
+     */
+    public Revenue getRevenue(int parkingId, SlotType type, RevenuePeriod period) throws UnknowParkingIdException, UnknownParkingTypeException {
+        if(type == null){
+            throw NO_SUCH_TYPE;
+        }
+        return findExistingParking(parkingId).getRevenue(type, period);
+    }
+
+    /**
+     * Read the revenue of every parking lot of a type.
+     *
+     * @param type the type of the slots.
+     * @param period the time range to read.
+     * @return the sessions, minutes and cents checked out over the period, empty if no parking of this type exists.
+     * @throws UnknownParkingTypeException if the type is null.
+     */
+    public Revenue getRevenueForType(SlotType type, RevenuePeriod period) throws UnknownParkingTypeException {
+        if(type == null){
+            throw NO_SUCH_TYPE;
+        }
+        return typeRevenue(type).read(period, clock.currentTimeMillis());
+    }
+
+    /**
+     * Bill stays in parallel under a policy, see BulkBilling.
+     *
+     * @param policy the price policy, called concurrently.
+     * @param parkingIds the lot of each stay, null to bill the stays without their lot.
+     * @param minutes the minutes of each stay.
+     * @return the total and the sums of each lot.
+     */
+    public BillingReport rebill(BillingPolicy policy, int[] parkingIds, long[] minutes){
+        return BulkBilling.bill(policy, parkingIds, minutes);
+    }
+
+    private ParkingSlotSet findExistingParking(int parkingId) throws UnknowParkingIdException {
+        ParkingSlotSet parking = findParkingById(parkingId);
+        if(parking == null){
+            throw NO_SUCH_PARKING;
+        }
+        return parking;
+    }
+
+    private OccupancyCounter findTypeOccupancy(String type) throws UnknownParkingTypeException {
+        return typeCounter(findType(type));
     }
 
     /**
-     * Retrieve String vector contianing all parking ids of given type.
-     * @param type a string that is one of the accepted types.
+     * Retrieve String vector contianing all parking ids.
      * @return vector containing String ids.
      */
-    private Vector<String> getAllIdsForType(String type) throws UnknownParkingTypeException {
+    public Vector<String> getAllParkingIds(){
         Vector<String> parkingIdList = new Vector<>();
-        if (type.equals(PARKING_STANDARD_TYPE)) {
-            parkingStandard.forEach((key, value) -> parkingIdList.add(key));
-        } else if (type.equals(PARKING_20kW_TYPE)) {
-            parking20kw.forEach((key, value) -> parkingIdList.add(key));
-        } else if (type.equals(PARKING_50kW_TYPE)) {
-            parking50kw.forEach((key, value) -> parkingIdList.add(key));
-        } else {
-            throw new UnknownParkingTypeException("Parking type required does not exists!");
+        int lastId = parkings.lastId();
+        for(int parkingId = 1; parkingId <= lastId; parkingId++){
+            if(parkings.get(parkingId) != null){
+                parkingIdList.add(String.valueOf(parkingId));
+            }
         }
         return parkingIdList;
     }
@@ -0,0 +1,55 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * Time source used to measure how long a car stays on a slot.
+ *
+ * Times are plain long milliseconds so reading the clock allocates nothing.
+ * Only differences between two readings matter, the origin is up to the clock.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+@FunctionalInterface
+public interface ParkingClock {
+
+    /**
+     * Wall clock, System.currentTimeMillis, default clock of the API.
+     */
+    ParkingClock SYSTEM = System::currentTimeMillis;
+
+    /**
+     * Monotonic clock based on System.nanoTime, not affected by wall clock adjustments
+     * (NTP, daylight saving) but its origin is arbitrary and changes on each JVM start.
+     */
+    ParkingClock MONOTONIC = () -> System.nanoTime() / 1_000_000L;
+
+    /**
+     * @return the current time in milliseconds.
+     */
+    long currentTimeMillis();
+}
@@ -0,0 +1,126 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * Events read from a ParkingEventSubscription, kept in preallocated arrays so reading
+ * events allocates nothing. The same batch is refilled by each poll.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class ParkingEventBatch {
+    final int[] types;
+    final int[] parkingIds;
+    final int[] slotIds;
+    final int[] slotTypes;
+    final long[] times;
+
+    int size;
+
+    long missed;
+
+    /**
+     * @param capacity the most events read at once.
+     */
+    public ParkingEventBatch(int capacity) {
+        if(capacity < 1){
+            throw new IllegalArgumentException("Need room for at least 1 event!");
+        }
+        types = new int[capacity];
+        parkingIds = new int[capacity];
+        slotIds = new int[capacity];
+        slotTypes = new int[capacity];
+        times = new long[capacity];
+    }
+
+    /**
+     * @return the number of events in the batch.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the most events the batch can hold.
+     */
+    public int capacity() {
+        return types.length;
+    }
+
+    /**
+     * @return the number of events published before the first one of this batch that were
+     * overwritten before the subscriber read them, 0 when the subscriber kept up.
+     */
+    public long missed() {
+        return missed;
+    }
+
+    /**
+     * @param i index of the event, from 0 to size() - 1.
+     * @return what happened.
+     */
+    public ParkingEventType type(int i) {
+        return ParkingEventType.of(types[i]);
+    }
+
+    /**
+     * @param i index of the event.
+     * @return the id of the parking lot.
+     */
+    public int parkingId(int i) {
+        return parkingIds[i];
+    }
+
+    /**
+     * @param i index of the event.
+     * @return the slot of a CHECK_IN or CHECK_OUT, the number of slots of a CREATED lot, 0 otherwise.
+     */
+    public int slotId(int i) {
+        return slotIds[i];
+    }
+
+    /**
+     * @param i index of the event.
+     * @return the type of the slot, or of the slots that got full or not full, the first type of a CREATED lot.
+     */
+    public SlotType slotType(int i) {
+        return SlotType.of(slotTypes[i]);
+    }
+
+    /**
+     * @param i index of the event.
+     * @return the time of the event in milliseconds of the clock of the ParkingApi.
+     */
+    public long time(int i) {
+        return times[i];
+    }
+
+    void clear() {
+        size = 0;
+        missed = 0;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Preallocated multi-producer ring of parking events read by any number of subscriptions.
+ *
+ * A publisher claims a sequence number with a single getAndIncrement, marks the entry
+ * of the sequence as being written by it with a compareAndSet, writes its fields and
+ * then stores the sequence in published[entry]. Publishing never waits: a subscriber
+ * that falls more than capacity events behind sees its next events overwritten, it
+ * skips them and counts them as missed. A subscriber reads published[entry], the
+ * fields, then published[entry] again: the fields are valid if both reads return the
+ * expected sequence.
+ *
+ * A publisher delayed for a whole lap of the ring can find its entry taken: if another
+ * publisher is writing it or a later sequence is already published there, the event
+ * is dropped and its sequence stored in skipped[entry], so a subscriber waiting for it
+ * steps over it instead of waiting for the ring to come round. Two publishers never
+ * write the same entry at once and a newer event is never overwritten by an older
+ * one, the subscribers count a dropped event as missed.
+ *
+ * Nothing is published while there is no subscription.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class ParkingEventBus {
+    /**
+     * Value of published[entry] before its first event, while sequence s is written it
+     * holds writing(s), below UNPUBLISHED.
+     */
+    static final long UNPUBLISHED = -1;
+
+    final int capacity;
+    final int mask;
+
+    /**
+     * Next sequence number to publish.
+     */
+    final AtomicLong cursor = new AtomicLong();
+
+    final AtomicLongArray published;
+    /**
+     * Highest sequence dropped by its publisher at each entry, UNPUBLISHED for none.
+     */
+    final AtomicLongArray skipped;
+    final AtomicIntegerArray types;
+    final AtomicIntegerArray parkingIds;
+    final AtomicIntegerArray slotIds;
+    final AtomicIntegerArray slotTypes;
+    final AtomicLongArray times;
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    /**
+     * @param capacity the number of events kept for slow subscribers, rounded up to a power of 2.
+     */
+    ParkingEventBus(int capacity){
+        if(capacity < 1 || capacity > 1 << 30){
+            throw new IllegalArgumentException("Cannot keep "+capacity+" events!");
+        }
+        this.capacity = Integer.highestOneBit(capacity * 2 - 1);
+        this.mask = this.capacity - 1;
+        this.published = new AtomicLongArray(this.capacity);
+        this.skipped = new AtomicLongArray(this.capacity);
+        for(int i = 0; i < this.capacity; i++){
+            published.lazySet(i, UNPUBLISHED);
+            skipped.lazySet(i, UNPUBLISHED);
+        }
+        this.types = new AtomicIntegerArray(this.capacity);
+        this.parkingIds = new AtomicIntegerArray(this.capacity);
+        this.slotIds = new AtomicIntegerArray(this.capacity);
+        this.slotTypes = new AtomicIntegerArray(this.capacity);
+        this.times = new AtomicLongArray(this.capacity);
+    }
+
+    /**
+     * @return true while at least one subscription is open.
+     */
+    boolean isActive(){
+        return subscribers.get() > 0;
+    }
+
+    /**
+     * Publish an event if anyone listens, never blocks and allocates nothing.
+     *
+     * @param type what happened.
+     * @param parkingId the id of the lot.
+     * @param slotId the slot, or the number of slots of a CREATED lot, 0 for none.
+     * @param slotType the ordinal of the SlotType of the slot or of the slots that got full or not full.
+     * @param time time of the event in milliseconds of the clock.
+     */
+    void publish(ParkingEventType type, int parkingId, int slotId, int slotType, long time){
+        if(subscribers.get() == 0){
+            return;
+        }
+        write(cursor.getAndIncrement(), type, parkingId, slotId, slotType, time);
+    }
+
+    /**
+     * Write the event of a claimed sequence number, unless its entry is taken.
+     */
+    void write(long sequence, ParkingEventType type, int parkingId, int slotId, int slotType, long time){
+        int entry = (int) sequence & mask;
+        long current;
+        do{
+            current = published.get(entry);
+            if(current < UNPUBLISHED || current >= sequence){
+                //written by an earlier publisher, or taken by a later one
+                skip(entry, sequence);
+                return;
+            }
+        }while(!published.compareAndSet(entry, current, writing(sequence)));
+        types.lazySet(entry, type.ordinal());
+        parkingIds.lazySet(entry, parkingId);
+        slotIds.lazySet(entry, slotId);
+        slotTypes.lazySet(entry, slotType);
+        times.lazySet(entry, time);
+        published.lazySet(entry, sequence);
+    }
+
+    /**
+     * Record a dropped sequence, unless a later one was dropped at the same entry.
+     */
+    private void skip(int entry, long sequence){
+        long current;
+        do{
+            current = skipped.get(entry);
+        }while(current < sequence && !skipped.compareAndSet(entry, current, sequence));
+    }
+
+    /**
+     * @return the value of published[entry] while sequence is written.
+     */
+    static long writing(long sequence){
+        return UNPUBLISHED - 1 - sequence;
+    }
+
+    /**
+     * @return a new subscription receiving the events published from now on.
+     */
+    ParkingEventSubscription subscribe(){
+        subscribers.incrementAndGet();
+        return new ParkingEventSubscription(this, cursor.get());
+    }
+
+    void unsubscribe(){
+        subscribers.decrementAndGet();
+    }
+}
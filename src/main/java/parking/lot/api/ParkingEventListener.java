@@ -0,0 +1,44 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * Receives the events of a ParkingApi in batches, on a thread of its own.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+@FunctionalInterface
+public interface ParkingEventListener {
+    /**
+     * Called with the events published since the previous batch, in publication order.
+     * The batch is reused for the next call, copy what must be kept. An exception is
+     * counted by ParkingEventSubscription.getListenerFailures and the next batch follows.
+     *
+     * @param batch the events, at least one, or none and a number of missed events.
+     */
+    void onEvents(ParkingEventBatch batch);
+}
@@ -0,0 +1,217 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The events of a ParkingApi read by one consumer at its own pace, see ParkingApi.subscribe.
+ *
+ * A subscription is read by a single thread with poll or take, or by the thread started
+ * by ParkingApi.subscribe(ParkingEventListener). Publishers never wait for it: when it
+ * falls too far behind the oldest events are overwritten and counted as missed, a
+ * display can then read getOccupancySnapshot again.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class ParkingEventSubscription implements AutoCloseable {
+    /**
+     * Longest sleep of take between two polls.
+     */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ParkingEventBus bus;
+
+    /**
+     * Sequence number of the next event to read.
+     */
+    private long next;
+
+    private volatile boolean closed;
+
+    /**
+     * Thread calling a listener, null for a subscription read by the caller.
+     */
+    private volatile Thread dispatcher;
+
+    /**
+     * Exceptions thrown by the listener, only written by the dispatcher thread.
+     */
+    private volatile long listenerFailures;
+    private volatile RuntimeException listenerFailure;
+
+    ParkingEventSubscription(ParkingEventBus bus, long next) {
+        this.bus = bus;
+        this.next = next;
+    }
+
+    /**
+     * Read the events published since the last poll, without waiting.
+     *
+     * @param batch receives at most batch.capacity() events, in publication order.
+     * @return the number of events read.
+     */
+    public int poll(ParkingEventBatch batch) {
+        batch.clear();
+        ParkingEventBus bus = this.bus;
+        int capacity = batch.capacity();
+        while(batch.size < capacity && next < bus.cursor.get()){
+            int entry = (int) next & bus.mask;
+            long sequence = bus.published.get(entry);
+            if(sequence == next){
+                int i = batch.size;
+                batch.types[i] = bus.types.get(entry);
+                batch.parkingIds[i] = bus.parkingIds.get(entry);
+                batch.slotIds[i] = bus.slotIds.get(entry);
+                batch.slotTypes[i] = bus.slotTypes.get(entry);
+                batch.times[i] = bus.times.get(entry);
+                if(bus.published.get(entry) == next){
+                    batch.size++;
+                    next++;
+                    continue;
+                }
+            }
+            //overwritten, dropped by its publisher, or not published yet by a publisher still writing it
+            long oldest = bus.cursor.get() - bus.capacity;
+            long resume = next < oldest ? oldest : (bus.skipped.get(entry) == next ? next + 1 : next);
+            if(resume == next){
+                break;
+            }
+            if(batch.size == 0){
+                batch.missed += resume - next;
+                next = resume;
+            }else{
+                //report the gap with the next batch
+                break;
+            }
+        }
+        return batch.size;
+    }
+
+    /**
+     * Same as poll, waiting for at least one event.
+     *
+     * @param batch receives at most batch.capacity() events, in publication order.
+     * @param timeout longest wait.
+     * @param unit the unit of timeout.
+     * @return the number of events read, 0 if none was published in time.
+     * @throws InterruptedException if the thread is interrupted while waiting.
+     */
+    public int take(ParkingEventBatch batch, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long park = 1000;
+        for(;;){
+            int count = poll(batch);
+            if(count > 0 || batch.missed() > 0 || closed){
+                return count;
+            }
+            long left = deadline - System.nanoTime();
+            if(left <= 0){
+                return 0;
+            }
+            LockSupport.parkNanos(Math.min(park, left));
+            if(Thread.interrupted()){
+                throw new InterruptedException();
+            }
+            park = Math.min(park * 2, MAX_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Call a listener from a new daemon thread until the subscription is closed.
+     *
+     * @param listener receives the events.
+     * @param batchSize the most events per call.
+     */
+    void dispatchTo(ParkingEventListener listener, int batchSize) {
+        ParkingEventBatch batch = new ParkingEventBatch(batchSize);
+        Thread thread = new Thread(() -> {
+            while(!closed){
+                try{
+                    if(take(batch, 100, TimeUnit.MILLISECONDS) > 0 || batch.missed() > 0){
+                        listener.onEvents(batch);
+                    }
+                }catch(InterruptedException e){
+                    return;
+                }catch(RuntimeException e){
+                    //a failing listener keeps its subscription
+                    if(listenerFailure == null){
+                        listenerFailure = e;
+                    }
+                    listenerFailures++;
+                }
+            }
+        }, "parking-events");
+        thread.setDaemon(true);
+        dispatcher = thread;
+        thread.start();
+    }
+
+    /**
+     * @return the exceptions thrown by the listener of ParkingApi.subscribe(ParkingEventListener),
+     * 0 for a subscription read by the caller.
+     */
+    public long getListenerFailures() {
+        return listenerFailures;
+    }
+
+    /**
+     * @return the first exception thrown by the listener, null if there is none.
+     */
+    public RuntimeException getListenerFailure() {
+        return listenerFailure;
+    }
+
+    /**
+     * @return true once close was called.
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stop receiving events, stops the thread calling the listener if any.
+     */
+    @Override
+    public void close() {
+        if(closed){
+            return;
+        }
+        synchronized(this){
+            if(closed){
+                return;
+            }
+            closed = true;
+        }
+        bus.unsubscribe();
+        Thread thread = dispatcher;
+        if(thread != null && thread != Thread.currentThread()){
+            thread.interrupt();
+        }
+    }
+}
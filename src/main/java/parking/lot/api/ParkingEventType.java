@@ -0,0 +1,61 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * Kinds of events published to the subscribers of a ParkingApi, see ParkingApi.subscribe.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public enum ParkingEventType {
+    /**
+     * A parking lot was created, the slot id is its number of slots.
+     */
+    CREATED,
+    /**
+     * A car was checked in on the slot.
+     */
+    CHECK_IN,
+    /**
+     * A car left the slot.
+     */
+    CHECK_OUT,
+    /**
+     * The last free slot of a type of the lot was taken.
+     */
+    FULL,
+    /**
+     * A slot of a type of a full lot got free.
+     */
+    NOT_FULL;
+
+    private static final ParkingEventType[] VALUES = values();
+
+    static ParkingEventType of(int ordinal){
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,824 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Write-ahead journal of the lots, check-ins and check-outs of a ParkingApi, so its
+ * state survives a crash or a restart.
+ *
+ * Events are appended as fixed size records to memory-mapped segment files, a writer
+ * only claims its records with one atomic add and copies them in the mapping, it never
+ * takes a lock nor calls the file system. A background thread forces the mapped pages
+ * to the disk every fsyncBatch records or fsyncIntervalMillis, whichever comes first,
+ * so one fsync covers a whole group of operations. With syncCommit each operation
+ * waits for the fsync covering its record before returning, the waiting operations
+ * wake the background thread and share the next fsync, otherwise operations
+ * return right away and at most the last group is lost by a power failure, a crash of
+ * the process alone loses nothing since the mapped pages belong to the kernel.
+ *
+ * When a segment is full a new one is started and the background thread writes a
+ * compact snapshot of the lots and of the occupied slots with their start times,
+ * then deletes the segments it covers. Creating the API with a journal replays the
+ * last snapshot and the following segments, so every lot keeps its id, its slots and
+ * the start time of each parked car:
+ * <code>
+ *     ParkingJournal journal = ParkingJournal.builder(Paths.get("/var/lib/parking"))
+ *             .fsyncBatch(256)
+ *             .fsyncIntervalMillis(5)
+ *             .build();
+ *     ParkingApi api = new ParkingApi(ParkingClock.SYSTEM, journal);
+ * </code>
+ *
+ * Start times are replayed as read from the clock, use a wall clock such as
+ * ParkingClock.SYSTEM for a journal kept across restarts. Billing policies are code,
+ * they are not journaled and must be set again after a restart.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class ParkingJournal implements Closeable {
+    static final int NEW_PARKING = 1;
+    static final int CHECK_IN = 2;
+    static final int CHECK_OUT = 3;
+
+    /**
+     * Largest number of records appended at once, batches are journaled in chunks of this size.
+     */
+    static final int MAX_BATCH_RECORDS = 1024;
+
+    /**
+     * Smallest segment, room for a few full batches.
+     */
+    static final int MIN_SEGMENT_SIZE = 4 * MAX_BATCH_RECORDS * JournalSegment.RECORD_SIZE;
+
+    /**
+     * Longest close waits for the operations that claimed a record to complete it.
+     */
+    static final long CLOSE_DRAIN_MILLIS = 1000;
+
+    private static final int SNAPSHOT_MAGIC = 0x50524b4a;
+    private static final int SNAPSHOT_VERSION = 3;
+    private static final String SNAPSHOT = "snapshot.bin";
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String TYPES = "types.bin";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int fsyncBatchBytes;
+    private final long fsyncIntervalNanos;
+    private final boolean syncCommit;
+
+    /**
+     * types.get(code) is the SlotType with that code in the records and snapshots, the
+     * names are appended to the types file when a type is first journaled, guarded by itself.
+     * SlotType ordinals depend on the registration order of a run, codes do not.
+     */
+    private final List<SlotType> types = new ArrayList<>();
+
+    /**
+     * Segment receiving the new records.
+     */
+    private volatile JournalSegment current;
+
+    /**
+     * Full segments not yet covered by a snapshot, oldest first, guarded by this.
+     */
+    private final ArrayDeque<JournalSegment> sealed = new ArrayDeque<>();
+
+    /**
+     * Index of the first segment to create, known once recover ran.
+     */
+    private long nextSegment = -1;
+
+    private ParkingRegistry registry;
+    private Thread flusher;
+    private volatile boolean closed;
+
+    /**
+     * First error of the background thread, null while there is none.
+     */
+    private volatile IOException failure;
+
+    /**
+     * Set once forcing the records to the disk failed, every later sync fails.
+     */
+    private volatile boolean flushFailed;
+
+    /**
+     * Number of flushes done, a flush started after a record was written makes it durable.
+     */
+    private volatile long flushes;
+    private final Object flushed = new Object();
+
+    private ParkingJournal(Builder builder) throws IOException {
+        this.directory = builder.directory;
+        this.segmentSize = builder.segmentSize;
+        this.fsyncBatchBytes = builder.fsyncBatch * JournalSegment.RECORD_SIZE;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(builder.fsyncIntervalMillis);
+        this.syncCommit = builder.syncCommit;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Start the configuration of a journal.
+     *
+     * @param directory the directory holding the journal files, created if needed.
+     * @return a builder with the default settings.
+     */
+    public static Builder builder(Path directory){
+        return new Builder(directory);
+    }
+
+    /**
+     * @return the directory holding the journal files.
+     */
+    public Path getDirectory(){
+        return directory;
+    }
+
+    /**
+     * Journal the creation of a lot, called while the registry assigns its id so the
+     * records precede any check-in on the lot. There is one record per type of slots,
+     * the low 32 bits of its time field hold the index of the type in the lot and the
+     * high ones the SlotStorage ordinal of the lot.
+     *
+     * @param parkingId the id of the new lot.
+     * @param parking the new lot.
+     */
+    void logNewParking(int parkingId, ParkingSlotSet parking){
+        SlotPool[] pools = parking.pools();
+        for(int index = 0; index < pools.length; index++){
+            int typeCode = typeCode(pools[index].type);
+            for(;;){
+                JournalSegment segment = current;
+                long offset = segment.claim(JournalSegment.RECORD_SIZE);
+                if(offset >= 0){
+                    segment.write(offset, NEW_PARKING, parkingId, pools[index].size,
+                            parking.getStripes(), typeCode, (long) parking.getSlotStorage().ordinal() << 32 | index);
+                    segment.complete(JournalSegment.RECORD_SIZE);
+                    break;
+                }
+                rotate(segment);
+            }
+        }
+        sync();
+    }
+
+    /**
+     * Append one check-in or check-out, the caller must own the slot until it called complete.
+     *
+     * @param kind CHECK_IN or CHECK_OUT.
+     * @param parkingId the id of the lot.
+     * @param slotId the id of the slot.
+     * @param time the time read from the clock.
+     * @return the segment to pass to complete once the slot is updated.
+     */
+    JournalSegment log(int kind, int parkingId, int slotId, long time){
+        for(;;){
+            JournalSegment segment = current;
+            long offset = segment.claim(JournalSegment.RECORD_SIZE);
+            if(offset >= 0){
+                segment.write(offset, kind, parkingId, slotId, 0, 0, time);
+                wakeFlusher(offset, JournalSegment.RECORD_SIZE);
+                return segment;
+            }
+            rotate(segment);
+        }
+    }
+
+    /**
+     * Append several check-ins or check-outs with a single claim.
+     *
+     * @param kind CHECK_IN or CHECK_OUT.
+     * @param parkingId the id of the lot.
+     * @param slotIds the ids of the slots.
+     * @param from index of the first id to journal.
+     * @param count number of ids to journal, at most MAX_BATCH_RECORDS.
+     * @param time the time read from the clock.
+     * @return the segment to pass to complete once the slots are updated.
+     */
+    JournalSegment log(int kind, int parkingId, int[] slotIds, int from, int count, long time){
+        int bytes = count * JournalSegment.RECORD_SIZE;
+        for(;;){
+            JournalSegment segment = current;
+            long offset = segment.claim(bytes);
+            if(offset >= 0){
+                for(int i = 0; i < count; i++){
+                    segment.write(offset + (long) i * JournalSegment.RECORD_SIZE, kind, parkingId, slotIds[from + i], 0, 0, time);
+                }
+                wakeFlusher(offset, bytes);
+                return segment;
+            }
+            rotate(segment);
+        }
+    }
+
+    /**
+     * Tell the journal the slots of logged records are updated, a snapshot waits for
+     * the complete records of a full segment before reading the lots.
+     *
+     * @param segment the segment returned by log.
+     * @param records the number of records logged.
+     */
+    void complete(JournalSegment segment, int records){
+        segment.complete(records * JournalSegment.RECORD_SIZE);
+    }
+
+    /**
+     * With syncCommit, wait until the records completed by the calling thread are on the disk.
+     *
+     * @throws UncheckedIOException if the records could not be forced to the disk, the
+     * operation is applied but may be lost by a power failure.
+     */
+    void sync(){
+        if(!syncCommit){
+            return;
+        }
+        //the flush in progress may have started before our records were written
+        long target = flushes + 2;
+        //group commit: the flusher runs back to back while writers wait, each flush
+        //covering every record completed while the previous one was running
+        LockSupport.unpark(flusher);
+        boolean interrupted = false;
+        synchronized(flushed){
+            while(flushes < target && !closed && !flushFailed){
+                try{
+                    flushed.wait();
+                }catch(InterruptedException e){
+                    interrupted = true;
+                }
+            }
+        }
+        if(interrupted){
+            Thread.currentThread().interrupt();
+        }
+        if(flushFailed){
+            throw new UncheckedIOException("The journal in "+directory+" cannot be written", failure);
+        }
+    }
+
+    /**
+     * @return the first error of the background thread, null if there is none. After an
+     * error forcing the records to the disk every operation waiting for syncCommit fails,
+     * an error writing a snapshot is retried with the next full segment.
+     */
+    public IOException getFailure(){
+        return failure;
+    }
+
+    /**
+     * Read the last snapshot and replay the following segments.
+     *
+     * @return the lots in id order with their occupied slots.
+     * @throws IOException if the journal cannot be read or is corrupted.
+     */
+    synchronized List<RecoveredParking> recover() throws IOException {
+        if(nextSegment >= 0){
+            throw new IllegalStateException("The journal in "+directory+" is already used by a ParkingApi!");
+        }
+        readTypes();
+        Map<Integer, RecoveredParking> parkings = new TreeMap<>();
+        long firstSegment = readSnapshot(parkings);
+        List<Long> segments = segmentIndexes();
+        long last = firstSegment - 1;
+        for(long index : segments){
+            if(index >= firstSegment){
+                JournalSegment.replay(segmentPath(index), (kind, parkingId, slotId, stripes, typeCode, time) ->
+                        apply(parkings, kind, parkingId, slotId, stripes,
+                                kind == NEW_PARKING ? type(typeCode) : null, time));
+            }
+            last = Math.max(last, index);
+        }
+        nextSegment = last + 1;
+        return new ArrayList<>(parkings.values());
+    }
+
+    /**
+     * Start journaling the lots of the registry: open a new segment, write a snapshot
+     * of the recovered state and delete the older files.
+     *
+     * @param registry the lots of the ParkingApi, already recovered.
+     * @throws IOException if the files cannot be written.
+     */
+    synchronized void start(ParkingRegistry registry) throws IOException {
+        if(nextSegment < 0 || this.registry != null){
+            throw new IllegalStateException("The journal must be recovered before it is started!");
+        }
+        this.registry = registry;
+        current = JournalSegment.create(nextSegment, segmentPath(nextSegment), segmentSize);
+        writeSnapshot(nextSegment);
+        deleteSegmentsBefore(nextSegment);
+        flusher = new Thread(this::flushLoop, "parking-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Stop accepting records, flush the pending ones, compact the full segments and stop
+     * the background thread. Call it once the ParkingApi is no longer used: an operation
+     * journaled after close fails with an IllegalStateException, one that claimed its
+     * record before is waited for at most CLOSE_DRAIN_MILLIS.
+     *
+     * @throws IOException if the last snapshot cannot be written.
+     */
+    @Override
+    public void close() throws IOException {
+        Thread thread;
+        JournalSegment last;
+        synchronized(this){
+            if(closed || flusher == null){
+                closed = true;
+                return;
+            }
+            closed = true;
+            thread = flusher;
+            //every later claim fails and rotate rejects it
+            last = current;
+            last.seal();
+        }
+        LockSupport.unpark(thread);
+        try{
+            thread.join();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_DRAIN_MILLIS);
+        while(!last.isDrained() && System.nanoTime() - deadline < 0){
+            LockSupport.parkNanos(this, TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        flush();
+        compact();
+        last.close();
+    }
+
+    private void wakeFlusher(long offset, int bytes){
+        if((offset + bytes) / fsyncBatchBytes != offset / fsyncBatchBytes){
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    /**
+     * Start a new segment once the current one is full, the other writers wait for it.
+     */
+    private synchronized void rotate(JournalSegment full){
+        if(closed){
+            throw new IllegalStateException("The journal in "+directory+" is closed!");
+        }
+        if(current != full){
+            return;
+        }
+        full.seal();
+        try{
+            current = JournalSegment.create(full.index + 1, segmentPath(full.index + 1), segmentSize);
+        }catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+        sealed.addLast(full);
+        LockSupport.unpark(flusher);
+    }
+
+    private void flushLoop(){
+        while(!closed){
+            LockSupport.parkNanos(this, fsyncIntervalNanos);
+            flush();
+            try{
+                compact();
+            }catch(IOException e){
+                failed(e);
+            }catch(RuntimeException e){
+                failed(new IOException(e));
+            }
+        }
+    }
+
+    /**
+     * Force the segments holding new complete records, then release the waiting writers.
+     */
+    private void flush(){
+        JournalSegment[] segments;
+        synchronized(this){
+            segments = sealed.toArray(new JournalSegment[sealed.size() + 1]);
+            segments[segments.length - 1] = current;
+        }
+        try{
+            for(JournalSegment segment : segments){
+                long completed = segment.completed();
+                if(completed != segment.forcedAt){
+                    segment.force();
+                    segment.forcedAt = completed;
+                }
+            }
+        }catch(RuntimeException e){
+            failed(e instanceof UncheckedIOException ? ((UncheckedIOException) e).getCause() : new IOException(e));
+            flushFailed = true;
+        }
+        synchronized(flushed){
+            flushes++;
+            flushed.notifyAll();
+        }
+    }
+
+    /**
+     * Keep the first error of the background thread.
+     */
+    private synchronized void failed(IOException e){
+        if(failure == null){
+            failure = e;
+        }
+    }
+
+    /**
+     * Replace the full segments with a snapshot once all their records are complete,
+     * when a writer is still between its claim and its complete the segments are left
+     * for the next round.
+     */
+    private void compact() throws IOException {
+        JournalSegment[] full;
+        synchronized(this){
+            if(sealed.isEmpty()){
+                return;
+            }
+            full = sealed.toArray(new JournalSegment[sealed.size()]);
+        }
+        for(JournalSegment segment : full){
+            if(!segment.isDrained()){
+                return;
+            }
+        }
+        for(JournalSegment segment : full){
+            segment.force();
+        }
+        //every operation journaled in the full segments is visible in the lots now,
+        //the later ones are replayed from the next segment on top of the snapshot
+        long firstSegment = full[full.length - 1].index + 1;
+        writeSnapshot(firstSegment);
+        synchronized(this){
+            for(JournalSegment segment : full){
+                sealed.remove(segment);
+            }
+        }
+        for(JournalSegment segment : full){
+            segment.close();
+        }
+        deleteSegmentsBefore(firstSegment);
+    }
+
+    private void writeSnapshot(long firstSegment) throws IOException {
+        Path tmp = directory.resolve(SNAPSHOT + ".tmp");
+        try(FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(firstSegment);
+            int lastId = registry.lastRegisteredId();
+            out.writeInt(lastId);
+            for(int parkingId = 1; parkingId <= lastId; parkingId++){
+                ParkingSlotSet parking = registry.get(parkingId);
+                if(parking == null){
+                    out.writeInt(0);
+                    continue;
+                }
+                out.writeInt(parkingId);
+                out.writeInt(parking.getStripes());
+                out.writeInt(parking.getSlotStorage().ordinal());
+                SlotPool[] pools = parking.pools();
+                out.writeInt(pools.length);
+                for(SlotPool pool : pools){
+                    out.writeInt(typeCode(pool.type));
+                    out.writeInt(pool.size);
+                }
+                for(int slotId = 1; slotId <= parking.getNumberOfSlots(); slotId++){
+                    if(parking.isOccupied(slotId)){
+                        out.writeInt(slotId);
+                        out.writeLong(parking.getStartTime(slotId));
+                    }
+                }
+                out.writeInt(0);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, directory.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the index of the first segment to replay, 0 without snapshot.
+     */
+    private long readSnapshot(Map<Integer, RecoveredParking> parkings) throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT);
+        if(!Files.exists(snapshot)){
+            return 0;
+        }
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16))){
+            int version = in.readInt() == SNAPSHOT_MAGIC ? in.readInt() : -1;
+            if(version < 1 || version > SNAPSHOT_VERSION){
+                throw new IOException("Unknown snapshot format in "+snapshot);
+            }
+            long firstSegment = in.readLong();
+            int lastId = in.readInt();
+            for(int i = 1; i <= lastId; i++){
+                int parkingId = in.readInt();
+                if(parkingId == 0){
+                    continue;
+                }
+                RecoveredParking parking;
+                if(version == 1){
+                    //single type lots: type, number of slots, stripes
+                    SlotType type = type(in.readInt());
+                    int numberOfSlots = in.readInt();
+                    parking = new RecoveredParking(parkingId, in.readInt(), SlotStorage.OBJECTS);
+                    parking.addPool(type, numberOfSlots);
+                }else{
+                    int stripes = in.readInt();
+                    parking = new RecoveredParking(parkingId, stripes, version == 2 ? SlotStorage.OBJECTS : storage(in.readInt()));
+                    for(int pools = in.readInt(); pools > 0; pools--){
+                        parking.addPool(type(in.readInt()), in.readInt());
+                    }
+                }
+                parkings.put(parkingId, parking);
+                for(int slotId = in.readInt(); slotId != 0; slotId = in.readInt()){
+                    parking.checkIn(slotId, in.readLong());
+                }
+            }
+            return firstSegment;
+        }
+    }
+
+    /**
+     * Replay one record, applying a record twice or over a snapshot already holding it
+     * gives the same state since each record sets the state of its slot.
+     */
+    private static void apply(Map<Integer, RecoveredParking> parkings, int kind, int parkingId, int slotId,
+                              int stripes, SlotType type, long time) throws IOException {
+        if(kind == NEW_PARKING){
+            RecoveredParking parking = parkings.get(parkingId);
+            int index = (int) time;
+            if(parking == null && index == 0){
+                parking = new RecoveredParking(parkingId, stripes, storage((int) (time >>> 32)));
+                parkings.put(parkingId, parking);
+            }
+            if(parking != null && parking.types.size() == index){
+                parking.addPool(type, slotId);
+            }
+            return;
+        }
+        RecoveredParking parking = parkings.get(parkingId);
+        if(parking == null || slotId < 1 || slotId > parking.numberOfSlots){
+            throw new IOException("Journal record for unknown slot "+slotId+" of parking "+parkingId);
+        }
+        if(kind == CHECK_IN){
+            parking.checkIn(slotId, time);
+        }else if(kind == CHECK_OUT){
+            parking.occupied.clear(slotId);
+        }
+    }
+
+    private static SlotStorage storage(int ordinal) throws IOException {
+        SlotStorage[] storages = SlotStorage.values();
+        if(ordinal < 0 || ordinal >= storages.length){
+            throw new IOException("Unknown slot storage "+ordinal+" in journal");
+        }
+        return storages[ordinal];
+    }
+
+    private List<Long> segmentIndexes() throws IOException {
+        List<Long> indexes = new ArrayList<>();
+        try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)){
+            for(Path file : files){
+                String name = file.getFileName().toString();
+                int id = ParkingRegistry.parseDigits(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                if(id >= 0){
+                    indexes.add((long) id);
+                }
+            }
+        }
+        Collections.sort(indexes);
+        return indexes;
+    }
+
+    private void deleteSegmentsBefore(long index) throws IOException {
+        for(long old : segmentIndexes()){
+            if(old < index){
+                Files.deleteIfExists(segmentPath(old));
+            }
+        }
+    }
+
+    private Path segmentPath(long index){
+        return directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Read the types file, a journal without one only knows the three predefined types.
+     */
+    private void readTypes() throws IOException {
+        Path file = directory.resolve(TYPES);
+        synchronized(types){
+            types.clear();
+            if(!Files.exists(file)){
+                for(SlotType type : new SlotType[]{ SlotType.STANDARD, SlotType.CHARGER_20kW, SlotType.CHARGER_50kW }){
+                    typeCode(type);
+                }
+                return;
+            }
+            try(DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))){
+                while(in.available() > 0){
+                    types.add(SlotType.register(in.readUTF()));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the code of the type, a new type is appended to the types file first.
+     */
+    private int typeCode(SlotType type){
+        synchronized(types){
+            int code = types.indexOf(type);
+            if(code >= 0){
+                return code;
+            }
+            try(FileChannel channel = FileChannel.open(directory.resolve(TYPES), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)){
+                DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+                out.writeUTF(type.name());
+                out.flush();
+                channel.force(true);
+            }catch(IOException e){
+                throw new UncheckedIOException(e);
+            }
+            types.add(type);
+            return types.size() - 1;
+        }
+    }
+
+    private SlotType type(int typeCode) throws IOException {
+        synchronized(types){
+            if(typeCode < 0 || typeCode >= types.size()){
+                throw new IOException("Unknown parking type code "+typeCode+" in journal");
+            }
+            return types.get(typeCode);
+        }
+    }
+
+    /**
+     * A lot rebuilt from the journal, slot ids go from 1 to numberOfSlots.
+     */
+    static final class RecoveredParking {
+        final int parkingId;
+        final int stripes;
+        final SlotStorage storage;
+        final List<SlotType> types = new ArrayList<>();
+        final List<Integer> slotsPerType = new ArrayList<>();
+        final BitSet occupied = new BitSet();
+        int numberOfSlots;
+        long[] startTimes = new long[1];
+
+        RecoveredParking(int parkingId, int stripes, SlotStorage storage){
+            this.parkingId = parkingId;
+            this.stripes = stripes;
+            this.storage = storage;
+        }
+
+        private void addPool(SlotType type, int slots){
+            types.add(type);
+            slotsPerType.add(slots);
+            numberOfSlots += slots;
+            startTimes = Arrays.copyOf(startTimes, numberOfSlots + 1);
+        }
+
+        private void checkIn(int slotId, long startTime){
+            occupied.set(slotId);
+            startTimes[slotId] = startTime;
+        }
+    }
+
+    /**
+     * Settings of a ParkingJournal.
+     */
+    public static final class Builder {
+        private final Path directory;
+        private int segmentSize = 64 << 20;
+        private int fsyncBatch = 1024;
+        private long fsyncIntervalMillis = 10;
+        private boolean syncCommit = false;
+
+        private Builder(Path directory){
+            if(directory == null){
+                throw new IllegalArgumentException("The journal needs a directory!");
+            }
+            this.directory = directory;
+        }
+
+        /**
+         * Size of a segment file, a snapshot is written each time one is full.
+         *
+         * @param bytes the size, at least MIN_SEGMENT_SIZE (128KB), default 64MB.
+         * @return this builder.
+         */
+        public Builder segmentSize(int bytes){
+            if(bytes < MIN_SEGMENT_SIZE){
+                throw new IllegalArgumentException("Segment size must be at least "+MIN_SEGMENT_SIZE+" bytes: "+bytes);
+            }
+            this.segmentSize = bytes - bytes % JournalSegment.RECORD_SIZE;
+            return this;
+        }
+
+        /**
+         * Number of records after which the journal is forced to the disk.
+         *
+         * @param records at least 1, default 1024.
+         * @return this builder.
+         */
+        public Builder fsyncBatch(int records){
+            if(records < 1){
+                throw new IllegalArgumentException("fsync batch must be at least 1 record: "+records);
+            }
+            this.fsyncBatch = records;
+            return this;
+        }
+
+        /**
+         * Longest time between two forces of the journal to the disk.
+         *
+         * @param millis at least 1, default 10.
+         * @return this builder.
+         */
+        public Builder fsyncIntervalMillis(long millis){
+            if(millis < 1){
+                throw new IllegalArgumentException("fsync interval must be at least 1 millisecond: "+millis);
+            }
+            this.fsyncIntervalMillis = millis;
+            return this;
+        }
+
+        /**
+         * Make every operation wait until its record is on the disk, default false.
+         *
+         * @param syncCommit true to wait for the group fsync.
+         * @return this builder.
+         */
+        public Builder syncCommit(boolean syncCommit){
+            this.syncCommit = syncCommit;
+            return this;
+        }
+
+        /**
+         * @return a journal ready to be given to a ParkingApi.
+         * @throws IOException if the directory cannot be created.
+         */
+        public ParkingJournal build() throws IOException {
+            return new ParkingJournal(this);
+        }
+    }
+}
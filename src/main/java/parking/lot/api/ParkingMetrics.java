@@ -0,0 +1,72 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime switch of the metrics of a ParkingApi, shared by its ParkingSlotSets, and the
+ * counters of errors not tied to a lot.
+ *
+ * While disabled an operation only pays for reading the switch. While enabled it reads
+ * System.nanoTime around the operation and around the monitor of the stay index and
+ * records both in the histograms of its SlotPool.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class ParkingMetrics {
+    private volatile boolean enabled;
+
+    private final LongAdder[] errors = new LongAdder[ParkingOperation.values().length];
+
+    ParkingMetrics(){
+        for(int i = 0; i < errors.length; i++){
+            errors[i] = new LongAdder();
+        }
+    }
+
+    boolean isEnabled(){
+        return enabled;
+    }
+
+    void setEnabled(boolean enabled){
+        this.enabled = enabled;
+    }
+
+    /**
+     * Count a call naming an unknown lot, type or slot, if enabled.
+     */
+    void error(ParkingOperation operation){
+        if(enabled){
+            errors[operation.ordinal()].increment();
+        }
+    }
+
+    long errors(ParkingOperation operation){
+        return errors[operation.ordinal()].sum();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ParkingMetricsMXBean of a ParkingApi.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class ParkingMetricsBean implements ParkingMetricsMXBean {
+    private final ParkingApiImpl api;
+
+    ParkingMetricsBean(ParkingApiImpl api){
+        this.api = api;
+    }
+
+    @Override
+    public boolean isEnabled(){
+        return api.isMetricsEnabled();
+    }
+
+    @Override
+    public void setEnabled(boolean enabled){
+        api.setMetricsEnabled(enabled);
+    }
+
+    @Override
+    public long getCheckIns(){
+        return api.getMetricsSnapshot().getLatency(ParkingOperation.CHECK_IN).getCount();
+    }
+
+    @Override
+    public long getCheckOuts(){
+        return api.getMetricsSnapshot().getLatency(ParkingOperation.CHECK_OUT).getCount();
+    }
+
+    @Override
+    public double getCheckInMedianMicros(){
+        return micros(api.getMetricsSnapshot().getLatency(ParkingOperation.CHECK_IN), 50);
+    }
+
+    @Override
+    public double getCheckInP99Micros(){
+        return micros(api.getMetricsSnapshot().getLatency(ParkingOperation.CHECK_IN), 99);
+    }
+
+    @Override
+    public double getCheckOutMedianMicros(){
+        return micros(api.getMetricsSnapshot().getLatency(ParkingOperation.CHECK_OUT), 50);
+    }
+
+    @Override
+    public double getCheckOutP99Micros(){
+        return micros(api.getMetricsSnapshot().getLatency(ParkingOperation.CHECK_OUT), 99);
+    }
+
+    @Override
+    public long getRejectedCheckIns(){
+        return api.getMetricsSnapshot().getRejections(ParkingOperation.CHECK_IN);
+    }
+
+    @Override
+    public long getRejectedCheckOuts(){
+        return api.getMetricsSnapshot().getRejections(ParkingOperation.CHECK_OUT);
+    }
+
+    @Override
+    public long getErrors(){
+        ParkingMetricsSnapshot snapshot = api.getMetricsSnapshot();
+        return snapshot.getErrors(ParkingOperation.CHECK_IN) + snapshot.getErrors(ParkingOperation.CHECK_OUT);
+    }
+
+    @Override
+    public double getLockWaitP99Micros(){
+        return micros(api.getMetricsSnapshot().getLockWait(), 99);
+    }
+
+    @Override
+    public long getCasRetries(){
+        return api.getMetricsSnapshot().getCasRetries();
+    }
+
+    @Override
+    public long getTimerFailures(){
+        return api.getMetricsSnapshot().getTimerFailures();
+    }
+
+    @Override
+    public double getLatencyMicros(String operation, double percentile){
+        return micros(api.getMetricsSnapshot().getLatency(ParkingOperation.valueOf(operation)), percentile);
+    }
+
+    @Override
+    public double getParkingLatencyMicros(int parkingId, String operation, double percentile){
+        return micros(api.getMetricsSnapshot().getLatency(ParkingOperation.valueOf(operation), parkingId), percentile);
+    }
+
+    @Override
+    public double getTypeLatencyMicros(String type, String operation, double percentile){
+        SlotType slotType = SlotType.of(type);
+        if(slotType == null){
+            throw new IllegalArgumentException("Unknown slot type "+type+"!");
+        }
+        return micros(api.getMetricsSnapshot().getLatency(ParkingOperation.valueOf(operation), slotType), percentile);
+    }
+
+    private static double micros(LatencySnapshot latency, double percentile){
+        return latency.getValueAtPercentile(percentile, TimeUnit.MICROSECONDS);
+    }
+}
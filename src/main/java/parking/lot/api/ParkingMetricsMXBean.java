@@ -0,0 +1,81 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * JMX view of the metrics of a ParkingApi, see ParkingApi.registerMetricsMBean.
+ *
+ * Attributes read a new ParkingMetricsSnapshot each time, durations are in microseconds.
+ * Operations are named as the constants of ParkingOperation, types as SlotType names.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public interface ParkingMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getCheckIns();
+
+    long getCheckOuts();
+
+    double getCheckInMedianMicros();
+
+    double getCheckInP99Micros();
+
+    double getCheckOutMedianMicros();
+
+    double getCheckOutP99Micros();
+
+    long getRejectedCheckIns();
+
+    long getRejectedCheckOuts();
+
+    long getErrors();
+
+    double getLockWaitP99Micros();
+
+    long getCasRetries();
+
+    long getTimerFailures();
+
+    /**
+     * @return the duration of an operation at a percentile, in every lot.
+     */
+    double getLatencyMicros(String operation, double percentile);
+
+    /**
+     * @return the duration of an operation at a percentile in a lot.
+     */
+    double getParkingLatencyMicros(int parkingId, String operation, double percentile);
+
+    /**
+     * @return the duration of an operation at a percentile on slots of a type, in every lot.
+     */
+    double getTypeLatencyMicros(String type, String operation, double percentile);
+}
@@ -0,0 +1,246 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Latency distributions and counters of a ParkingApi at some point in time, see
+ * ParkingApi.getMetricsSnapshot.
+ *
+ * Everything is kept per lot and type of slot, the queries merge what they select:
+ * every lot, one lot, one type in every lot or one type in one lot. Histograms and
+ * counters only move while the metrics are enabled, except the compareAndSet retries
+ * of the free lists which are always counted.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class ParkingMetricsSnapshot {
+    private static final int ANY_PARKING = 0;
+
+    private final boolean enabled;
+    private final List<Pool> pools;
+    private final long[] errors;
+    private final long timerFailures;
+    private final RuntimeException timerFailure;
+
+    ParkingMetricsSnapshot(boolean enabled, List<Pool> pools, long[] errors, long timerFailures, RuntimeException timerFailure) {
+        this.enabled = enabled;
+        this.pools = pools;
+        this.errors = errors;
+        this.timerFailures = timerFailures;
+        this.timerFailure = timerFailure;
+    }
+
+    /**
+     * @return true if the metrics were enabled when the snapshot was taken.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the ids of the lots, in increasing order.
+     */
+    public Set<Integer> getParkingIds() {
+        Set<Integer> ids = new TreeSet<>();
+        for (Pool pool : pools) {
+            ids.add(pool.parkingId);
+        }
+        return ids;
+    }
+
+    /**
+     * @return the durations of the operation in every lot.
+     */
+    public LatencySnapshot getLatency(ParkingOperation operation) {
+        return getLatency(operation, ANY_PARKING, null);
+    }
+
+    /**
+     * @return the durations of the operation in a lot, empty for an unknown lot.
+     */
+    public LatencySnapshot getLatency(ParkingOperation operation, int parkingId) {
+        return getLatency(operation, parkingId, null);
+    }
+
+    /**
+     * @return the durations of the operation on slots of a type, in every lot.
+     */
+    public LatencySnapshot getLatency(ParkingOperation operation, SlotType type) {
+        return getLatency(operation, ANY_PARKING, type);
+    }
+
+    /**
+     * @return the durations of the operation on slots of a type in a lot.
+     */
+    public LatencySnapshot getLatency(ParkingOperation operation, int parkingId, SlotType type) {
+        LatencySnapshot merged = LatencySnapshot.EMPTY;
+        for (Pool pool : pools) {
+            if (pool.matches(parkingId, type)) {
+                merged = merged.merge(pool.latency[operation.ordinal()]);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @return the checkIns finding no free slot or checkOuts of slots that were not occupied, in every lot.
+     */
+    public long getRejections(ParkingOperation operation) {
+        return getRejections(operation, ANY_PARKING, null);
+    }
+
+    /**
+     * @return the rejected operations of a lot.
+     */
+    public long getRejections(ParkingOperation operation, int parkingId) {
+        return getRejections(operation, parkingId, null);
+    }
+
+    /**
+     * @return the rejected operations on slots of a type, in every lot.
+     */
+    public long getRejections(ParkingOperation operation, SlotType type) {
+        return getRejections(operation, ANY_PARKING, type);
+    }
+
+    /**
+     * @return the rejected operations on slots of a type in a lot.
+     */
+    public long getRejections(ParkingOperation operation, int parkingId, SlotType type) {
+        long sum = 0;
+        for (Pool pool : pools) {
+            if (pool.matches(parkingId, type)) {
+                sum += pool.rejections[operation.ordinal()];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return the calls of the operation naming an unknown lot, type or slot id.
+     */
+    public long getErrors(ParkingOperation operation) {
+        return errors[operation.ordinal()];
+    }
+
+    /**
+     * @return the exceptions thrown by the expiry of reservations and by overstay
+     * listeners, counted whether the metrics are enabled or not.
+     */
+    public long getTimerFailures() {
+        return timerFailures;
+    }
+
+    /**
+     * @return the first exception counted by getTimerFailures, null if there is none.
+     */
+    public RuntimeException getTimerFailure() {
+        return timerFailure;
+    }
+
+    /**
+     * @return the time checkIns and checkOuts waited for the monitors of the stay index, in every lot.
+     */
+    public LatencySnapshot getLockWait() {
+        return getLockWait(ANY_PARKING);
+    }
+
+    /**
+     * @return the time checkIns and checkOuts of a lot waited for the monitors of its stay index.
+     */
+    public LatencySnapshot getLockWait(int parkingId) {
+        LatencySnapshot merged = LatencySnapshot.EMPTY;
+        for (Pool pool : pools) {
+            if (pool.matches(parkingId, null)) {
+                merged = merged.merge(pool.lockWait);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @return the compareAndSets of the free lists that lost a race, in every lot.
+     */
+    public long getCasRetries() {
+        return getCasRetries(ANY_PARKING);
+    }
+
+    /**
+     * @return the compareAndSets of the free lists of a lot that lost a race.
+     */
+    public long getCasRetries(int parkingId) {
+        long sum = 0;
+        for (Pool pool : pools) {
+            if (pool.matches(parkingId, null)) {
+                sum += pool.casRetries;
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (ParkingOperation operation : ParkingOperation.values()) {
+            text.append(operation).append(": ").append(getLatency(operation))
+                    .append(" rejected=").append(getRejections(operation))
+                    .append(" errors=").append(getErrors(operation)).append('\n');
+        }
+        return text.append("lock wait: ").append(getLockWait())
+                .append("\ncas retries: ").append(getCasRetries())
+                .append("\ntimer failures: ").append(getTimerFailures()).toString();
+    }
+
+    /**
+     * The metrics of the slots of one type in one lot.
+     */
+    static final class Pool {
+        final int parkingId;
+        final SlotType type;
+        final LatencySnapshot[] latency;
+        final LatencySnapshot lockWait;
+        final long[] rejections;
+        final long casRetries;
+
+        Pool(int parkingId, SlotType type, LatencySnapshot[] latency, LatencySnapshot lockWait, long[] rejections, long casRetries) {
+            this.parkingId = parkingId;
+            this.type = type;
+            this.latency = latency;
+            this.lockWait = lockWait;
+            this.rejections = rejections;
+            this.casRetries = casRetries;
+        }
+
+        boolean matches(int parkingId, SlotType type) {
+            return (parkingId == ANY_PARKING || parkingId == this.parkingId) && (type == null || type == this.type);
+        }
+    }
+}
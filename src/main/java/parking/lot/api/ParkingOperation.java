@@ -0,0 +1,45 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * Operations measured by the metrics of a ParkingApi, see ParkingApi.setMetricsEnabled.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public enum ParkingOperation {
+    /**
+     * Checkin of a single car, from taking a free slot to the slot being occupied. Checkins
+     * by vehicle key and reservations count too, a batch counts one per car.
+     */
+    CHECK_IN,
+    /**
+     * Checkout of a single car by slot id, billing policy included. A batch counts one per
+     * slot id.
+     */
+    CHECK_OUT
+}
@@ -0,0 +1,171 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Table of the parking lots of a ParkingApiImpl indexed by their int id.
+ *
+ * Lookups are a bounds check plus an array read and never lock. Registering a lot
+ * is serialized, it assigns the next id and grows the table when needed, so
+ * creating lots never blocks check-ins on the existing ones.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+class ParkingRegistry {
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * parkings[id] is the lot with the given id, index 0 is unused.
+     */
+    private volatile AtomicReferenceArray<ParkingSlotSet> parkings;
+
+    /**
+     * Next id to assign, only written while holding the registry lock.
+     */
+    private volatile int uniqueIdCounter;
+
+    ParkingRegistry(){
+        parkings = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+        uniqueIdCounter = 1;
+    }
+
+    /**
+     * Add a parking lot to the registry, the lot is told its id before it is published.
+     *
+     * @param parking the lot to register.
+     * @return the unique id of the lot, starting at 1.
+     */
+    synchronized int register(ParkingSlotSet parking){
+        int parkingId = uniqueIdCounter;
+        parking.registered(parkingId);
+        put(parkingId, parking);
+        return parkingId;
+    }
+
+    /**
+     * Add a parking lot recovered from a journal with its previous id, the next
+     * registered lots get higher ids.
+     *
+     * @param parkingId the id of the lot.
+     * @param parking the recovered lot.
+     */
+    synchronized void restore(int parkingId, ParkingSlotSet parking){
+        if(parkingId < uniqueIdCounter){
+            throw new IllegalStateException("Parking id "+parkingId+" is already registered!");
+        }
+        put(parkingId, parking);
+    }
+
+    private void put(int parkingId, ParkingSlotSet parking){
+        AtomicReferenceArray<ParkingSlotSet> table = parkings;
+        if(parkingId >= table.length()){
+            int capacity = table.length() * 2;
+            while(parkingId >= capacity){
+                capacity *= 2;
+            }
+            AtomicReferenceArray<ParkingSlotSet> grown = new AtomicReferenceArray<>(capacity);
+            for(int i = 1; i < uniqueIdCounter; i++){
+                grown.lazySet(i, table.get(i));
+            }
+            table = grown;
+        }
+        table.set(parkingId, parking);
+        parkings = table;
+        uniqueIdCounter = parkingId + 1;
+    }
+
+    /**
+     * @param parkingId the int id of a lot.
+     * @return the lot or null if the id is not registered.
+     */
+    ParkingSlotSet get(int parkingId){
+        AtomicReferenceArray<ParkingSlotSet> table = parkings;
+        return parkingId > 0 && parkingId < table.length() ? table.get(parkingId) : null;
+    }
+
+    /**
+     * @param parkingId the String id of a lot, i.e. the decimal form of its int id.
+     * @return the lot or null if the id is not registered.
+     */
+    ParkingSlotSet get(String parkingId){
+        return get(parseId(parkingId));
+    }
+
+    /**
+     * @return the highest id registered so far, ids go from 1 to this value.
+     */
+    int lastId(){
+        return uniqueIdCounter - 1;
+    }
+
+    /**
+     * Same as lastId but waits for a register in progress, so every lot up to
+     * the returned id is published and journaled.
+     *
+     * @return the highest id registered so far.
+     */
+    synchronized int lastRegisteredId(){
+        return uniqueIdCounter - 1;
+    }
+
+    /**
+     * Parse a String id into its int form, the way String.valueOf writes it: ids with
+     * leading zeros such as "007" are not valid.
+     *
+     * @param id decimal id of a lot or a slot.
+     * @return the int id, -1 if the String is not a valid id.
+     */
+    static int parseId(String id){
+        if(id != null && id.length() > 1 && id.charAt(0) == '0'){
+            return -1;
+        }
+        return parseDigits(id);
+    }
+
+    /**
+     * Parse a String of decimal digits, leading zeros included.
+     *
+     * @param id at most 10 decimal digits.
+     * @return the int value, -1 if the String is not a valid int.
+     */
+    static int parseDigits(String id){
+        if(id == null || id.isEmpty() || id.length() > 10){
+            return -1;
+        }
+        long value = 0;
+        for(int i = 0; i < id.length(); i++){
+            char c = id.charAt(i);
+            if(c < '0' || c > '9'){
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value > Integer.MAX_VALUE ? -1 : (int) value;
+    }
+}
@@ -25,36 +25,106 @@
  */
 package parking.lot.api;
 
-import org.joda.time.DateTime;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * @author Pedro
  * @since 04/02/18
  */
 public class ParkingSlot  {
+    private static final AtomicIntegerFieldUpdater<ParkingSlot> AVAILABLE =
+            AtomicIntegerFieldUpdater.newUpdater(ParkingSlot.class, "available");
+
     /**
-     * Keep tracks when this parking lot is available.
+     * Keep tracks when this parking lot is available (1) or occupied (0), only
+     * one of concurrent checkOut calls can flip it back to available.
      */
-    private boolean available;
+    private volatile int available;
 
     /**
-     * Time it started last checkin.
+     * Time it started last checkin, in milliseconds of the clock.
      */
-    private DateTime startTime;
+    private long startTime;
 
     /**
-     * Create a slot and set it as available.
+     * Time source, shared by all the slots of a ParkingSlotSet.
+     */
+    private final ParkingClock clock;
+
+    /**
+     * Create a slot using the system clock and set it as available.
      */
     ParkingSlot(){
-        this.available = false;
+        this(ParkingClock.SYSTEM);
+    }
+
+    /**
+     * Create a slot and set it as available.
+     *
+     * @param clock the time source used to measure the stay.
+     */
+    ParkingSlot(ParkingClock clock){
+        this.clock = clock;
+        this.available = 1;
     }
 
     /**
      * Simple put just make the slot unavailable and start the timer.
+     * The caller must own the slot, i.e. have taken it from the free slots.
      */
     public void checkIn(){
-        this.available = false;
-        startTime = new DateTime();
+        checkIn(clock.currentTimeMillis());
+    }
+
+    /**
+     * Same as checkIn with the time already read from the clock, batches read it once.
+     *
+     * @param now current time of the clock in milliseconds.
+     */
+    void checkIn(long now){
+        startTime = now;
+        //volatile write publishes startTime to the thread that checks out
+        this.available = 0;
+    }
+
+    /**
+     * @return true if a car is parked on this slot.
+     */
+    boolean isOccupied(){
+        return available == 0;
+    }
+
+    /**
+     * @return time of the last checkIn in milliseconds of the clock.
+     */
+    long getStartTime(){
+        return startTime;
+    }
+
+    /**
+     * Atomically mark an occupied slot as available again.
+     *
+     * @return true if this call released the slot, false if it was already available.
+     */
+    boolean release(){
+        return AVAILABLE.compareAndSet(this, 0, 1);
+    }
+
+    /**
+     * @return amount of minutes elapsed since the last checkIn.
+     */
+    long elapsedMinutes(){
+        return elapsedMinutes(clock.currentTimeMillis());
+    }
+
+    /**
+     * @param now current time of the clock in milliseconds.
+     * @return amount of minutes elapsed between the last checkIn and now.
+     */
+    long elapsedMinutes(long now){
+        long elapsedMillis = now - startTime;
+        //convert in minutes
+        return (elapsedMillis/1000)/60;
     }
 
     /**
@@ -64,9 +134,7 @@ public class ParkingSlot  {
      * @return amount of minutes the car stayed on the slot.
      */
     public long checkOut(){
-        this.available = true;
-        long elapsedMillis = (new DateTime()).getMillis() - startTime.getMillis();
-        //convert in minutes
-        return (elapsedMillis/1000)/60;
+        release();
+        return elapsedMinutes();
     }
 }
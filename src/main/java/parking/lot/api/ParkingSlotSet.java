@@ -25,61 +25,645 @@
  */
 package parking.lot.api;
 
-import java.util.HashMap;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
-import java.util.stream.IntStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
 
 /**
+ * Set of parking slots sharing the same billing policy.
+ *
+ * The state of the slots is kept by a SlotStates indexed by slot id, either one object
+ * per slot or compact primitive arrays, see SlotStorage. The free ones are kept in a
+ * lock-free SlotFreeList so checkIn and checkOut never take a lock. Large lots with
+ * several entrances can split their free slots in stripes, a car is parked in the
+ * stripe of its entrance (or of the calling thread) while it has free slots.
+ *
+ * A set can hold slots of several types, for instance a car park with standard and
+ * charging bays. Each type has its own SlotPool, a range of consecutive slot ids with
+ * its own free list, found from the type ordinal with a single array read.
+ *
+ * With a ParkingJournal every checkIn and checkOut is journaled while the calling
+ * thread still owns the slot, i.e. after taking it from the free list and before
+ * marking it occupied, after marking it available and before giving it back to the
+ * free list, so the journal order of the records of a slot is the order of its states.
+ *
+ * Once the stays of the set are first read or watched, occupied slots are also kept in
+ * a StayIndex ordered by checkIn time, so the longest stays are read without scanning
+ * the slots and OverstayListeners are called by the timing wheel when a car crosses
+ * their threshold.
+ *
+ * A car checked in with a vehicle key has a ParkedVehicle in the vehicle index of the
+ * ParkingApi and in vehicles[slot id]. Every checkOut first swaps vehicles[slot id] for
+ * ParkedVehicle.LEAVING, so a checkOut by key and a checkOut by slot id of the same car
+ * cannot both succeed and the index entry is removed along with the slot state.
+ *
+ * Check ins, check outs and the transitions of a type between full and not full are
+ * published to the ParkingEventBus of the ParkingApi, without lock nor allocation.
+ *
  * @author Pedro
  * @since 04/02/18
  */
 public class ParkingSlotSet {
-    private HashMap<String, ParkingSlot>  slotsAvailableSet;
-    private HashMap<String, ParkingSlot>  slotsOccupiedSet;
+    /**
+     * Thrown by every checkIn on a full set, a stackless exception can be shared.
+     */
+    private static final SlotsFullException FULL = new SlotsFullException("All slots of the current Parking Set are occupied!");
 
-    private BillingPolicy billingPolicy;
+    /**
+     * The waits for the stay index are measured on one slot id in LOCK_WAIT_SAMPLING.
+     */
+    private static final int LOCK_WAIT_SAMPLING = 8;
 
     /**
-     * Instanciate a new set of parking slots.
+     * Start time of an operation whose duration is not measured.
+     */
+    private static final long NOT_MEASURED = Long.MIN_VALUE;
+
+    /**
+     * Occupancy and start time of each slot, by slot id.
+     */
+    private final SlotStates slots;
+
+    private final SlotStorage storage;
+
+    /**
+     * Occupied slots ordered by checkIn time.
+     */
+    private final StayIndex stays;
+
+    /**
+     * Slots of each type in slot id order, pools[0] holds the slots of the first type.
+     */
+    private final SlotPool[] pools;
+
+    /**
+     * poolsByType[ordinal] is the pool of the SlotType with that ordinal, null if the set has none.
+     */
+    private final SlotPool[] poolsByType;
+
+    private final ParkingClock clock;
+
+    /**
+     * Held slots by slot id, removing the reservation decides between its claim, its
+     * cancel and its expiry.
+     */
+    private final ConcurrentHashMap<Integer, Reservation> reservations = new ConcurrentHashMap<>();
+
+    /**
+     * vehicles[id] is the car parked on slot id if it was checked in with a vehicle key,
+     * created by the first such checkIn.
+     */
+    private volatile AtomicReferenceArray<ParkedVehicle> vehicles;
+
+    /**
+     * The vehicle index of the ParkingApi, set before vehicles.
+     */
+    private volatile Map<String, ParkedVehicle> vehicleIndex;
+
+    private volatile BillingPolicy billingPolicy;
+
+    /**
+     * Journal of the operations, null when not journaled, set before the set is registered.
+     */
+    private ParkingJournal journal;
+
+    /**
+     * Events of the ParkingApi, null for none, set before the set is registered.
+     */
+    private ParkingEventBus events;
+
+    /**
+     * Metrics switch of the ParkingApi, null for none, set before the set is registered.
+     */
+    private ParkingMetrics metrics;
+
+    /**
+     * Session log of the ParkingApi, holding null while sessions are not logged.
+     */
+    private AtomicReference<SessionLog> sessions = new AtomicReference<>();
+
+    /**
+     * Id of this set in its ParkingRegistry, written in the journal records.
+     */
+    private int parkingId;
+
+    /**
+     * Instanciate a new set of standard parking slots.
      *
      * @param maxSlots the number of parking slots to create in this set.
      * @throws NumberFormatException if the parameters is less than 1.
      */
     ParkingSlotSet(int maxSlots) throws NumberFormatException{
-        this.slotsAvailableSet = new HashMap<>();
-        this.slotsOccupiedSet = new HashMap<>();
+        this(maxSlots, ParkingApi.PARKING_STANDARD_TYPE, ParkingClock.SYSTEM);
+    }
+
+    /**
+     * Instanciate a new set of parking slots.
+     *
+     * @param maxSlots the number of parking slots to create in this set.
+     * @param type the parking type of all slots in this set.
+     * @param clock the time source used to measure how long cars stay.
+     * @throws NumberFormatException if the parameters is less than 1.
+     */
+    ParkingSlotSet(int maxSlots, String type, ParkingClock clock) throws NumberFormatException{
+        this(maxSlots, type, clock, 1);
+    }
 
-        IntStream.range(1, maxSlots+1).forEach(
-            id -> slotsAvailableSet.put(""+id, new ParkingSlot())
-        );
+    /**
+     * Instanciate a new set of parking slots whose free slots are split in stripes.
+     *
+     * @param maxSlots the number of parking slots to create in this set.
+     * @param type the parking type of all slots in this set.
+     * @param clock the time source used to measure how long cars stay.
+     * @param stripes the number of stripes, 1 for a single pool of free slots.
+     * @throws NumberFormatException if the parameters is less than 1.
+     */
+    ParkingSlotSet(int maxSlots, String type, ParkingClock clock, int stripes) throws NumberFormatException{
+        this(maxSlots, SlotType.register(type), clock, stripes, null);
+    }
+
+    /**
+     * Instanciate a new set of parking slots whose free slots are split in stripes.
+     *
+     * @param maxSlots the number of parking slots to create in this set.
+     * @param type the parking type of all slots in this set.
+     * @param clock the time source used to measure how long cars stay.
+     * @param stripes the number of stripes, 1 for a single pool of free slots.
+     * @param typeOccupancy counter of all the lots of the type, updated along with this set, null for none.
+     * @throws NumberFormatException if the parameters is less than 1.
+     */
+    ParkingSlotSet(int maxSlots, SlotType type, ParkingClock clock, int stripes, OccupancyCounter typeOccupancy) throws NumberFormatException{
+        this(new SlotType[]{ type }, new int[]{ maxSlots }, clock, stripes, new OccupancyCounter[]{ typeOccupancy });
+    }
+
+    /**
+     * Instanciate a set of parking slots of several types, each type with its own pool
+     * of free slots. Slot ids follow the order of the types, from 1 for the first slot
+     * of types[0].
+     *
+     * @param types the types of the slots, each at most once.
+     * @param slotsPerType slotsPerType[i] is the number of slots of types[i].
+     * @param clock the time source used to measure how long cars stay.
+     * @param stripes the number of stripes of the free slots of each type.
+     * @param typeOccupancy typeOccupancy[i] is the counter of all the lots of types[i], null for none.
+     * @throws NumberFormatException if a number of slots is less than 1.
+     * @throws IllegalArgumentException if there is no type or a type appears twice.
+     */
+    ParkingSlotSet(SlotType[] types, int[] slotsPerType, ParkingClock clock, int stripes, OccupancyCounter[] typeOccupancy) throws NumberFormatException{
+        this(types, slotsPerType, clock, stripes, typeOccupancy, SlotStorage.OBJECTS);
+    }
 
-        if(maxSlots < 1){
-            throw new NumberFormatException("Need to specify at least 1 slot!");
+    /**
+     * Same as the constructor above with the given storage of the slot states.
+     *
+     * @param types the types of the slots, each at most once.
+     * @param slotsPerType slotsPerType[i] is the number of slots of types[i].
+     * @param clock the time source used to measure how long cars stay.
+     * @param stripes the number of stripes of the free slots of each type.
+     * @param typeOccupancy typeOccupancy[i] is the counter of all the lots of types[i], null for none.
+     * @param storage how the state of the slots is kept.
+     * @throws NumberFormatException if a number of slots is less than 1.
+     * @throws IllegalArgumentException if there is no type or a type appears twice.
+     */
+    ParkingSlotSet(SlotType[] types, int[] slotsPerType, ParkingClock clock, int stripes, OccupancyCounter[] typeOccupancy,
+                   SlotStorage storage) throws NumberFormatException{
+        this.clock = clock;
+        this.storage = storage;
+        if(types.length == 0 || types.length != slotsPerType.length){
+            throw new IllegalArgumentException("Need one number of slots per type!");
+        }
+        long maxSlots = 0;
+        int maxOrdinal = 0;
+        for(int i = 0; i < types.length; i++){
+            if(slotsPerType[i] < 1){
+                throw new NumberFormatException("Need to specify at least 1 slot!");
+            }
+            maxSlots += slotsPerType[i];
+            maxOrdinal = Math.max(maxOrdinal, types[i].ordinal());
+        }
+        if(maxSlots >= Integer.MAX_VALUE){
+            throw new NumberFormatException("Too many slots: "+maxSlots);
+        }
+        this.pools = new SlotPool[types.length];
+        this.poolsByType = new SlotPool[maxOrdinal + 1];
+        int offset = 0;
+        for(int i = 0; i < types.length; i++){
+            if(poolsByType[types[i].ordinal()] != null){
+                throw new IllegalArgumentException("Slot type "+types[i]+" appears twice!");
+            }
+            pools[i] = new SlotPool(types[i], offset, slotsPerType[i], stripes, typeOccupancy == null ? null : typeOccupancy[i]);
+            poolsByType[types[i].ordinal()] = pools[i];
+            offset += slotsPerType[i];
         }
+        this.slots = storage.create(offset, clock);
+        this.stays = new StayIndex(offset, stripes);
     }
 
     /**
-     * Just checkin a vehicle if possible, guarantee this is thread safe by
-     * using synchronized.
+     * Just checkin a vehicle if possible, this is thread safe without locking,
+     * the free slot is taken atomically from the free list.
      *
      * @return the id of the obtained parking slot, null if exception occurs.
      *
      * @throws SlotsFullException might throw this exception if the parking is full.
      */
-    public synchronized  String checkIn() throws SlotsFullException {
-        String slotId;
-        //checkin the slot, insert in occupied set, remove from available set
-        if(slotsAvailableSet.size() > 0){
-            HashMap.Entry<String,ParkingSlot> entry = slotsAvailableSet.entrySet().iterator().next();
-            slotId = entry.getKey();
-            ParkingSlot parkingSlot = entry.getValue();
-            parkingSlot.checkIn();
-            slotsOccupiedSet.put(slotId, parkingSlot);
-            slotsAvailableSet.remove(slotId);
-        }else{
-            throw new SlotsFullException("All slots of the current Parking Set are occupied!");
+    public String checkIn() throws SlotsFullException {
+        return String.valueOf(checkInSlot());
+    }
+
+    /**
+     * Same as checkIn but returns the slot id as an int.
+     *
+     * @return the id of the obtained parking slot, from 1 to the number of slots.
+     *
+     * @throws SlotsFullException might throw this exception if the parking is full.
+     */
+    public int checkInSlot() throws SlotsFullException {
+        return checkInSlot(threadHint());
+    }
+
+    /**
+     * Same as checkInSlot, the slot is taken from the stripe of the entrance when possible.
+     *
+     * @param entrance any int identifying the entrance, the same entrance always starts with the same stripe.
+     * @return the id of the obtained parking slot, from 1 to the number of slots.
+     *
+     * @throws SlotsFullException might throw this exception if every stripe of the parking is full.
+     */
+    public int checkInSlot(int entrance) throws SlotsFullException {
+        return checkInSlot(pools[0], entrance);
+    }
+
+    /**
+     * Same as checkInSlot, the slot is taken from the pool of a type of this set.
+     *
+     * @param pool the pool of the required type, see pool(SlotType).
+     * @return the id of the obtained parking slot.
+     *
+     * @throws SlotsFullException might throw this exception if every slot of the type is occupied.
+     */
+    int checkInSlot(SlotPool pool) throws SlotsFullException {
+        return checkInSlot(pool, threadHint());
+    }
+
+    /**
+     * Same as checkInSlot, the slot is taken from the pool of a type of this set.
+     *
+     * @param pool the pool of the required type, see pool(SlotType).
+     * @param entrance any int identifying the entrance, the same entrance always starts with the same stripe.
+     * @return the id of the obtained parking slot.
+     *
+     * @throws SlotsFullException might throw this exception if every slot of the type is occupied.
+     */
+    int checkInSlot(SlotPool pool, int entrance) throws SlotsFullException {
+        int id = tryCheckInSlot(pool, entrance);
+        if(id == SlotFreeList.EMPTY){
+            throw FULL;
         }
-        return slotId;
+        return id;
+    }
+
+    /**
+     * Same as checkInSlot without exception, for callers that expect full lots.
+     *
+     * @param pool the pool of the required type, see pool(SlotType).
+     * @param entrance any int identifying the entrance, the same entrance always starts with the same stripe.
+     * @return the id of the obtained parking slot, SlotFreeList.EMPTY if every slot of the type is occupied.
+     */
+    int tryCheckInSlot(SlotPool pool, int entrance){
+        long start = startTimer();
+        int id = checkInFree(pool, entrance);
+        checkedIn(pool, start, 1, id == SlotFreeList.EMPTY ? 0 : 1);
+        return id;
+    }
+
+    private int checkInFree(SlotPool pool, int entrance){
+        int local = pool.freeSlots.poll(entrance);
+        if(local == SlotFreeList.EMPTY){
+            return SlotFreeList.EMPTY;
+        }
+        return occupy(pool, pool.offset + local);
+    }
+
+    /**
+     * Checkin a vehicle on a slot taken from the free list or handed over by a checkOut.
+     *
+     * @param pool the pool of the slot.
+     * @param id the slot id, owned by the caller.
+     * @return the slot id.
+     */
+    private int occupy(SlotPool pool, int id){
+        ParkingJournal journal = this.journal;
+        long now = clock.currentTimeMillis();
+        if(journal == null){
+            slots.checkIn(id, now);
+            started(id, now, lockWait(pool, id));
+            pool.occupancy.occupy(1);
+            checkedIn(pool, id, now);
+            return id;
+        }
+        JournalSegment segment = journal.log(ParkingJournal.CHECK_IN, parkingId, id, now);
+        try{
+            slots.checkIn(id, now);
+            started(id, now, lockWait(pool, id));
+            pool.occupancy.occupy(1);
+        }finally{
+            //an incomplete record would keep its segment from being compacted
+            journal.complete(segment, 1);
+        }
+        checkedIn(pool, id, now);
+        journal.sync();
+        return id;
+    }
+
+    /**
+     * Checkin a car identified by a vehicle key, already put in the vehicle index.
+     *
+     * @param pool the pool of the required type, see pool(SlotType).
+     * @param vehicle the entry of the car in the index, its slotId is set once the car is checked in.
+     * @param index the vehicle index of the ParkingApi.
+     * @return the id of the obtained parking slot, SlotFreeList.EMPTY if every slot of the type is occupied.
+     */
+    int checkInVehicle(SlotPool pool, ParkedVehicle vehicle, Map<String, ParkedVehicle> index){
+        AtomicReferenceArray<ParkedVehicle> vehicles = vehicles(index);
+        long start = startTimer();
+        int local = pool.freeSlots.poll(threadHint());
+        if(local == SlotFreeList.EMPTY){
+            checkedIn(pool, start, 1, 0);
+            return SlotFreeList.EMPTY;
+        }
+        int id = pool.offset + local;
+        //set before the slot is occupied so any checkOut of the slot sees the car
+        vehicles.set(id, vehicle);
+        occupy(pool, id);
+        vehicle.slotId = id;
+        if(vehicles.get(id) != vehicle || !slots.isOccupied(id)){
+            //already checked out by slot id, a checkOut that failed to release the slot
+            //before slotId was set put the car back and left its key to us
+            vehicles.compareAndSet(id, vehicle, null);
+            index.remove(vehicle.key, vehicle);
+        }
+        checkedIn(pool, start, 1, 1);
+        return id;
+    }
+
+    /**
+     * Same as checkOut for a car checked in with a vehicle key.
+     *
+     * @param vehicle the entry of the car in the vehicle index.
+     * @param function the price policy to apply based on the amount of minutes the car stayed.
+     * @return the price to pay.
+     * @throws SlotNotFoundException if the car is not parked anymore.
+     */
+    double checkOutVehicle(ParkedVehicle vehicle, BillingPolicy function) throws SlotNotFoundException {
+        int id = vehicle.slotId;
+        if(id == 0 || !releaseSlot(id, vehicle)){
+            throw new SlotNotFoundException("Vehicle "+vehicle.key+" is not parked!");
+        }
+        return released(id, function);
+    }
+
+    /**
+     * @return the vehicles by slot id, created on first use.
+     */
+    private AtomicReferenceArray<ParkedVehicle> vehicles(Map<String, ParkedVehicle> index){
+        AtomicReferenceArray<ParkedVehicle> vehicles = this.vehicles;
+        if(vehicles != null){
+            return vehicles;
+        }
+        synchronized(this){
+            if(this.vehicles == null){
+                vehicleIndex = index;
+                this.vehicles = new AtomicReferenceArray<>(slots.size() + 1);
+            }
+            return this.vehicles;
+        }
+    }
+
+    /**
+     * Mark an occupied slot available and remove its car from the vehicle index.
+     *
+     * @param id a valid slot id.
+     * @param expected the car that must be parked on the slot, null for any car.
+     * @return true if the calling thread released the slot, it owns it until it is offered back or handed over.
+     */
+    private boolean releaseSlot(int id, ParkedVehicle expected){
+        AtomicReferenceArray<ParkedVehicle> vehicles = this.vehicles;
+        if(vehicles == null){
+            return slots.release(id);
+        }
+        ParkedVehicle vehicle = vehicles.get(id);
+        if(vehicle == ParkedVehicle.LEAVING || (expected != null && vehicle != expected)){
+            if(expected != null){
+                //the car is leaving or gone, its key may be left from a checkOut by slot id
+                //that raced its checkIn
+                vehicleIndex.remove(expected.key, expected);
+            }
+            return false;
+        }
+        if(vehicle == null){
+            if(!slots.release(id)){
+                return false;
+            }
+            //a car checked in with a key since the read, on an id the caller kept from a previous stay
+            vehicle = vehicles.get(id);
+            if(vehicle != null && vehicle != ParkedVehicle.LEAVING && vehicles.compareAndSet(id, vehicle, null)){
+                vehicleIndex.remove(vehicle.key, vehicle);
+            }
+            return true;
+        }
+        if(!vehicles.compareAndSet(id, vehicle, ParkedVehicle.LEAVING)){
+            return false;
+        }
+        if(!slots.release(id)){
+            //the car is still checking in or its stay was ended by a checkOut by slot id, a car
+            //checked in on the slot since then overwrote LEAVING and keeps its entry
+            vehicles.compareAndSet(id, ParkedVehicle.LEAVING, vehicle);
+            if(vehicle.slotId != 0){
+                //the checkOut by slot id may have seen LEAVING and left the key to us
+                vehicles.compareAndSet(id, vehicle, null);
+                vehicleIndex.remove(vehicle.key, vehicle);
+            }
+            return false;
+        }
+        vehicles.set(id, null);
+        vehicleIndex.remove(vehicle.key, vehicle);
+        return true;
+    }
+
+    /**
+     * Checkin a vehicle when a slot of the pool is free, or as soon as one gets free.
+     * Waiting cars are served in arrival order: each checkOut hands its slot directly
+     * to the oldest one, the slot never goes back to the free list.
+     *
+     * The future is completed by the thread checking out, use the async methods of
+     * CompletableFuture to run long actions elsewhere. Cancelling the future takes
+     * the car out of the queue.
+     *
+     * @param pool the pool of the required type, see pool(SlotType).
+     * @param timeout longest wait, ignored without timer.
+     * @param unit the unit of timeout.
+     * @param timer executor failing the future with a TimeoutException after timeout, null to wait until cancelled.
+     * @return the future id of the obtained parking slot.
+     */
+    CompletableFuture<Integer> checkInAsync(SlotPool pool, long timeout, TimeUnit unit, ScheduledExecutorService timer){
+        if(pool.waiters.isEmpty()){
+            int id = tryCheckInSlot(pool, threadHint());
+            if(id != SlotFreeList.EMPTY){
+                return CompletableFuture.completedFuture(id);
+            }
+        }
+        SlotWaiter waiter = new SlotWaiter(pool);
+        if(timer != null){
+            waiter.expireAfter(timeout, unit, timer);
+        }
+        pool.waiters.add(waiter);
+        //a slot given back before the waiter was queued is still in the free list
+        serveWaiters(pool);
+        return waiter;
+    }
+
+    /**
+     * Hold a free slot of the pool for a car arriving later. The slot counts as occupied
+     * until it is claimed by the car, cancelled or released by the wheel at the end of
+     * the hold. Holds are not journaled, a restart releases them.
+     *
+     * @param pool the pool of the required type, see pool(SlotType).
+     * @param holdMillis how long the slot is held in milliseconds.
+     * @param wheel the timing wheel releasing the slot at the end of the hold.
+     * @return the id of the held slot, SlotFreeList.EMPTY if every slot of the type is occupied.
+     */
+    int reserve(SlotPool pool, long holdMillis, TimingWheel wheel){
+        long start = startTimer();
+        int local = pool.freeSlots.poll(threadHint());
+        if(local == SlotFreeList.EMPTY){
+            checkedIn(pool, start, 1, 0);
+            return SlotFreeList.EMPTY;
+        }
+        int id = pool.offset + local;
+        pool.occupancy.occupy(1);
+        long now = clock.currentTimeMillis();
+        taken(pool, now);
+        Reservation reservation = new Reservation(this, pool, id, now + holdMillis);
+        reservations.put(id, reservation);
+        wheel.schedule(reservation);
+        checkedIn(pool, start, 1, 1);
+        return id;
+    }
+
+    /**
+     * Checkin the car a slot is held for.
+     *
+     * @param id the id of the held slot.
+     * @throws SlotNotFoundException if the slot is not held, e.g. the hold expired.
+     */
+    void claim(int id) throws SlotNotFoundException {
+        Reservation reservation = reservations.remove(id);
+        if(reservation == null){
+            throw new SlotNotFoundException("Slot "+id+" is not reserved!");
+        }
+        reservation.pool.occupancy.occupy(-1);
+        occupy(reservation.pool, id);
+    }
+
+    /**
+     * Release a held slot before the end of the hold.
+     *
+     * @param id the id of the held slot.
+     * @return false if the slot is not held.
+     */
+    boolean cancelReservation(int id){
+        Reservation reservation = reservations.remove(id);
+        if(reservation == null){
+            return false;
+        }
+        reservation.pool.occupancy.occupy(-1);
+        free(reservation.pool, id);
+        return true;
+    }
+
+    /**
+     * Release a held slot at the end of the hold, unless it was claimed or cancelled.
+     */
+    void expire(Reservation reservation){
+        if(reservations.remove(reservation.slotId, reservation)){
+            reservation.pool.occupancy.occupy(-1);
+            free(reservation.pool, reservation.slotId);
+        }
+    }
+
+    /**
+     * @param id the int id of a slot of this set.
+     * @return true if the slot is held by a reservation.
+     */
+    boolean isReserved(int id){
+        return reservations.containsKey(id);
+    }
+
+    /**
+     * Give a slot released by its owner to the oldest waiting car, or back to the free list.
+     *
+     * @param pool the pool of the slot.
+     * @param id the slot id, marked available.
+     */
+    private void free(SlotPool pool, int id){
+        if(!pool.waiters.isEmpty()){
+            SlotWaiter waiter = nextWaiter(pool);
+            if(waiter != null){
+                waiter.handOver(occupy(pool, id));
+                return;
+            }
+        }
+        pool.freeSlots.offer(id - pool.offset);
+        if(!pool.waiters.isEmpty()){
+            serveWaiters(pool);
+        }
+        given(pool);
+    }
+
+    /**
+     * Hand free slots to waiting cars until there are no more free slots or waiters. The
+     * waiter is queued before it looks at the free list and a slot is offered before the
+     * queue is checked, so either the waiter or the checkOut sees the other.
+     */
+    private void serveWaiters(SlotPool pool){
+        while(!pool.waiters.isEmpty()){
+            int local = pool.freeSlots.poll(threadHint());
+            if(local == SlotFreeList.EMPTY){
+                return;
+            }
+            SlotWaiter waiter = nextWaiter(pool);
+            if(waiter == null){
+                //only abandoned waiters were left, the loop checks for new ones
+                pool.freeSlots.offer(local);
+            }else{
+                waiter.handOver(occupy(pool, pool.offset + local));
+            }
+        }
+    }
+
+    /**
+     * @return the oldest waiter of the pool, claimed, null if none is waiting.
+     */
+    private static SlotWaiter nextWaiter(SlotPool pool){
+        SlotWaiter waiter;
+        while((waiter = pool.waiters.poll()) != null){
+            if(waiter.claim()){
+                return waiter;
+            }
+        }
+        return null;
     }
 
     /**
@@ -88,15 +672,8 @@ public class ParkingSlotSet {
      * @param id the unique id of the parking slot occupied by the client.
      * @return the price to pay based on the BillingPolicy.
      */
-    public synchronized double checkOut(String id, BillingPolicy function) throws SlotNotFoundException {
-        ParkingSlot parkingSlot = slotsOccupiedSet.get(id);
-        if(parkingSlot == null){
-            throw new SlotNotFoundException("Tried to checkOut parkingSlot "+id+" but it is available!");
-        }
-        long elapsedMinutes = parkingSlot.checkOut();
-        slotsOccupiedSet.remove(id);
-        slotsAvailableSet.put(id, parkingSlot);
-        return function.bill(elapsedMinutes);
+    public double checkOut(String id, BillingPolicy function) throws SlotNotFoundException {
+        return checkOut(ParkingRegistry.parseId(id), function);
     }
 
     /**
@@ -106,32 +683,796 @@ public class ParkingSlotSet {
      * @param id the unique id of the parking slot occupied by the client.
      * @return the price to pay based on the BillingPolicy.
      */
-    public synchronized double checkOut(String id) throws SlotNotFoundException, BillingPolicyNotSetException {
-        if(billingPolicy == null){
+    public double checkOut(String id) throws SlotNotFoundException, BillingPolicyNotSetException {
+        return checkOut(ParkingRegistry.parseId(id));
+    }
+
+    /**
+     * Checkout a vehicle and return the amount left to pay based on the BillingPolicy.
+     *
+     * @param id the int id of the parking slot occupied by the client.
+     * @return the price to pay based on the BillingPolicy.
+     */
+    public double checkOut(int id, BillingPolicy function) throws SlotNotFoundException {
+        long start = startTimer();
+        if(!release(id)){
+            checkedOut(id, start, false);
+            throw new SlotNotFoundException("Tried to checkOut parkingSlot "+id+" but it is available!");
+        }
+        double price = released(id, function);
+        checkedOut(id, start, true);
+        return price;
+    }
+
+    /**
+     * Checkout a vehicle and return the amount left to pay based on DEFAULT BillingPolicy.
+     *
+     * @param id the int id of the parking slot occupied by the client.
+     * @return the price to pay based on the BillingPolicy.
+     */
+    public double checkOut(int id) throws SlotNotFoundException, BillingPolicyNotSetException {
+        BillingPolicy policy = billingPolicy;
+        if(policy == null){
             throw new BillingPolicyNotSetException("You need to set billing policy with setBillingPolicy before calling this method!");
         }
-        ParkingSlot parkingSlot = slotsOccupiedSet.get(id);
-        if(parkingSlot == null){
-            throw new SlotNotFoundException("Tried to checkOut parkingSlot "+id+" but it is available!");
+        return checkOut(id, policy);
+    }
+
+    /**
+     * Checkin several vehicles at once, the free slots are taken from the free list with
+     * a single atomic operation and the clock is read once for the whole batch.
+     *
+     * @param slotIds array receiving the ids of the obtained slots, one per vehicle.
+     * @return the number of vehicles checked in, less than slotIds.length if the parking got full.
+     */
+    public int checkInAll(int[] slotIds) {
+        return checkInAll(pools[0], slotIds);
+    }
+
+    /**
+     * Same as checkInAll, the slots are taken from the pool of a type of this set.
+     *
+     * @param pool the pool of the required type, see pool(SlotType).
+     * @param slotIds array receiving the ids of the obtained slots, one per vehicle.
+     * @return the number of vehicles checked in, less than slotIds.length if the type got full.
+     */
+    int checkInAll(SlotPool pool, int[] slotIds) {
+        long start = startTimer();
+        int count = pool.freeSlots.poll(threadHint(), slotIds, 0, slotIds.length);
+        if(pool.offset != 0){
+            for(int i = 0; i < count; i++){
+                slotIds[i] += pool.offset;
+            }
+        }
+        long now = clock.currentTimeMillis();
+        ParkingJournal journal = this.journal;
+        if(journal == null){
+            for(int i = 0; i < count; i++){
+                slots.checkIn(slotIds[i], now);
+                started(slotIds[i], now, null);
+            }
+        }else{
+            for(int from = 0; from < count; from += ParkingJournal.MAX_BATCH_RECORDS){
+                int chunk = Math.min(count - from, ParkingJournal.MAX_BATCH_RECORDS);
+                JournalSegment segment = journal.log(ParkingJournal.CHECK_IN, parkingId, slotIds, from, chunk, now);
+                try{
+                    for(int i = from; i < from + chunk; i++){
+                        slots.checkIn(slotIds[i], now);
+                        started(slotIds[i], now, null);
+                    }
+                }finally{
+                    journal.complete(segment, chunk);
+                }
+            }
+        }
+        pool.occupancy.occupy(count);
+        ParkingEventBus events = this.events;
+        if(events != null && events.isActive() && count > 0){
+            for(int i = 0; i < count; i++){
+                events.publish(ParkingEventType.CHECK_IN, parkingId, slotIds[i], pool.type.ordinal(), now);
+            }
+            taken(pool, now);
+        }
+        if(journal != null && count > 0){
+            journal.sync();
+        }
+        checkedIn(pool, start, slotIds.length, count);
+        return count;
+    }
+
+    /**
+     * Checkout several vehicles at once, the freed slots are given back to the free list
+     * with a single atomic operation and the clock is read once for the whole batch.
+     * The stays are billed once every slot is back, if the policy throws all the slots
+     * are checked out anyway.
+     *
+     * @param slotIds the ids of the slots occupied by the vehicles leaving.
+     * @param function the price policy to apply based on the amount of minutes each car stayed.
+     * @return the price to pay for each slot, Double.NaN for ids that are unknown or not occupied.
+     */
+    public double[] checkOutAll(int[] slotIds, BillingPolicy function) {
+        long start = startTimer();
+        double[] prices = new double[slotIds.length];
+        long[] startTimes = new long[slotIds.length];
+        int[] released = new int[slotIds.length];
+        int count = 0;
+        long now = clock.currentTimeMillis();
+        for(int i = 0; i < slotIds.length; i++){
+            int id = slotIds[i];
+            if(id < 1 || id > slots.size() || !releaseSlot(id, null)){
+                prices[i] = Double.NaN;
+                notCheckedOut(id, start);
+            }else{
+                //read before the slot is given back and taken again
+                startTimes[i] = slots.getStartTime(id);
+                stays.remove(id, null);
+                released[count++] = id;
+            }
+        }
+        ParkingJournal journal = this.journal;
+        if(journal != null){
+            for(int from = 0; from < count; from += ParkingJournal.MAX_BATCH_RECORDS){
+                int chunk = Math.min(count - from, ParkingJournal.MAX_BATCH_RECORDS);
+                journal.complete(journal.log(ParkingJournal.CHECK_OUT, parkingId, released, from, chunk, now), chunk);
+            }
+        }
+        //give back each run of slots of the same pool with a single operation
+        ParkingEventBus events = this.events;
+        boolean publish = events != null && events.isActive();
+        for(int from = 0; from < count;){
+            SlotPool pool = poolOf(released[from]);
+            int to = from;
+            while(to < count && pool.contains(released[to])){
+                if(publish){
+                    events.publish(ParkingEventType.CHECK_OUT, parkingId, released[to], pool.type.ordinal(), now);
+                }
+                released[to++] -= pool.offset;
+            }
+            pool.occupancy.occupy(from - to);
+            pool.freeSlots.offer(released, from, to - from);
+            if(!pool.waiters.isEmpty()){
+                serveWaiters(pool);
+            }
+            given(pool);
+            from = to;
+        }
+        if(journal != null && count > 0){
+            journal.sync();
         }
-        long elapsedMinutes = parkingSlot.checkOut();
-        slotsOccupiedSet.remove(id);
-        slotsAvailableSet.put(id, parkingSlot);
-        return billingPolicy.bill(elapsedMinutes);
+        //billed once every slot is back, a policy that throws cannot leak them
+        SessionLog log = sessions.get();
+        for(int i = 0; i < slotIds.length; i++){
+            if(Double.isNaN(prices[i])){
+                continue;
+            }
+            int id = slotIds[i];
+            long elapsedMinutes = elapsedMinutes(startTimes[i], now);
+            prices[i] = function.bill(elapsedMinutes);
+            SlotPool pool = poolOf(id);
+            if(pool.revenue != null){
+                pool.revenue.add(Revenue.cents(prices[i]), elapsedMinutes, now);
+            }
+            if(log != null){
+                log.append(parkingId, pool.type, id, startTimes[i], now, elapsedMinutes, prices[i]);
+            }
+        }
+        checkedOut(slotIds, start);
+        return prices;
+    }
+
+    /**
+     * Same as checkOutAll using the DEFAULT BillingPolicy.
+     *
+     * @param slotIds the ids of the slots occupied by the vehicles leaving.
+     * @return the price to pay for each slot, Double.NaN for ids that are unknown or not occupied.
+     * @throws BillingPolicyNotSetException if setBillingPolicy was not called, no slot is freed.
+     */
+    public double[] checkOutAll(int[] slotIds) throws BillingPolicyNotSetException {
+        BillingPolicy policy = billingPolicy;
+        if(policy == null){
+            throw new BillingPolicyNotSetException("You need to set billing policy with setBillingPolicy before calling this method!");
+        }
+        return checkOutAll(slotIds, policy);
+    }
+
+    /**
+     * Same as checkOut returning Double.NaN instead of throwing.
+     *
+     * @param id the int id of the parking slot occupied by the client.
+     * @param function the price policy to apply based on the amount of minutes the car stayed.
+     * @return the price to pay, Double.NaN if the id is unknown or the slot is not occupied.
+     */
+    double tryCheckOut(int id, BillingPolicy function){
+        long start = startTimer();
+        if(!release(id)){
+            checkedOut(id, start, false);
+            return Double.NaN;
+        }
+        double price = released(id, function);
+        checkedOut(id, start, true);
+        return price;
+    }
+
+    /**
+     * Mark an occupied slot available, the calling thread then owns it.
+     *
+     * @param id the int id of the parking slot occupied by the client.
+     * @return false if the id is unknown or the slot is not occupied.
+     */
+    private boolean release(int id){
+        return id >= 1 && id <= slots.size() && releaseSlot(id, null);
+    }
+
+    /**
+     * @return System.nanoTime() if the metrics are enabled, NOT_MEASURED otherwise.
+     */
+    private long startTimer(){
+        ParkingMetrics metrics = this.metrics;
+        return metrics == null || !metrics.isEnabled() ? NOT_MEASURED : System.nanoTime();
+    }
+
+    /**
+     * Record the checkIns of cars started at start, unless they were not measured: one
+     * latency sample per car served, sharing the time of a batch, and a rejection per
+     * car turned away.
+     *
+     * @param pool the pool the slots were taken from.
+     * @param start the value of startTimer before taking the slots.
+     * @param cars the number of cars asking for a slot.
+     * @param served the number of cars that got one.
+     */
+    private void checkedIn(SlotPool pool, long start, int cars, int served){
+        if(start == NOT_MEASURED || cars == 0){
+            return;
+        }
+        PoolMetrics measured = pool.metrics();
+        long elapsed = System.nanoTime() - start;
+        if(served == 0){
+            measured.record(ParkingOperation.CHECK_IN, elapsed);
+        }
+        for(int i = 0; i < served; i++){
+            measured.record(ParkingOperation.CHECK_IN, elapsed / served);
+        }
+        for(int i = served; i < cars; i++){
+            measured.rejected(ParkingOperation.CHECK_IN);
+        }
+    }
+
+    /**
+     * Record the duration of a checkOut started at start, unless it was not measured.
+     */
+    private void checkedOut(int id, long start, boolean occupied){
+        if(start == NOT_MEASURED){
+            return;
+        }
+        if(id < 1 || id > slots.size()){
+            metrics.error(ParkingOperation.CHECK_OUT);
+            return;
+        }
+        PoolMetrics measured = poolOf(id).metrics();
+        measured.record(ParkingOperation.CHECK_OUT, System.nanoTime() - start);
+        if(!occupied){
+            measured.rejected(ParkingOperation.CHECK_OUT);
+        }
+    }
+
+    /**
+     * Record the checkOuts of a batch started at start, unless they were not measured:
+     * one latency sample per known slot id, sharing the time of the batch. The ids that
+     * were not occupied are counted by notCheckedOut.
+     */
+    private void checkedOut(int[] slotIds, long start){
+        if(start == NOT_MEASURED || slotIds.length == 0){
+            return;
+        }
+        long share = (System.nanoTime() - start) / slotIds.length;
+        for(int id : slotIds){
+            if(id >= 1 && id <= slots.size()){
+                poolOf(id).metrics().record(ParkingOperation.CHECK_OUT, share);
+            }
+        }
+    }
+
+    /**
+     * Count a slot of a batch checkOut that was not occupied, or an unknown id, unless
+     * the batch is not measured.
+     */
+    private void notCheckedOut(int id, long start){
+        if(start == NOT_MEASURED){
+            return;
+        }
+        if(id < 1 || id > slots.size()){
+            metrics.error(ParkingOperation.CHECK_OUT);
+        }else{
+            poolOf(id).metrics().rejected(ParkingOperation.CHECK_OUT);
+        }
+    }
+
+    /**
+     * Journal the checkOut of a slot released by the calling thread, free it, then bill
+     * the stay and log the session.
+     *
+     * @param id the slot id, the slot is ours until it is offered back or handed over.
+     * @param function the price policy to apply based on the amount of minutes the car stayed.
+     * @return the price to pay.
+     */
+    private double released(int id, BillingPolicy function){
+        long now = clock.currentTimeMillis();
+        long startTime = slots.getStartTime(id);
+        long elapsedMinutes = elapsedMinutes(startTime, now);
+        SlotPool pool = poolOf(id);
+        stays.remove(id, lockWait(pool, id));
+        pool.occupancy.occupy(-1);
+        ParkingEventBus events = this.events;
+        if(events != null){
+            events.publish(ParkingEventType.CHECK_OUT, parkingId, id, pool.type.ordinal(), now);
+        }
+        ParkingJournal journal = this.journal;
+        if(journal == null){
+            free(pool, id);
+        }else{
+            journal.complete(journal.log(ParkingJournal.CHECK_OUT, parkingId, id, now), 1);
+            free(pool, id);
+            journal.sync();
+        }
+        double price = function.bill(elapsedMinutes);
+        if(pool.revenue != null){
+            pool.revenue.add(Revenue.cents(price), elapsedMinutes, now);
+        }
+        SessionLog log = sessions.get();
+        if(log != null){
+            log.append(parkingId, pool.type, id, startTime, now, elapsedMinutes, price);
+        }
+        return price;
+    }
+
+    /**
+     * Publish the checkIn of a slot, and the FULL event if it was the last free one.
+     */
+    private void checkedIn(SlotPool pool, int id, long now){
+        ParkingEventBus events = this.events;
+        if(events != null && events.isActive()){
+            events.publish(ParkingEventType.CHECK_IN, parkingId, id, pool.type.ordinal(), now);
+            taken(pool, now);
+        }
+    }
+
+    /**
+     * Publish FULL if slots were taken from the pool and none is left. A slot given back
+     * meanwhile may not have seen the flag, the free list is checked again once it is set.
+     */
+    private void taken(SlotPool pool, long now){
+        ParkingEventBus events = this.events;
+        if(events == null || !events.isActive() || !pool.freeSlots.isEmpty() || !pool.full.compareAndSet(false, true)){
+            return;
+        }
+        events.publish(ParkingEventType.FULL, parkingId, 0, pool.type.ordinal(), now);
+        given(pool);
+    }
+
+    /**
+     * Publish NOT_FULL if a slot was given back to a pool flagged full.
+     */
+    private void given(SlotPool pool){
+        ParkingEventBus events = this.events;
+        if(events == null || !pool.full.get() || pool.freeSlots.isEmpty() || !pool.full.compareAndSet(true, false)){
+            return;
+        }
+        events.publish(ParkingEventType.NOT_FULL, parkingId, 0, pool.type.ordinal(), clock.currentTimeMillis());
+    }
+
+    /**
+     * Flag the pools that are full, called when the events get their first subscriber.
+     */
+    void resetFullFlags(){
+        for(SlotPool pool : pools){
+            pool.full.set(pool.freeSlots.isEmpty());
+        }
+    }
+
+    /**
+     * Index a slot just checked in, once the stay index is enabled.
+     *
+     * @param id the slot id, marked occupied by the calling thread.
+     * @param now the checkIn time.
+     * @param lockWait receives the wait for the stay index, null to not measure it.
+     */
+    private void started(int id, long now, LatencyHistogram lockWait){
+        stays.add(id, now, slots, lockWait);
     }
 
+    /**
+     * Read the longest stays of this set, in time proportional to count.
+     *
+     * @param count the maximum number of stays.
+     * @return at most count stays, oldest first.
+     */
+    List<Stay> getOldestStays(int count){
+        return stays.oldest(parkingId, count, slots, clock.currentTimeMillis());
+    }
+
+    /**
+     * Read the stays of at least some minutes, in time proportional to their number.
+     *
+     * @param minutes the shortest stay, as billed by checkOut.
+     * @return the stays, oldest first.
+     */
+    List<Stay> getStaysLongerThan(long minutes){
+        long now = clock.currentTimeMillis();
+        return stays.startedBy(parkingId, now - TimeUnit.MINUTES.toMillis(minutes), slots, now);
+    }
+
+    /**
+     * Call a listener once for every stay crossing a threshold, including the cars
+     * already parked.
+     *
+     * @param thresholdMillis how long a car stays before the listener is called, in milliseconds.
+     * @param listener the listener, called by the thread advancing the wheel.
+     * @param wheel the timing wheel running the checks.
+     */
+    void addOverstayListener(long thresholdMillis, OverstayListener listener, TimingWheel wheel){
+        OverstayWatch watch = new OverstayWatch(thresholdMillis, listener, wheel);
+        stays.watch(watch, slots);
+        //the first check reports the cars already over the threshold
+        watch.schedule(this, clock.currentTimeMillis());
+    }
+
+    /**
+     * @param listener a listener given to addOverstayListener.
+     * @return false if the listener was not registered.
+     */
+    boolean removeOverstayListener(OverstayListener listener){
+        return stays.unwatch(listener);
+    }
+
+    /**
+     * Call the listener of a watch for the stays that crossed its threshold since the
+     * last check, then schedule the next check at the deadline of the oldest stay left.
+     *
+     * @param watch the watch of the check.
+     * @param deadline the deadline of the check, the wheel may run it up to a tick early.
+     */
+    void overstay(OverstayWatch watch, long deadline){
+        if(!watch.active){
+            return;
+        }
+        long now = clock.currentTimeMillis();
+        long time = Math.max(now, deadline);
+        long startedBy = time - watch.thresholdMillis;
+        List<Stay> overstayed = new ArrayList<>();
+        long nextStart = stays.overstayed(parkingId, watch, startedBy, slots, now, overstayed);
+        //a car checking in from now on crosses the threshold a threshold later
+        watch.schedule(this, (nextStart == Long.MAX_VALUE ? time : nextStart) + watch.thresholdMillis);
+        for(Stay stay : overstayed){
+            try{
+                watch.listener.overstayed(stay);
+            }catch(RuntimeException e){
+                //the other stays are still reported
+                watch.wheel.failed(e);
+            }
+        }
+    }
+
+    /**
+     * @param startTime time of the checkIn in milliseconds of the clock.
+     * @param now current time of the clock in milliseconds.
+     * @return amount of minutes elapsed between the checkIn and now.
+     */
+    private static long elapsedMinutes(long startTime, long now){
+        return ((now - startTime)/1000)/60;
+    }
+
+    /**
+     * @param id a valid slot id of this set.
+     * @return the pool holding the slot.
+     */
+    private SlotPool poolOf(int id){
+        SlotPool[] pools = this.pools;
+        for(int i = pools.length - 1; i > 0; i--){
+            if(id > pools[i].offset){
+                return pools[i];
+            }
+        }
+        return pools[0];
+    }
+
+    /**
+     * @param type a slot type.
+     * @return the pool of the slots of that type, null if this set has none.
+     */
+    SlotPool pool(SlotType type){
+        int ordinal = type.ordinal();
+        return ordinal < poolsByType.length ? poolsByType[ordinal] : null;
+    }
+
+    /**
+     * @return the pools of this set in slot id order, not to be modified.
+     */
+    SlotPool[] pools(){
+        return pools;
+    }
+
+    /**
+     * Journal the operations of this set, must be called before the set is registered.
+     *
+     * @param journal the journal of the ParkingApi.
+     */
+    void journalTo(ParkingJournal journal){
+        this.journal = journal;
+    }
+
+    /**
+     * Publish the events of this set, must be called before the set is registered.
+     *
+     * @param events the event bus of the ParkingApi.
+     */
+    void publishTo(ParkingEventBus events){
+        this.events = events;
+    }
+
+    /**
+     * Measure the operations of this set when the metrics are enabled, must be called
+     * before the set is registered.
+     *
+     * @param metrics the metrics switch of the ParkingApi.
+     */
+    void measureTo(ParkingMetrics metrics){
+        this.metrics = metrics;
+    }
+
+    /**
+     * Log the completed sessions of this set to the log held by sessions, must be called
+     * before the set is registered.
+     *
+     * @param sessions the holder of the session log of the ParkingApi.
+     */
+    void logSessionsTo(AtomicReference<SessionLog> sessions){
+        this.sessions = sessions;
+    }
+
+    /**
+     * Count the revenue of each pool of this set, must be called before the set is registered.
+     *
+     * @param typeRevenue gives the counter of every pool of a type.
+     * @param zone the time zone days start in.
+     */
+    void countRevenueTo(Function<SlotType, RevenueCounter> typeRevenue, ZoneId zone){
+        for(SlotPool pool : pools){
+            pool.revenue = new RevenueCounter(zone, typeRevenue.apply(pool.type));
+        }
+    }
+
+    /**
+     * @param period the time range to read.
+     * @return the sessions, minutes and cents checked out of this set over the period.
+     */
+    Revenue getRevenue(RevenuePeriod period){
+        long now = clock.currentTimeMillis();
+        Revenue revenue = Revenue.EMPTY;
+        for(SlotPool pool : pools){
+            if(pool.revenue != null){
+                revenue = revenue.plus(pool.revenue.read(period, now));
+            }
+        }
+        return revenue;
+    }
+
+    /**
+     * @param type a slot type.
+     * @param period the time range to read.
+     * @return the sessions, minutes and cents checked out of the slots of the type over the
+     * period, empty if this set has none.
+     */
+    Revenue getRevenue(SlotType type, RevenuePeriod period){
+        SlotPool pool = pool(type);
+        if(pool == null || pool.revenue == null){
+            return Revenue.EMPTY;
+        }
+        return pool.revenue.read(period, clock.currentTimeMillis());
+    }
+
+    /**
+     * Read the metrics of every pool of this set.
+     *
+     * @param snapshots receives one entry per pool.
+     */
+    void metricsTo(List<ParkingMetricsSnapshot.Pool> snapshots){
+        ParkingOperation[] operations = ParkingOperation.values();
+        for(SlotPool pool : pools){
+            PoolMetrics measured = pool.metricsIfAny();
+            LatencySnapshot[] latency = new LatencySnapshot[operations.length];
+            long[] rejections = new long[operations.length];
+            for(ParkingOperation operation : operations){
+                latency[operation.ordinal()] = measured == null ? LatencySnapshot.EMPTY : measured.latency(operation);
+                rejections[operation.ordinal()] = measured == null ? 0 : measured.rejections(operation);
+            }
+            LatencySnapshot lockWait = measured == null ? LatencySnapshot.EMPTY : measured.lockWait();
+            snapshots.add(new ParkingMetricsSnapshot.Pool(parkingId, pool.type, latency, lockWait, rejections,
+                    pool.freeSlots.retries()));
+        }
+    }
+
+    /**
+     * Timing every wait for the stay index would double the clock reads of an operation,
+     * only the slot ids multiple of LOCK_WAIT_SAMPLING are measured.
+     *
+     * @return the histogram of the waits for the stay index of a pool, null if this wait is not measured.
+     */
+    private LatencyHistogram lockWait(SlotPool pool, int id){
+        ParkingMetrics metrics = this.metrics;
+        if(metrics == null || id % LOCK_WAIT_SAMPLING != 0 || !metrics.isEnabled()){
+            return null;
+        }
+        return pool.metrics().lockWait;
+    }
+
+    /**
+     * Called by the ParkingRegistry with the id of this set before publishing it.
+     *
+     * @param parkingId the id assigned to this set.
+     */
+    void registered(int parkingId){
+        this.parkingId = parkingId;
+        if(journal != null){
+            journal.logNewParking(parkingId, this);
+        }
+        if(events != null){
+            events.publish(ParkingEventType.CREATED, parkingId, slots.size(), pools[0].type.ordinal(), clock.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Mark slots occupied as recovered from the journal, before the set is shared with other threads.
+     *
+     * @param parkingId the id of this set in the journal.
+     * @param occupied the ids of the occupied slots.
+     * @param startTimes startTimes[id] is the checkIn time of the occupied slot id.
+     */
+    void restore(int parkingId, BitSet occupied, long[] startTimes){
+        this.parkingId = parkingId;
+        for(SlotPool pool : pools){
+            BitSet taken = new BitSet(pool.size + 1);
+            int end = pool.offset + pool.size;
+            for(int id = occupied.nextSetBit(pool.offset + 1); id >= 0 && id <= end; id = occupied.nextSetBit(id + 1)){
+                slots.checkIn(id, startTimes[id]);
+                taken.set(id - pool.offset);
+            }
+            pool.occupancy.occupy(taken.cardinality());
+            pool.freeSlots.reset(taken);
+        }
+    }
+
+    /**
+     * @param id the int id of a slot of this set.
+     * @return true if a car is parked on the slot.
+     */
+    boolean isOccupied(int id){
+        return slots.isOccupied(id);
+    }
+
+    /**
+     * @param id the int id of a slot of this set.
+     * @return time of the last checkIn on the slot in milliseconds of the clock.
+     */
+    long getStartTime(int id){
+        return slots.getStartTime(id);
+    }
+
+    /**
+     * Default home stripe of the calling thread, threads get consecutive ids so
+     * they are spread over the stripes.
+     */
+    static int threadHint(){
+        return (int) Thread.currentThread().getId();
+    }
+
+    /**
+     * @return the number of occupied slots, read without locking.
+     */
+    public long getOccupiedSlots(){
+        long occupied = 0;
+        for(SlotPool pool : pools){
+            occupied += pool.occupancy.occupied();
+        }
+        return occupied;
+    }
+
+    /**
+     * @return the number of available slots, read without locking.
+     */
+    public long getAvailableSlots(){
+        long available = 0;
+        for(SlotPool pool : pools){
+            available += pool.occupancy.available();
+        }
+        return available;
+    }
+
+    /**
+     * @return the current number of slots and occupied slots.
+     */
+    Occupancy getOccupancy(){
+        Occupancy occupancy = pools[0].occupancy.snapshot();
+        for(int i = 1; i < pools.length; i++){
+            occupancy = occupancy.plus(pools[i].occupancy.snapshot());
+        }
+        return occupancy;
+    }
+
+    /**
+     * @return the current number of slots and occupied slots of each type, keyed by type name in slot id order.
+     */
+    Map<String, Occupancy> getOccupancyByType(){
+        Map<String, Occupancy> byType = new LinkedHashMap<>();
+        for(SlotPool pool : pools){
+            byType.put(pool.type.name(), pool.occupancy.snapshot());
+        }
+        return byType;
+    }
+
+    /**
+     * @return the number of stripes the free slots of each type are split in.
+     */
+    public int getStripes(){
+        return pools[0].freeSlots.stripes();
+    }
+
+    /**
+     * @return the number of slots in this set, slot ids go from 1 to this value.
+     */
+    public int getNumberOfSlots(){
+        return slots.size();
+    }
+
+    /**
+     * @return how the state of the slots of this set is kept.
+     */
+    public SlotStorage getSlotStorage(){
+        return storage;
+    }
 
     /**
      * Retreive vector containig all the slots id.
      * @return vector with all the slots IDs.
      */
     public Vector<String> getAllSlotsIds() {
-        Vector<String> allSlotsIds = new Vector<>();
-        slotsOccupiedSet.forEach((key, value) -> allSlotsIds.add(key));
-        slotsAvailableSet.forEach((key, value) -> allSlotsIds.add(key));
+        int numberOfSlots = slots.size();
+        Vector<String> allSlotsIds = new Vector<>(numberOfSlots);
+        for(int id = 1; id <= numberOfSlots; id++){
+            allSlotsIds.add(String.valueOf(id));
+        }
         return allSlotsIds;
     }
 
+    /**
+     * @return the parking type of the slots in this set, of the first slots for a set of several types.
+     */
+    public String getType(){
+        return pools[0].type.name();
+    }
+
+    /**
+     * @return the type of the slots in this set, of the first slots for a set of several types.
+     */
+    public SlotType getSlotType(){
+        return pools[0].type;
+    }
+
+    /**
+     * @param type a slot type.
+     * @return true if this set has slots of that type.
+     */
+    public boolean hasSlotType(SlotType type){
+        return type != null && pool(type) != null;
+    }
+
+    /**
+     * @return the DEFAULT BillingPolicy of this set, null until setBillingPolicy is called.
+     */
+    BillingPolicy getBillingPolicy(){
+        return billingPolicy;
+    }
+
     /**
      * Setter for billingPolicy, this enables to call checkOut without specifying the billingPolicy.
      * @param billingPolicy function that computes the price based on the elapsed minutes.
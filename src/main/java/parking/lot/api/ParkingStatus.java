@@ -0,0 +1,86 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * Result codes of the non-throwing methods of ParkingApi, tryCheckIn returns either
+ * a slot id, always positive, or one of these negative codes.
+ * <code>
+ *     int result = api.tryCheckIn(parkingId, SlotType.STANDARD);
+ *     if(ParkingStatus.isSlot(result)){
+ *         openGate(result);
+ *     }else{
+ *         display(ParkingStatus.describe(result));
+ *     }
+ * </code>
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class ParkingStatus {
+    /**
+     * Every slot of the required type is occupied.
+     */
+    public static final int FULL = -1;
+
+    /**
+     * The parking id is not registered.
+     */
+    public static final int UNKNOWN_PARKING = -2;
+
+    /**
+     * The type is null or the parking has no slots of that type.
+     */
+    public static final int UNKNOWN_TYPE = -3;
+
+    private ParkingStatus(){
+    }
+
+    /**
+     * @param result a value returned by tryCheckIn.
+     * @return true if the result is a slot id.
+     */
+    public static boolean isSlot(int result){
+        return result > 0;
+    }
+
+    /**
+     * @param result a value returned by tryCheckIn.
+     * @return a short text describing the result.
+     */
+    public static String describe(int result){
+        switch(result){
+            case FULL:
+                return "All slots of the required type are occupied";
+            case UNKNOWN_PARKING:
+                return "Unknown parking id";
+            case UNKNOWN_TYPE:
+                return "The parking has no slots of the required type";
+            default:
+                return result > 0 ? "Slot "+result : "Unknown result "+result;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and rejection counters of one SlotPool, allocated the first time
+ * an operation on the pool is measured.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class PoolMetrics {
+    private static final int OPERATIONS = ParkingOperation.values().length;
+
+    private final LatencyHistogram[] latency = new LatencyHistogram[OPERATIONS];
+    private final LongAdder[] rejections = new LongAdder[OPERATIONS];
+
+    /**
+     * Time spent waiting for the monitor of a stripe of the stay index, on checkIn and checkOut.
+     */
+    final LatencyHistogram lockWait = new LatencyHistogram();
+
+    PoolMetrics(){
+        for(int i = 0; i < OPERATIONS; i++){
+            latency[i] = new LatencyHistogram();
+            rejections[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @param operation the operation measured.
+     * @param nanos how long it took.
+     */
+    void record(ParkingOperation operation, long nanos){
+        latency[operation.ordinal()].record(nanos);
+    }
+
+    /**
+     * Count an operation turned down by the state of the pool: no free slot, slot not occupied.
+     */
+    void rejected(ParkingOperation operation){
+        rejections[operation.ordinal()].increment();
+    }
+
+    LatencySnapshot latency(ParkingOperation operation){
+        return snapshot(latency[operation.ordinal()]);
+    }
+
+    LatencySnapshot lockWait(){
+        return snapshot(lockWait);
+    }
+
+    long rejections(ParkingOperation operation){
+        return rejections[operation.ordinal()].sum();
+    }
+
+    private static LatencySnapshot snapshot(LatencyHistogram histogram){
+        long[] counts = new long[LatencyHistogram.BUCKETS];
+        histogram.addTo(counts);
+        return new LatencySnapshot(counts);
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results of the checkIn and checkOut requests of the last minutes, by client request
+ * id, so a request retried by a gate returns the result of the first attempt instead of
+ * running again.
+ *
+ * The results are found in a ConcurrentHashMap. Completed results are also written in
+ * a ring of capacity entries, overwriting the oldest one of the slice of the ring of
+ * the completing thread, which is then removed from the map: at most capacity results
+ * are kept whatever the rate of requests and the number of threads. Each slice has its
+ * own write position, so threads completing requests at once rarely touch the same
+ * counter. A result older than the retention is ignored and removed by the next
+ * request with the same id.
+ *
+ * A request arriving while the first attempt with the same id still runs waits for its
+ * result, parked on the monitor of the outcome. A failed attempt leaves nothing behind,
+ * the retry runs again. An id is tied to the operation and the parking lot of its
+ * first attempt, reusing it for another one is rejected.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class RequestCache {
+    static final int CHECK_IN = 1;
+    static final int CHECK_OUT = 2;
+
+    private static final int PENDING = 0;
+    private static final int DONE = 1;
+    private static final int FAILED = 2;
+
+    /**
+     * Most slices of the ring, a power of two at least twice the processors so threads
+     * completing at once rarely share a write position.
+     */
+    static final int MAX_SLICES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1);
+
+    private final ConcurrentHashMap<String, Outcome> results = new ConcurrentHashMap<>();
+
+    /**
+     * Completed results, slice i holds the entries from i * capacity / slices to
+     * (i + 1) * capacity / slices, its oldest one at positions[i] % its length.
+     */
+    private final AtomicReferenceArray<Outcome> ring;
+
+    /**
+     * Next write position in each slice of the ring.
+     */
+    private final AtomicLong[] positions;
+
+    private final int capacity;
+    private final long retentionMillis;
+    private final ParkingClock clock;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity the most results kept, at least 1.
+     * @param retentionMillis how long a result is kept in milliseconds of the clock.
+     * @param clock the time source of the retention.
+     */
+    RequestCache(int capacity, long retentionMillis, ParkingClock clock){
+        if(capacity < 1 || retentionMillis < 1){
+            throw new IllegalArgumentException("Need room for at least 1 request kept at least 1ms!");
+        }
+        this.capacity = capacity;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.positions = new AtomicLong[Math.min(MAX_SLICES, Integer.highestOneBit(capacity))];
+        for(int i = 0; i < positions.length; i++){
+            positions[i] = new AtomicLong();
+        }
+        this.retentionMillis = retentionMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Find the result of a request or take the right to run it.
+     *
+     * @param requestId the id given by the client.
+     * @param kind CHECK_IN or CHECK_OUT.
+     * @param parkingId the id of the parking lot of the request.
+     * @return the outcome of the first attempt, completed, or a pending outcome the caller
+     * must complete or fail.
+     * @throws IllegalArgumentException if the id was used by a request of another kind or lot.
+     */
+    Outcome claim(String requestId, int kind, int parkingId){
+        Outcome mine = null;
+        for(;;){
+            Outcome outcome = results.get(requestId);
+            if(outcome == null){
+                if(mine == null){
+                    mine = new Outcome(requestId, kind, parkingId);
+                }
+                outcome = results.putIfAbsent(requestId, mine);
+                if(outcome == null){
+                    misses.increment();
+                    return mine;
+                }
+            }
+            int state = outcome.await();
+            if(state == FAILED){
+                continue;
+            }
+            if(clock.currentTimeMillis() - outcome.completedAt > retentionMillis){
+                results.remove(requestId, outcome);
+                continue;
+            }
+            if(outcome.kind != kind){
+                throw new IllegalArgumentException("Request id "+requestId+" was used by another operation!");
+            }
+            if(outcome.parkingId != parkingId){
+                throw new IllegalArgumentException("Request id "+requestId+" was used in parking "+outcome.parkingId+"!");
+            }
+            hits.increment();
+            return outcome;
+        }
+    }
+
+    /**
+     * Keep the result of a request run by the caller.
+     *
+     * @param outcome the pending outcome returned by claim.
+     * @param result the slot id or the raw bits of the price.
+     */
+    void complete(Outcome outcome, long result){
+        outcome.result = result;
+        outcome.completedAt = clock.currentTimeMillis();
+        outcome.finish(DONE);
+        int slice = ParkingSlotSet.threadHint() & (positions.length - 1);
+        int from = (int) ((long) slice * capacity / positions.length);
+        int length = (int) ((long) (slice + 1) * capacity / positions.length) - from;
+        long next = positions[slice].getAndIncrement();
+        Outcome evicted = ring.getAndSet(from + (int) (next % length), outcome);
+        if(evicted != null && results.remove(evicted.requestId, evicted)){
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Forget a request that failed without changing any state, its retry runs again.
+     *
+     * @param outcome the pending outcome returned by claim.
+     */
+    void fail(Outcome outcome){
+        results.remove(outcome.requestId, outcome);
+        outcome.finish(FAILED);
+    }
+
+    /**
+     * @return the counters of the cache.
+     */
+    RequestCacheStats stats(){
+        return new RequestCacheStats(hits.sum(), misses.sum(), evictions.sum(), results.size());
+    }
+
+    /**
+     * Result of one request id.
+     */
+    static final class Outcome {
+        final String requestId;
+        final int kind;
+        final int parkingId;
+
+        /**
+         * Written before state.
+         */
+        long result;
+        long completedAt;
+
+        volatile int state = PENDING;
+
+        /**
+         * Set by a thread about to wait, the thread finishing the request then notifies.
+         */
+        private volatile boolean waited;
+
+        Outcome(String requestId, int kind, int parkingId){
+            this.requestId = requestId;
+            this.kind = kind;
+            this.parkingId = parkingId;
+        }
+
+        /**
+         * @return true until the request is completed or failed, only for the caller of claim.
+         */
+        boolean isPending(){
+            return state == PENDING;
+        }
+
+        /**
+         * Complete or fail the request, waking up the retries waiting for it.
+         */
+        void finish(int finalState){
+            state = finalState;
+            if(waited){
+                synchronized(this){
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Wait for the first attempt, it only runs a checkIn or a checkOut. An interrupt
+         * does not stop the wait, it is kept for the caller.
+         */
+        int await(){
+            int current = state;
+            if(current != PENDING){
+                return current;
+            }
+            waited = true;
+            boolean interrupted = false;
+            synchronized(this){
+                while((current = state) == PENDING){
+                    try{
+                        wait();
+                    }catch(InterruptedException e){
+                        interrupted = true;
+                    }
+                }
+            }
+            if(interrupted){
+                Thread.currentThread().interrupt();
+            }
+            return current;
+        }
+    }
+}
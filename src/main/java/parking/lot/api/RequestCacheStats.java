@@ -0,0 +1,79 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * Counters of the request id cache of a ParkingApi, see ParkingApi.checkInOnce.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class RequestCacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long size;
+
+    RequestCacheStats(long hits, long misses, long evictions, long size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+    }
+
+    /**
+     * @return the number of retried requests answered from the cache.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of requests run for the first time.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of results dropped to make room for newer ones.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of request ids currently known.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "hits=" + hits + " misses=" + misses + " evictions=" + evictions + " size=" + size;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * A slot held for a car that is not there yet, released by a TimingWheel at its
+ * deadline unless the car claims it first.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class Reservation extends TimingWheel.Task {
+    final ParkingSlotSet parking;
+    final SlotPool pool;
+    final int slotId;
+
+    /**
+     * @param parking the set of the slot.
+     * @param pool the pool of the slot.
+     * @param slotId the held slot.
+     * @param deadline end of the hold in milliseconds of the clock.
+     */
+    Reservation(ParkingSlotSet parking, SlotPool pool, int slotId, long deadline){
+        super(deadline);
+        this.parking = parking;
+        this.pool = pool;
+        this.slotId = slotId;
+    }
+
+    @Override
+    void expire(){
+        parking.expire(this);
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * Sessions, minutes and revenue of a parking lot, a type or all parkings over a
+ * RevenuePeriod, see ParkingApi.getRevenue, or of a bulk billing, see BillingReport.
+ *
+ * The revenue is kept in cents: each price is rounded to the cent once, when billed,
+ * and the sums are exact.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class Revenue {
+    static final Revenue EMPTY = new Revenue(0, 0, 0);
+
+    private final long sessions;
+    private final long minutes;
+    private final long cents;
+
+    Revenue(long sessions, long minutes, long cents){
+        this.sessions = sessions;
+        this.minutes = minutes;
+        this.cents = cents;
+    }
+
+    /**
+     * @return the number of sessions checked out.
+     */
+    public long getSessions(){
+        return sessions;
+    }
+
+    /**
+     * @return the minutes billed, summed.
+     */
+    public long getMinutes(){
+        return minutes;
+    }
+
+    /**
+     * @return the prices of the sessions in cents, summed.
+     */
+    public long getCents(){
+        return cents;
+    }
+
+    /**
+     * @return the prices of the sessions, summed.
+     */
+    public double getRevenue(){
+        return cents / 100.0;
+    }
+
+    /**
+     * @param other revenue to add.
+     * @return the sums of both.
+     */
+    Revenue plus(Revenue other){
+        return new Revenue(sessions + other.sessions, minutes + other.minutes, cents + other.cents);
+    }
+
+    /**
+     * @param price a price returned by a BillingPolicy.
+     * @return the price rounded to the cent, 0 for NaN.
+     */
+    static long cents(double price){
+        return Math.round(price * 100);
+    }
+
+    @Override
+    public String toString(){
+        return "sessions=" + sessions + " minutes=" + minutes + " cents=" + cents;
+    }
+}
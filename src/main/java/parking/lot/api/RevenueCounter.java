@@ -0,0 +1,246 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Sessions, minutes and cents checked out of a pool or of every pool of a type, since
+ * the start, over the last hour and since midnight.
+ *
+ * Updated incrementally on each checkOut in striped cells, like a LongAdder holding
+ * all the sums at once: a writer takes the cell of its thread with a single
+ * compareAndSet, adds to every sum with plain writes and releases the cell. A writer
+ * finding its cell taken moves to the next one instead of waiting, cells are created
+ * on first use. Readers take each cell in turn and add them up, a cell never holds
+ * half an update.
+ *
+ * The last hour is a ring of one window per minute in each cell, a window is reset by
+ * the first checkOut of a minute 60 minutes later; today is one window reset by the
+ * first checkOut after midnight. A pool counter forwards its updates to the counter of
+ * its type.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+class RevenueCounter {
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final int HOUR_MINUTES = 60;
+
+    /**
+     * Number of cells, a power of two at least twice the processors so a reader holding a
+     * cell rarely makes a writer move.
+     */
+    static final int CELLS = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1);
+
+    /**
+     * Cells indexed by thread, null until a thread writes to it.
+     */
+    private final AtomicReferenceArray<Cell> cells = new AtomicReferenceArray<>(CELLS);
+
+    private final ZoneId zone;
+
+    /**
+     * Counter also updated by this one, null for none.
+     */
+    private final RevenueCounter parent;
+
+    /**
+     * @param zone the time zone days start in.
+     * @param parent counter receiving the same updates, null for none.
+     */
+    RevenueCounter(ZoneId zone, RevenueCounter parent){
+        this.zone = zone;
+        this.parent = parent;
+    }
+
+    /**
+     * Count a session.
+     *
+     * @param cents the price of the session in cents.
+     * @param minutes the minutes billed.
+     * @param now the checkOut time in milliseconds.
+     */
+    void add(long cents, long minutes, long now){
+        Cell cell = take();
+        try{
+            cell.add(cents, minutes, now, zone);
+        }finally{
+            cell.set(false);
+        }
+        if(parent != null){
+            parent.add(cents, minutes, now);
+        }
+    }
+
+    /**
+     * @param period the time range to read.
+     * @param now current time of the clock in milliseconds.
+     * @return the sums over the period.
+     */
+    Revenue read(RevenuePeriod period, long now){
+        long[] sums = new long[3];
+        for(int i = 0; i < CELLS; i++){
+            Cell cell = cells.get(i);
+            if(cell == null){
+                continue;
+            }
+            while(!cell.compareAndSet(false, true)){
+                Thread.yield();
+            }
+            try{
+                cell.addTo(sums, period, now);
+            }finally{
+                cell.set(false);
+            }
+        }
+        return new Revenue(sums[0], sums[1], sums[2]);
+    }
+
+    /**
+     * @return a cell taken by the calling thread, to be released with set(false).
+     */
+    private Cell take(){
+        int index = ParkingSlotSet.threadHint() & (CELLS - 1);
+        for(int attempt = 1;; attempt++){
+            Cell cell = cells.get(index);
+            if(cell == null){
+                cell = new Cell();
+                cell.set(true);
+                if(cells.compareAndSet(index, null, cell)){
+                    return cell;
+                }
+                cell = cells.get(index);
+            }
+            if(!cell.get() && cell.compareAndSet(false, true)){
+                return cell;
+            }
+            index = (index + 1) & (CELLS - 1);
+            if(attempt % CELLS == 0){
+                //more writers than cells
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Sums of one stripe, only read and written by the thread that set it.
+     */
+    private static final class Cell extends AtomicBoolean {
+        long sessions;
+        long minutes;
+        long cents;
+
+        /**
+         * Start of the minute of each window of the last hour, Long.MIN_VALUE while unused.
+         */
+        final long[] minuteFrom = new long[HOUR_MINUTES];
+        final long[] minuteSessions = new long[HOUR_MINUTES];
+        final long[] minuteMinutes = new long[HOUR_MINUTES];
+        final long[] minuteCents = new long[HOUR_MINUTES];
+
+        /**
+         * Bounds of the current day, from included and to excluded.
+         */
+        long dayFrom = Long.MIN_VALUE;
+        long dayTo = Long.MIN_VALUE;
+        long daySessions;
+        long dayMinutes;
+        long dayCents;
+
+        Cell(){
+            Arrays.fill(minuteFrom, Long.MIN_VALUE);
+        }
+
+        void add(long cents, long minutes, long now, ZoneId zone){
+            this.sessions++;
+            this.minutes += minutes;
+            this.cents += cents;
+            long from = now - Math.floorMod(now, MINUTE);
+            int index = (int) Math.floorMod(from / MINUTE, (long) HOUR_MINUTES);
+            if(minuteFrom[index] < from){
+                minuteFrom[index] = from;
+                minuteSessions[index] = 0;
+                minuteMinutes[index] = 0;
+                minuteCents[index] = 0;
+            }
+            //a checkOut of a minute already reset only counts since the start
+            if(minuteFrom[index] == from){
+                minuteSessions[index]++;
+                minuteMinutes[index] += minutes;
+                minuteCents[index] += cents;
+            }
+            if(now >= dayTo){
+                LocalDate date = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+                dayFrom = date.atStartOfDay(zone).toInstant().toEpochMilli();
+                dayTo = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+                daySessions = 0;
+                dayMinutes = 0;
+                dayCents = 0;
+            }
+            if(now >= dayFrom){
+                daySessions++;
+                dayMinutes += minutes;
+                dayCents += cents;
+            }
+        }
+
+        /**
+         * @param sums receives the sessions, minutes and cents at indexes 0, 1 and 2.
+         */
+        void addTo(long[] sums, RevenuePeriod period, long now){
+            switch(period){
+                case LAST_HOUR:
+                    long from = now - Math.floorMod(now, MINUTE) - (HOUR_MINUTES - 1) * MINUTE;
+                    for(int i = 0; i < HOUR_MINUTES; i++){
+                        if(minuteFrom[i] >= from && minuteFrom[i] <= now){
+                            sums[0] += minuteSessions[i];
+                            sums[1] += minuteMinutes[i];
+                            sums[2] += minuteCents[i];
+                        }
+                    }
+                    break;
+                case TODAY:
+                    if(now >= dayFrom && now < dayTo){
+                        sums[0] += daySessions;
+                        sums[1] += dayMinutes;
+                        sums[2] += dayCents;
+                    }
+                    break;
+                default:
+                    sums[0] += sessions;
+                    sums[1] += minutes;
+                    sums[2] += cents;
+            }
+        }
+    }
+}
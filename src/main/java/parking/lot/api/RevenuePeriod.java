@@ -0,0 +1,47 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * Time range over which the revenue of a ParkingApi is read, see ParkingApi.getRevenue.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public enum RevenuePeriod {
+    /**
+     * Every session since the ParkingApi was created.
+     */
+    ALL_TIME,
+    /**
+     * Sessions ended in the current minute and the 59 before it.
+     */
+    LAST_HOUR,
+    /**
+     * Sessions ended since midnight, in the time zone of the JVM.
+     */
+    TODAY
+}
@@ -0,0 +1,492 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Append-only history of the completed parking sessions of a ParkingApi, kept off the
+ * heap, see ParkingApi.startSessionLog.
+ *
+ * Sessions are stored by column in chunks of CHUNK_SESSIONS rows, each chunk a single
+ * direct buffer holding its columns one after the other: start, end, minutes and price
+ * (8 bytes each), then parking id, type and slot id (4 bytes each), 44 bytes per
+ * session. A scan reads only the columns it needs, filters on the parking id, type and
+ * end columns first and skips the chunks whose end times are all out of the range.
+ *
+ * A checkOut claims a row with one getAndIncrement, writes its columns with absolute
+ * puts and sets the row bit of the chunk, readers only read rows whose bit is set. No
+ * object is allocated on append except the next chunk, allocated ahead once per chunk.
+ * Once capacity sessions are logged later ones are dropped and counted.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class SessionLog {
+    static final int CHUNK_SESSIONS = 1 << 16;
+
+    /**
+     * Any parking for the filters of aggregate and forEach.
+     */
+    public static final int ANY_PARKING = 0;
+
+    private static final int SESSION_BYTES = 44;
+
+    private final int chunkBits;
+    private final int chunkSessions;
+    private final long capacity;
+
+    /**
+     * Next row to claim, can go past capacity.
+     */
+    private final AtomicLong next = new AtomicLong();
+
+    private final AtomicReferenceArray<Chunk> chunks;
+
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param capacity the most sessions kept.
+     */
+    SessionLog(long capacity){
+        this(capacity, CHUNK_SESSIONS);
+    }
+
+    /**
+     * @param capacity the most sessions kept.
+     * @param chunkSessions rows per chunk, a power of 2 and a multiple of 64.
+     */
+    SessionLog(long capacity, int chunkSessions){
+        if(capacity < 1){
+            throw new IllegalArgumentException("Cannot keep "+capacity+" sessions!");
+        }
+        if(Integer.bitCount(chunkSessions) != 1 || chunkSessions < 64){
+            throw new IllegalArgumentException("Chunks of "+chunkSessions+" sessions are not a power of 2 from 64!");
+        }
+        long chunkCount = (capacity + chunkSessions - 1) / chunkSessions;
+        if(chunkCount > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Cannot keep "+capacity+" sessions!");
+        }
+        this.chunkBits = Integer.numberOfTrailingZeros(chunkSessions);
+        this.chunkSessions = chunkSessions;
+        this.capacity = capacity;
+        this.chunks = new AtomicReferenceArray<>((int) chunkCount);
+        chunks.set(0, new Chunk(chunkSessions));
+    }
+
+    /**
+     * Log a completed session, called by the thread that checked the car out.
+     */
+    void append(int parkingId, SlotType type, int slotId, long start, long end, long minutes, double price){
+        long row = next.getAndIncrement();
+        if(row >= capacity){
+            dropped.increment();
+            return;
+        }
+        int index = (int) (row >>> chunkBits);
+        int offset = (int) row & (chunkSessions - 1);
+        Chunk chunk = chunk(index);
+        if(offset == chunkSessions / 2 && index + 1 < chunks.length()){
+            //the next chunk is ready long before its first row is claimed
+            chunk(index + 1);
+        }
+        chunk.write(offset, parkingId, type.ordinal(), slotId, start, end, minutes, price);
+    }
+
+    private Chunk chunk(int index){
+        Chunk chunk = chunks.get(index);
+        if(chunk == null){
+            chunks.compareAndSet(index, null, new Chunk(chunkSessions));
+            chunk = chunks.get(index);
+        }
+        return chunk;
+    }
+
+    /**
+     * @return the number of sessions appended, some may still be written.
+     */
+    public long size(){
+        return Math.min(next.get(), capacity);
+    }
+
+    /**
+     * @return the most sessions kept.
+     */
+    public long capacity(){
+        return capacity;
+    }
+
+    /**
+     * @return the sessions not kept because the log was full.
+     */
+    public long dropped(){
+        return dropped.sum();
+    }
+
+    /**
+     * Sum every logged session.
+     *
+     * @return the number of sessions, their minutes and their prices.
+     */
+    public SessionTotals aggregate(){
+        return aggregate(ANY_PARKING, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Sum the sessions that ended in a time range.
+     *
+     * @param from lowest end time, included, in milliseconds of the clock of the ParkingApi.
+     * @param to highest end time, excluded.
+     * @return the number of sessions, their minutes and their prices.
+     */
+    public SessionTotals aggregate(long from, long to){
+        return aggregate(ANY_PARKING, null, from, to);
+    }
+
+    /**
+     * Sum the sessions of a lot, of a type or both that ended in a time range.
+     *
+     * @param parkingId the lot, ANY_PARKING for every lot.
+     * @param type the type of the slots, null for every type.
+     * @param from lowest end time, included, in milliseconds of the clock of the ParkingApi.
+     * @param to highest end time, excluded.
+     * @return the number of sessions, their minutes and their prices.
+     */
+    public SessionTotals aggregate(int parkingId, SlotType type, long from, long to){
+        long end = size();
+        int typeCode = type == null ? -1 : type.ordinal();
+        long count = 0;
+        long minutes = 0;
+        double revenue = 0;
+        for(int index = 0; (long) index << chunkBits < end; index++){
+            Chunk chunk = chunks.get(index);
+            if(chunk == null || !chunk.mayHaveEnded(from, to)){
+                continue;
+            }
+            int rows = (int) Math.min(chunkSessions, end - ((long) index << chunkBits));
+            for(int word = 0; word << 6 < rows; word++){
+                long bits = chunk.written.get(word);
+                while(bits != 0){
+                    int row = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    if(chunk.matches(row, parkingId, typeCode, from, to)){
+                        count++;
+                        minutes += chunk.minutes(row);
+                        revenue += chunk.price(row);
+                    }
+                }
+            }
+        }
+        return new SessionTotals(count, minutes, revenue);
+    }
+
+    /**
+     * Visit the sessions of a lot, of a type or both that ended in a time range, in
+     * append order, without allocating.
+     *
+     * @param parkingId the lot, ANY_PARKING for every lot.
+     * @param type the type of the slots, null for every type.
+     * @param from lowest end time, included, in milliseconds of the clock of the ParkingApi.
+     * @param to highest end time, excluded.
+     * @param visitor called with each session.
+     */
+    public void forEach(int parkingId, SlotType type, long from, long to, SessionVisitor visitor){
+        long end = size();
+        int typeCode = type == null ? -1 : type.ordinal();
+        for(int index = 0; (long) index << chunkBits < end; index++){
+            Chunk chunk = chunks.get(index);
+            if(chunk == null || !chunk.mayHaveEnded(from, to)){
+                continue;
+            }
+            int rows = (int) Math.min(chunkSessions, end - ((long) index << chunkBits));
+            for(int word = 0; word << 6 < rows; word++){
+                long bits = chunk.written.get(word);
+                while(bits != 0){
+                    int row = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    if(chunk.matches(row, parkingId, typeCode, from, to)){
+                        visitor.session(chunk.parkingId(row), SlotType.of(chunk.type(row)), chunk.slotId(row),
+                                chunk.start(row), chunk.end(row), chunk.minutes(row), chunk.price(row));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as forEach with every session.
+     */
+    public void forEach(SessionVisitor visitor){
+        forEach(ANY_PARKING, null, Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Price every logged session again under another policy, in parallel, see rebill
+     * with filters.
+     *
+     * @param policy the price policy, called concurrently.
+     * @return the total and the sums of each lot.
+     */
+    public BillingReport rebill(BillingPolicy policy){
+        return rebill(policy, ANY_PARKING, null, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Price the sessions that ended in a time range again under another policy, in
+     * parallel, see rebill with filters.
+     *
+     * @param policy the price policy, called concurrently.
+     * @param from lowest end time, included, in milliseconds of the clock of the ParkingApi.
+     * @param to highest end time, excluded.
+     * @return the total and the sums of each lot.
+     */
+    public BillingReport rebill(BillingPolicy policy, long from, long to){
+        return rebill(policy, ANY_PARKING, null, from, to);
+    }
+
+    /**
+     * Price the sessions of a lot, of a type or both that ended in a time range again
+     * under another policy, for instance after a retroactive tariff change. The logged
+     * minutes of each session are billed and the prices summed in cents; the logged
+     * prices are left as they are.
+     *
+     * The rows are split between fork/join tasks, chunk by chunk then in ranges of
+     * BulkBilling.LEAF_SESSIONS rows, run in the common pool or in the pool of the caller
+     * when called from a fork/join task.
+     *
+     * @param policy the price policy, called concurrently.
+     * @param parkingId the lot, ANY_PARKING for every lot.
+     * @param type the type of the slots, null for every type.
+     * @param from lowest end time, included, in milliseconds of the clock of the ParkingApi.
+     * @param to highest end time, excluded.
+     * @return the total and the sums of each lot.
+     */
+    public BillingReport rebill(BillingPolicy policy, int parkingId, SlotType type, long from, long to){
+        int typeCode = type == null ? -1 : type.ordinal();
+        return new Rebill(policy, parkingId, typeCode, from, to, 0, size(), false).invoke().report();
+    }
+
+    /**
+     * Bills the rows from first to last, excluded, split at chunk boundaries first so
+     * the end times range of a chunk is read by a single task.
+     */
+    private final class Rebill extends RecursiveTask<BillingSums> {
+        private final BillingPolicy policy;
+        private final int parkingId;
+        private final int typeCode;
+        private final long from;
+        private final long to;
+        private final long first;
+        private final long last;
+
+        /**
+         * True once the rows are known to be in a chunk that may hold sessions of the range.
+         */
+        private final boolean inRange;
+
+        Rebill(BillingPolicy policy, int parkingId, int typeCode, long from, long to, long first, long last, boolean inRange){
+            this.policy = policy;
+            this.parkingId = parkingId;
+            this.typeCode = typeCode;
+            this.from = from;
+            this.to = to;
+            this.first = first;
+            this.last = last;
+            this.inRange = inRange;
+        }
+
+        @Override
+        protected BillingSums compute(){
+            if(last <= first){
+                return new BillingSums();
+            }
+            int index = (int) (first >>> chunkBits);
+            if(last - first > chunkSessions || (!inRange && (last - 1) >>> chunkBits != index)){
+                long middle = ((first + last) >>> 1) & -(long) chunkSessions;
+                if(middle <= first){
+                    middle = (long) (index + 1) << chunkBits;
+                }
+                return split(middle, false);
+            }
+            Chunk chunk = chunks.get(index);
+            if(chunk == null || (!inRange && !chunk.mayHaveEnded(from, to))){
+                return new BillingSums();
+            }
+            if(last - first > BulkBilling.LEAF_SESSIONS){
+                return split(((first + last) >>> 1) & -64L, true);
+            }
+            BillingSums sums = new BillingSums();
+            int offset = (int) (first & (chunkSessions - 1));
+            int rows = (int) (last - first);
+            for(int word = offset >>> 6; word << 6 < offset + rows; word++){
+                long bits = chunk.written.get(word);
+                while(bits != 0){
+                    int row = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    if(chunk.matches(row, parkingId, typeCode, from, to)){
+                        long minutes = chunk.minutes(row);
+                        sums.add(chunk.parkingId(row), minutes, Revenue.cents(policy.bill(minutes)));
+                    }
+                }
+            }
+            return sums;
+        }
+
+        private BillingSums split(long middle, boolean inRange){
+            Rebill low = new Rebill(policy, parkingId, typeCode, from, to, first, middle, inRange);
+            low.fork();
+            BillingSums high = new Rebill(policy, parkingId, typeCode, from, to, middle, last, inRange).compute();
+            return low.join().merge(high);
+        }
+    }
+
+    /**
+     * Rows of a chunk, by column.
+     */
+    private static final class Chunk {
+        private final ByteBuffer columns;
+        private final int startAt;
+        private final int endAt;
+        private final int minutesAt;
+        private final int priceAt;
+        private final int parkingAt;
+        private final int typeAt;
+        private final int slotAt;
+
+        /**
+         * Bit r of word r / 64 is set once row r is written.
+         */
+        final AtomicLongArray written;
+
+        /**
+         * Range of the end times of a full chunk, computed by the first scan that finds it full.
+         */
+        private volatile long[] ended;
+
+        Chunk(int rows){
+            columns = ByteBuffer.allocateDirect(rows * SESSION_BYTES).order(ByteOrder.nativeOrder());
+            startAt = 0;
+            endAt = startAt + rows * 8;
+            minutesAt = endAt + rows * 8;
+            priceAt = minutesAt + rows * 8;
+            parkingAt = priceAt + rows * 8;
+            typeAt = parkingAt + rows * 4;
+            slotAt = typeAt + rows * 4;
+            written = new AtomicLongArray(rows / 64);
+        }
+
+        void write(int row, int parkingId, int type, int slotId, long start, long end, long minutes, double price){
+            columns.putLong(startAt + row * 8, start);
+            columns.putLong(endAt + row * 8, end);
+            columns.putLong(minutesAt + row * 8, minutes);
+            columns.putDouble(priceAt + row * 8, price);
+            columns.putInt(parkingAt + row * 4, parkingId);
+            columns.putInt(typeAt + row * 4, type);
+            columns.putInt(slotAt + row * 4, slotId);
+            int word = row >>> 6;
+            long bit = 1L << row;
+            for(;;){
+                long bits = written.get(word);
+                if(written.compareAndSet(word, bits, bits | bit)){
+                    return;
+                }
+            }
+        }
+
+        boolean matches(int row, int parkingId, int type, long from, long to){
+            if(parkingId != ANY_PARKING && parkingId(row) != parkingId){
+                return false;
+            }
+            if(type >= 0 && type(row) != type){
+                return false;
+            }
+            long end = end(row);
+            return end >= from && end < to;
+        }
+
+        /**
+         * @return false if no session of the chunk ended in the range, true when unsure.
+         */
+        boolean mayHaveEnded(long from, long to){
+            if(from == Long.MIN_VALUE && to == Long.MAX_VALUE){
+                return true;
+            }
+            long[] range = ended;
+            if(range == null){
+                for(int word = 0; word < written.length(); word++){
+                    if(written.get(word) != -1L){
+                        return true;
+                    }
+                }
+                long lowest = Long.MAX_VALUE;
+                long highest = Long.MIN_VALUE;
+                int rows = written.length() * 64;
+                for(int row = 0; row < rows; row++){
+                    long end = end(row);
+                    lowest = Math.min(lowest, end);
+                    highest = Math.max(highest, end);
+                }
+                range = new long[]{ lowest, highest };
+                ended = range;
+            }
+            return range[1] >= from && range[0] < to;
+        }
+
+        long start(int row){
+            return columns.getLong(startAt + row * 8);
+        }
+
+        long end(int row){
+            return columns.getLong(endAt + row * 8);
+        }
+
+        long minutes(int row){
+            return columns.getLong(minutesAt + row * 8);
+        }
+
+        double price(int row){
+            return columns.getDouble(priceAt + row * 8);
+        }
+
+        int parkingId(int row){
+            return columns.getInt(parkingAt + row * 4);
+        }
+
+        int type(int row){
+            return columns.getInt(typeAt + row * 4);
+        }
+
+        int slotId(int row){
+            return columns.getInt(slotAt + row * 4);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * Sums over the sessions of a SessionLog, see SessionLog.aggregate.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class SessionTotals {
+    private final long count;
+    private final long minutes;
+    private final double revenue;
+
+    SessionTotals(long count, long minutes, double revenue) {
+        this.count = count;
+        this.minutes = minutes;
+        this.revenue = revenue;
+    }
+
+    /**
+     * @return the number of sessions.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the minutes billed, summed.
+     */
+    public long getMinutes() {
+        return minutes;
+    }
+
+    /**
+     * @return the prices of the sessions, summed.
+     */
+    public double getRevenue() {
+        return revenue;
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + " minutes=" + minutes + " revenue=" + revenue;
+    }
+}
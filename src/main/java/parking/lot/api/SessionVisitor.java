@@ -0,0 +1,46 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * Receives the sessions of a SessionLog one by one, see SessionLog.forEach.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+@FunctionalInterface
+public interface SessionVisitor {
+    /**
+     * @param parkingId the lot.
+     * @param type the type of the slot.
+     * @param slotId the slot.
+     * @param start checkIn time in milliseconds of the clock of the ParkingApi.
+     * @param end checkOut time.
+     * @param minutes the minutes billed.
+     * @param price the price returned by the checkOut.
+     */
+    void session(int parkingId, SlotType type, int slotId, long start, long end, long minutes, double price);
+}
@@ -0,0 +1,376 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free stacks (Treiber) of the free slot ids of a ParkingSlotSet.
+ *
+ * Slot ids go from 1 to maxSlots, the links between free ids are kept in a plain
+ * int array and the head of a stack is a single long packing a stamp in the high 32 bits
+ * and the top id in the low 32 bits. The stamp changes on every successful push/pop
+ * so a stale head (ABA) is always rejected by the compareAndSet.
+ *
+ * Ids never taken yet are not in the stacks: every id of a stripe from its high-water
+ * mark on is free, a poll finding the stack empty takes the next ones by moving the
+ * mark up. Creating a free list is O(1) whatever the number of ids, only ids given
+ * back by offer are linked in the stacks.
+ *
+ * The ids can be split in several stripes of consecutive ids, each with its own stack
+ * and its head on its own cache line. A poll starts with the stripe chosen by the
+ * caller's hint (an entrance, a thread) and steals from the other stripes only when
+ * that one is empty, so concurrent gates mostly touch different heads.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+class SlotFreeList {
+    /**
+     * Id used as end of list, valid slot ids start at 1.
+     */
+    static final int EMPTY = 0;
+
+    /**
+     * Distance between two heads in the heads array, 16 longs keep them on different cache lines.
+     */
+    private static final int HEAD_STRIDE = 16;
+
+    /**
+     * next[id] is the free id below id in its stack, only read after the head
+     * holding id was read, the stamped compareAndSet discards stale reads.
+     * Stripes hold disjoint ids so they share this array.
+     */
+    private final int[] next;
+
+    /**
+     * Head of stripe s at index s * HEAD_STRIDE, its high-water mark, the lowest id of
+     * the stripe never taken, at index s * HEAD_STRIDE + 1.
+     */
+    private final AtomicLongArray heads;
+
+    private final int stripes;
+
+    /**
+     * Number of ids per stripe, stripe s holds ids s * stripeSize + 1 to (s + 1) * stripeSize.
+     */
+    private final int stripeSize;
+
+    /**
+     * Failed compareAndSets, every one is a poll or offer that raced another on the same
+     * stripe. Only contended operations pay for counting them.
+     */
+    private final LongAdder retries = new LongAdder();
+
+    /**
+     * Create a free list holding all ids from 1 to maxSlots, id 1 on top.
+     *
+     * @param maxSlots the number of slot ids.
+     */
+    SlotFreeList(int maxSlots){
+        this(maxSlots, 1);
+    }
+
+    /**
+     * Create a free list holding all ids from 1 to maxSlots split in stripes,
+     * the ids of each stripe are taken in increasing order.
+     *
+     * @param maxSlots the number of slot ids.
+     * @param stripes the requested number of stripes, at most maxSlots are used.
+     */
+    SlotFreeList(int maxSlots, int stripes){
+        int requested = Math.max(1, Math.min(stripes, maxSlots));
+        this.stripeSize = Math.max(1, (maxSlots + requested - 1) / requested);
+        //rounding up the stripe size can leave the last requested stripes empty
+        this.stripes = Math.max(1, (maxSlots + stripeSize - 1) / stripeSize);
+        this.next = new int[maxSlots + 1];
+        this.heads = new AtomicLongArray(this.stripes * HEAD_STRIDE);
+        for(int stripe = 0; stripe < this.stripes; stripe++){
+            heads.set(stripe * HEAD_STRIDE + 1, first(stripe));
+        }
+    }
+
+    /**
+     * Rebuild the stacks without the given ids, the lowest free id of each stripe on top.
+     * Only valid before the list is shared with other threads.
+     *
+     * @param taken the ids to leave out.
+     */
+    void reset(BitSet taken){
+        for(int stripe = 0; stripe < stripes; stripe++){
+            int first = first(stripe);
+            //ids above the highest taken one stay behind the high-water mark
+            int mark = Math.max(first, taken.previousSetBit(end(stripe) - 1) + 1);
+            int top = EMPTY;
+            for(int id = mark - 1; id >= first; id--){
+                if(!taken.get(id)){
+                    next[id] = top;
+                    top = id;
+                }
+            }
+            heads.set(stripe * HEAD_STRIDE, pack(0, top));
+            heads.set(stripe * HEAD_STRIDE + 1, mark);
+        }
+    }
+
+    /**
+     * @return the number of compareAndSets that lost a race since the list was created.
+     */
+    long retries(){
+        return retries.sum();
+    }
+
+    /**
+     * @return true if no stripe has a free id, only a hint while ids are polled and offered concurrently.
+     */
+    boolean isEmpty(){
+        for(int stripe = 0; stripe < stripes; stripe++){
+            if((int) heads.get(stripe * HEAD_STRIDE) != EMPTY || heads.get(stripe * HEAD_STRIDE + 1) < end(stripe)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of stripes.
+     */
+    int stripes(){
+        return stripes;
+    }
+
+    /**
+     * Take a free id, starting with the first stripe.
+     *
+     * @return a free slot id or EMPTY if there is none left.
+     */
+    int poll(){
+        return poll(0);
+    }
+
+    /**
+     * Take a free id from the home stripe of hint, or from the next non empty stripe.
+     *
+     * @param hint any int identifying the caller, equal hints share a home stripe.
+     * @return a free slot id or EMPTY if every stripe is empty.
+     */
+    int poll(int hint){
+        if(stripes == 1){
+            return pollStripe(0);
+        }
+        int home = Math.floorMod(hint, stripes);
+        for(int i = 0; i < stripes; i++){
+            int stripe = home + i < stripes ? home + i : home + i - stripes;
+            int id = pollStripe(stripe);
+            if(id != EMPTY){
+                return id;
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Take up to count free ids, with a single compareAndSet per stripe visited.
+     *
+     * @param hint any int identifying the caller, equal hints share a home stripe.
+     * @param ids array receiving the ids.
+     * @param offset index in ids of the first id taken.
+     * @param count maximum number of ids to take.
+     * @return number of ids taken, less than count if every stripe ran out of ids.
+     */
+    int poll(int hint, int[] ids, int offset, int count){
+        int home = stripes == 1 ? 0 : Math.floorMod(hint, stripes);
+        int taken = 0;
+        for(int i = 0; i < stripes && taken < count; i++){
+            int stripe = home + i < stripes ? home + i : home + i - stripes;
+            taken += pollStripe(stripe, ids, offset + taken, count - taken);
+        }
+        return taken;
+    }
+
+    /**
+     * Give back several ids, the caller must own them. Consecutive ids of the same
+     * stripe are given back with a single compareAndSet.
+     *
+     * @param ids array holding the ids.
+     * @param offset index in ids of the first id to give back.
+     * @param count number of ids to give back.
+     */
+    void offer(int[] ids, int offset, int count){
+        int end = offset + count;
+        int runStart = offset;
+        while(runStart < end){
+            int stripe = stripeOf(ids[runStart]);
+            int runEnd = runStart + 1;
+            while(runEnd < end && stripeOf(ids[runEnd]) == stripe){
+                runEnd++;
+            }
+            offerStripe(stripe, ids, runStart, runEnd - runStart);
+            runStart = runEnd;
+        }
+    }
+
+    /**
+     * Give back an id to its stripe, the caller must own it (no other thread can offer the same id).
+     *
+     * @param id the slot id to make available.
+     */
+    void offer(int id){
+        int index = stripeOf(id) * HEAD_STRIDE;
+        for(;;){
+            long current = heads.get(index);
+            next[id] = (int) current;
+            if(heads.compareAndSet(index, current, pack(stamp(current) + 1, id))){
+                return;
+            }
+            retries.increment();
+        }
+    }
+
+    private int stripeOf(int id){
+        return stripes == 1 ? 0 : (id - 1) / stripeSize;
+    }
+
+    /**
+     * @return the lowest id of the stripe.
+     */
+    private int first(int stripe){
+        return stripe * stripeSize + 1;
+    }
+
+    /**
+     * @return the id following the highest id of the stripe.
+     */
+    private int end(int stripe){
+        return (int) Math.min((long) (stripe + 1) * stripeSize, next.length - 1) + 1;
+    }
+
+    private int pollStripe(int stripe){
+        int index = stripe * HEAD_STRIDE;
+        for(;;){
+            long current = heads.get(index);
+            int id = (int) current;
+            if(id == EMPTY){
+                return pollFresh(stripe);
+            }
+            if(heads.compareAndSet(index, current, pack(stamp(current) + 1, next[id]))){
+                return id;
+            }
+            retries.increment();
+        }
+    }
+
+    private int pollStripe(int stripe, int[] ids, int offset, int count){
+        int index = stripe * HEAD_STRIDE;
+        for(;;){
+            long current = heads.get(index);
+            int id = (int) current;
+            int taken = 0;
+            while(taken < count && id != EMPTY){
+                ids[offset + taken++] = id;
+                id = next[id];
+            }
+            if(taken == 0){
+                return pollFresh(stripe, ids, offset, count);
+            }
+            if(heads.compareAndSet(index, current, pack(stamp(current) + 1, id))){
+                return taken < count ? taken + pollFresh(stripe, ids, offset + taken, count - taken) : taken;
+            }
+            retries.increment();
+        }
+    }
+
+    /**
+     * Take the id at the high-water mark of the stripe.
+     *
+     * @return the id, EMPTY if every id of the stripe was already taken once.
+     */
+    private int pollFresh(int stripe){
+        int index = stripe * HEAD_STRIDE + 1;
+        int end = end(stripe);
+        for(;;){
+            long mark = heads.get(index);
+            if(mark >= end){
+                return EMPTY;
+            }
+            if(heads.compareAndSet(index, mark, mark + 1)){
+                return (int) mark;
+            }
+            retries.increment();
+        }
+    }
+
+    /**
+     * Take up to count ids from the high-water mark of the stripe on, with a single compareAndSet.
+     *
+     * @return the number of ids taken.
+     */
+    private int pollFresh(int stripe, int[] ids, int offset, int count){
+        int index = stripe * HEAD_STRIDE + 1;
+        int end = end(stripe);
+        for(;;){
+            long mark = heads.get(index);
+            int taken = (int) Math.min(count, end - mark);
+            if(taken <= 0){
+                return 0;
+            }
+            if(heads.compareAndSet(index, mark, mark + taken)){
+                for(int i = 0; i < taken; i++){
+                    ids[offset + i] = (int) mark + i;
+                }
+                return taken;
+            }
+            retries.increment();
+        }
+    }
+
+    private void offerStripe(int stripe, int[] ids, int offset, int count){
+        int last = offset + count - 1;
+        for(int i = offset; i < last; i++){
+            next[ids[i]] = ids[i + 1];
+        }
+        int first = ids[offset];
+        int index = stripe * HEAD_STRIDE;
+        for(;;){
+            long current = heads.get(index);
+            next[ids[last]] = (int) current;
+            if(heads.compareAndSet(index, current, pack(stamp(current) + 1, first))){
+                return;
+            }
+            retries.increment();
+        }
+    }
+
+    private static long pack(int stamp, int id){
+        return ((long) stamp << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private static int stamp(long packed){
+        return (int) (packed >>> 32);
+    }
+}
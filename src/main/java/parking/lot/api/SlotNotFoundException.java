@@ -26,11 +26,13 @@
 package parking.lot.api;
 
 /**
+ * Thrown when checking out a slot that is not occupied, has no stack trace.
+ *
  * @author Pedro
  * @since 04/02/18
  */
 public class SlotNotFoundException extends Throwable {
     public SlotNotFoundException(String s) {
-        super(s);
+        super(s, null, false, false);
     }
 }
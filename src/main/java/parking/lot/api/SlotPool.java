@@ -0,0 +1,124 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The slots of one type inside a ParkingSlotSet: a range of consecutive slot ids with
+ * its own lock-free free list, its own occupancy counter and its own revenue counter.
+ *
+ * The free list holds local ids, from 1 to size, the slot id of local id i is offset + i.
+ * Cars waiting for a slot of a full pool are queued in arrival order in waiters.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class SlotPool {
+    final SlotType type;
+
+    /**
+     * Slot ids of this pool go from offset + 1 to offset + size.
+     */
+    final int offset;
+    final int size;
+
+    final SlotFreeList freeSlots;
+
+    /**
+     * Occupied slots of the pool, forwarded to the counter of the type.
+     */
+    final OccupancyCounter occupancy;
+
+    /**
+     * Revenue of the pool, forwarded to the counter of the type, null when not counted,
+     * set before the set is registered.
+     */
+    RevenueCounter revenue;
+
+    /**
+     * Cars waiting for a slot, oldest first, see ParkingSlotSet.checkInAsync.
+     */
+    final ConcurrentLinkedQueue<SlotWaiter> waiters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Set by the thread publishing the FULL event of the pool, cleared by the one
+     * publishing NOT_FULL. Only kept up to date while the events have subscribers.
+     */
+    final AtomicBoolean full = new AtomicBoolean();
+
+    /**
+     * Histograms of the pool, null until an operation on the pool is measured.
+     */
+    private volatile PoolMetrics metrics;
+
+    /**
+     * @param type the type of the slots.
+     * @param offset the slot id preceding the first slot of the pool.
+     * @param size the number of slots, at least 1.
+     * @param stripes the number of stripes of the free list.
+     * @param typeOccupancy counter of all the slots of the type, null for none.
+     */
+    SlotPool(SlotType type, int offset, int size, int stripes, OccupancyCounter typeOccupancy){
+        this.type = type;
+        this.offset = offset;
+        this.size = size;
+        this.freeSlots = new SlotFreeList(size, stripes);
+        this.occupancy = new OccupancyCounter(size, typeOccupancy);
+    }
+
+    /**
+     * @param id a slot id of the set.
+     * @return true if the slot belongs to this pool.
+     */
+    boolean contains(int id){
+        return id > offset && id <= offset + size;
+    }
+
+    /**
+     * @return the metrics of the pool, allocated on first use.
+     */
+    PoolMetrics metrics(){
+        PoolMetrics current = metrics;
+        if(current != null){
+            return current;
+        }
+        synchronized(this){
+            if(metrics == null){
+                metrics = new PoolMetrics();
+            }
+            return metrics;
+        }
+    }
+
+    /**
+     * @return the metrics of the pool, null if none of its operations was measured yet.
+     */
+    PoolMetrics metricsIfAny(){
+        return metrics;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * State of the slots of a ParkingSlotSet, indexed by slot id from 1.
+ *
+ * A slot is marked occupied only by the thread that took it from the free slots and
+ * released by a single one of concurrent checkOut calls. Marking a slot occupied
+ * publishes its start time to the thread that releases it.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+interface SlotStates {
+
+    /**
+     * Mark a slot occupied, the caller owns the slot.
+     *
+     * @param id the slot id.
+     * @param now time of the checkIn in milliseconds of the clock.
+     */
+    void checkIn(int id, long now);
+
+    /**
+     * Atomically mark an occupied slot as available again.
+     *
+     * @param id the slot id.
+     * @return true if this call released the slot, false if it was already available.
+     */
+    boolean release(int id);
+
+    /**
+     * @param id the slot id.
+     * @return true if a car is parked on the slot.
+     */
+    boolean isOccupied(int id);
+
+    /**
+     * @param id the slot id.
+     * @return time of the last checkIn on the slot in milliseconds of the clock.
+     */
+    long getStartTime(int id);
+
+    /**
+     * @return the number of slots, ids go from 1 to this value.
+     */
+    int size();
+}
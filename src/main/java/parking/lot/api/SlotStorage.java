@@ -0,0 +1,68 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+/**
+ * How a ParkingSlotSet keeps the state of its slots, i.e. whether each slot is occupied
+ * and since when.
+ *
+ * OBJECTS keeps one ParkingSlot object per slot, created on its first checkIn, about
+ * 36 bytes per slot once used. COMPACT keeps an occupancy bitset and an array of start
+ * times, a little over 8 bytes per slot, for lots of millions of slots such as a whole
+ * city of on-street parking. Both behave the
+ * same, the free slots are held by the same lock-free free list in both cases.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public enum SlotStorage {
+    /**
+     * One ParkingSlot object per slot.
+     */
+    OBJECTS {
+        @Override
+        SlotStates create(int numberOfSlots, ParkingClock clock){
+            return new ObjectSlotStates(numberOfSlots, clock);
+        }
+    },
+
+    /**
+     * Primitive arrays: an occupancy bitset plus a long[] of start times.
+     */
+    COMPACT {
+        @Override
+        SlotStates create(int numberOfSlots, ParkingClock clock){
+            return new CompactSlotStates(numberOfSlots);
+        }
+    };
+
+    /**
+     * @param numberOfSlots the number of slots, ids go from 1 to numberOfSlots.
+     * @param clock the time source of the set.
+     * @return the states of the slots, all available.
+     */
+    abstract SlotStates create(int numberOfSlots, ParkingClock clock);
+}
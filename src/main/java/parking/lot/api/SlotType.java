@@ -0,0 +1,163 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Type of the slots of a parking lot, i.e. the kind of car or charger they serve.
+ *
+ * Types are registered at runtime and get a dense ordinal, from 0 to count() - 1, in
+ * registration order, so per-type tables are plain arrays indexed by the ordinal.
+ * There is a single SlotType per name: registering a name again returns the same
+ * object and types can be compared with ==. The three historical types are registered
+ * first, their names are the String constants of ParkingApi.
+ * <code>
+ *     SlotType charger11kW = SlotType.register("11kW");
+ *     int parkingId = api.newParkingHandle(40, charger11kW);
+ *     int slotId = api.checkIn(parkingId, charger11kW);
+ * </code>
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class SlotType {
+
+    private static final ConcurrentHashMap<String, SlotType> BY_NAME = new ConcurrentHashMap<>();
+
+    /**
+     * BY_ORDINAL[ordinal] is the type with that ordinal, replaced by a longer copy on register.
+     */
+    private static volatile SlotType[] BY_ORDINAL = new SlotType[0];
+
+    /**
+     * Standard slots for fossil fuel cars, alias of ParkingApi.PARKING_STANDARD_TYPE.
+     */
+    public static final SlotType STANDARD = register(ParkingApi.PARKING_STANDARD_TYPE);
+
+    /**
+     * Slots with a 20kW outlet, alias of ParkingApi.PARKING_20kW_TYPE.
+     */
+    public static final SlotType CHARGER_20kW = register(ParkingApi.PARKING_20kW_TYPE);
+
+    /**
+     * Slots with a 50kW outlet, alias of ParkingApi.PARKING_50kW_TYPE.
+     */
+    public static final SlotType CHARGER_50kW = register(ParkingApi.PARKING_50kW_TYPE);
+
+    private final String name;
+    private final int ordinal;
+
+    private SlotType(String name, int ordinal){
+        this.name = name;
+        this.ordinal = ordinal;
+    }
+
+    /**
+     * Register a slot type, or get it if the name is already registered.
+     *
+     * @param name the name of the type, used by the String flavours of the API.
+     * @return the type with that name.
+     * @throws IllegalArgumentException if the name is null or empty.
+     */
+    public static SlotType register(String name){
+        if(name == null || name.isEmpty()){
+            throw new IllegalArgumentException("A slot type needs a name!");
+        }
+        SlotType type = BY_NAME.get(name);
+        if(type != null){
+            return type;
+        }
+        synchronized(SlotType.class){
+            type = BY_NAME.get(name);
+            if(type == null){
+                SlotType[] types = BY_ORDINAL;
+                type = new SlotType(name, types.length);
+                SlotType[] grown = Arrays.copyOf(types, types.length + 1);
+                grown[type.ordinal] = type;
+                BY_ORDINAL = grown;
+                BY_NAME.put(name, type);
+            }
+            return type;
+        }
+    }
+
+    /**
+     * Find a registered type by name. The String constants of ParkingApi resolve to
+     * their aliases without hashing, other names are looked up in the registry.
+     *
+     * @param name the name of the type.
+     * @return the type or null if no type has that name.
+     */
+    public static SlotType of(String name){
+        if(name == ParkingApi.PARKING_STANDARD_TYPE){
+            return STANDARD;
+        }
+        if(name == ParkingApi.PARKING_20kW_TYPE){
+            return CHARGER_20kW;
+        }
+        if(name == ParkingApi.PARKING_50kW_TYPE){
+            return CHARGER_50kW;
+        }
+        return name == null ? null : BY_NAME.get(name);
+    }
+
+    /**
+     * @param ordinal the ordinal of a registered type.
+     * @return the type or null if no type has that ordinal.
+     */
+    public static SlotType of(int ordinal){
+        SlotType[] types = BY_ORDINAL;
+        return ordinal >= 0 && ordinal < types.length ? types[ordinal] : null;
+    }
+
+    /**
+     * @return the number of registered types, ordinals go from 0 to this value - 1.
+     */
+    public static int count(){
+        return BY_ORDINAL.length;
+    }
+
+    /**
+     * @return the name of the type.
+     */
+    public String name(){
+        return name;
+    }
+
+    /**
+     * @return the dense index of the type, from 0 in registration order.
+     */
+    public int ordinal(){
+        return ordinal;
+    }
+
+    @Override
+    public String toString(){
+        return name;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A car waiting for a slot of a full SlotPool, completed with the slot id it got.
+ *
+ * Waiters are queued in arrival order in the pool. A checkOut, a timeout and a cancel
+ * all race to claim the waiter with a single compareAndSet: a checkOut that claims it
+ * hands its slot over, a timeout or a cancel that claims it takes it out of the queue,
+ * so a slot is never handed to a waiter that gave up. Completing the future from outside
+ * goes through the same claim, like a cancel, and obtruding a value is not supported:
+ * once a slot is handed over nothing else can complete the waiter.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class SlotWaiter extends CompletableFuture<Integer> {
+    private static final AtomicIntegerFieldUpdater<SlotWaiter> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(SlotWaiter.class, "state");
+
+    private static final int WAITING = 0;
+    private static final int CLAIMED = 1;
+    private static final int ABANDONED = 2;
+
+    private volatile int state;
+
+    private final SlotPool pool;
+
+    /**
+     * Timeout task, null without timeout.
+     */
+    private volatile Future<?> timeout;
+
+    SlotWaiter(SlotPool pool){
+        this.pool = pool;
+    }
+
+    /**
+     * Give up waiting after the given time, the future then fails with a TimeoutException.
+     *
+     * @param time the longest wait.
+     * @param unit the unit of time.
+     * @param timer the executor running the timeout.
+     */
+    void expireAfter(long time, TimeUnit unit, ScheduledExecutorService timer){
+        timeout = timer.schedule(() -> {
+            if(abandon()){
+                super.completeExceptionally(new TimeoutException("No slot of type "+pool.type+" got free in time!"));
+            }
+        }, time, unit);
+    }
+
+    /**
+     * Take the waiter to hand it a slot.
+     *
+     * @return true if the waiter is still waiting, the caller must then call handOver.
+     */
+    boolean claim(){
+        return STATE.compareAndSet(this, WAITING, CLAIMED);
+    }
+
+    /**
+     * Complete a claimed waiter.
+     *
+     * @param slotId the slot the car got.
+     */
+    void handOver(int slotId){
+        stopTimeout();
+        super.complete(slotId);
+    }
+
+    /**
+     * Cancel the wait, fails if a slot is already being handed over.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning){
+        if(!abandon()){
+            return false;
+        }
+        stopTimeout();
+        return super.cancel(mayInterruptIfRunning);
+    }
+
+    /**
+     * Stop waiting and complete with the given value, fails if a slot is already being
+     * handed over.
+     */
+    @Override
+    public boolean complete(Integer value){
+        if(!abandon()){
+            return false;
+        }
+        stopTimeout();
+        return super.complete(value);
+    }
+
+    /**
+     * Stop waiting and fail with the given exception, fails if a slot is already being
+     * handed over.
+     */
+    @Override
+    public boolean completeExceptionally(Throwable ex){
+        if(ex == null){
+            throw new NullPointerException();
+        }
+        if(!abandon()){
+            return false;
+        }
+        stopTimeout();
+        return super.completeExceptionally(ex);
+    }
+
+    /**
+     * Not supported, a slot handed over must not be replaced.
+     */
+    @Override
+    public void obtrudeValue(Integer value){
+        throw new UnsupportedOperationException("A slot waiter cannot be obtruded!");
+    }
+
+    /**
+     * Not supported, a slot handed over must not be replaced.
+     */
+    @Override
+    public void obtrudeException(Throwable ex){
+        throw new UnsupportedOperationException("A slot waiter cannot be obtruded!");
+    }
+
+    private boolean abandon(){
+        if(!STATE.compareAndSet(this, WAITING, ABANDONED)){
+            return false;
+        }
+        pool.waiters.remove(this);
+        return true;
+    }
+
+    private void stopTimeout(){
+        Future<?> timeout = this.timeout;
+        if(timeout != null){
+            timeout.cancel(false);
+        }
+    }
+}
@@ -26,11 +26,15 @@
 package parking.lot.api;
 
 /**
+ * Thrown when every slot of the required type is occupied. A full lot is routine at
+ * a gate so the exception has no stack trace and a single instance is thrown every time.
+ *
  * @author ActiveEon Team
  * @since 04/02/18
  */
 public class SlotsFullException extends Throwable {
     public SlotsFullException(String s) {
-        super(s);
+        //no stack trace, rejections are part of the normal traffic of a parking
+        super(s, null, false, false);
     }
 }
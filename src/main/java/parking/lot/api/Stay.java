@@ -0,0 +1,89 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.Comparator;
+
+/**
+ * A car parked on a slot, as read by the long stay queries of ParkingApi.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class Stay {
+    static final Comparator<Stay> OLDEST_FIRST = Comparator.comparingLong(Stay::getStartTime);
+
+    private final int parkingId;
+    private final int slotId;
+    private final long startTime;
+    private final long minutes;
+
+    /**
+     * @param parkingId the id of the parking lot.
+     * @param slotId the id of the occupied slot.
+     * @param startTime time of the checkIn in milliseconds of the clock.
+     * @param now time of the query in milliseconds of the clock.
+     */
+    Stay(int parkingId, int slotId, long startTime, long now) {
+        this.parkingId = parkingId;
+        this.slotId = slotId;
+        this.startTime = startTime;
+        this.minutes = ((now - startTime)/1000)/60;
+    }
+
+    /**
+     * @return the id of the parking lot.
+     */
+    public int getParkingId() {
+        return parkingId;
+    }
+
+    /**
+     * @return the id of the occupied slot.
+     */
+    public int getSlotId() {
+        return slotId;
+    }
+
+    /**
+     * @return time of the checkIn in milliseconds of the clock.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return the amount of minutes the car had stayed when the stay was read, as billed by checkOut.
+     */
+    public long getMinutes() {
+        return minutes;
+    }
+
+    @Override
+    public String toString() {
+        return parkingId + "/" + slotId + " since " + startTime + " (" + minutes + " min)";
+    }
+}
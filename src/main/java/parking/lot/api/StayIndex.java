@@ -0,0 +1,403 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Occupied slots of a ParkingSlotSet ordered by checkIn time, oldest first, so the
+ * longest stays are found without scanning the slots.
+ *
+ * The slots are split in stripes of consecutive ids like the free lists, each stripe
+ * with a doubly linked list of its occupied slots threaded through prev and next
+ * arrays indexed by slot id. A checkIn links its slot at the tail, walking back past
+ * the few slots checked in by concurrent threads with a later time, a checkOut unlinks
+ * it in O(1). Each stripe is guarded by its own monitor, held for a few instructions,
+ * so cars entering from different entrances do not contend. The link arrays of a
+ * stripe are allocated when it is enabled.
+ *
+ * The index is off until the first query or OverstayWatch of the set, a lot nobody
+ * asks about pays a volatile read per checkIn and checkOut. enable sets the flag then
+ * links the occupied slots, add and remove mark or release the slot then read the flag,
+ * so a slot changing state meanwhile is either seen by the scan or linked by its owner,
+ * and linking a slot already linked is a no-op.
+ *
+ * The index also holds the OverstayWatch of the set, each watch finds its stays here
+ * when its single task on the wheel runs. A watch keeps a cursor per stripe on the last
+ * stay it went past and resumes from there, so a check visits the stays it reports and
+ * one more. Unlinking the slot of a cursor moves the cursor back to the previous slot.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class StayIndex {
+    /**
+     * End of a list, slot ids start at 1.
+     */
+    private static final int NONE = 0;
+
+    private static final OverstayWatch[] NO_WATCHES = new OverstayWatch[0];
+
+    private final Stripe[] stripes;
+
+    /**
+     * Number of slot ids per stripe, stripe s holds ids s * stripeSize + 1 to (s + 1) * stripeSize.
+     */
+    private final int stripeSize;
+
+    /**
+     * Registered watches, copied on write under the monitor of this index and of every stripe.
+     */
+    private volatile OverstayWatch[] watches = NO_WATCHES;
+
+    /**
+     * Set once by enable, add and remove do nothing before.
+     */
+    private volatile boolean enabled;
+
+    /**
+     * @param numberOfSlots the number of slots of the set.
+     * @param stripes the requested number of stripes, at most numberOfSlots are used.
+     */
+    StayIndex(int numberOfSlots, int stripes){
+        int requested = Math.max(1, Math.min(stripes, numberOfSlots));
+        this.stripeSize = Math.max(1, (numberOfSlots + requested - 1) / requested);
+        int count = Math.max(1, (numberOfSlots + stripeSize - 1) / stripeSize);
+        this.stripes = new Stripe[count];
+        for(int s = 0; s < count; s++){
+            int first = s * stripeSize + 1;
+            this.stripes[s] = new Stripe(s, first, Math.min(stripeSize, numberOfSlots - first + 1));
+        }
+    }
+
+    /**
+     * Add a slot just checked in, by the thread owning it. Does nothing before enable.
+     *
+     * @param id the slot id, not in the index unless enable just linked it.
+     * @param start the checkIn time of the slot.
+     * @param slots the states of the slots, giving the checkIn time of the indexed slots.
+     * @param lockWait receives the time spent waiting for the stripe, null to not measure it.
+     */
+    void add(int id, long start, SlotStates slots, LatencyHistogram lockWait){
+        if(!enabled){
+            return;
+        }
+        Stripe stripe = stripes[(id - 1) / stripeSize];
+        long waitStart = lockWait == null ? 0 : System.nanoTime();
+        synchronized(stripe){
+            if(lockWait != null){
+                lockWait.record(System.nanoTime() - waitStart);
+            }
+            if(!stripe.isLinked(id)){
+                stripe.insert(id, start, slots);
+            }
+        }
+    }
+
+    /**
+     * Start indexing the stays, linking the slots already occupied. Each stripe is sorted
+     * once instead of inserting the slots one by one.
+     *
+     * @param slots the states of the slots, giving their checkIn time.
+     */
+    void enable(SlotStates slots){
+        if(enabled){
+            return;
+        }
+        synchronized(this){
+            if(enabled){
+                return;
+            }
+            for(Stripe stripe : stripes){
+                synchronized(stripe){
+                    stripe.prev = new int[stripe.size];
+                    stripe.next = new int[stripe.size];
+                }
+            }
+            enabled = true;
+            for(Stripe stripe : stripes){
+                Integer[] ids = new Integer[stripe.size];
+                int count = 0;
+                for(int id = stripe.first; id < stripe.first + stripe.size; id++){
+                    if(slots.isOccupied(id)){
+                        ids[count++] = id;
+                    }
+                }
+                Arrays.sort(ids, 0, count, Comparator.comparingLong(slots::getStartTime));
+                synchronized(stripe){
+                    //the slots checked in since the flag was set are already at the tail
+                    for(int i = 0; i < count; i++){
+                        int id = ids[i];
+                        if(!stripe.isLinked(id) && slots.isOccupied(id)){
+                            stripe.insert(id, slots.getStartTime(id), slots);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a slot being checked out, by the thread owning it. Does nothing before enable.
+     *
+     * @param id the slot id, in the index.
+     * @param lockWait receives the time spent waiting for the stripe, null to not measure it.
+     */
+    void remove(int id, LatencyHistogram lockWait){
+        if(!enabled){
+            return;
+        }
+        Stripe stripe = stripes[(id - 1) / stripeSize];
+        long waitStart = lockWait == null ? 0 : System.nanoTime();
+        synchronized(stripe){
+            if(lockWait != null){
+                lockWait.record(System.nanoTime() - waitStart);
+            }
+            if(stripe.isLinked(id)){
+                for(OverstayWatch watch : watches){
+                    if(watch.cursors[stripe.index] == id){
+                        watch.cursors[stripe.index] = stripe.prev[id - stripe.first];
+                    }
+                }
+                stripe.unlink(id);
+            }
+        }
+    }
+
+    /**
+     * Find the oldest stays, O(count) per stripe.
+     *
+     * @param parkingId the id of the set, copied in the stays.
+     * @param count the maximum number of stays.
+     * @param slots the states of the slots.
+     * @param now current time of the clock in milliseconds.
+     * @return at most count stays, oldest first.
+     */
+    List<Stay> oldest(int parkingId, int count, SlotStates slots, long now){
+        enable(slots);
+        return collect(parkingId, count, Long.MAX_VALUE, slots, now);
+    }
+
+    /**
+     * Find the stays started at or before a time, O(number of stays found) per stripe.
+     *
+     * @param parkingId the id of the set, copied in the stays.
+     * @param startedBy latest checkIn time of the stays in milliseconds of the clock.
+     * @param slots the states of the slots.
+     * @param now current time of the clock in milliseconds.
+     * @return the stays, oldest first.
+     */
+    List<Stay> startedBy(int parkingId, long startedBy, SlotStates slots, long now){
+        enable(slots);
+        return collect(parkingId, Integer.MAX_VALUE, startedBy, slots, now);
+    }
+
+    /**
+     * Register a watch, the index is enabled so the watch finds the current stays. Its
+     * cursors start before the head of each stripe.
+     *
+     * @param watch the new watch.
+     * @param slots the states of the slots.
+     */
+    synchronized void watch(OverstayWatch watch, SlotStates slots){
+        enable(slots);
+        watch.cursors = new int[stripes.length];
+        OverstayWatch[] current = watches;
+        OverstayWatch[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = watch;
+        watches = updated;
+    }
+
+    /**
+     * Find the stays of a watch started by a time it has not gone past yet, walking each
+     * stripe forward from the cursor of the watch, for the task of the watch. Only the
+     * stays found and the first one started later are visited.
+     *
+     * @param parkingId the id of the set, copied in the stays.
+     * @param watch the watch, its cursors are moved to the last stay found.
+     * @param startedBy latest checkIn time of the stays in milliseconds of the clock.
+     * @param slots the states of the slots.
+     * @param now current time of the clock in milliseconds.
+     * @param stays receives the stays found, oldest first.
+     * @return the earliest checkIn time after startedBy, Long.MAX_VALUE if there is none.
+     */
+    long overstayed(int parkingId, OverstayWatch watch, long startedBy, SlotStates slots, long now, List<Stay> stays){
+        long nextStart = Long.MAX_VALUE;
+        int from = stays.size();
+        int[] cursors = watch.cursors;
+        for(Stripe stripe : stripes){
+            synchronized(stripe){
+                int cursor = cursors[stripe.index];
+                int id = cursor == NONE ? stripe.head : stripe.next[cursor - stripe.first];
+                for(; id != NONE; id = stripe.next[id - stripe.first]){
+                    long start = slots.getStartTime(id);
+                    if(start > startedBy){
+                        nextStart = Math.min(nextStart, start);
+                        break;
+                    }
+                    //a slot being checked out is released before it is unlinked
+                    if(slots.isOccupied(id)){
+                        stays.add(new Stay(parkingId, id, start, now));
+                    }
+                    cursor = id;
+                }
+                cursors[stripe.index] = cursor;
+            }
+        }
+        stays.subList(from, stays.size()).sort(Stay.OLDEST_FIRST);
+        return nextStart;
+    }
+
+    /**
+     * Unregister a watch, its pending checks become no-ops.
+     *
+     * @param listener the listener of the watch.
+     * @return false if no watch has that listener.
+     */
+    synchronized boolean unwatch(OverstayListener listener){
+        OverstayWatch[] current = watches;
+        for(int i = 0; i < current.length; i++){
+            if(current[i].listener == listener){
+                current[i].active = false;
+                OverstayWatch[] updated = new OverstayWatch[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, updated.length - i);
+                watches = updated;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<Stay> collect(int parkingId, int count, long startedBy, SlotStates slots, long now){
+        List<Stay> stays = new ArrayList<>();
+        if(count <= 0){
+            return stays;
+        }
+        for(Stripe stripe : stripes){
+            int found = 0;
+            synchronized(stripe){
+                for(int id = stripe.head; id != NONE && found < count; id = stripe.next[id - stripe.first]){
+                    long start = slots.getStartTime(id);
+                    if(start > startedBy){
+                        break;
+                    }
+                    //a slot being checked out is released before it is unlinked
+                    if(slots.isOccupied(id)){
+                        stays.add(new Stay(parkingId, id, start, now));
+                        found++;
+                    }
+                }
+            }
+        }
+        if(stripes.length > 1){
+            stays.sort(Stay.OLDEST_FIRST);
+            if(stays.size() > count){
+                stays.subList(count, stays.size()).clear();
+            }
+        }
+        return stays;
+    }
+
+    /**
+     * Occupied slots of a range of ids, guarded by its monitor.
+     */
+    private static final class Stripe {
+        final int index;
+        final int first;
+        final int size;
+
+        /**
+         * prev[id - first] and next[id - first] are the neighbours of slot id, NONE at the ends.
+         */
+        int[] prev;
+        int[] next;
+
+        int head = NONE;
+        int tail = NONE;
+
+        Stripe(int index, int first, int size){
+            this.index = index;
+            this.first = first;
+            this.size = size;
+        }
+
+        boolean isLinked(int id){
+            return head == id || prev[id - first] != NONE;
+        }
+
+        /**
+         * Link id after the last slot checked in at or before start, walking back past
+         * the few slots checked in by concurrent threads with a later time.
+         */
+        void insert(int id, long start, SlotStates slots){
+            int after = tail;
+            while(after != NONE && slots.getStartTime(after) > start){
+                after = prev[after - first];
+            }
+            link(id, after);
+        }
+
+        /**
+         * Link id after the slot after, at the head for NONE.
+         */
+        void link(int id, int after){
+            int before = after == NONE ? head : next[after - first];
+            prev[id - first] = after;
+            next[id - first] = before;
+            if(after == NONE){
+                head = id;
+            }else{
+                next[after - first] = id;
+            }
+            if(before == NONE){
+                tail = id;
+            }else{
+                prev[before - first] = id;
+            }
+        }
+
+        void unlink(int id){
+            int after = prev[id - first];
+            int before = next[id - first];
+            if(after == NONE){
+                head = before;
+            }else{
+                next[after - first] = before;
+            }
+            if(before == NONE){
+                tail = after;
+            }else{
+                prev[before - first] = after;
+            }
+            prev[id - first] = NONE;
+            next[id - first] = NONE;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Declarative pricing model: an optional entry fee followed by consecutive tiers,
+ * each one free, flat or charged per increment of minutes, and an optional cap.
+ *
+ * For instance first hour free, next hour 1.8, after 0.85 cents each 15 minutes:
+ * <code>
+ *     Tariff tariff = Tariff.builder()
+ *             .free(60)
+ *             .flat(60, 1.8)
+ *             .perIncrement(15, 0.85)
+ *             .build();
+ *     api.setBillingPolicy(parkingId, tariff.compile());
+ * </code>
+ *
+ * A Tariff is a BillingPolicy evaluating its tiers on each call, compile() precomputes
+ * them into a faster BillingPolicy returning exactly the same prices.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public final class Tariff implements BillingPolicy {
+
+    /**
+     * Duration of a tier without end, only the last tier can be unbounded.
+     */
+    static final long UNBOUNDED = Long.MAX_VALUE;
+
+    enum Kind { FREE, FLAT, PER_INCREMENT }
+
+    /**
+     * One tier of the tariff, starting when the previous one ends.
+     */
+    static final class Tier {
+        final Kind kind;
+        final long start;
+        final long end;
+        final long increment;
+        final double amount;
+
+        Tier(Kind kind, long start, long duration, long increment, double amount){
+            this.kind = kind;
+            this.start = start;
+            this.end = duration == UNBOUNDED ? UNBOUNDED : start + duration;
+            this.increment = increment;
+            this.amount = amount;
+        }
+
+        @Override
+        public String toString(){
+            String range = "[" + start + ", " + (end == UNBOUNDED ? "" : end) + ")";
+            switch(kind){
+                case FREE:
+                    return range + " free";
+                case FLAT:
+                    return range + " flat " + amount;
+                default:
+                    return range + " " + amount + " each " + increment + " min";
+            }
+        }
+    }
+
+    private final double fee;
+    private final Tier[] tiers;
+    private final double cap;
+
+    private Tariff(double fee, Tier[] tiers, double cap){
+        this.fee = fee;
+        this.tiers = tiers;
+        this.cap = cap;
+    }
+
+    /**
+     * @return a builder for a new tariff.
+     */
+    public static Builder builder(){
+        return new Builder();
+    }
+
+    /**
+     * Evaluate the tiers one after the other.
+     *
+     * @param minutes amount of minutes the car stayed, negative values count as 0.
+     * @return the price to pay.
+     */
+    @Override
+    public double bill(long minutes){
+        return Math.min(uncappedPrice(minutes), cap);
+    }
+
+    /**
+     * @param minutes amount of minutes the car stayed, negative values count as 0.
+     * @return the price to pay before applying the cap.
+     */
+    double uncappedPrice(long minutes){
+        minutes = Math.max(minutes, 0);
+        double price = fee;
+        for(Tier tier : tiers){
+            if(minutes < tier.start){
+                break;
+            }
+            switch(tier.kind){
+                case FLAT:
+                    price += tier.amount;
+                    break;
+                case PER_INCREMENT:
+                    price += ((Math.min(minutes, tier.end) - tier.start) / tier.increment) * tier.amount;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return price;
+    }
+
+    /**
+     * Precompute the tariff into a BillingPolicy returning the same prices as bill.
+     * Prices for the first minutes, up to the start of the last tier, are read from a
+     * table, beyond that a single linear formula is applied.
+     *
+     * @return the compiled BillingPolicy.
+     */
+    public BillingPolicy compile(){
+        return new CompiledTariff(this);
+    }
+
+    Tier[] getTiers(){
+        return tiers.clone();
+    }
+
+    double getCap(){
+        return cap;
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder description = new StringBuilder("Tariff{fee=").append(fee);
+        for(Tier tier : tiers){
+            description.append(", ").append(tier);
+        }
+        if(cap != Double.POSITIVE_INFINITY){
+            description.append(", cap=").append(cap);
+        }
+        return description.append('}').toString();
+    }
+
+    /**
+     * Build a Tariff, tiers are added in chronological order.
+     */
+    public static final class Builder {
+        private double fee = 0.0;
+        private double cap = Double.POSITIVE_INFINITY;
+        private final List<Tier> tiers = new ArrayList<>();
+        private long nextStart = 0;
+
+        private Builder(){
+        }
+
+        /**
+         * Amount charged as soon as the car checks in.
+         *
+         * @param amount the entry fee.
+         * @return this builder.
+         */
+        public Builder fee(double amount){
+            checkAmount(amount);
+            this.fee = amount;
+            return this;
+        }
+
+        /**
+         * Free period.
+         *
+         * @param minutes duration of the tier.
+         * @return this builder.
+         */
+        public Builder free(long minutes){
+            return add(new Tier(Kind.FREE, nextStart, checkDuration(minutes), 1, 0.0));
+        }
+
+        /**
+         * Amount charged once as soon as the stay reaches the start of this tier.
+         *
+         * @param minutes duration of the tier.
+         * @param amount the amount charged.
+         * @return this builder.
+         */
+        public Builder flat(long minutes, double amount){
+            checkAmount(amount);
+            return add(new Tier(Kind.FLAT, nextStart, checkDuration(minutes), 1, amount));
+        }
+
+        /**
+         * Rate charged for each complete increment of minutes, until the car leaves.
+         * No tier can follow.
+         *
+         * @param incrementMinutes length of an increment.
+         * @param rate amount charged per increment.
+         * @return this builder.
+         */
+        public Builder perIncrement(long incrementMinutes, double rate){
+            return perIncrement(incrementMinutes, rate, UNBOUNDED);
+        }
+
+        /**
+         * Rate charged for each complete increment of minutes during this tier.
+         *
+         * @param incrementMinutes length of an increment.
+         * @param rate amount charged per increment.
+         * @param minutes duration of the tier.
+         * @return this builder.
+         */
+        public Builder perIncrement(long incrementMinutes, double rate, long minutes){
+            checkAmount(rate);
+            if(incrementMinutes < 1){
+                throw new IllegalArgumentException("Increment must be at least 1 minute!");
+            }
+            return add(new Tier(Kind.PER_INCREMENT, nextStart, checkDuration(minutes), incrementMinutes, rate));
+        }
+
+        /**
+         * Maximum price of a stay.
+         *
+         * @param amount the cap.
+         * @return this builder.
+         */
+        public Builder cap(double amount){
+            checkAmount(amount);
+            this.cap = amount;
+            return this;
+        }
+
+        /**
+         * @return the tariff.
+         */
+        public Tariff build(){
+            return new Tariff(fee, tiers.toArray(new Tier[0]), cap);
+        }
+
+        private Builder add(Tier tier){
+            if(nextStart == UNBOUNDED){
+                throw new IllegalStateException("No tier can follow an unbounded tier!");
+            }
+            tiers.add(tier);
+            nextStart = tier.end;
+            return this;
+        }
+
+        private static long checkDuration(long minutes){
+            if(minutes < 1){
+                throw new IllegalArgumentException("Tier duration must be at least 1 minute!");
+            }
+            return minutes;
+        }
+
+        private static void checkAmount(double amount){
+            if(!(amount >= 0)){
+                throw new IllegalArgumentException("Amounts must be positive numbers!");
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * ProActive Parallel Suite(TM):
+ * The Open Source library for parallel and distributed
+ * Workflows & Scheduling, Orchestration, Cloud Automation
+ * and Big Data Analysis on Enterprise Grids & Clouds.
+ *
+ * Copyright (c) 2007 - 2017 ActiveEon
+ * Contact: contact@activeeon.com
+ *
+ * This library is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU Affero General Public License
+ * as published by the Free Software Foundation: version 3 of
+ * the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * If needed, contact us to obtain a release under GPL Version 2 or 3
+ * or a different license than the AGPL.
+ */
+package parking.lot.api;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hierarchical timing wheel running tasks at a deadline, O(1) per task whatever the
+ * number of pending tasks.
+ *
+ * Level 0 has one bucket per tick for the next WHEEL_SIZE ticks, each level above has
+ * buckets WHEEL_SIZE times longer. A task goes in the lowest level whose range covers
+ * its deadline and moves down a level each time the clock enters its bucket, so it is
+ * moved at most LEVELS times before it expires.
+ *
+ * Any thread can schedule a task: it is pushed on a lock-free inbox and put in its
+ * bucket by the next advance. The buckets belong to the thread advancing the wheel.
+ * There is no cancel, the owner of a task makes it a no-op and the wheel drops it when
+ * its deadline is reached.
+ *
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+final class TimingWheel {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int LEVELS = 4;
+
+    /**
+     * Longest delay of a task in ticks, about 194 days with a tick of a second.
+     */
+    static final long MAX_TICKS = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+
+    /**
+     * buckets[level * WHEEL_SIZE + slot] is a linked list of tasks, guarded by this.
+     */
+    private final Task[] buckets = new Task[LEVELS * WHEEL_SIZE];
+
+    /**
+     * Tasks scheduled since the last advance, linked by Task.next.
+     */
+    private final AtomicReference<Task> inbox = new AtomicReference<>();
+
+    /**
+     * Last tick processed, guarded by this.
+     */
+    private long currentTick;
+
+    /**
+     * Exceptions thrown by the tasks and by the listeners they call, written under this.
+     */
+    private volatile long failures;
+    private volatile RuntimeException failure;
+
+    /**
+     * @param tickMillis the length of a tick in milliseconds, the precision of the deadlines.
+     * @param now current time of the clock in milliseconds.
+     */
+    TimingWheel(long tickMillis, long now){
+        this.tickMillis = tickMillis;
+        this.currentTick = now / tickMillis;
+    }
+
+    /**
+     * Run a task at its deadline, from the thread calling advance.
+     *
+     * @param task a task not scheduled yet, its deadline at most MAX_TICKS ticks ahead.
+     */
+    void schedule(Task task){
+        for(;;){
+            Task head = inbox.get();
+            task.next = head;
+            if(inbox.compareAndSet(head, task)){
+                return;
+            }
+        }
+    }
+
+    /**
+     * Run every task whose deadline is reached.
+     *
+     * @param now current time of the clock in milliseconds.
+     */
+    synchronized void advance(long now){
+        Task expired = null;
+        for(Task task = inbox.getAndSet(null); task != null;){
+            Task next = task.next;
+            expired = add(task, expired);
+            task = next;
+        }
+        long nowTick = now / tickMillis;
+        while(currentTick < nowTick){
+            currentTick++;
+            //move the tasks of the buckets the clock enters down, highest level first
+            for(int level = LEVELS - 1; level > 0; level--){
+                if((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) == 0){
+                    int index = bucket(level, currentTick);
+                    Task task = buckets[index];
+                    buckets[index] = null;
+                    while(task != null){
+                        Task next = task.next;
+                        expired = add(task, expired);
+                        task = next;
+                    }
+                }
+            }
+            int index = bucket(0, currentTick);
+            Task task = buckets[index];
+            buckets[index] = null;
+            while(task != null){
+                Task next = task.next;
+                task.next = expired;
+                expired = task;
+                task = next;
+            }
+        }
+        while(expired != null){
+            Task next = expired.next;
+            expired.next = null;
+            try{
+                expired.expire();
+            }catch(RuntimeException e){
+                //the other expired tasks still run
+                failed(e);
+            }
+            expired = next;
+        }
+    }
+
+    /**
+     * Count an exception of a task or of a listener it calls, keep the first one.
+     */
+    synchronized void failed(RuntimeException e){
+        failures++;
+        if(failure == null){
+            failure = e;
+        }
+    }
+
+    /**
+     * @return the exceptions thrown by the tasks and the listeners they call.
+     */
+    long failures(){
+        return failures;
+    }
+
+    /**
+     * @return the first exception thrown by a task or a listener it calls, null if there is none.
+     */
+    RuntimeException failure(){
+        return failure;
+    }
+
+    /**
+     * Put a task in its bucket.
+     *
+     * @return the list of expired tasks, with the task first if its deadline is reached.
+     */
+    private Task add(Task task, Task expired){
+        long deadlineTick = task.deadline / tickMillis;
+        long delay = deadlineTick - currentTick;
+        if(delay <= 0){
+            task.next = expired;
+            return task;
+        }
+        int level = 0;
+        while(level < LEVELS - 1 && delay >= 1L << (WHEEL_BITS * (level + 1))){
+            level++;
+        }
+        int index = bucket(level, deadlineTick);
+        task.next = buckets[index];
+        buckets[index] = task;
+        return expired;
+    }
+
+    private static int bucket(int level, long tick){
+        return level * WHEEL_SIZE + (int) ((tick >>> (WHEEL_BITS * level)) & (WHEEL_SIZE - 1));
+    }
+
+    /**
+     * Something to run at a deadline.
+     */
+    abstract static class Task {
+        /**
+         * Time to run the task in milliseconds of the clock.
+         */
+        final long deadline;
+
+        /**
+         * Next task of the inbox, of the bucket or of the expired tasks.
+         */
+        Task next;
+
+        Task(long deadline){
+            this.deadline = deadline;
+        }
+
+        /**
+         * Called once the deadline is reached, by the thread advancing the wheel.
+         */
+        abstract void expire();
+    }
+}
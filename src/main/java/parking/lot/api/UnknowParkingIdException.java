@@ -26,11 +26,13 @@
 package parking.lot.api;
 
 /**
+ * Thrown for a parking id that is not registered, has no stack trace.
+ *
  * @author ActiveEon Team
  * @since 04/02/18
  */
 public class UnknowParkingIdException extends Throwable {
     public UnknowParkingIdException(String s) {
-        super(s);
+        super(s, null, false, false);
     }
 }
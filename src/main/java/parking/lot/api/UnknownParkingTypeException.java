@@ -26,11 +26,13 @@
 package parking.lot.api;
 
 /**
+ * Thrown for a type that is not registered or that the parking has no slots of, has no stack trace.
+ *
  * @author ActiveEon Team
  * @since 04/02/18
  */
 public class UnknownParkingTypeException extends Throwable {
     public UnknownParkingTypeException(String s) {
-        super(s);
+        super(s, null, false, false);
     }
 }
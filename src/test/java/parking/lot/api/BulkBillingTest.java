@@ -0,0 +1,99 @@
+package parking.lot.api;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class BulkBillingTest {
+
+    private final BillingPolicy hourly = (long minutes) -> Math.max(1, (minutes + 59) / 60) * 2.15;
+
+    @Test
+    public void parallelSumsMatchSequentialBilling() {
+        Random random = new Random(42);
+        int stays = 100000;
+        int[] parkingIds = new int[stays];
+        long[] minutes = new long[stays];
+        long[] expected = new long[3 * 6];
+        for (int i = 0; i < stays; i++) {
+            parkingIds[i] = 1 + random.nextInt(5);
+            minutes[i] = random.nextInt(24 * 60);
+            expected[parkingIds[i] * 3]++;
+            expected[parkingIds[i] * 3 + 1] += minutes[i];
+            expected[parkingIds[i] * 3 + 2] += Math.round(hourly.bill(minutes[i]) * 100);
+        }
+        ParkingApi myApi = new ParkingApi();
+        BillingReport report = myApi.rebill(hourly, parkingIds, minutes);
+        Assert.assertEquals(stays, report.getTotal().getSessions());
+        Assert.assertEquals(5, report.getParkings().size());
+        long cents = 0;
+        for (int parkingId = 1; parkingId <= 5; parkingId++) {
+            Revenue lot = report.getParking(parkingId);
+            Assert.assertEquals(expected[parkingId * 3], lot.getSessions());
+            Assert.assertEquals(expected[parkingId * 3 + 1], lot.getMinutes());
+            Assert.assertEquals(expected[parkingId * 3 + 2], lot.getCents());
+            cents += lot.getCents();
+        }
+        Assert.assertEquals(cents, report.getTotal().getCents());
+        Assert.assertEquals(0, report.getParking(6).getSessions());
+
+        BillingReport total = myApi.rebill(hourly, minutes);
+        Assert.assertEquals(report.getTotal().getCents(), total.getTotal().getCents());
+        Assert.assertTrue(total.getParkings().isEmpty());
+        Assert.assertEquals(0, myApi.rebill(hourly, new long[0]).getTotal().getSessions());
+    }
+
+    @Test
+    public void sparseParkingIdsAreSummedCompactly() {
+        int stays = 3 * BulkBilling.LEAF_SESSIONS;
+        int[] parkingIds = new int[stays];
+        long[] minutes = new long[stays];
+        for (int i = 0; i < stays; i++) {
+            parkingIds[i] = i % 3 == 0 ? Integer.MAX_VALUE : (i % 3 == 1 ? 1 << 30 : 7);
+            minutes[i] = 60;
+        }
+        ParkingApi myApi = new ParkingApi();
+        BillingReport report = myApi.rebill(hourly, parkingIds, minutes);
+        Assert.assertEquals(stays, report.getTotal().getSessions());
+        Assert.assertArrayEquals(new Object[]{ 7, 1 << 30, Integer.MAX_VALUE }, report.getParkings().keySet().toArray());
+        Assert.assertEquals(BulkBilling.LEAF_SESSIONS, report.getParking(Integer.MAX_VALUE).getSessions());
+        Assert.assertEquals(60L * BulkBilling.LEAF_SESSIONS, report.getParking(1 << 30).getMinutes());
+        Assert.assertEquals(215L * BulkBilling.LEAF_SESSIONS, report.getParking(7).getCents());
+
+        int lots = 1000;
+        parkingIds = new int[lots];
+        minutes = new long[lots];
+        for (int i = 0; i < lots; i++) {
+            parkingIds[i] = (lots - i) * 2000003;
+            minutes[i] = i;
+        }
+        report = myApi.rebill(hourly, parkingIds, minutes);
+        Assert.assertEquals(lots, report.getParkings().size());
+        Assert.assertEquals(2000003, report.getParkings().keySet().iterator().next().intValue());
+        Assert.assertEquals(lots - 1, report.getParking(2000003).getMinutes());
+    }
+
+    @Test
+    public void invalidInputIsRejected() {
+        ParkingApi myApi = new ParkingApi();
+        try {
+            myApi.rebill(hourly, new int[2], new long[3]);
+            fail("Arrays of different lengths");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        try {
+            myApi.rebill(hourly, new int[]{ 1, -1 }, new long[2]);
+            fail("Negative parking id");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package parking.lot.api;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueOnce() {
+        int previous = -1;
+        for (long value = 0; value < 1 << 16; value++) {
+            int bucket = LatencyHistogram.bucket(value);
+            Assert.assertTrue(bucket == previous || bucket == previous + 1);
+            Assert.assertTrue(LatencyHistogram.lowestValue(bucket) <= value);
+            Assert.assertTrue(LatencyHistogram.highestValue(bucket) >= value);
+            previous = bucket;
+        }
+        Assert.assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(LatencyHistogram.MAX_VALUE));
+        Assert.assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.highestValue(LatencyHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    public void percentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(42);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1000 + random.nextInt(1000000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        long[] counts = new long[LatencyHistogram.BUCKETS];
+        histogram.addTo(counts);
+        LatencySnapshot snapshot = new LatencySnapshot(counts);
+        Assert.assertEquals(values.length, snapshot.getCount());
+        for (double percentile : new double[]{50, 90, 99, 99.9, 100}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long measured = snapshot.getValueAtPercentile(percentile);
+            Assert.assertTrue(measured >= exact);
+            Assert.assertTrue(measured <= exact + exact / LatencyHistogram.SUB_BUCKETS);
+        }
+        Assert.assertEquals(snapshot.getValueAtPercentile(100), snapshot.getMax());
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threads = 4;
+        final int records = 100000;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < records; i++) {
+                    histogram.record(i % 100);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        long[] counts = new long[LatencyHistogram.BUCKETS];
+        histogram.addTo(counts);
+        LatencySnapshot snapshot = new LatencySnapshot(counts);
+        Assert.assertEquals((long) threads * records, snapshot.getCount());
+        Assert.assertEquals(99, snapshot.getMax(), 99 / LatencyHistogram.SUB_BUCKETS);
+    }
+}
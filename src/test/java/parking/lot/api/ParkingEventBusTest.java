@@ -0,0 +1,129 @@
+package parking.lot.api;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class ParkingEventBusTest {
+
+    @Test
+    public void nothingIsPublishedWithoutSubscriber() {
+        ParkingEventBus bus = new ParkingEventBus(8);
+        bus.publish(ParkingEventType.CHECK_IN, 1, 1, 0, 0);
+        Assert.assertEquals(0, bus.cursor.get());
+        ParkingEventSubscription subscription = bus.subscribe();
+        bus.publish(ParkingEventType.CHECK_IN, 1, 2, 0, 5);
+        subscription.close();
+        bus.publish(ParkingEventType.CHECK_OUT, 1, 2, 0, 6);
+        Assert.assertEquals(1, bus.cursor.get());
+    }
+
+    @Test
+    public void slowSubscriberMissesTheOldestEvents() {
+        ParkingEventBus bus = new ParkingEventBus(8);
+        ParkingEventSubscription subscription = bus.subscribe();
+        ParkingEventBatch batch = new ParkingEventBatch(4);
+        for (int i = 1; i <= 20; i++) {
+            bus.publish(ParkingEventType.CHECK_IN, 1, i, 0, i);
+        }
+        //the ring holds the last 8 events
+        Assert.assertEquals(4, subscription.poll(batch));
+        Assert.assertEquals(12, batch.missed());
+        Assert.assertEquals(13, batch.slotId(0));
+        Assert.assertEquals(4, subscription.poll(batch));
+        Assert.assertEquals(0, batch.missed());
+        Assert.assertEquals(20, batch.slotId(3));
+        Assert.assertEquals(0, subscription.poll(batch));
+    }
+
+    @Test
+    public void latePublisherDoesNotOverwriteNewerEvent() {
+        ParkingEventBus bus = new ParkingEventBus(4);
+        ParkingEventSubscription subscription = bus.subscribe();
+        ParkingEventBatch batch = new ParkingEventBatch(8);
+        //sequence 0 is claimed by a publisher that stalls before writing it
+        long late = bus.cursor.getAndIncrement();
+        for (int i = 1; i <= 4; i++) {
+            bus.publish(ParkingEventType.CHECK_IN, 1, i, 0, i);
+        }
+        bus.write(late, ParkingEventType.CHECK_OUT, 1, 99, 0, 99);
+        Assert.assertEquals(4, subscription.poll(batch));
+        Assert.assertEquals(1, batch.missed());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(i + 1, batch.slotId(i));
+            Assert.assertEquals(ParkingEventType.CHECK_IN, batch.type(i));
+        }
+    }
+
+    @Test
+    public void droppedEventDoesNotStallTheSubscriber() {
+        ParkingEventBus bus = new ParkingEventBus(4);
+        ParkingEventSubscription subscription = bus.subscribe();
+        ParkingEventBatch batch = new ParkingEventBatch(8);
+        //sequence 0 is claimed by a publisher that stalls in the middle of writing it
+        long stalled = bus.cursor.getAndIncrement();
+        bus.published.set((int) stalled, ParkingEventBus.writing(stalled));
+        for (int i = 1; i <= 5; i++) {
+            bus.publish(ParkingEventType.CHECK_IN, 1, i, 0, i);
+        }
+        //sequence 4 found its entry still written and was dropped
+        Assert.assertEquals(2, subscription.poll(batch));
+        Assert.assertEquals(2, batch.missed());
+        Assert.assertEquals(2, batch.slotId(0));
+        Assert.assertEquals(3, batch.slotId(1));
+        Assert.assertEquals(1, subscription.poll(batch));
+        Assert.assertEquals(1, batch.missed());
+        Assert.assertEquals(5, batch.slotId(0));
+        Assert.assertEquals(0, subscription.poll(batch));
+    }
+
+    @Test
+    public void concurrentPublishersKeepTheirOrder() throws InterruptedException {
+        final int threads = 4;
+        final int events = 50000;
+        final ParkingEventBus bus = new ParkingEventBus(1 << 10);
+        ParkingEventSubscription subscription = bus.subscribe();
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final int parkingId = t;
+            new Thread(() -> {
+                for (int i = 1; i <= events; i++) {
+                    //the time repeats the slot id so torn events are seen
+                    bus.publish(ParkingEventType.CHECK_IN, parkingId, i, 0, i);
+                }
+                done.countDown();
+            }).start();
+        }
+        int[] last = new int[threads];
+        long received = 0;
+        long missed = 0;
+        AtomicInteger errors = new AtomicInteger();
+        ParkingEventBatch batch = new ParkingEventBatch(64);
+        boolean publishing = true;
+        while (publishing) {
+            publishing = done.getCount() > 0;
+            //once publishers are done, read until the ring is empty
+            while (subscription.take(batch, 10, TimeUnit.MILLISECONDS) > 0 || batch.missed() > 0) {
+                missed += batch.missed();
+                for (int i = 0; i < batch.size(); i++) {
+                    int parkingId = batch.parkingId(i);
+                    if (batch.slotId(i) <= last[parkingId] || batch.time(i) != batch.slotId(i)) {
+                        errors.incrementAndGet();
+                    }
+                    last[parkingId] = batch.slotId(i);
+                    received++;
+                }
+            }
+        }
+        Assert.assertEquals(0, errors.get());
+        Assert.assertEquals((long) threads * events, received + missed);
+        subscription.close();
+    }
+}
@@ -0,0 +1,295 @@
+package parking.lot.api;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class ParkingJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final BillingPolicy perMinute = (long minutes) -> minutes;
+
+    @Test
+    public void recoversLotsAndStartTimes() {
+        Path directory = folder.getRoot().toPath();
+        ManualClock clock = new ManualClock();
+        try {
+            ParkingJournal journal = ParkingJournal.builder(directory).build();
+            ParkingApi api = new ParkingApi(clock, journal);
+            int standard = api.newParkingHandle(3, ParkingApi.PARKING_STANDARD_TYPE);
+            int charging = api.newParkingHandle(10, ParkingApi.PARKING_50kW_TYPE, 2);
+            int first = api.checkIn(standard, ParkingApi.PARKING_STANDARD_TYPE);
+            clock.advanceMinutes(10);
+            int second = api.checkIn(standard, ParkingApi.PARKING_STANDARD_TYPE);
+            int[] batch = new int[4];
+            Assert.assertEquals(4, api.checkIn(charging, ParkingApi.PARKING_50kW_TYPE, batch));
+            api.checkOut(standard, first, perMinute);
+            api.checkOut(charging, new int[]{batch[0]}, perMinute);
+            journal.close();
+
+            clock.advanceMinutes(20);
+            ParkingJournal reopened = ParkingJournal.builder(directory).build();
+            ParkingApi recovered = new ParkingApi(clock, reopened);
+            Assert.assertEquals(2, recovered.getAllParkingIds().size());
+            Assert.assertEquals(1, recovered.getOccupiedSlots(standard));
+            Assert.assertEquals(second, recovered.getOldestStays(standard, 1).get(0).getSlotId());
+            Assert.assertEquals(3, recovered.getOccupiedSlots(charging));
+            Assert.assertEquals(4, recovered.getOccupiedSlotsForType(ParkingApi.PARKING_STANDARD_TYPE)
+                    + recovered.getOccupiedSlotsForType(ParkingApi.PARKING_50kW_TYPE));
+            Assert.assertEquals(20, recovered.checkOut(standard, second, perMinute), 0.0);
+            Assert.assertEquals(20, recovered.checkOut(charging, batch[1], perMinute), 0.0);
+            try {
+                recovered.checkOut(charging, batch[0], perMinute);
+                fail("Slot was checked out before the restart");
+            } catch (SlotNotFoundException e) {
+                //expected
+            }
+            Assert.assertEquals(3, recovered.newParkingHandle(1, ParkingApi.PARKING_20kW_TYPE));
+            reopened.close();
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void fullSegmentsAreReplacedBySnapshot() {
+        Path directory = folder.getRoot().toPath();
+        ManualClock clock = new ManualClock();
+        try {
+            ParkingJournal journal = ParkingJournal.builder(directory)
+                    .segmentSize(ParkingJournal.MIN_SEGMENT_SIZE)
+                    .build();
+            ParkingApi api = new ParkingApi(clock, journal);
+            int parkingId = api.newParkingHandle(100, ParkingApi.PARKING_STANDARD_TYPE);
+            //several segments worth of records, the lot ends with 50 cars parked
+            for (int i = 0; i < 20000; i++) {
+                int slotId = api.checkIn(parkingId, ParkingApi.PARKING_STANDARD_TYPE);
+                api.checkOut(parkingId, slotId, perMinute);
+            }
+            int[] parked = new int[50];
+            api.checkIn(parkingId, ParkingApi.PARKING_STANDARD_TYPE, parked);
+            journal.close();
+            Assert.assertEquals(1, segments(directory));
+
+            ParkingJournal reopened = ParkingJournal.builder(directory).build();
+            ParkingApi recovered = new ParkingApi(clock, reopened);
+            Assert.assertEquals(50, recovered.getOccupiedSlots(parkingId));
+            double[] prices = recovered.checkOut(parkingId, parked, perMinute);
+            for (double price : prices) {
+                Assert.assertEquals(0, price, 0.0);
+            }
+            reopened.close();
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void operationsAfterCloseAreRejected() {
+        Path directory = folder.getRoot().toPath();
+        ManualClock clock = new ManualClock();
+        try {
+            ParkingJournal journal = ParkingJournal.builder(directory).build();
+            ParkingApi api = new ParkingApi(clock, journal);
+            int parkingId = api.newParkingHandle(10, ParkingApi.PARKING_STANDARD_TYPE);
+            int slotId = api.checkIn(parkingId, ParkingApi.PARKING_STANDARD_TYPE);
+            journal.close();
+            Assert.assertNull(journal.getFailure());
+            try {
+                api.checkIn(parkingId, ParkingApi.PARKING_STANDARD_TYPE);
+                fail("The journal is closed");
+            } catch (IllegalStateException e) {
+                //expected
+            }
+
+            ParkingJournal reopened = ParkingJournal.builder(directory).build();
+            ParkingApi recovered = new ParkingApi(clock, reopened);
+            //the rejected check-in was never journaled
+            Assert.assertEquals(1, recovered.getOccupiedSlots(parkingId));
+            recovered.checkOut(parkingId, slotId, perMinute);
+            reopened.close();
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void concurrentOperationsWithSyncCommit() {
+        Path directory = folder.getRoot().toPath();
+        ManualClock clock = new ManualClock();
+        final int threads = 4;
+        final int operations = 3000;
+        try {
+            ParkingJournal journal = ParkingJournal.builder(directory)
+                    .segmentSize(ParkingJournal.MIN_SEGMENT_SIZE)
+                    .fsyncBatch(16)
+                    .fsyncIntervalMillis(1)
+                    .syncCommit(true)
+                    .build();
+            ParkingApi api = new ParkingApi(clock, journal);
+            int parkingId = api.newParkingHandle(1000, ParkingApi.PARKING_20kW_TYPE, 4);
+            CountDownLatch done = new CountDownLatch(threads);
+            AtomicInteger failures = new AtomicInteger();
+            List<Integer> parked = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                new Thread(() -> {
+                    try {
+                        int kept = -1;
+                        for (int i = 0; i < operations; i++) {
+                            int slotId = api.checkIn(parkingId, ParkingApi.PARKING_20kW_TYPE);
+                            if (i == operations / 2) {
+                                kept = slotId;
+                            } else {
+                                api.checkOut(parkingId, slotId, perMinute);
+                            }
+                        }
+                        synchronized (parked) {
+                            parked.add(kept);
+                        }
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                        failures.incrementAndGet();
+                    }
+                    done.countDown();
+                }).start();
+            }
+            done.await();
+            Assert.assertEquals(0, failures.get());
+            journal.close();
+
+            ParkingJournal reopened = ParkingJournal.builder(directory).build();
+            ParkingApi recovered = new ParkingApi(clock, reopened);
+            Assert.assertEquals(threads, recovered.getOccupiedSlots(parkingId));
+            for (int slotId : parked) {
+                recovered.checkOut(parkingId, slotId, perMinute);
+            }
+            Assert.assertEquals(0, recovered.getOccupiedSlots(parkingId));
+            reopened.close();
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void recoversRegisteredTypes() {
+        Path directory = folder.getRoot().toPath();
+        ManualClock clock = new ManualClock();
+        try {
+            SlotType charger150kW = SlotType.register("150kW");
+            ParkingJournal journal = ParkingJournal.builder(directory).build();
+            ParkingApi api = new ParkingApi(clock, journal);
+            int standard = api.newParkingHandle(2, SlotType.STANDARD);
+            int fast = api.newParkingHandle(2, charger150kW);
+            int slotId = api.checkIn(fast, charger150kW);
+            journal.close();
+
+            ParkingJournal reopened = ParkingJournal.builder(directory).build();
+            ParkingApi recovered = new ParkingApi(clock, reopened);
+            Assert.assertEquals(1, recovered.getOccupiedSlotsForType("150kW"));
+            Assert.assertEquals(0, recovered.getOccupiedSlots(standard));
+            clock.advanceMinutes(5);
+            Assert.assertEquals(5, recovered.checkOut(fast, slotId, perMinute), 0.0);
+            reopened.close();
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void recoversMixedTypeLot() {
+        Path directory = folder.getRoot().toPath();
+        ManualClock clock = new ManualClock();
+        try {
+            ParkingJournal journal = ParkingJournal.builder(directory).build();
+            ParkingApi api = new ParkingApi(clock, journal);
+            Map<SlotType, Integer> bays = new LinkedHashMap<>();
+            bays.put(SlotType.STANDARD, 4);
+            bays.put(SlotType.CHARGER_50kW, 2);
+            int site = api.newParkingHandle(bays, 2);
+            int car = api.checkIn(site, SlotType.STANDARD);
+            int ev = api.checkIn(site, SlotType.CHARGER_50kW);
+            journal.close();
+
+            ParkingJournal reopened = ParkingJournal.builder(directory).build();
+            ParkingApi recovered = new ParkingApi(clock, reopened);
+            OccupancySnapshot occupancy = recovered.getOccupancySnapshot(site);
+            Assert.assertEquals(6, occupancy.getTotal().getCapacity());
+            Assert.assertEquals(1, occupancy.getTypes().get(ParkingApi.PARKING_50kW_TYPE).getOccupied());
+            Assert.assertEquals(1, occupancy.getTypes().get(ParkingApi.PARKING_STANDARD_TYPE).getOccupied());
+            clock.advanceMinutes(3);
+            Assert.assertEquals(3, recovered.checkOut(site, ev, perMinute), 0.0);
+            int charger = recovered.checkIn(site, SlotType.CHARGER_50kW);
+            Assert.assertTrue(charger == 5 || charger == 6);
+            Assert.assertEquals(3, recovered.checkOut(site, car, perMinute), 0.0);
+            reopened.close();
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void recoversCompactStorage() {
+        Path directory = folder.getRoot().toPath();
+        ManualClock clock = new ManualClock();
+        try {
+            ParkingJournal journal = ParkingJournal.builder(directory).build();
+            ParkingApi api = new ParkingApi(clock, journal);
+            int city = api.newParkingHandle(1000, SlotType.STANDARD, 4, SlotStorage.COMPACT);
+            int[] parked = new int[100];
+            Assert.assertEquals(100, api.checkIn(city, ParkingApi.PARKING_STANDARD_TYPE, parked));
+            journal.close();
+
+            ParkingJournal reopened = ParkingJournal.builder(directory).build();
+            ParkingApi recovered = new ParkingApi(clock, reopened);
+            Assert.assertEquals(100, recovered.getOccupiedSlots(city));
+            clock.advanceMinutes(7);
+            for (double price : recovered.checkOut(city, parked, perMinute)) {
+                Assert.assertEquals(7, price, 0.0);
+            }
+            reopened.close();
+
+            //the storage is kept by the snapshot too
+            List<ParkingJournal.RecoveredParking> lots = ParkingJournal.builder(directory).build().recover();
+            Assert.assertEquals(SlotStorage.COMPACT, lots.get(0).storage);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    private static int segments(Path directory) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for (Path ignored : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -2,6 +2,27 @@ package parking.lot.api;
 
 import static org.junit.Assert.*;
 
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -73,4 +94,1059 @@ public class ParkingLotApiTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    public void checkInWrongTypeFails() {
+        try {
+            ParkingApiImpl myApi = new ParkingApiImpl();
+            String parkingId20kw = myApi.newParking(10, ParkingApi.PARKING_20kW_TYPE);
+
+            myApi.checkIn(parkingId20kw, ParkingApi.PARKING_50kW_TYPE);
+            fail("20kW parking should refuse 50kW cars");
+        } catch (UnknownParkingTypeException e) {
+            //expected
+        } catch (SlotsFullException | UnknowParkingIdException e) {
+            e.printStackTrace();
+            fail("Should have thrown UnknownParkingTypeException");
+        }
+    }
+
+    @Test
+    public void concurrentNewParkingUniqueIds() throws InterruptedException {
+        final ParkingApiImpl myApi = new ParkingApiImpl();
+        final int threads = 8;
+        final int lotsPerThread = 250;
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < lotsPerThread; i++) {
+                        String parkingId = myApi.newParking(2, ParkingApi.PARKING_STANDARD_TYPE);
+                        myApi.checkIn(parkingId, ParkingApi.PARKING_STANDARD_TYPE);
+                    }
+                } catch (UnknownParkingTypeException | UnknowParkingIdException | SlotsFullException e) {
+                    e.printStackTrace();
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Assert.assertEquals(threads * lotsPerThread, myApi.getAllParkingIds().size());
+    }
+
+    @Test
+    public void checkInCheckOutIntIds() {
+        try {
+            ParkingApiImpl myApi = new ParkingApiImpl();
+            int parkingId = myApi.newParkingHandle(2, ParkingApi.PARKING_50kW_TYPE);
+            myApi.setBillingPolicy(String.valueOf(parkingId), (long min) -> 2.5);
+
+            int slotId = myApi.checkIn(parkingId, ParkingApi.PARKING_50kW_TYPE);
+            Assert.assertEquals(1, slotId);
+            Assert.assertEquals(2.5, myApi.checkOut(parkingId, slotId), 0.001);
+
+            //String and int ids refer to the same slots
+            String stringSlotId = myApi.checkIn(String.valueOf(parkingId), ParkingApi.PARKING_50kW_TYPE);
+            Assert.assertEquals(3.0, myApi.checkOut(parkingId, Integer.parseInt(stringSlotId), (long min) -> 3.0), 0.001);
+        } catch (UnknownParkingTypeException | SlotsFullException | UnknowParkingIdException
+                | SlotNotFoundException | BillingPolicyNotSetException e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void unknownIntParkingIdFails() {
+        ParkingApiImpl myApi = new ParkingApiImpl();
+        for (int parkingId : new int[]{-1, 0, 1, 1000}) {
+            try {
+                myApi.checkIn(parkingId, ParkingApi.PARKING_STANDARD_TYPE);
+                fail("Parking " + parkingId + " does not exist");
+            } catch (UnknowParkingIdException e) {
+                //expected
+            } catch (UnknownParkingTypeException | SlotsFullException e) {
+                e.printStackTrace();
+                fail("Should have thrown UnknowParkingIdException");
+            }
+        }
+    }
+
+    @Test
+    public void leadingZerosAreNotIds() {
+        ParkingApi myApi = new ParkingApi();
+        try {
+            int parkingId = myApi.newParkingHandle(10, ParkingApi.PARKING_STANDARD_TYPE);
+            String slotId = myApi.checkIn(String.valueOf(parkingId), ParkingApi.PARKING_STANDARD_TYPE);
+            try {
+                myApi.checkIn("0" + parkingId, ParkingApi.PARKING_STANDARD_TYPE);
+                fail("0" + parkingId + " is not a parking id");
+            } catch (UnknowParkingIdException e) {
+                //expected
+            }
+            try {
+                myApi.checkOut(String.valueOf(parkingId), "0" + slotId, (long min) -> min);
+                fail("0" + slotId + " is not a slot id");
+            } catch (SlotNotFoundException e) {
+                //expected
+            }
+            Assert.assertEquals(0, myApi.checkOut(String.valueOf(parkingId), slotId, (long min) -> min), 0.0);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void checkOutWithManualClock() {
+        try {
+            ManualClock clock = new ManualClock();
+            ParkingApiImpl myApi = new ParkingApiImpl(clock);
+            int parkingId = myApi.newParkingHandle(10, ParkingApi.PARKING_STANDARD_TYPE);
+
+            int slotId = myApi.checkIn(parkingId, ParkingApi.PARKING_STANDARD_TYPE);
+            clock.advanceMinutes(130);
+            double price = myApi.checkOut(parkingId, slotId, (long min) -> {
+                if(min < 60){
+                    return 0;
+                }else if(min >= 60 && min < 120){
+                    return 1.8;
+                }else {
+                    return ((min-120)/15)*0.85+1.8;
+                }
+            });
+
+            Assert.assertEquals(1.8, price, 0.0001);
+        } catch (UnknownParkingTypeException | SlotsFullException | UnknowParkingIdException | SlotNotFoundException e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void occupancyCounters() {
+        try {
+            ParkingApiImpl myApi = new ParkingApiImpl();
+            int parkingIdStandard = myApi.newParkingHandle(10, ParkingApi.PARKING_STANDARD_TYPE);
+            int parkingIdOther = myApi.newParkingHandle(5, ParkingApi.PARKING_STANDARD_TYPE);
+            int parkingId20kw = myApi.newParkingHandle(4, ParkingApi.PARKING_20kW_TYPE);
+
+            int slotId = myApi.checkIn(parkingIdStandard, ParkingApi.PARKING_STANDARD_TYPE);
+            myApi.checkIn(parkingIdStandard, ParkingApi.PARKING_STANDARD_TYPE);
+            myApi.checkIn(parkingIdOther, ParkingApi.PARKING_STANDARD_TYPE);
+            Assert.assertEquals(2, myApi.checkIn(parkingId20kw, ParkingApi.PARKING_20kW_TYPE, new int[2]));
+            myApi.checkOut(parkingIdStandard, slotId, (long min) -> 0);
+
+            Assert.assertEquals(1, myApi.getOccupiedSlots(parkingIdStandard));
+            Assert.assertEquals(9, myApi.getAvailableSlots(parkingIdStandard));
+            Assert.assertEquals(2, myApi.getOccupiedSlotsForType(ParkingApi.PARKING_STANDARD_TYPE));
+            Assert.assertEquals(13, myApi.getAvailableSlotsForType(ParkingApi.PARKING_STANDARD_TYPE));
+            Assert.assertEquals(2, myApi.getAvailableSlotsForType(ParkingApi.PARKING_20kW_TYPE));
+            Assert.assertEquals(0, myApi.getOccupiedSlotsForType(ParkingApi.PARKING_50kW_TYPE));
+
+            OccupancySnapshot snapshot = myApi.getOccupancySnapshot();
+            Assert.assertEquals(3, snapshot.getParkings().size());
+            Assert.assertEquals(1, snapshot.getParking(String.valueOf(parkingIdOther)).getOccupied());
+            Assert.assertEquals(15, snapshot.getTypes().get(ParkingApi.PARKING_STANDARD_TYPE).getCapacity());
+            Assert.assertEquals(4, snapshot.getTotal().getOccupied());
+            Assert.assertEquals(15, snapshot.getTotal().getAvailable());
+        } catch (UnknownParkingTypeException | SlotsFullException | UnknowParkingIdException | SlotNotFoundException e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void registeredSlotTypes() {
+        try {
+            ParkingApi myApi = new ParkingApi();
+            SlotType charger11kW = SlotType.register("11kW");
+            SlotType charger150kW = SlotType.register("150kW");
+            Assert.assertSame(charger11kW, SlotType.register("11kW"));
+            Assert.assertSame(SlotType.STANDARD, SlotType.of(ParkingApi.PARKING_STANDARD_TYPE));
+            Assert.assertSame(SlotType.CHARGER_50kW, SlotType.of(new String(ParkingApi.PARKING_50kW_TYPE)));
+            Assert.assertNull(SlotType.of("22kW"));
+            Assert.assertSame(charger11kW, SlotType.of(charger11kW.ordinal()));
+
+            int slow = myApi.newParkingHandle(4, charger11kW);
+            int fast = myApi.newParkingHandle(2, "150kW", 1);
+            myApi.checkIn(slow, charger11kW);
+            //names equal to a registered one resolve as well
+            myApi.checkIn(slow, new String("11kW"));
+            myApi.checkIn(fast, charger150kW, 7);
+            try {
+                myApi.checkIn(fast, charger11kW);
+                fail("Parking has no 11kW slots");
+            } catch (UnknownParkingTypeException e) {
+                //expected
+            }
+            try {
+                myApi.newParkingHandle(1, "22kW");
+                fail("22kW was never registered");
+            } catch (UnknownParkingTypeException e) {
+                //expected
+            }
+            Assert.assertEquals(2, myApi.getOccupiedSlotsForType("11kW"));
+            Assert.assertEquals(1, myApi.getOccupancyForType(charger150kW).getOccupied());
+            Assert.assertEquals(2, myApi.getOccupancyForType(charger150kW).getCapacity());
+            Assert.assertEquals(0, myApi.getOccupancyForType(SlotType.CHARGER_50kW).getCapacity());
+        } catch (UnknownParkingTypeException | SlotsFullException | UnknowParkingIdException e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void mixedTypeLot() {
+        try {
+            ParkingApi myApi = new ParkingApi();
+            Map<SlotType, Integer> bays = new LinkedHashMap<>();
+            bays.put(SlotType.STANDARD, 3);
+            bays.put(SlotType.CHARGER_20kW, 2);
+            bays.put(SlotType.CHARGER_50kW, 1);
+            int site = myApi.newParkingHandle(bays);
+
+            Set<Integer> standard = new HashSet<>();
+            for (int i = 0; i < 3; i++) {
+                standard.add(myApi.checkIn(site, ParkingApi.PARKING_STANDARD_TYPE));
+            }
+            Assert.assertEquals(new HashSet<>(Arrays.asList(1, 2, 3)), standard);
+            try {
+                myApi.checkIn(site, SlotType.STANDARD);
+                fail("Standard bays should be full");
+            } catch (SlotsFullException e) {
+                //expected
+            }
+            int[] charging = new int[3];
+            Assert.assertEquals(2, myApi.checkIn(site, ParkingApi.PARKING_20kW_TYPE, charging));
+            Assert.assertEquals(new HashSet<>(Arrays.asList(4, 5)), new HashSet<>(Arrays.asList(charging[0], charging[1])));
+            Assert.assertEquals(6, myApi.checkIn(site, SlotType.CHARGER_50kW));
+
+            OccupancySnapshot occupancy = myApi.getOccupancySnapshot(site);
+            Assert.assertEquals(6, occupancy.getTotal().getOccupied());
+            Assert.assertEquals(0, occupancy.getTotal().getAvailable());
+            Assert.assertEquals(2, occupancy.getTypes().get(ParkingApi.PARKING_20kW_TYPE).getCapacity());
+            Assert.assertEquals(6, myApi.getOccupiedSlots(site));
+
+            double[] prices = myApi.checkOut(site, new int[]{1, 4, 6}, (long min) -> 1);
+            Assert.assertArrayEquals(new double[]{1, 1, 1}, prices, 0.0);
+            Assert.assertEquals(1, myApi.getAvailableSlotsForType(ParkingApi.PARKING_20kW_TYPE));
+            Assert.assertEquals(6, myApi.checkIn(site, SlotType.CHARGER_50kW));
+            Assert.assertEquals(4, myApi.checkIn(site, SlotType.CHARGER_20kW));
+            Assert.assertEquals(1, myApi.checkIn(site, SlotType.STANDARD));
+            Assert.assertEquals(1, myApi.getOccupancySnapshot().getParkings().size());
+            Assert.assertEquals(6, myApi.getOccupancySnapshot().getParkingTypes(String.valueOf(site))
+                    .values().stream().mapToLong(Occupancy::getOccupied).sum());
+        } catch (UnknownParkingTypeException | SlotsFullException | UnknowParkingIdException e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void tryCheckInReturnsStatusCodes() {
+        try {
+            ParkingApi myApi = new ParkingApi();
+            int parkingId = myApi.newParkingHandle(2, SlotType.CHARGER_20kW);
+            int first = myApi.tryCheckIn(parkingId, SlotType.CHARGER_20kW);
+            int second = myApi.tryCheckIn(parkingId, SlotType.CHARGER_20kW, 7);
+            Assert.assertTrue(ParkingStatus.isSlot(first) && ParkingStatus.isSlot(second));
+            Assert.assertEquals(ParkingStatus.FULL, myApi.tryCheckIn(parkingId, SlotType.CHARGER_20kW));
+            Assert.assertEquals(ParkingStatus.UNKNOWN_TYPE, myApi.tryCheckIn(parkingId, SlotType.STANDARD));
+            Assert.assertEquals(ParkingStatus.UNKNOWN_TYPE, myApi.tryCheckIn(parkingId, null));
+            Assert.assertEquals(ParkingStatus.UNKNOWN_PARKING, myApi.tryCheckIn(parkingId + 1, SlotType.CHARGER_20kW));
+            Assert.assertFalse(ParkingStatus.isSlot(ParkingStatus.FULL));
+
+            Assert.assertTrue(Double.isNaN(myApi.tryCheckOut(parkingId, first)));
+            Assert.assertEquals(1, myApi.tryCheckOut(parkingId, first, (long min) -> 1), 0.0);
+            Assert.assertTrue(Double.isNaN(myApi.tryCheckOut(parkingId, first, (long min) -> 1)));
+            Assert.assertTrue(Double.isNaN(myApi.tryCheckOut(parkingId + 1, second, (long min) -> 1)));
+            myApi.setBillingPolicy(String.valueOf(parkingId), (long min) -> 2);
+            Assert.assertEquals(2, myApi.tryCheckOut(parkingId, second), 0.0);
+            Assert.assertEquals(2, myApi.getAvailableSlots(parkingId));
+
+            //the exceptions are still thrown by checkIn, the same stackless instance every time
+            SlotsFullException full = null;
+            for (int i = 0; i < 4; i++) {
+                try {
+                    myApi.checkIn(parkingId, SlotType.CHARGER_20kW);
+                } catch (SlotsFullException e) {
+                    Assert.assertEquals(0, e.getStackTrace().length);
+                    Assert.assertTrue(full == null || full == e);
+                    full = e;
+                }
+            }
+            Assert.assertNotNull(full);
+        } catch (UnknownParkingTypeException | UnknowParkingIdException e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void checkInAsyncWaitsForCheckOut() {
+        try {
+            ParkingApi myApi = new ParkingApi();
+            int parkingId = myApi.newParkingHandle(1, SlotType.CHARGER_50kW);
+            int slotId = myApi.checkIn(parkingId, SlotType.CHARGER_50kW);
+            CompletableFuture<Integer> first = myApi.checkInAsync(parkingId, ParkingApi.PARKING_50kW_TYPE);
+            CompletableFuture<Integer> cancelled = myApi.checkInAsync(parkingId, SlotType.CHARGER_50kW);
+            CompletableFuture<Integer> expiring = myApi.checkInAsync(parkingId, SlotType.CHARGER_50kW, 20, TimeUnit.MILLISECONDS);
+            Assert.assertFalse(first.isDone());
+            Assert.assertTrue(cancelled.cancel(false));
+
+            //the slot goes straight to the oldest waiter
+            myApi.checkOut(parkingId, slotId, (long min) -> 0);
+            Assert.assertEquals(slotId, first.getNow(-1).intValue());
+            Assert.assertEquals(1, myApi.getOccupiedSlots(parkingId));
+            try {
+                expiring.get();
+                fail("No slot got free in time");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof TimeoutException);
+            }
+
+            myApi.checkOut(parkingId, first.get(), (long min) -> 0);
+            Assert.assertEquals(0, myApi.getOccupiedSlots(parkingId));
+            Assert.assertEquals(slotId, myApi.checkInAsync(parkingId, SlotType.CHARGER_50kW).getNow(-1).intValue());
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void completedWaitersLeaveTheQueue() {
+        try {
+            ParkingApi myApi = new ParkingApi();
+            int parkingId = myApi.newParkingHandle(1, SlotType.CHARGER_50kW);
+            int slotId = myApi.checkIn(parkingId, SlotType.CHARGER_50kW);
+            CompletableFuture<Integer> completed = myApi.checkInAsync(parkingId, SlotType.CHARGER_50kW);
+            CompletableFuture<Integer> failed = myApi.checkInAsync(parkingId, SlotType.CHARGER_50kW);
+            CompletableFuture<Integer> waiting = myApi.checkInAsync(parkingId, SlotType.CHARGER_50kW);
+            Assert.assertTrue(completed.complete(-1));
+            Assert.assertTrue(failed.completeExceptionally(new IllegalStateException()));
+            try {
+                waiting.obtrudeValue(-1);
+                fail("A waiter cannot be obtruded");
+            } catch (UnsupportedOperationException e) {
+                //expected
+            }
+
+            //the slot skips the waiters completed by the caller
+            myApi.checkOut(parkingId, slotId, (long min) -> 0);
+            Assert.assertEquals(-1, completed.get().intValue());
+            Assert.assertTrue(failed.isCompletedExceptionally());
+            Assert.assertEquals(slotId, waiting.getNow(-1).intValue());
+            Assert.assertFalse(waiting.complete(-1));
+            Assert.assertEquals(1, myApi.getOccupiedSlots(parkingId));
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void reservationsExpireUnlessClaimed() {
+        ManualClock clock = new ManualClock();
+        ParkingApiImpl myApi = new ParkingApiImpl(clock);
+        try {
+            int parkingId = myApi.newParkingHandle(3, SlotType.STANDARD);
+            try {
+                myApi.reserve(parkingId + 1, SlotType.STANDARD, 30);
+                fail("No such parking");
+            } catch (UnknowParkingIdException e) {
+                //expected
+            }
+            try {
+                myApi.reserve(parkingId, SlotType.CHARGER_20kW, 30);
+                fail("Parking has no 20kW slots");
+            } catch (UnknownParkingTypeException e) {
+                //expected
+            }
+            int claimed = myApi.reserve(parkingId, SlotType.STANDARD, 30);
+            int expiring = myApi.reserve(parkingId, ParkingApi.PARKING_STANDARD_TYPE, 10);
+            int cancelled = myApi.reserve(parkingId, SlotType.STANDARD, 10);
+            Assert.assertEquals(0, myApi.getAvailableSlots(parkingId));
+            try {
+                myApi.reserve(parkingId, SlotType.STANDARD, 10);
+                fail("Every slot is held");
+            } catch (SlotsFullException e) {
+                //expected
+            }
+            Assert.assertTrue(myApi.cancelReservation(parkingId, cancelled));
+            Assert.assertFalse(myApi.cancelReservation(parkingId, cancelled));
+            Assert.assertEquals(1, myApi.getAvailableSlots(parkingId));
+
+            clock.advanceMinutes(9);
+            myApi.advanceWheel();
+            Assert.assertEquals(1, myApi.getAvailableSlots(parkingId));
+            clock.advanceMinutes(1);
+            myApi.advanceWheel();
+            Assert.assertEquals(2, myApi.getAvailableSlots(parkingId));
+            try {
+                myApi.claim(parkingId, expiring);
+                fail("The hold is over");
+            } catch (SlotNotFoundException e) {
+                //expected
+            }
+
+            //the stay is billed from the claim
+            myApi.claim(parkingId, claimed);
+            clock.advanceMinutes(45);
+            myApi.advanceWheel();
+            Assert.assertEquals(45, myApi.checkOut(parkingId, claimed, (long min) -> min), 0.0);
+            Assert.assertEquals(3, myApi.getAvailableSlots(parkingId));
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void longStaysAndOverstayListener() {
+        ManualClock clock = new ManualClock();
+        ParkingApiImpl myApi = new ParkingApiImpl(clock);
+        try {
+            int parkingId = myApi.newParkingHandle(100, SlotType.STANDARD, 4);
+            int first = myApi.checkIn(parkingId, SlotType.STANDARD);
+            clock.advanceMinutes(30);
+            int[] batch = new int[10];
+            myApi.checkIn(parkingId, ParkingApi.PARKING_STANDARD_TYPE, batch);
+            clock.advanceMinutes(30);
+            int last = myApi.checkIn(parkingId, SlotType.STANDARD);
+
+            List<Stay> oldest = myApi.getOldestStays(parkingId, 2);
+            Assert.assertEquals(2, oldest.size());
+            Assert.assertEquals(first, oldest.get(0).getSlotId());
+            Assert.assertEquals(60, oldest.get(0).getMinutes());
+            Assert.assertEquals(30, oldest.get(1).getMinutes());
+            Assert.assertEquals(11, myApi.getStaysLongerThan(parkingId, 30).size());
+            Assert.assertEquals(12, myApi.getStaysLongerThan(0).size());
+            myApi.checkOut(parkingId, first, (long min) -> min);
+            Assert.assertEquals(10, myApi.getStaysLongerThan(parkingId, 30).size());
+            Assert.assertTrue(myApi.getStaysLongerThan(parkingId, 31).isEmpty());
+
+            //the cars parked before the listener is added are watched too
+            List<Integer> overstayed = new ArrayList<>();
+            myApi.addOverstayListener(parkingId, 45, stay -> overstayed.add(stay.getSlotId()));
+            myApi.checkOut(parkingId, batch[0], (long min) -> min);
+            myApi.advanceWheel();
+            Assert.assertEquals(0, overstayed.size());
+            clock.advanceMinutes(15);
+            myApi.advanceWheel();
+            Assert.assertEquals(9, overstayed.size());
+            Assert.assertFalse(overstayed.contains(batch[0]));
+            clock.advanceMinutes(30);
+            myApi.advanceWheel();
+            Assert.assertEquals(10, overstayed.size());
+            Assert.assertEquals(last, overstayed.get(9).intValue());
+            clock.advanceMinutes(60);
+            myApi.advanceWheel();
+            Assert.assertEquals(10, overstayed.size());
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void overstayListenerReportsEachStayOnce() {
+        ManualClock clock = new ManualClock();
+        ParkingApiImpl myApi = new ParkingApiImpl(clock);
+        try {
+            int parkingId = myApi.newParkingHandle(1, SlotType.STANDARD);
+            List<Integer> overstayed = new ArrayList<>();
+            myApi.addOverstayListener(parkingId, 10, stay -> overstayed.add((int) stay.getMinutes()));
+            myApi.addOverstayListener(parkingId, 10, stay -> {
+                throw new IllegalStateException("failing listener");
+            });
+            myApi.advanceWheel();
+            //the slot is given back and taken again before the threshold
+            int slotId = myApi.checkIn(parkingId, SlotType.STANDARD);
+            clock.advanceMinutes(5);
+            myApi.checkOut(parkingId, slotId, (long min) -> min);
+            slotId = myApi.checkIn(parkingId, SlotType.STANDARD);
+            clock.advanceMinutes(5);
+            myApi.advanceWheel();
+            Assert.assertEquals(0, overstayed.size());
+            clock.advanceMinutes(5);
+            myApi.advanceWheel();
+            Assert.assertEquals(1, overstayed.size());
+            Assert.assertEquals(10, overstayed.get(0).intValue());
+            //a failing listener is counted, not printed
+            Assert.assertEquals(1, myApi.getMetricsSnapshot().getTimerFailures());
+            Assert.assertEquals("failing listener", myApi.getMetricsSnapshot().getTimerFailure().getMessage());
+            clock.advanceMinutes(30);
+            myApi.advanceWheel();
+            Assert.assertEquals(1, overstayed.size());
+            Assert.assertEquals(1, myApi.getMetricsSnapshot().getTimerFailures());
+            myApi.checkOut(parkingId, slotId, (long min) -> min);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void overstayChecksResumeAfterTheLastStayReported() {
+        ManualClock clock = new ManualClock();
+        ParkingApiImpl myApi = new ParkingApiImpl(clock);
+        try {
+            int parkingId = myApi.newParkingHandle(3, SlotType.STANDARD);
+            List<Integer> overstayed = new ArrayList<>();
+            myApi.addOverstayListener(parkingId, 10, stay -> overstayed.add(stay.getSlotId()));
+            int first = myApi.checkIn(parkingId, SlotType.STANDARD);
+            clock.advanceMinutes(10);
+            myApi.advanceWheel();
+            Assert.assertEquals(Arrays.asList(first), overstayed);
+            //the last stay reported leaves, the next ones are still found
+            myApi.checkOut(parkingId, first, (long min) -> min);
+            int second = myApi.checkIn(parkingId, SlotType.STANDARD);
+            clock.advanceMinutes(1);
+            int third = myApi.checkIn(parkingId, SlotType.STANDARD);
+            clock.advanceMinutes(10);
+            myApi.advanceWheel();
+            Assert.assertEquals(Arrays.asList(first, second, third), overstayed);
+            myApi.checkOut(parkingId, third, (long min) -> min);
+            int fourth = myApi.checkIn(parkingId, SlotType.STANDARD);
+            clock.advanceMinutes(10);
+            myApi.advanceWheel();
+            Assert.assertEquals(Arrays.asList(first, second, third, fourth), overstayed);
+            clock.advanceMinutes(60);
+            myApi.advanceWheel();
+            Assert.assertEquals(4, overstayed.size());
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void checkOutByVehicle() {
+        ManualClock clock = new ManualClock();
+        ParkingApi myApi = new ParkingApi(clock);
+        try {
+            int parkingId = myApi.newParkingHandle(2, SlotType.STANDARD);
+            myApi.checkInVehicle(parkingId, SlotType.STANDARD, "AB-123-CD");
+            try {
+                myApi.checkInVehicle(parkingId, SlotType.STANDARD, "AB-123-CD");
+                fail("The car is already parked");
+            } catch (VehicleAlreadyParkedException e) {
+                //expected
+            }
+            myApi.checkInVehicle(parkingId, SlotType.STANDARD, "EF-456-GH");
+            try {
+                myApi.checkInVehicle(parkingId, SlotType.STANDARD, "IJ-789-KL");
+                fail("The parking is full");
+            } catch (SlotsFullException e) {
+                //expected
+            }
+            clock.advanceMinutes(20);
+            Assert.assertEquals(20, myApi.checkOutByVehicle("AB-123-CD", (long min) -> min), 0.0);
+            Assert.assertEquals(1, myApi.getOccupiedSlots(parkingId));
+            try {
+                myApi.checkOutByVehicle("AB-123-CD", (long min) -> min);
+                fail("The car left");
+            } catch (SlotNotFoundException e) {
+                //expected
+            }
+
+            //a check out by slot id removes the key too
+            int other = myApi.checkInVehicle(parkingId, SlotType.STANDARD, "IJ-789-KL");
+            myApi.checkOut(parkingId, other, (long min) -> min);
+            try {
+                myApi.checkOutByVehicle("IJ-789-KL", (long min) -> min);
+                fail("The car left");
+            } catch (SlotNotFoundException e) {
+                //expected
+            }
+            Assert.assertEquals(other, myApi.checkInVehicle(parkingId, SlotType.STANDARD, "IJ-789-KL"));
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void concurrentCheckOutsByVehicleAndSlotId() {
+        ParkingApi myApi = new ParkingApi();
+        try {
+            int parkingId = myApi.newParkingHandle(2, SlotType.STANDARD);
+            int threads = 3;
+            CountDownLatch done = new CountDownLatch(threads + 1);
+            AtomicInteger failures = new AtomicInteger();
+            for (int t = 0; t < threads; t++) {
+                String key = "car-" + t;
+                new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 20000; i++) {
+                            int slotId;
+                            try {
+                                slotId = myApi.checkInVehicle(parkingId, SlotType.STANDARD, key);
+                            } catch (SlotsFullException e) {
+                                continue;
+                            }
+                            if (i % 2 == 0) {
+                                myApi.tryCheckOut(parkingId, slotId, (long min) -> min);
+                            } else {
+                                try {
+                                    myApi.checkOutByVehicle(key, (long min) -> min);
+                                } catch (SlotNotFoundException e) {
+                                    //checked out by slot id from the other thread
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                        failures.incrementAndGet();
+                    } finally {
+                        done.countDown();
+                    }
+                }).start();
+            }
+            //checks out whatever car is parked, with ids kept from previous stays
+            new Thread(() -> {
+                for (int i = 0; i < 60000; i++) {
+                    myApi.tryCheckOut(parkingId, 1 + i % 2, (long min) -> min);
+                }
+                done.countDown();
+            }).start();
+            done.await();
+            Assert.assertEquals(0, failures.get());
+
+            //no key is left behind by a car that is gone
+            for (int t = 0; t < threads; t++) {
+                try {
+                    myApi.checkOutByVehicle("car-" + t, (long min) -> min);
+                } catch (SlotNotFoundException e) {
+                    //not parked
+                }
+            }
+            Assert.assertEquals(0, myApi.getOccupiedSlots(parkingId));
+            myApi.checkInVehicle(parkingId, SlotType.STANDARD, "car-0");
+            myApi.checkInVehicle(parkingId, SlotType.STANDARD, "car-1");
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void concurrentCheckOutBySlotAndByVehicle() throws InterruptedException {
+        final ParkingApi myApi = new ParkingApi();
+        final int rounds = 2000;
+        final AtomicInteger checkedOut = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        try {
+            final int parkingId = myApi.newParkingHandle(4, SlotType.STANDARD);
+            for (int i = 0; i < rounds; i++) {
+                final String plate = "car-" + i;
+                final int slotId = myApi.checkInVehicle(parkingId, SlotType.STANDARD, plate);
+                CountDownLatch done = new CountDownLatch(2);
+                new Thread(() -> {
+                    if (!Double.isNaN(myApi.tryCheckOut(parkingId, slotId, (long min) -> 1.0))) {
+                        checkedOut.incrementAndGet();
+                    }
+                    done.countDown();
+                }).start();
+                new Thread(() -> {
+                    try {
+                        myApi.checkOutByVehicle(plate, (long min) -> 1.0);
+                        checkedOut.incrementAndGet();
+                    } catch (SlotNotFoundException e) {
+                        //the other gate was first
+                    } catch (Throwable e) {
+                        errors.incrementAndGet();
+                    }
+                    done.countDown();
+                }).start();
+                done.await();
+                if (myApi.getOccupiedSlots(parkingId) != 0) {
+                    errors.incrementAndGet();
+                }
+            }
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+        Assert.assertEquals(0, errors.get());
+        Assert.assertEquals(rounds, checkedOut.get());
+    }
+
+    @Test
+    public void retriedRequestsRunOnce() {
+        ManualClock clock = new ManualClock();
+        ParkingApi myApi = new ParkingApi(clock);
+        try {
+            int parkingId = myApi.newParkingHandle(2, SlotType.STANDARD);
+            int slotId = myApi.checkInOnce(parkingId, SlotType.STANDARD, "gate-1/42");
+            Assert.assertEquals(slotId, myApi.checkInOnce(parkingId, SlotType.STANDARD, "gate-1/42"));
+            Assert.assertEquals(1, myApi.getOccupiedSlots(parkingId));
+
+            clock.advanceMinutes(30);
+            Assert.assertEquals(30, myApi.checkOutOnce(parkingId, slotId, "gate-2/7", (long min) -> min), 0.0);
+            clock.advanceMinutes(1);
+            Assert.assertEquals(30, myApi.checkOutOnce(parkingId, slotId, "gate-2/7", (long min) -> min), 0.0);
+            try {
+                myApi.checkOutOnce(parkingId, slotId, "gate-2/8", (long min) -> min);
+                fail("A new request checks out again");
+            } catch (SlotNotFoundException e) {
+                //expected
+            }
+
+            //a rejected request is run again by its retry
+            myApi.checkIn(parkingId, SlotType.STANDARD);
+            myApi.checkIn(parkingId, SlotType.STANDARD);
+            try {
+                myApi.checkInOnce(parkingId, SlotType.STANDARD, "gate-1/43");
+                fail("The parking is full");
+            } catch (SlotsFullException e) {
+                //expected
+            }
+            myApi.checkOut(parkingId, 1, (long min) -> min);
+            Assert.assertEquals(1, myApi.checkInOnce(parkingId, SlotType.STANDARD, "gate-1/43"));
+
+            //an id belongs to the lot of its first attempt
+            int other = myApi.newParkingHandle(2, SlotType.STANDARD);
+            try {
+                myApi.checkInOnce(other, SlotType.STANDARD, "gate-1/43");
+                fail("The request id was used in another parking");
+            } catch (IllegalArgumentException e) {
+                //expected
+            }
+            Assert.assertEquals(0, myApi.getOccupiedSlots(other));
+
+            RequestCacheStats stats = myApi.getRequestCacheStats();
+            Assert.assertEquals(2, stats.getHits());
+            Assert.assertEquals(5, stats.getMisses());
+            Assert.assertEquals(3, stats.getSize());
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void requestCacheIsBounded() {
+        ManualClock clock = new ManualClock();
+        ParkingApi myApi = new ParkingApi(clock);
+        try {
+            int parkingId = myApi.newParkingHandle(100, SlotType.STANDARD);
+            myApi.setRequestCache(1, 5, TimeUnit.MINUTES);
+            int first = myApi.checkInOnce(parkingId, SlotType.STANDARD, "a");
+            Assert.assertEquals(first, myApi.checkInOnce(parkingId, SlotType.STANDARD, "a"));
+            myApi.checkInOnce(parkingId, SlotType.STANDARD, "b");
+            //"a" was evicted by "b"
+            Assert.assertNotEquals(first, myApi.checkInOnce(parkingId, SlotType.STANDARD, "a"));
+            Assert.assertEquals(1, myApi.getRequestCacheStats().getSize());
+            Assert.assertEquals(2, myApi.getRequestCacheStats().getEvictions());
+
+            myApi.setRequestCache(100, 5, TimeUnit.MINUTES);
+            int slotId = myApi.checkInOnce(parkingId, SlotType.STANDARD, "c");
+            clock.advanceMinutes(6);
+            Assert.assertNotEquals(slotId, myApi.checkInOnce(parkingId, SlotType.STANDARD, "c"));
+            Assert.assertEquals(5, myApi.getOccupiedSlots(parkingId));
+
+            //the capacity is shared by all the threads, each one keeps at least its last result
+            myApi.setRequestCache(3, 5, TimeUnit.MINUTES);
+            int gates = 8;
+            int[] kept = new int[gates];
+            for (int i = 0; i < gates; i++) {
+                final int gate = i;
+                Thread thread = new Thread(() -> {
+                    try {
+                        for (int request = 0; request < 5; request++) {
+                            kept[gate] = myApi.checkInOnce(parkingId, SlotType.STANDARD, "gate-" + gate + "/" + request);
+                        }
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                    }
+                });
+                thread.start();
+                thread.join();
+                Assert.assertEquals(kept[gate], myApi.checkInOnce(parkingId, SlotType.STANDARD, "gate-" + gate + "/4"));
+            }
+            RequestCacheStats stats = myApi.getRequestCacheStats();
+            Assert.assertTrue(stats.getSize() <= 3);
+            Assert.assertEquals(5 * gates - stats.getSize(), stats.getEvictions());
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void concurrentRetriesRunOnce() throws InterruptedException {
+        final ParkingApi myApi = new ParkingApi();
+        final int threads = 4;
+        final int requests = 2000;
+        final AtomicInteger errors = new AtomicInteger();
+        final int[][] slots = new int[threads][requests];
+        try {
+            final int parkingId = myApi.newParkingHandle(requests, SlotType.STANDARD, 4);
+            CountDownLatch done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                new Thread(() -> {
+                    try {
+                        for (int i = 0; i < requests; i++) {
+                            slots[thread][i] = myApi.checkInOnce(parkingId, SlotType.STANDARD, "request-" + i);
+                        }
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                        errors.incrementAndGet();
+                    }
+                    done.countDown();
+                }).start();
+            }
+            done.await();
+            Assert.assertEquals(0, errors.get());
+            Assert.assertEquals(requests, myApi.getOccupiedSlots(parkingId));
+            for (int t = 1; t < threads; t++) {
+                Assert.assertArrayEquals(slots[0], slots[t]);
+            }
+            Assert.assertEquals(requests * (threads - 1), myApi.getRequestCacheStats().getHits());
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void eventStream() {
+        ManualClock clock = new ManualClock();
+        ParkingApi myApi = new ParkingApi(clock);
+        try (ParkingEventSubscription subscription = myApi.subscribe()) {
+            ParkingEventBatch batch = new ParkingEventBatch(16);
+            int parkingId = myApi.newParkingHandle(2, SlotType.STANDARD);
+            int first = myApi.checkIn(parkingId, SlotType.STANDARD);
+            clock.advanceMinutes(1);
+            int second = myApi.checkIn(parkingId, SlotType.STANDARD);
+            myApi.checkOut(parkingId, first, (long min) -> min);
+
+            Assert.assertEquals(6, subscription.poll(batch));
+            Assert.assertEquals(0, batch.missed());
+            ParkingEventType[] expected = {ParkingEventType.CREATED, ParkingEventType.CHECK_IN,
+                    ParkingEventType.CHECK_IN, ParkingEventType.FULL, ParkingEventType.CHECK_OUT,
+                    ParkingEventType.NOT_FULL};
+            for (int i = 0; i < expected.length; i++) {
+                Assert.assertEquals(expected[i], batch.type(i));
+                Assert.assertEquals(parkingId, batch.parkingId(i));
+                Assert.assertEquals(SlotType.STANDARD, batch.slotType(i));
+            }
+            Assert.assertEquals(2, batch.slotId(0));
+            Assert.assertEquals(second, batch.slotId(2));
+            Assert.assertEquals(clock.currentTimeMillis(), batch.time(2));
+            Assert.assertEquals(first, batch.slotId(4));
+            Assert.assertEquals(0, subscription.poll(batch));
+
+            //a listener is called from its own thread
+            CountDownLatch received = new CountDownLatch(1);
+            ParkingEventSubscription listening = myApi.subscribe((ParkingEventBatch events) -> {
+                for (int i = 0; i < events.size(); i++) {
+                    if (events.type(i) == ParkingEventType.CHECK_OUT) {
+                        received.countDown();
+                        throw new IllegalStateException("failing listener");
+                    }
+                }
+            }, 8);
+            myApi.checkOut(parkingId, second, (long min) -> min);
+            Assert.assertTrue(received.await(10, TimeUnit.SECONDS));
+            //the exception is counted and the subscription stays open
+            for (int i = 0; i < 1000 && listening.getListenerFailures() == 0; i++) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(1, listening.getListenerFailures());
+            Assert.assertEquals("failing listener", listening.getListenerFailure().getMessage());
+            Assert.assertEquals(0, subscription.getListenerFailures());
+            Assert.assertFalse(listening.isClosed());
+            listening.close();
+            Assert.assertTrue(listening.isClosed());
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void metricsPerLotAndType() {
+        ParkingApi myApi = new ParkingApi();
+        try {
+            int small = myApi.newParkingHandle(1, SlotType.STANDARD);
+            int charging = myApi.newParkingHandle(10, SlotType.CHARGER_50kW);
+            //disabled by default, nothing is recorded
+            myApi.checkOut(small, myApi.checkIn(small, SlotType.STANDARD), (long min) -> min);
+            Assert.assertFalse(myApi.getMetricsSnapshot().isEnabled());
+            Assert.assertEquals(0, myApi.getMetricsSnapshot().getLatency(ParkingOperation.CHECK_IN).getCount());
+
+            //the stay indexes are only kept once the stays are read
+            myApi.getOldestStays(small, 1);
+            myApi.getOldestStays(charging, 1);
+            myApi.setMetricsEnabled(true);
+            int slotId = myApi.checkIn(small, SlotType.STANDARD);
+            Assert.assertEquals(ParkingStatus.FULL, myApi.tryCheckIn(small, SlotType.STANDARD));
+            for (int i = 0; i < 8; i++) {
+                myApi.checkIn(charging, SlotType.CHARGER_50kW);
+            }
+            myApi.checkOut(small, slotId, (long min) -> min);
+            Assert.assertTrue(Double.isNaN(myApi.tryCheckOut(small, slotId, (long min) -> min)));
+            Assert.assertTrue(Double.isNaN(myApi.tryCheckOut(small, 42, (long min) -> min)));
+            try {
+                myApi.checkIn(42, SlotType.STANDARD);
+                fail("The parking does not exist");
+            } catch (UnknowParkingIdException e) {
+                //expected
+            }
+
+            ParkingMetricsSnapshot snapshot = myApi.getMetricsSnapshot();
+            Assert.assertEquals(10, snapshot.getLatency(ParkingOperation.CHECK_IN).getCount());
+            Assert.assertEquals(2, snapshot.getLatency(ParkingOperation.CHECK_IN, small).getCount());
+            Assert.assertEquals(8, snapshot.getLatency(ParkingOperation.CHECK_IN, SlotType.CHARGER_50kW).getCount());
+            Assert.assertEquals(0, snapshot.getLatency(ParkingOperation.CHECK_IN, charging, SlotType.STANDARD).getCount());
+            Assert.assertEquals(2, snapshot.getLatency(ParkingOperation.CHECK_OUT, small).getCount());
+            Assert.assertEquals(1, snapshot.getRejections(ParkingOperation.CHECK_IN, small));
+            Assert.assertEquals(0, snapshot.getRejections(ParkingOperation.CHECK_IN, charging));
+            Assert.assertEquals(1, snapshot.getRejections(ParkingOperation.CHECK_OUT));
+            Assert.assertEquals(1, snapshot.getErrors(ParkingOperation.CHECK_IN));
+            Assert.assertEquals(1, snapshot.getErrors(ParkingOperation.CHECK_OUT));
+            //waits for the stay index are sampled on slot ids multiple of 8
+            Assert.assertEquals(1, snapshot.getLockWait(charging).getCount());
+            Assert.assertEquals(0, snapshot.getLockWait(small).getCount());
+            Assert.assertTrue(snapshot.getLatency(ParkingOperation.CHECK_IN).getMax() > 0);
+
+            //batches, vehicle keys and reservations take slots the same way
+            int reserved = myApi.reserve(charging, SlotType.CHARGER_50kW, 10);
+            int[] batch = new int[4];
+            Assert.assertEquals(1, myApi.checkIn(charging, ParkingApi.PARKING_50kW_TYPE, batch));
+            myApi.checkInVehicle(small, SlotType.STANDARD, "AB-123-CD");
+            try {
+                myApi.checkInVehicle(small, SlotType.STANDARD, "EF-456-GH");
+                fail("The parking is full");
+            } catch (SlotsFullException e) {
+                //expected
+            }
+            snapshot = myApi.getMetricsSnapshot();
+            Assert.assertEquals(14, snapshot.getLatency(ParkingOperation.CHECK_IN).getCount());
+            Assert.assertEquals(3, snapshot.getRejections(ParkingOperation.CHECK_IN, charging));
+            Assert.assertEquals(2, snapshot.getRejections(ParkingOperation.CHECK_IN, small));
+            Assert.assertTrue(myApi.cancelReservation(charging, reserved));
+            //a batch checkOut counts one per slot, a free slot as rejected and an unknown one as an error
+            double[] prices = myApi.checkOut(charging, new int[]{ batch[0], batch[0], 42 }, (long min) -> min);
+            Assert.assertFalse(Double.isNaN(prices[0]));
+            snapshot = myApi.getMetricsSnapshot();
+            Assert.assertEquals(2, snapshot.getLatency(ParkingOperation.CHECK_OUT, charging).getCount());
+            Assert.assertEquals(1, snapshot.getRejections(ParkingOperation.CHECK_OUT, charging));
+            Assert.assertEquals(2, snapshot.getErrors(ParkingOperation.CHECK_OUT));
+            myApi.checkOutByVehicle("AB-123-CD", (long min) -> min);
+
+            //the MBean reads the same metrics and switches them
+            ObjectName name = myApi.registerMetricsMBean("metricsPerLotAndType");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertEquals(14L, server.getAttribute(name, "CheckIns"));
+            Assert.assertEquals(5L, server.getAttribute(name, "RejectedCheckIns"));
+            server.setAttribute(name, new Attribute("Enabled", false));
+            Assert.assertFalse(myApi.isMetricsEnabled());
+            myApi.checkIn(charging, SlotType.CHARGER_50kW);
+            Assert.assertEquals(14L, server.getAttribute(name, "CheckIns"));
+            myApi.unregisterMetricsMBean("metricsPerLotAndType");
+            Assert.assertFalse(server.isRegistered(name));
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void sessionLog() {
+        ManualClock clock = new ManualClock();
+        ParkingApi myApi = new ParkingApi(clock);
+        try {
+            int parkingId = myApi.newParkingHandle(10, SlotType.STANDARD);
+            int before = myApi.checkIn(parkingId, SlotType.STANDARD);
+            myApi.checkOut(parkingId, before, (long min) -> min);
+            Assert.assertNull(myApi.getSessionLog());
+
+            SessionLog log = myApi.startSessionLog(1000);
+            long start = clock.currentTimeMillis();
+            int first = myApi.checkIn(parkingId, SlotType.STANDARD);
+            int second = myApi.checkInVehicle(parkingId, SlotType.STANDARD, "AB-123-CD");
+            int[] batch = new int[2];
+            myApi.checkIn(parkingId, ParkingApi.PARKING_STANDARD_TYPE, batch);
+            clock.advanceMinutes(30);
+            Assert.assertEquals(60, myApi.checkOut(parkingId, first, (long min) -> min * 2), 0.0);
+            Assert.assertEquals(30, myApi.checkOutByVehicle("AB-123-CD", (long min) -> min), 0.0);
+            clock.advanceMinutes(30);
+            myApi.checkOut(parkingId, batch, (long min) -> 1.5);
+            Assert.assertTrue(Double.isNaN(myApi.tryCheckOut(parkingId, first, (long min) -> min)));
+
+            SessionTotals totals = log.aggregate();
+            Assert.assertEquals(4, totals.getCount());
+            Assert.assertEquals(30 + 30 + 60 + 60, totals.getMinutes());
+            Assert.assertEquals(60 + 30 + 1.5 + 1.5, totals.getRevenue(), 1e-9);
+            long halfHour = start + 30 * 60000L;
+            Assert.assertEquals(2, log.aggregate(parkingId, SlotType.STANDARD, halfHour, halfHour + 1).getCount());
+            List<Integer> slots = new ArrayList<>();
+            log.forEach(parkingId, null, start, halfHour + 1, (lot, type, slotId, from, to, minutes, price) -> {
+                Assert.assertEquals(start, from);
+                slots.add(slotId);
+            });
+            Assert.assertEquals(Arrays.asList(first, second), slots);
+
+            Assert.assertSame(log, myApi.stopSessionLog());
+            myApi.checkOut(parkingId, myApi.checkIn(parkingId, SlotType.STANDARD), (long min) -> min);
+            Assert.assertEquals(4, log.size());
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+
+    @Test
+    public void revenuePerLotTypeAndPeriod() {
+        ZoneId zone = ZoneId.systemDefault();
+        ManualClock clock = new ManualClock(LocalDate.of(2026, 10, 16).atStartOfDay(zone).plusHours(22).toInstant().toEpochMilli());
+        ParkingApi myApi = new ParkingApi(clock);
+        try {
+            Map<SlotType, Integer> bays = new LinkedHashMap<>();
+            bays.put(SlotType.STANDARD, 4);
+            bays.put(SlotType.CHARGER_50kW, 2);
+            int site = myApi.newParkingHandle(bays, 1);
+            int street = myApi.newParkingHandle(10, SlotType.STANDARD);
+            int car = myApi.checkIn(site, SlotType.STANDARD);
+            int ev = myApi.checkIn(site, SlotType.CHARGER_50kW);
+            int[] parked = new int[3];
+            myApi.checkIn(street, ParkingApi.PARKING_STANDARD_TYPE, parked);
+            clock.advanceMinutes(30);
+            myApi.checkOut(site, car, (long min) -> 0.1);
+            myApi.checkOut(site, ev, (long min) -> min / 90.0);
+
+            Revenue lot = myApi.getRevenue(site, RevenuePeriod.ALL_TIME);
+            Assert.assertEquals(2, lot.getSessions());
+            Assert.assertEquals(60, lot.getMinutes());
+            Assert.assertEquals(10 + 33, lot.getCents());
+            Assert.assertEquals(33, myApi.getRevenue(site, SlotType.CHARGER_50kW, RevenuePeriod.LAST_HOUR).getCents());
+            Assert.assertEquals(0, myApi.getRevenue(site, SlotType.CHARGER_20kW, RevenuePeriod.ALL_TIME).getSessions());
+
+            //midnight, the sessions of yesterday leave the TODAY and LAST_HOUR periods
+            clock.advanceMinutes(90);
+            myApi.checkOut(street, parked, (long min) -> 0.1);
+            Revenue standard = myApi.getRevenueForType(SlotType.STANDARD, RevenuePeriod.ALL_TIME);
+            Assert.assertEquals(4, standard.getSessions());
+            Assert.assertEquals(30 + 3 * 120, standard.getMinutes());
+            Assert.assertEquals(40, standard.getCents());
+            Assert.assertEquals(0.4, standard.getRevenue(), 0.0);
+            Assert.assertEquals(3, myApi.getRevenue(RevenuePeriod.TODAY).getSessions());
+            Assert.assertEquals(30, myApi.getRevenue(RevenuePeriod.LAST_HOUR).getCents());
+            Assert.assertEquals(0, myApi.getRevenue(site, RevenuePeriod.TODAY).getSessions());
+            Assert.assertEquals(5, myApi.getRevenue(RevenuePeriod.ALL_TIME).getSessions());
+
+            clock.advanceMinutes(60);
+            Assert.assertEquals(0, myApi.getRevenue(RevenuePeriod.LAST_HOUR).getSessions());
+            Assert.assertEquals(30, myApi.getRevenue(street, RevenuePeriod.TODAY).getCents());
+        } catch (Throwable e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+    }
+}
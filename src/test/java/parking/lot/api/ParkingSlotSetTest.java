@@ -0,0 +1,363 @@
+package parking.lot.api;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class ParkingSlotSetTest {
+
+    @Test
+    public void checkInUntilFull() {
+        ParkingSlotSet slotSet = new ParkingSlotSet(3);
+        Set<String> ids = new HashSet<>();
+        try {
+            ids.add(slotSet.checkIn());
+            ids.add(slotSet.checkIn());
+            ids.add(slotSet.checkIn());
+        } catch (SlotsFullException e) {
+            e.printStackTrace();
+            fail("Should not have thrown any exception");
+        }
+        Assert.assertEquals(3, ids.size());
+        try {
+            slotSet.checkIn();
+            fail("Parking should be full");
+        } catch (SlotsFullException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void checkOutTwiceFails() {
+        ParkingSlotSet slotSet = new ParkingSlotSet(1);
+        try {
+            String slotId = slotSet.checkIn();
+            Assert.assertEquals(0, slotSet.checkOut(slotId, (long min) -> min), 0.001);
+            slotSet.checkOut(slotId, (long min) -> min);
+            fail("Slot was already available");
+        } catch (SlotsFullException e) {
+            e.printStackTrace();
+            fail("Should not have thrown SlotsFullException");
+        } catch (SlotNotFoundException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void checkOutUnknownSlotFails() {
+        ParkingSlotSet slotSet = new ParkingSlotSet(1);
+        for (String slotId : new String[]{"0", "2", "abc", null}) {
+            try {
+                slotSet.checkOut(slotId, (long min) -> min);
+                fail("Slot " + slotId + " does not exist");
+            } catch (SlotNotFoundException e) {
+                //expected
+            }
+        }
+    }
+
+    @Test
+    public void concurrentCheckInCheckOut() throws InterruptedException {
+        final int threads = 8;
+        final int rounds = 20000;
+        final ParkingSlotSet slotSet = new ParkingSlotSet(threads * 2);
+        final ConcurrentHashMap<String, Boolean> inUse = new ConcurrentHashMap<>();
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    for (int i = 0; i < rounds; i++) {
+                        String slotId = slotSet.checkIn();
+                        if (inUse.putIfAbsent(slotId, Boolean.TRUE) != null) {
+                            errors.incrementAndGet();
+                        }
+                        inUse.remove(slotId);
+                        slotSet.checkOut(slotId, (long min) -> 1.0);
+                    }
+                } catch (SlotsFullException | SlotNotFoundException e) {
+                    e.printStackTrace();
+                    errors.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+
+        Assert.assertEquals(0, errors.get());
+        Assert.assertEquals(threads * 2, slotSet.getAllSlotsIds().size());
+    }
+
+    @Test
+    public void checkInAllUntilFull() {
+        ParkingSlotSet slotSet = new ParkingSlotSet(5);
+        int[] slotIds = new int[3];
+        Assert.assertEquals(3, slotSet.checkInAll(slotIds));
+        Assert.assertArrayEquals(new int[]{1, 2, 3}, slotIds);
+        Assert.assertEquals(2, slotSet.checkInAll(slotIds));
+        Assert.assertEquals(0, slotSet.checkInAll(slotIds));
+    }
+
+    @Test
+    public void checkOutAllMarksUnknownSlots() {
+        ManualClock clock = new ManualClock();
+        ParkingSlotSet slotSet = new ParkingSlotSet(4, ParkingApi.PARKING_STANDARD_TYPE, clock);
+        int[] slotIds = new int[2];
+        Assert.assertEquals(2, slotSet.checkInAll(slotIds));
+        clock.advanceMinutes(90);
+
+        double[] prices = slotSet.checkOutAll(new int[]{slotIds[0], 4, slotIds[1], slotIds[0], 99}, (long min) -> min);
+        Assert.assertEquals(90, prices[0], 0.001);
+        Assert.assertTrue(Double.isNaN(prices[1]));
+        Assert.assertEquals(90, prices[2], 0.001);
+        Assert.assertTrue(Double.isNaN(prices[3]));
+        Assert.assertTrue(Double.isNaN(prices[4]));
+
+        //all slots are free again
+        Assert.assertEquals(4, slotSet.checkInAll(new int[6]));
+    }
+
+    @Test
+    public void checkOutAllWithThrowingPolicyFreesEverySlot() {
+        ParkingSlotSet slotSet = new ParkingSlotSet(4, ParkingApi.PARKING_STANDARD_TYPE, new ManualClock());
+        int[] slotIds = new int[4];
+        Assert.assertEquals(4, slotSet.checkInAll(slotIds));
+        AtomicInteger billed = new AtomicInteger();
+        try {
+            slotSet.checkOutAll(slotIds, (long min) -> {
+                if (billed.incrementAndGet() == 2) {
+                    throw new IllegalStateException("tariff service down");
+                }
+                return min;
+            });
+            fail("The policy should have thrown");
+        } catch (IllegalStateException e) {
+            //expected
+        }
+        Assert.assertEquals(0, slotSet.getOccupiedSlots());
+        Assert.assertEquals(4, slotSet.checkInAll(new int[4]));
+    }
+
+    @Test
+    public void concurrentBatches() throws InterruptedException {
+        final int threads = 8;
+        final int rounds = 5000;
+        final int batch = 4;
+        final ParkingSlotSet slotSet = new ParkingSlotSet(threads * batch);
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                int[] slotIds = new int[batch];
+                for (int i = 0; i < rounds; i++) {
+                    if (slotSet.checkInAll(slotIds) != batch) {
+                        errors.incrementAndGet();
+                        return;
+                    }
+                    for (double price : slotSet.checkOutAll(slotIds, (long min) -> 1.0)) {
+                        if (Double.isNaN(price)) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        Assert.assertEquals(0, errors.get());
+        Assert.assertEquals(threads * batch, slotSet.checkInAll(new int[threads * batch + 1]));
+    }
+
+    @Test
+    public void stripedCheckInStealsBeforeFull() {
+        ParkingSlotSet slotSet = new ParkingSlotSet(10, ParkingApi.PARKING_STANDARD_TYPE, ParkingClock.SYSTEM, 4);
+        Assert.assertEquals(4, slotSet.getStripes());
+        Set<Integer> ids = new HashSet<>();
+        try {
+            //stripes of 3, 3, 3 and 1 slots, entrance 1 starts with the second stripe
+            Assert.assertEquals(4, slotSet.checkInSlot(1));
+            for (int i = 0; i < 10; i++) {
+                ids.add(slotSet.checkInSlot(3));
+            }
+            fail("Parking should be full");
+        } catch (SlotsFullException e) {
+            //expected once every stripe is full
+        }
+        Assert.assertEquals(9, ids.size());
+        Assert.assertFalse(ids.contains(4));
+    }
+
+    @Test
+    public void stripedBatches() {
+        ParkingSlotSet slotSet = new ParkingSlotSet(7, ParkingApi.PARKING_STANDARD_TYPE, ParkingClock.SYSTEM, 3);
+        int[] slotIds = new int[8];
+        Assert.assertEquals(7, slotSet.checkInAll(slotIds));
+        Assert.assertEquals(7, new HashSet<>(Arrays.asList(slotIds[0], slotIds[1], slotIds[2],
+                slotIds[3], slotIds[4], slotIds[5], slotIds[6])).size());
+        double[] prices = slotSet.checkOutAll(Arrays.copyOf(slotIds, 7), (long min) -> 1.0);
+        for (double price : prices) {
+            Assert.assertEquals(1.0, price, 0.001);
+        }
+        Assert.assertEquals(7, slotSet.checkInAll(slotIds));
+    }
+
+    @Test
+    public void compactStorage() throws InterruptedException {
+        ManualClock clock = new ManualClock();
+        final ParkingSlotSet slotSet = new ParkingSlotSet(new SlotType[]{SlotType.STANDARD}, new int[]{130}, clock, 1,
+                null, SlotStorage.COMPACT);
+        Assert.assertEquals(SlotStorage.COMPACT, slotSet.getSlotStorage());
+        int[] slotIds = new int[130];
+        Assert.assertEquals(130, slotSet.checkInAll(slotIds));
+        Assert.assertTrue(slotSet.isOccupied(64) && slotSet.isOccupied(128));
+        clock.advanceMinutes(45);
+
+        double[] prices = slotSet.checkOutAll(new int[]{64, 64, 130, 0}, (long min) -> min);
+        Assert.assertEquals(45, prices[0], 0.001);
+        Assert.assertTrue(Double.isNaN(prices[1]));
+        Assert.assertEquals(45, prices[2], 0.001);
+        Assert.assertTrue(Double.isNaN(prices[3]));
+        Assert.assertFalse(slotSet.isOccupied(64));
+        Assert.assertTrue(slotSet.isOccupied(63) && slotSet.isOccupied(65));
+
+        //neighbour slots share a word of the bitset, only one of concurrent checkOuts frees a slot
+        final int threads = 4;
+        final AtomicInteger released = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                for (int id = 1; id <= 128; id++) {
+                    if (id != 64 && !Double.isNaN(slotSet.checkOutAll(new int[]{id}, (long min) -> 1.0)[0])) {
+                        released.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        Assert.assertEquals(127, released.get());
+        Assert.assertEquals(129, slotSet.getAvailableSlots());
+        Assert.assertEquals(130, slotSet.getAllSlotsIds().size());
+    }
+
+    @Test
+    public void slotsAreTakenLazily() {
+        ParkingSlotSet slotSet = new ParkingSlotSet(9, ParkingApi.PARKING_STANDARD_TYPE, ParkingClock.SYSTEM, 3);
+        Assert.assertEquals(Arrays.asList("1", "2", "3", "4", "5", "6", "7", "8", "9"), slotSet.getAllSlotsIds());
+        Assert.assertFalse(slotSet.isOccupied(9));
+        try {
+            Assert.assertEquals(1, slotSet.checkInSlot(0));
+            Assert.assertEquals(2, slotSet.checkInSlot(0));
+            slotSet.checkOut(1, (long min) -> 0);
+            //given back slots are reused before the ones never taken
+            Assert.assertEquals(1, slotSet.checkInSlot(0));
+            Assert.assertEquals(3, slotSet.checkInSlot(0));
+            Assert.assertEquals(4, slotSet.checkInSlot(0));
+            slotSet.checkOut(9, (long min) -> 0);
+            fail("Slot 9 was never occupied");
+        } catch (SlotNotFoundException e) {
+            //expected
+        } catch (SlotsFullException e) {
+            fail("Should not have thrown any exception");
+        }
+        Assert.assertEquals(5, slotSet.checkInAll(new int[9]));
+        Assert.assertEquals(0, slotSet.getAvailableSlots());
+    }
+
+    @Test
+    public void concurrentCheckInAsync() throws InterruptedException {
+        final int threads = 6;
+        final int rounds = 3000;
+        final ParkingSlotSet slotSet = new ParkingSlotSet(2);
+        final SlotPool pool = slotSet.pool(SlotType.STANDARD);
+        final ConcurrentHashMap<Integer, Boolean> inUse = new ConcurrentHashMap<>();
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    for (int i = 0; i < rounds; i++) {
+                        int slotId = slotSet.checkInAsync(pool, 0, TimeUnit.SECONDS, null).get(10, TimeUnit.SECONDS);
+                        if (inUse.putIfAbsent(slotId, Boolean.TRUE) != null) {
+                            errors.incrementAndGet();
+                        }
+                        inUse.remove(slotId);
+                        slotSet.checkOut(slotId, (long min) -> 1.0);
+                    }
+                } catch (Exception | SlotNotFoundException e) {
+                    e.printStackTrace();
+                    errors.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        Assert.assertEquals(0, errors.get());
+        Assert.assertEquals(0, slotSet.getOccupiedSlots());
+        Assert.assertTrue(pool.waiters.isEmpty());
+    }
+
+    @Test
+    public void staysStayOrderedUnderConcurrentCheckIns() throws InterruptedException {
+        final int threads = 4;
+        final int rounds = 5000;
+        final ManualClock clock = new ManualClock();
+        final ParkingSlotSet slotSet = new ParkingSlotSet(new SlotType[]{ SlotType.STANDARD }, new int[]{ 400 }, clock, 4,
+                null, SlotStorage.COMPACT);
+        final AtomicInteger errors = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    int kept = 0;
+                    for (int i = 0; i < rounds; i++) {
+                        clock.advanceMinutes(1);
+                        int slotId = slotSet.checkInSlot();
+                        if (i % 100 == 0 && kept < 20) {
+                            kept++;
+                        } else {
+                            slotSet.checkOut(slotId, (long min) -> 1.0);
+                        }
+                    }
+                } catch (SlotsFullException | SlotNotFoundException e) {
+                    e.printStackTrace();
+                    errors.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        Assert.assertEquals(0, errors.get());
+        List<Stay> stays = slotSet.getOldestStays(1000);
+        Assert.assertEquals(slotSet.getOccupiedSlots(), stays.size());
+        for (int i = 1; i < stays.size(); i++) {
+            Assert.assertTrue(stays.get(i - 1).getStartTime() <= stays.get(i).getStartTime());
+        }
+        List<Stay> oldest = slotSet.getOldestStays(5);
+        Assert.assertEquals(5, oldest.size());
+        Assert.assertEquals(stays.get(4).getStartTime(), oldest.get(4).getStartTime());
+        long minutes = stays.get(40).getMinutes();
+        long longer = stays.stream().filter(stay -> stay.getMinutes() >= minutes).count();
+        Assert.assertEquals(longer, slotSet.getStaysLongerThan(minutes).size());
+    }
+}
@@ -40,4 +40,14 @@ public class ParkingSlotTest {
         }
         Assert.assertEquals(1, slot.checkOut());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void checkOutWithManualClock() {
+        ManualClock clock = new ManualClock(1000);
+        ParkingSlot manualSlot = new ParkingSlot(clock);
+        manualSlot.checkIn();
+        clock.advanceMinutes(130);
+        clock.advance(59999);
+        Assert.assertEquals(130, manualSlot.checkOut());
+    }
+}
@@ -0,0 +1,63 @@
+package parking.lot.api;
+
+import java.time.ZoneOffset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class RevenueCounterTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Test
+    public void concurrentCheckOutsAreCountedExactly() throws InterruptedException {
+        RevenueCounter type = new RevenueCounter(ZoneOffset.UTC, null);
+        final int threads = 4;
+        final int sessions = 50000;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            RevenueCounter pool = new RevenueCounter(ZoneOffset.UTC, type);
+            new Thread(() -> {
+                for (int i = 0; i < sessions; i++) {
+                    //checkOuts spread over ten minutes, the threads install the windows concurrently
+                    pool.add(10, 1, i % 600 * 1000L);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        Revenue total = type.read(RevenuePeriod.ALL_TIME, 0);
+        Assert.assertEquals(threads * sessions, total.getSessions());
+        Assert.assertEquals(threads * sessions * 10L, total.getCents());
+        Assert.assertEquals(threads * sessions, type.read(RevenuePeriod.TODAY, 0).getSessions());
+        Assert.assertEquals(threads * sessions, type.read(RevenuePeriod.LAST_HOUR, 10 * MINUTE).getSessions());
+    }
+
+    @Test
+    public void windowsRollOver() {
+        RevenueCounter counter = new RevenueCounter(ZoneOffset.ofHours(2), null);
+        long midnight = DAY - TimeUnit.HOURS.toMillis(2);
+        for (int minute = 0; minute < 120; minute++) {
+            counter.add(100, minute, midnight - 60 * MINUTE + minute * MINUTE);
+        }
+        long now = midnight + 59 * MINUTE;
+        Assert.assertEquals(60, counter.read(RevenuePeriod.LAST_HOUR, now).getSessions());
+        Assert.assertEquals(60, counter.read(RevenuePeriod.TODAY, now).getSessions());
+        Assert.assertEquals(120, counter.read(RevenuePeriod.ALL_TIME, now).getSessions());
+        Assert.assertEquals(1, counter.read(RevenuePeriod.LAST_HOUR, now + 59 * MINUTE).getSessions());
+        Assert.assertEquals(0, counter.read(RevenuePeriod.TODAY, now + DAY).getSessions());
+
+        //a checkOut of a minute already replaced only counts in ALL_TIME
+        counter.add(100, 1, midnight - 30 * MINUTE);
+        Assert.assertEquals(60, counter.read(RevenuePeriod.LAST_HOUR, now).getSessions());
+        Assert.assertEquals(60, counter.read(RevenuePeriod.TODAY, now).getSessions());
+        Assert.assertEquals(121, counter.read(RevenuePeriod.ALL_TIME, now).getCents() / 100);
+    }
+}
@@ -0,0 +1,114 @@
+package parking.lot.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class SessionLogTest {
+
+    @Test
+    public void filtersByParkingTypeAndTime() {
+        SessionLog log = new SessionLog(1000, 64);
+        //sessions of 3 lots ending every minute, alternating types
+        for (int i = 0; i < 300; i++) {
+            SlotType type = i % 2 == 0 ? SlotType.STANDARD : SlotType.CHARGER_50kW;
+            long end = i * 60000L;
+            log.append(1 + i % 3, type, i + 1, end - 600000, end, 10, 2.5);
+        }
+        Assert.assertEquals(300, log.size());
+        Assert.assertEquals(300, log.aggregate().getCount());
+        Assert.assertEquals(3000, log.aggregate().getMinutes());
+        Assert.assertEquals(750, log.aggregate().getRevenue(), 1e-9);
+
+        Assert.assertEquals(100, log.aggregate(2, null, Long.MIN_VALUE, Long.MAX_VALUE).getCount());
+        Assert.assertEquals(150, log.aggregate(SessionLog.ANY_PARKING, SlotType.CHARGER_50kW, Long.MIN_VALUE, Long.MAX_VALUE).getCount());
+        Assert.assertEquals(50, log.aggregate(1, SlotType.STANDARD, Long.MIN_VALUE, Long.MAX_VALUE).getCount());
+        //minutes 100 to 199, the first and last chunks are skipped
+        Assert.assertEquals(100, log.aggregate(100 * 60000L, 200 * 60000L).getCount());
+        Assert.assertEquals(0, log.aggregate(1000 * 60000L, 2000 * 60000L).getCount());
+
+        List<Integer> slots = new ArrayList<>();
+        log.forEach(3, SlotType.CHARGER_50kW, 0, 30 * 60000L, (parkingId, type, slotId, start, end, minutes, price) -> {
+            Assert.assertEquals(3, parkingId);
+            Assert.assertEquals(SlotType.CHARGER_50kW, type);
+            Assert.assertEquals(end - 600000, start);
+            slots.add(slotId);
+        });
+        Assert.assertEquals(Arrays.asList(6, 12, 18, 24, 30), slots);
+    }
+
+    @Test
+    public void fullLogDropsSessions() {
+        SessionLog log = new SessionLog(100, 64);
+        for (int i = 0; i < 150; i++) {
+            log.append(1, SlotType.STANDARD, 1, 0, i, 1, 1);
+        }
+        Assert.assertEquals(100, log.size());
+        Assert.assertEquals(100, log.aggregate().getCount());
+        Assert.assertEquals(50, log.dropped());
+    }
+
+    @Test
+    public void concurrentAppendsAreAllLogged() throws InterruptedException {
+        final SessionLog log = new SessionLog(1 << 20, 64);
+        final int threads = 4;
+        final int sessions = 20000;
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final int parkingId = t + 1;
+            new Thread(() -> {
+                for (int i = 0; i < sessions; i++) {
+                    log.append(parkingId, SlotType.STANDARD, i + 1, i, i + 60000, 1, parkingId);
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        Assert.assertEquals(threads * sessions, log.aggregate().getCount());
+        for (int t = 1; t <= threads; t++) {
+            SessionTotals totals = log.aggregate(t, SlotType.STANDARD, Long.MIN_VALUE, Long.MAX_VALUE);
+            Assert.assertEquals(sessions, totals.getCount());
+            Assert.assertEquals((double) t * sessions, totals.getRevenue(), 1e-9);
+        }
+    }
+
+    @Test
+    public void rebillPricesLoggedMinutesAgain() {
+        BillingPolicy perMinute = (long minutes) -> minutes * 0.05;
+        for (int chunkSessions : new int[]{ 64, SessionLog.CHUNK_SESSIONS }) {
+            SessionLog log = new SessionLog(200000, chunkSessions);
+            long[] expected = new long[3];
+            for (int i = 0; i < 150000; i++) {
+                int parkingId = 1 + i % 3;
+                long end = i * 1000L;
+                log.append(parkingId, i % 2 == 0 ? SlotType.STANDARD : SlotType.CHARGER_50kW, 1, 0, end, i % 90, 9.99);
+                if (parkingId == 2 && end >= 5000000 && end < 100000000) {
+                    expected[0]++;
+                    expected[1] += i % 90;
+                    expected[2] += Math.round(perMinute.bill(i % 90) * 100);
+                }
+            }
+            BillingReport all = log.rebill(perMinute);
+            Assert.assertEquals(150000, all.getTotal().getSessions());
+            Assert.assertEquals(3, all.getParkings().size());
+            Assert.assertEquals(50000, all.getParking(3).getSessions());
+
+            BillingReport range = log.rebill(perMinute, 5000000, 100000000);
+            Revenue lot = range.getParking(2);
+            Assert.assertEquals(expected[0], lot.getSessions());
+            Assert.assertEquals(expected[1], lot.getMinutes());
+            Assert.assertEquals(expected[2], lot.getCents());
+            Assert.assertEquals(expected[0] / 2, log.rebill(perMinute, 2, SlotType.STANDARD, 5000000, 100000000).getTotal().getSessions(), 1);
+            Assert.assertEquals(0, log.rebill(perMinute, 0, 1000).getParking(2).getSessions());
+        }
+        Assert.assertEquals(0, new SessionLog(10).rebill((long minutes) -> 1).getTotal().getSessions());
+    }
+}
@@ -0,0 +1,135 @@
+package parking.lot.api;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class TariffTest {
+
+    private static final long MAX_MINUTES = 3 * CompiledTariff.MAX_TABLE_MINUTES;
+
+    private static void assertSamePrices(BillingPolicy expected, Tariff tariff) {
+        BillingPolicy compiled = tariff.compile();
+        for (long min = -2; min < MAX_MINUTES; min++) {
+            double price = expected.bill(Math.max(min, 0));
+            Assert.assertEquals("Tariff " + tariff + " at " + min + " minutes", price, tariff.bill(min), 0.0);
+            Assert.assertEquals("Compiled " + tariff + " at " + min + " minutes", price, compiled.bill(min), 0.0);
+        }
+    }
+
+    @Test
+    public void tieredTariff() {
+        Tariff tariff = Tariff.builder()
+                .free(60)
+                .flat(60, 1.8)
+                .perIncrement(15, 0.85)
+                .build();
+        assertSamePrices((long min) -> {
+            if(min < 60){
+                return 0;
+            }else if(min >= 60 && min < 120){
+                return 1.8;
+            }else {
+                return ((min-120)/15)*0.85+1.8;
+            }
+        }, tariff);
+    }
+
+    @Test
+    public void hourlyTariff() {
+        assertSamePrices((long min) -> (min / 60) * 1.5, Tariff.builder().perIncrement(60, 1.5).build());
+    }
+
+    @Test
+    public void feeAndHourlyTariff() {
+        assertSamePrices((long min) -> 2.0 + (min / 60) * 1.5, Tariff.builder().fee(2.0).perIncrement(60, 1.5).build());
+    }
+
+    @Test
+    public void boundedTiersAndCap() {
+        Tariff tariff = Tariff.builder()
+                .free(30)
+                .perIncrement(10, 0.5, 120)
+                .flat(60, 3.0)
+                .perIncrement(60, 2.0, 20000)
+                .cap(40.0)
+                .build();
+        assertSamePrices((long min) -> {
+            double price = 0;
+            if (min >= 30) {
+                price += ((Math.min(min, 150) - 30) / 10) * 0.5;
+            }
+            if (min >= 150) {
+                price += 3.0;
+            }
+            if (min >= 210) {
+                price += ((Math.min(min, 20210) - 210) / 60) * 2.0;
+            }
+            return Math.min(price, 40.0);
+        }, tariff);
+    }
+
+    @Test
+    public void emptyTariff() {
+        assertSamePrices((long min) -> 4.0, Tariff.builder().fee(4.0).build());
+    }
+
+    @Test
+    public void invalidTariffs() {
+        try {
+            Tariff.builder().perIncrement(15, 1.0).free(10);
+            fail("No tier can follow an unbounded tier");
+        } catch (IllegalStateException e) {
+            //expected
+        }
+        try {
+            Tariff.builder().perIncrement(0, 1.0);
+            fail("Increment must be positive");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        try {
+            Tariff.builder().flat(60, -1.0);
+            fail("Amount must be positive");
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void longStays() {
+        Tariff tariff = Tariff.builder().free(60).perIncrement(7, 0.3).build();
+        BillingPolicy compiled = tariff.compile();
+        long[] stays = {CompiledTariff.MAX_TABLE_MINUTES + 7L * 123456, 7L * 987654321 - 1, 7L * 987654321,
+                1L << 40, (1L << 40) + 13, Long.MAX_VALUE / 2};
+        for (long min : stays) {
+            Assert.assertEquals("Compiled at " + min + " minutes", tariff.bill(min), compiled.bill(min), 0.0);
+        }
+    }
+
+    @Test
+    public void divisorMatchesDivision() {
+        Random random = new Random(42);
+        long[] divisors = {1, 2, 3, 7, 15, 60, 1000003, (1L << 31) - 1, 1L << 31, 1L << 40};
+        for (long divisor : divisors) {
+            CompiledTariff.Divisor division = new CompiledTariff.Divisor(divisor);
+            long[] edges = {0, 1, divisor - 1, divisor, divisor + 1, CompiledTariff.DIVISION_LIMIT - 1};
+            for (long dividend : edges) {
+                if (dividend >= 0 && dividend < CompiledTariff.DIVISION_LIMIT) {
+                    Assert.assertEquals(dividend + " / " + divisor, dividend / divisor, division.divide(dividend));
+                }
+            }
+            for (int i = 0; i < 100000; i++) {
+                long dividend = random.nextInt(Integer.MAX_VALUE);
+                Assert.assertEquals(dividend + " / " + divisor, dividend / divisor, division.divide(dividend));
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package parking.lot.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author ActiveEon Team
+ * @since 16/10/26
+ */
+public class TimingWheelTest {
+
+    private static final class Recorded extends TimingWheel.Task {
+        private final List<Long> expired;
+
+        Recorded(long deadline, List<Long> expired) {
+            super(deadline);
+            this.expired = expired;
+        }
+
+        @Override
+        void expire() {
+            expired.add(deadline);
+        }
+    }
+
+    @Test
+    public void tasksExpireAtTheirTickOnEveryLevel() {
+        long start = 1234567L * 1000;
+        TimingWheel wheel = new TimingWheel(1000, start);
+        List<Long> expired = new ArrayList<>();
+        //level 0, 1, 2 and 3 delays, and one already due
+        long[] delays = {3, 64, 100, 4095, 4096, 300000, 0};
+        for (long delay : delays) {
+            wheel.schedule(new Recorded(start + delay * 1000, expired));
+        }
+        wheel.advance(start);
+        Assert.assertEquals(1, expired.size());
+        for (long second = 1; second <= 300000; second++) {
+            wheel.advance(start + second * 1000);
+            for (long delay : delays) {
+                boolean due = delay <= second;
+                Assert.assertEquals("delay " + delay + " at second " + second, due,
+                        expired.contains(start + delay * 1000));
+            }
+            if (second == 5000) {
+                //skip ahead, catching up ticks at once
+                second = 299990;
+            }
+        }
+        Assert.assertEquals(delays.length, expired.size());
+    }
+
+    @Test
+    public void lateAdvanceRunsEveryDueTask() {
+        TimingWheel wheel = new TimingWheel(1000, 0);
+        List<Long> expired = new ArrayList<>();
+        for (int i = 1; i <= 1000; i++) {
+            wheel.schedule(new Recorded(i * 7919L % 200000 * 1000 + 1000, expired));
+        }
+        wheel.advance(100000L * 1000);
+        int due = expired.size();
+        for (long deadline : expired) {
+            Assert.assertTrue(deadline <= 100000L * 1000);
+        }
+        wheel.advance(201000L * 1000);
+        Assert.assertEquals(1000, expired.size());
+        Assert.assertTrue(due > 0 && due < 1000);
+    }
+
+    @Test
+    public void failingTaskDoesNotStopTheOthers() {
+        TimingWheel wheel = new TimingWheel(1000, 0);
+        List<Long> expired = new ArrayList<>();
+        wheel.schedule(new Recorded(2000, expired));
+        wheel.schedule(new TimingWheel.Task(2000) {
+            @Override
+            void expire() {
+                throw new IllegalStateException("failing task");
+            }
+        });
+        wheel.schedule(new Recorded(2000, expired));
+        wheel.schedule(new Recorded(3000, expired));
+        wheel.advance(2000);
+        Assert.assertEquals(2, expired.size());
+        Assert.assertEquals(1, wheel.failures());
+        Assert.assertEquals("failing task", wheel.failure().getMessage());
+        wheel.advance(3000);
+        Assert.assertEquals(3, expired.size());
+        Assert.assertEquals(1, wheel.failures());
+    }
+}